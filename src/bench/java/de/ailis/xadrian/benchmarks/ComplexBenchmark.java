@@ -0,0 +1,178 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.benchmarks;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.ComplexWare;
+import de.ailis.xadrian.data.Ware;
+import de.ailis.xadrian.freemarker.TemplateFactory;
+import de.ailis.xadrian.support.Config;
+import freemarker.template.Template;
+
+/**
+ * Benchmarks for the calculations and conversions of a complex.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ComplexBenchmark
+{
+    /** The complex template used by the complex editor. */
+    private static final Template template = TemplateFactory
+        .getTemplate("complex.ftl");
+
+    /** No custom prices. Used to invalidate the cached complex values. */
+    private static final Map<Ware, Integer> noCustomPrices = Collections
+        .emptyMap();
+
+    /** The name of the fixture complex. */
+    @Param({ "small", "medium", "huge" })
+    public String fixture;
+
+    /** The fixture complex. */
+    private Complex complex;
+
+    /** The template code of the fixture complex. */
+    private String templateCode;
+
+    /** The XML document of the fixture complex. */
+    private Document document;
+
+    /**
+     * Creates the fixture complex.
+     */
+    @Setup
+    public void setup()
+    {
+        this.complex = Fixtures.createComplex(this.fixture);
+        this.templateCode = this.complex.getTemplateCode();
+        this.document = this.complex.toXML();
+    }
+
+    /**
+     * Calculates the wares of the complex. The cached wares are
+     * invalidated first.
+     *
+     * @return The wares
+     */
+    @Benchmark
+    public Collection<ComplexWare> getWares()
+    {
+        this.complex.setCustomPrices(noCustomPrices);
+        return this.complex.getWares();
+    }
+
+    /**
+     * Calculates the profit of the complex. The cached values are
+     * invalidated first.
+     *
+     * @return The profit
+     */
+    @Benchmark
+    public double getProfit()
+    {
+        this.complex.setCustomPrices(noCustomPrices);
+        return this.complex.getProfit();
+    }
+
+    /**
+     * Calculates the base complex.
+     *
+     * @return The complex
+     */
+    @Benchmark
+    public Complex calculateBaseComplex()
+    {
+        this.complex.updateBaseComplex();
+        return this.complex;
+    }
+
+    /**
+     * Encodes the complex into a template code.
+     *
+     * @return The template code
+     */
+    @Benchmark
+    public String encodeTemplateCode()
+    {
+        return this.complex.getTemplateCode();
+    }
+
+    /**
+     * Decodes the complex from a template code.
+     *
+     * @return The complex
+     */
+    @Benchmark
+    public Complex decodeTemplateCode()
+    {
+        return Complex.fromTemplateCode(this.templateCode);
+    }
+
+    /**
+     * Converts the complex into XML.
+     *
+     * @return The XML document
+     */
+    @Benchmark
+    public Document toXML()
+    {
+        return this.complex.toXML();
+    }
+
+    /**
+     * Reads the complex from XML.
+     *
+     * @return The complex
+     * @throws DocumentException
+     *             When the XML document is invalid
+     */
+    @Benchmark
+    public Complex fromXML() throws DocumentException
+    {
+        return Complex.fromXML(this.document);
+    }
+
+    /**
+     * Renders the complex with the template used by the complex editor.
+     *
+     * @return The rendered HTML
+     */
+    @Benchmark
+    public String render()
+    {
+        final Map<String, Object> model = new HashMap<String, Object>();
+        model.put("complex", this.complex);
+        model.put("print", false);
+        model.put("config", Config.getInstance());
+        return TemplateFactory.processTemplate(template, model);
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.benchmarks;
+
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * The complexes used by the benchmarks. They are defined by fixed template
+ * codes so benchmark results can be compared between different versions of
+ * Xadrian. All complexes are X3TC complexes in Argon Prime. Never change
+ * these codes, add new ones instead.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+final class Fixtures
+{
+    /** A single crystal fab. */
+    static final String SMALL = "AQEBQQEA";
+
+    /** Four factories. */
+    static final String MEDIUM = "AQEBOwFBAQoBPQEA";
+
+    /** 46 factories of all kinds. */
+    static final String HUGE =
+        "AQEBOgHhAQF9ATQBmAEBpgEBqQEBQgJqAVUB3AEBngED7wEBiQEB5QEBTwFGAUMBdwFcAl"
+            + "MBLQHyAQGKAQNlAXUBewFbAbUBAq0BAiIBPgHgAQFNAb4BAbcBAewBAQIBaQHTAQ"
+            + "FJAdoBApoBAe0BAR0BeQIA";
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private Fixtures()
+    {
+        // Empty
+    }
+
+    /**
+     * Returns the template code of the specified fixture.
+     *
+     * @param name
+     *            The fixture name ("small", "medium" or "huge")
+     * @return The template code
+     */
+    static String getTemplateCode(final String name)
+    {
+        if ("small".equals(name)) return SMALL;
+        if ("medium".equals(name)) return MEDIUM;
+        if ("huge".equals(name)) return HUGE;
+        throw new IllegalArgumentException("Unknown fixture: " + name);
+    }
+
+    /**
+     * Creates the specified fixture complex. The configuration is reset to
+     * the defaults first so user settings don't influence the results. The
+     * base complex is calculated for the complex.
+     *
+     * @param name
+     *            The fixture name ("small", "medium" or "huge")
+     * @return The complex
+     */
+    static Complex createComplex(final String name)
+    {
+        Config.getInstance().reset();
+        final Complex complex =
+            Complex.fromTemplateCode(getTemplateCode(name));
+        complex.setAddBaseComplex(true);
+        complex.updateBaseComplex();
+        return complex;
+    }
+}
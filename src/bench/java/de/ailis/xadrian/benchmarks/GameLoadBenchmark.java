@@ -0,0 +1,56 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.ailis.xadrian.data.Game;
+import de.ailis.xadrian.data.factories.GameFactory;
+
+/**
+ * Benchmarks the loading of the game data. Each operation loads the
+ * complete data of a game into a new game object, just like the first
+ * access to a game does after application start.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GameLoadBenchmark
+{
+    /** The game ID. */
+    @Param({ "x3tc", "x3ap" })
+    public String gameId;
+
+    /**
+     * Loads the game data.
+     *
+     * @return The loaded game
+     */
+    @Benchmark
+    public Game load()
+    {
+        final Game game = GameFactory.getInstance().getGame(this.gameId);
+        final Game newGame = new Game(game.getNid(), game.getId());
+        newGame.getSunFactory();
+        return newGame;
+    }
+}
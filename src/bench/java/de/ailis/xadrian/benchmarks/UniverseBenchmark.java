@@ -0,0 +1,115 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import de.ailis.xadrian.data.Factory;
+import de.ailis.xadrian.data.Game;
+import de.ailis.xadrian.data.Sector;
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Benchmarks for the sector distance lookups. Each benchmark operation
+ * processes a fixed set of randomly chosen sectors and factories so the
+ * results don't depend on the distance between two specific sectors. The
+ * random generator is seeded so the same set is used in every run.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UniverseBenchmark
+{
+    /** The number of lookups per benchmark operation. */
+    private static final int LOOKUPS = 1000;
+
+    /** The game ID. */
+    @Param({ "x3tc", "x3ap" })
+    public String gameId;
+
+    /** The source sectors. */
+    private Sector[] sources;
+
+    /** The target sectors. */
+    private Sector[] targets;
+
+    /** The factories to search manufacturers for. */
+    private Factory[] factories;
+
+    /**
+     * Loads the game and chooses the sectors and factories.
+     */
+    @Setup
+    public void setup()
+    {
+        Config.getInstance().reset();
+        final Game game = GameFactory.getInstance().getGame(this.gameId);
+        final List<Sector> sectors = new ArrayList<Sector>(game
+            .getSectorFactory().getSectors());
+        final List<Factory> allFactories = new ArrayList<Factory>(game
+            .getFactoryFactory().getFactories());
+        final Random random = new Random(0);
+        this.sources = new Sector[LOOKUPS];
+        this.targets = new Sector[LOOKUPS];
+        this.factories = new Factory[LOOKUPS];
+        for (int i = 0; i < LOOKUPS; i++)
+        {
+            this.sources[i] = sectors.get(random.nextInt(sectors.size()));
+            this.targets[i] = sectors.get(random.nextInt(sectors.size()));
+            this.factories[i] = allFactories.get(random.nextInt(allFactories
+                .size()));
+        }
+    }
+
+    /**
+     * Calculates the distances between the chosen sectors.
+     *
+     * @param blackhole
+     *            Consumes the results
+     */
+    @Benchmark
+    public void getDistance(final Blackhole blackhole)
+    {
+        for (int i = 0; i < LOOKUPS; i++)
+            blackhole.consume(this.sources[i].getDistance(this.targets[i]));
+    }
+
+    /**
+     * Searches the nearest manufacturers of the chosen factories.
+     *
+     * @param blackhole
+     *            Consumes the results
+     */
+    @Benchmark
+    public void getNearestManufacturer(final Blackhole blackhole)
+    {
+        for (int i = 0; i < LOOKUPS; i++)
+            blackhole.consume(this.factories[i]
+                .getNearestManufacturer(this.sources[i]));
+    }
+}
@@ -13,14 +13,18 @@ import de.ailis.oneinstance.OneInstance;
 import de.ailis.oneinstance.OneInstanceListener;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.data.factories.GameWatcher;
 import de.ailis.xadrian.dialogs.AboutDialog;
 import de.ailis.xadrian.dialogs.ChangeQuantityDialog;
+import de.ailis.xadrian.dialogs.GameDialogs;
 import de.ailis.xadrian.dialogs.OpenComplexDialog;
-import de.ailis.xadrian.dialogs.PreferencesDialog;
 import de.ailis.xadrian.dialogs.SaveComplexDialog;
 import de.ailis.xadrian.dialogs.SelectGameDialog;
 import de.ailis.xadrian.frames.MainFrame;
 import de.ailis.xadrian.frames.SplashFrame;
+import de.ailis.xadrian.listeners.LoadProgressListener;
+import de.ailis.xadrian.support.BatchEvaluator;
+import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.ErrorHandler;
 import de.ailis.xadrian.utils.SwingUtils;
 
@@ -37,6 +41,18 @@ public class Main
     /** The application user model ID (For Windows 7 Taskbar). */
     private static final String APP_USER_MODEL_ID = "Ailis.Xadrian";
 
+    /**
+     * The system property which enables reloading of changed game data
+     * files.
+     */
+    private static final String WATCH_PROPERTY = "xadrian.watch";
+
+    /** The polling interval for changed game data files in milliseconds. */
+    private static final long WATCH_INTERVAL = 1000;
+
+    /** The command line argument which starts the batch evaluator. */
+    private static final String BATCH_ARGUMENT = "--batch";
+
     /**
      * Main method.
      *
@@ -45,6 +61,15 @@ public class Main
      */
     public static void main(final String[] args)
     {
+        // Evaluate template codes without GUI if requested
+        if (args.length > 0 && BATCH_ARGUMENT.equals(args[0]))
+        {
+            System.setProperty("java.awt.headless", "true");
+            final String[] batchArgs = new String[args.length - 1];
+            System.arraycopy(args, 1, batchArgs, 0, batchArgs.length);
+            System.exit(BatchEvaluator.run(batchArgs));
+        }
+
         // If Xadrian is already running then focus the already running
         // Xadrian and pass command line arguments to it. This allows us
         // to open more complexes in the already running Xadrian by
@@ -82,27 +107,49 @@ public class Main
             // Install the error handler
             ErrorHandler.install();
 
-            // Open the splash screen.
+            // Open the splash screen and show the progress of loading the
+            // game data in it
             SplashFrame.open();
+            final LoadProgressListener progressListener =
+                new LoadProgressListener()
+                {
+                    @Override
+                    public void loadProgressed()
+                    {
+                        SplashFrame.advanceProgress();
+                    }
+                };
+            GameFactory.getInstance().addLoadProgressListener(
+                progressListener);
 
-            // Preload everything
-            for (Game game: GameFactory.getInstance().getGames())
+            // Preload the configured default game. All other games are
+            // loaded on demand. The preferences dialog is not preloaded
+            // because it needs the data of all games.
+            final Game game = getDefaultGame();
+            SplashFrame.setNumberOfGames(game == null ? 0 : 1);
+            if (game != null)
             {
-                game.getAddFactoryDialog();
-                game.getChangePricesDialog();
-                game.getChangeSunsDialog();
-                game.getSelectSectorDialog();
+                final GameDialogs dialogs = GameDialogs.getInstance(game);
+                dialogs.getAddFactoryDialog();
+                dialogs.getChangePricesDialog();
+                dialogs.getChangeSunsDialog();
+                dialogs.getSelectSectorDialog();
             }
             AboutDialog.getInstance();
             OpenComplexDialog.getInstance();
             SaveComplexDialog.getInstance();
             ChangeQuantityDialog.getInstance();
-            PreferencesDialog.getInstance();
             SelectGameDialog.getInstance();           
 
             // Close the splash screen
+            GameFactory.getInstance().removeLoadProgressListener(
+                progressListener);
             SplashFrame.close();
 
+            // Reload changed game data files if requested
+            if (Boolean.getBoolean(WATCH_PROPERTY))
+                new GameWatcher(WATCH_INTERVAL).start();
+
             // Start the main frame and open the files specified on the
             // command line
             SwingUtilities.invokeLater(new Runnable()
@@ -120,4 +167,17 @@ public class Main
             System.exit(1);
         }
     }
+
+    /**
+     * Returns the default game configured by the user.
+     *
+     * @return The configured default game or null if none
+     */
+    private static Game getDefaultGame()
+    {
+        final String gameId = Config.getInstance().getDefaultGame();
+        final GameFactory gameFactory = GameFactory.getInstance();
+        if (gameId == null || !gameFactory.hasGame(gameId)) return null;
+        return gameFactory.getGame(gameId);
+    }
 }
@@ -8,6 +8,7 @@ import java.awt.event.ActionEvent;
 import java.awt.event.ActionListener;
 
 import de.ailis.xadrian.data.Sector;
+import de.ailis.xadrian.dialogs.GameDialogs;
 import de.ailis.xadrian.dialogs.SelectSectorDialog;
 import de.ailis.xadrian.interfaces.GameProvider;
 import de.ailis.xadrian.interfaces.SectorProvider;
@@ -64,8 +65,8 @@ public class ChangeSectorAction extends BaseAction implements StateListener
     public void actionPerformed(final ActionEvent e)
     {
         final Sector sector = this.sectorProvider.getSector();
-        final SelectSectorDialog dialog =
-            this.gameProvider.getGame().getSelectSectorDialog();
+        final SelectSectorDialog dialog = GameDialogs.getInstance(
+            this.gameProvider.getGame()).getSelectSectorDialog();
         dialog.setSelected(sector);
         if (dialog.open() == Result.OK)
             this.sectorProvider.setSector(dialog.getSelected());
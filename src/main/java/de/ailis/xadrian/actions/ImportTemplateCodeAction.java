@@ -15,7 +15,7 @@ import java.io.IOException;
 
 import javax.swing.JOptionPane;
 
-import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.TemplateCode;
 import de.ailis.xadrian.exceptions.TemplateCodeException;
 import de.ailis.xadrian.frames.MainFrame;
 import de.ailis.xadrian.listeners.MainStateListener;
@@ -62,9 +62,11 @@ public class ImportTemplateCodeAction extends FrameAction<MainFrame> implements
                     .toString();
                 for (final String code: text.split("\\s+"))
                 {
-                    if (Complex.isValidTemplateCode(code))
+                    final TemplateCode templateCode =
+                        TemplateCode.decode(code);
+                    if (templateCode.isValid())
                     {
-                        this.frame.importFromTemplateCode(code);
+                        this.frame.importFromTemplateCode(templateCode);
                         imported += 1;
                     }
                 }
@@ -49,6 +49,7 @@ import de.ailis.xadrian.dialogs.AddFactoryDialog;
 import de.ailis.xadrian.dialogs.ChangePricesDialog;
 import de.ailis.xadrian.dialogs.ChangeQuantityDialog;
 import de.ailis.xadrian.dialogs.ChangeSunsDialog;
+import de.ailis.xadrian.dialogs.GameDialogs;
 import de.ailis.xadrian.dialogs.SaveComplexDialog;
 import de.ailis.xadrian.dialogs.SelectSectorDialog;
 import de.ailis.xadrian.dialogs.SetYieldsDialog;
@@ -92,7 +93,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     private final JTextPane textPane;
 
     /** The edited complex */
-    private final Complex complex;
+    private Complex complex;
 
     /** The file under which this complex was last saved */
     private File file;
@@ -143,7 +144,7 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
         popupMenu.add(new SelectAllAction(this));
         popupMenu.addSeparator();
         popupMenu.add(new AddFactoryAction(this));
-        popupMenu.add(new ChangeSectorAction(this.complex, this, "complex"));
+        popupMenu.add(new ChangeSectorAction(this, this, "complex"));
         popupMenu.add(new ChangeSunsAction(this));
         popupMenu.add(new ChangePricesAction(this));
         popupMenu.add(new JCheckBoxMenuItem(new ToggleBaseComplexAction(this)));
@@ -337,13 +338,24 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     @Override
     public void addFactory()
     {
-        final AddFactoryDialog dialog =
-            this.complex.getGame().getAddFactoryDialog();
+        final AddFactoryDialog dialog = GameDialogs.getInstance(
+            this.complex.getGame()).getAddFactoryDialog();
         if (dialog.open() == Result.OK)
         {
             for (final Factory factory : dialog.getFactories())
             {
-                this.complex.addFactory(factory);
+                if (factory.isMine())
+                {
+                    final SetYieldsDialog yieldsDialog =
+                        new SetYieldsDialog(factory);
+                    yieldsDialog.setYields(null);
+                    yieldsDialog.setSector(this.complex.getSector());
+                    if (yieldsDialog.open() != Result.OK) continue;
+                    this.complex.setSector(yieldsDialog.getSector());
+                    this.complex.addFactory(factory, yieldsDialog.getYields());
+                }
+                else
+                    this.complex.addFactory(factory);
             }
             doChange();
             redraw();
@@ -356,8 +368,8 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     @Override
     public void changeSector()
     {
-        final SelectSectorDialog dialog =
-            this.complex.getGame().getSelectSectorDialog();
+        final SelectSectorDialog dialog = GameDialogs.getInstance(
+            this.complex.getGame()).getSelectSectorDialog();
         dialog.setSelected(this.complex.getSector());
         if (dialog.open() == Result.OK)
         {
@@ -580,8 +592,8 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     @Override
     public void changeSuns()
     {
-        final ChangeSunsDialog dialog =
-            this.complex.getGame().getChangeSunsDialog();
+        final ChangeSunsDialog dialog = GameDialogs.getInstance(
+            this.complex.getGame()).getChangeSunsDialog();
         dialog.setSuns(this.complex.getSuns());
         if (dialog.open() == Result.OK)
         {
@@ -640,7 +652,10 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
     {
         try
         {
-            XmlUtils.write(this.complex.toXML(), file);
+            if (Config.getInstance().isBinaryComplexFiles())
+                FileUtils.writeBytes(this.complex.toBinary(), file);
+            else
+                XmlUtils.write(this.complex.toXML(), file);
             this.file = file;
             this.changed = false;
             this.complex.setName(FileUtils.getNameWithoutExt(file));
@@ -677,6 +692,20 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
         return this.changed;
     }
 
+    /**
+     * Binds the edited complex to a reloaded version of its game. The
+     * unsaved state of the editor is kept.
+     *
+     * @param game
+     *            The reloaded game
+     */
+    public void rebind(final Game game)
+    {
+        this.complex = this.complex.rebind(game);
+        redraw();
+        fireComplexState();
+    }
+
     /**
      * Toggles the addition of automatically calculated base complex.
      */
@@ -983,8 +1012,8 @@ public class ComplexEditor extends JComponent implements HyperlinkListener,
      */
     public void changePrices(final Ware focusedWare)
     {
-        final ChangePricesDialog dialog =
-            this.complex.getGame().getChangePricesDialog();
+        final ChangePricesDialog dialog = GameDialogs.getInstance(
+            this.complex.getGame()).getChangePricesDialog();
         dialog.setCustomPrices(this.complex.getCustomPrices());
         dialog.setActiveWare(focusedWare);
         if (dialog.open(this.complex) == Result.OK)
@@ -176,27 +176,27 @@ public class SectorSelector extends JComponent implements MouseMotionListener,
             switch (this.mode)
             {
                 case SUNS:
-                    sectorColor = sector.getSuns().getColor();
+                    sectorColor = new Color(sector.getSuns().getColor());
                     break;
 
                 case SILICON:
-                    sectorColor = sector.getSiliconColor();
+                    sectorColor = new Color(sector.getSiliconColor());
                     break;
 
                 case ORE:
-                    sectorColor = sector.getOreColor();
+                    sectorColor = new Color(sector.getOreColor());
                     break;
 
                 case NIVIDIUM:
-                    sectorColor = sector.getNividiumColor();
+                    sectorColor = new Color(sector.getNividiumColor());
                     break;
 
                 case ICE:
-                    sectorColor = sector.getIceColor();
+                    sectorColor = new Color(sector.getIceColor());
                     break;
 
                 default:
-                    sectorColor = sector.getRace().getColor();
+                    sectorColor = new Color(sector.getRace().getColor());
             }
 
             if (this.filter != null && !this.filter.isEmpty())
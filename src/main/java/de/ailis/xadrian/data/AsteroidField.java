@@ -0,0 +1,555 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.SortedMap;
+import java.util.TreeMap;
+
+import de.ailis.xadrian.support.ReverseIntegerComparator;
+
+/**
+ * The asteroids of a sector. The asteroids are stored in columns of
+ * primitive arrays (ware ordinal, yield and position) so no asteroid objects
+ * are needed to answer yield queries. The per-ware yield totals, the sorted
+ * yield lists and the yield histograms are calculated once when the field is
+ * built. Asteroid objects are only created when they are requested for the
+ * first time.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class AsteroidField implements Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 1L;
+
+    /** The minimum size of a sector */
+    private static final int MIN_SIZE = 50000;
+
+    /** The game */
+    private final Game game;
+
+    /** The asteroid IDs */
+    private final String[] ids;
+
+    /** The ware ordinals of the asteroids */
+    private final int[] wares;
+
+    /** The yields of the asteroids */
+    private final int[] yields;
+
+    /** The X positions of the asteroids */
+    private final int[] xs;
+
+    /** The Y positions of the asteroids */
+    private final int[] ys;
+
+    /** The Z positions of the asteroids */
+    private final int[] zs;
+
+    /** The size of the sector needed to display all asteroids */
+    private final int size;
+
+    /**
+     * The yield summaries indexed by ware ordinal. Null entries for wares
+     * without asteroids.
+     */
+    private final WareYields[] wareYields;
+
+    /** The asteroid objects. Created on first access */
+    private transient List<Asteroid> asteroids;
+
+    /**
+     * Constructor.
+     *
+     * @param builder
+     *            The builder with the collected asteroids
+     */
+    private AsteroidField(final Builder builder)
+    {
+        this.game = builder.game;
+        final int count = builder.ids.size();
+        this.ids = builder.ids.toArray(new String[count]);
+        this.wares = new int[count];
+        this.yields = new int[count];
+        this.xs = new int[count];
+        this.ys = new int[count];
+        this.zs = new int[count];
+        int maxX = 0, maxY = 0, maxZ = 0;
+        for (int i = 0; i < count; i++)
+        {
+            final int offset = i * Builder.COLUMNS;
+            this.wares[i] = builder.values[offset];
+            this.yields[i] = builder.values[offset + 1];
+            this.xs[i] = builder.values[offset + 2];
+            this.ys[i] = builder.values[offset + 3];
+            this.zs[i] = builder.values[offset + 4];
+            maxX = Math.max(maxX, Math.abs(this.xs[i]));
+            maxY = Math.max(maxY, Math.abs(this.ys[i]));
+            maxZ = Math.max(maxZ, Math.abs(this.zs[i]));
+        }
+        this.size = Math.max(MIN_SIZE,
+            Math.max(Math.max(maxX, maxY), maxZ) * 2 + 10000);
+
+        // Calculate the yield summaries of all wares
+        final int[] wareCounts =
+            new int[this.game.getWareFactory().getWareCount()];
+        for (final int ware: this.wares)
+            wareCounts[ware]++;
+        this.wareYields = new WareYields[wareCounts.length];
+        for (int ware = 0; ware < wareCounts.length; ware++)
+        {
+            if (wareCounts[ware] == 0) continue;
+            final int[] indices = new int[wareCounts[ware]];
+            int next = 0;
+            for (int i = 0; i < count; i++)
+                if (this.wares[i] == ware) indices[next++] = i;
+            this.wareYields[ware] = new WareYields(sortByYield(indices));
+        }
+    }
+
+    /**
+     * Sorts the specified asteroid indices by descending yield and then by
+     * ID. This is the natural order of asteroids of the same ware.
+     *
+     * @param indices
+     *            The asteroid indices to sort
+     * @return The sorted asteroid indices
+     */
+    private int[] sortByYield(final int[] indices)
+    {
+        final Integer[] boxed = new Integer[indices.length];
+        for (int i = 0; i < indices.length; i++)
+            boxed[i] = indices[i];
+        Arrays.sort(boxed, new Comparator<Integer>()
+        {
+            @Override
+            public int compare(final Integer a, final Integer b)
+            {
+                final int yieldA = AsteroidField.this.yields[a];
+                final int yieldB = AsteroidField.this.yields[b];
+                if (yieldA != yieldB) return yieldA > yieldB ? -1 : 1;
+                return AsteroidField.this.ids[a].compareTo(
+                    AsteroidField.this.ids[b]);
+            }
+        });
+        final int[] result = new int[indices.length];
+        for (int i = 0; i < indices.length; i++)
+            result[i] = boxed[i];
+        return result;
+    }
+
+    /**
+     * Returns the number of asteroids.
+     *
+     * @return The number of asteroids
+     */
+    public int count()
+    {
+        return this.ids.length;
+    }
+
+    /**
+     * Returns the ID of the asteroid with the specified index.
+     *
+     * @param index
+     *            The asteroid index
+     * @return The asteroid ID
+     */
+    public String getId(final int index)
+    {
+        return this.ids[index];
+    }
+
+    /**
+     * Returns the ware of the asteroid with the specified index.
+     *
+     * @param index
+     *            The asteroid index
+     * @return The ware
+     */
+    public Ware getWare(final int index)
+    {
+        return this.game.getWareFactory().getWare(this.wares[index]);
+    }
+
+    /**
+     * Returns the yield of the asteroid with the specified index.
+     *
+     * @param index
+     *            The asteroid index
+     * @return The yield
+     */
+    public int getYield(final int index)
+    {
+        return this.yields[index];
+    }
+
+    /**
+     * Returns the X position of the asteroid with the specified index.
+     *
+     * @param index
+     *            The asteroid index
+     * @return The X position
+     */
+    public int getX(final int index)
+    {
+        return this.xs[index];
+    }
+
+    /**
+     * Returns the Y position of the asteroid with the specified index.
+     *
+     * @param index
+     *            The asteroid index
+     * @return The Y position
+     */
+    public int getY(final int index)
+    {
+        return this.ys[index];
+    }
+
+    /**
+     * Returns the Z position of the asteroid with the specified index.
+     *
+     * @param index
+     *            The asteroid index
+     * @return The Z position
+     */
+    public int getZ(final int index)
+    {
+        return this.zs[index];
+    }
+
+    /**
+     * Returns the size of the sector which is needed to display all
+     * asteroids.
+     *
+     * @return The sector size
+     */
+    public int getSize()
+    {
+        return this.size;
+    }
+
+    /**
+     * Returns all asteroids in the order in which they were added.
+     *
+     * @return The asteroids. Unmodifiable. Never null
+     */
+    public synchronized List<Asteroid> getAsteroids()
+    {
+        if (this.asteroids == null)
+        {
+            final List<Asteroid> list = new ArrayList<Asteroid>(count());
+            for (int i = 0; i < count(); i++)
+                list.add(new Asteroid(this.ids[i], getWare(i),
+                    this.yields[i], this.xs[i], this.ys[i], this.zs[i]));
+            this.asteroids = Collections.unmodifiableList(list);
+        }
+        return this.asteroids;
+    }
+
+    /**
+     * Returns the asteroids of the specified ware sorted by descending
+     * yield.
+     *
+     * @param ware
+     *            The ware. May be null
+     * @return The asteroids. Unmodifiable. Never null
+     */
+    public List<Asteroid> getAsteroids(final Ware ware)
+    {
+        final WareYields summary = getWareYields(ware);
+        if (summary == null) return Collections.emptyList();
+        final List<Asteroid> all = getAsteroids();
+        final int[] indices = summary.indices;
+        return new AbstractList<Asteroid>()
+        {
+            @Override
+            public Asteroid get(final int index)
+            {
+                return all.get(indices[index]);
+            }
+
+            @Override
+            public int size()
+            {
+                return indices.length;
+            }
+        };
+    }
+
+    /**
+     * Checks if the specified asteroid belongs to this field.
+     *
+     * @param asteroid
+     *            The asteroid to check
+     * @return True if asteroid belongs to this field, false if not
+     */
+    public boolean contains(final Asteroid asteroid)
+    {
+        final String id = asteroid.getId();
+        for (final String asteroidId: this.ids)
+            if (asteroidId.equals(id)) return true;
+        return false;
+    }
+
+    /**
+     * Returns the yield summary of the specified ware.
+     *
+     * @param ware
+     *            The ware. May be null
+     * @return The yield summary or null if there are no asteroids of this
+     *         ware
+     */
+    private WareYields getWareYields(final Ware ware)
+    {
+        if (ware == null) return null;
+        return this.wareYields[ware.getOrdinal()];
+    }
+
+    /**
+     * Returns the total yield of the specified ware.
+     *
+     * @param ware
+     *            The ware. May be null
+     * @return The total yield
+     */
+    public int getTotalYield(final Ware ware)
+    {
+        final WareYields summary = getWareYields(ware);
+        return summary == null ? 0 : summary.total;
+    }
+
+    /**
+     * Returns the number of asteroids of the specified ware which have at
+     * least the specified yield.
+     *
+     * @param ware
+     *            The ware. May be null
+     * @param minYield
+     *            The minimum yield
+     * @return The number of asteroids
+     */
+    public int countAsteroids(final Ware ware, final int minYield)
+    {
+        final WareYields summary = getWareYields(ware);
+        return summary == null ? 0 : summary.count(minYield);
+    }
+
+    /**
+     * Returns the total yield of the asteroids of the specified ware which
+     * have at least the specified yield.
+     *
+     * @param ware
+     *            The ware. May be null
+     * @param minYield
+     *            The minimum yield
+     * @return The total yield
+     */
+    public int getTotalYield(final Ware ware, final int minYield)
+    {
+        final WareYields summary = getWareYields(ware);
+        if (summary == null) return 0;
+        return summary.runningTotals[summary.count(minYield)];
+    }
+
+    /**
+     * Returns the yields of the asteroids of the specified ware sorted in
+     * descending order.
+     *
+     * @param ware
+     *            The ware. May be null
+     * @return The yields. Unmodifiable. Never null
+     */
+    public List<Integer> getYields(final Ware ware)
+    {
+        final WareYields summary = getWareYields(ware);
+        if (summary == null) return Collections.emptyList();
+        return summary.yields;
+    }
+
+    /**
+     * Returns the yield histogram of the specified ware. The map has the
+     * yields as keys (in descending order) and the number of asteroids with
+     * this yield as values.
+     *
+     * @param ware
+     *            The ware. May be null
+     * @return The yield histogram. Unmodifiable. Never null
+     */
+    public SortedMap<Integer, Integer> getYieldsMap(final Ware ware)
+    {
+        final WareYields summary = getWareYields(ware);
+        if (summary == null)
+            return Collections.unmodifiableSortedMap(
+                new TreeMap<Integer, Integer>(new ReverseIntegerComparator()));
+        return summary.histogram;
+    }
+
+    /**
+     * The yield summary of a single ware.
+     */
+    private final class WareYields implements Serializable
+    {
+        /** Serial version UID */
+        private static final long serialVersionUID = 1L;
+
+        /** The asteroid indices sorted by descending yield */
+        final int[] indices;
+
+        /** The total yield */
+        final int total;
+
+        /** The yields sorted in descending order as primitive values */
+        final int[] sortedYields;
+
+        /**
+         * The running totals of the sorted yields. Entry n is the sum of the
+         * first n yields.
+         */
+        final int[] runningTotals;
+
+        /** The yields sorted in descending order */
+        final List<Integer> yields;
+
+        /** The number of asteroids per yield */
+        final SortedMap<Integer, Integer> histogram;
+
+        /**
+         * Constructor.
+         *
+         * @param indices
+         *            The asteroid indices sorted by descending yield
+         */
+        WareYields(final int[] indices)
+        {
+            this.indices = indices;
+            this.sortedYields = new int[indices.length];
+            this.runningTotals = new int[indices.length + 1];
+            final List<Integer> yieldList =
+                new ArrayList<Integer>(indices.length);
+            final SortedMap<Integer, Integer> map =
+                new TreeMap<Integer, Integer>(new ReverseIntegerComparator());
+            int sum = 0;
+            for (int i = 0; i < indices.length; i++)
+            {
+                final int yield = AsteroidField.this.yields[indices[i]];
+                sum += yield;
+                this.sortedYields[i] = yield;
+                this.runningTotals[i + 1] = sum;
+                yieldList.add(yield);
+                final Integer quantity = map.get(yield);
+                map.put(yield, quantity == null ? 1 : quantity + 1);
+            }
+            this.total = sum;
+            this.yields = Collections.unmodifiableList(yieldList);
+            this.histogram = Collections.unmodifiableSortedMap(map);
+        }
+
+        /**
+         * Returns the number of asteroids with at least the specified yield.
+         * Because the yields are sorted this is a binary search.
+         *
+         * @param minYield
+         *            The minimum yield
+         * @return The number of asteroids
+         */
+        int count(final int minYield)
+        {
+            int low = 0, high = this.sortedYields.length;
+            while (low < high)
+            {
+                final int middle = (low + high) >>> 1;
+                if (this.sortedYields[middle] >= minYield)
+                    low = middle + 1;
+                else
+                    high = middle;
+            }
+            return low;
+        }
+    }
+
+    /**
+     * Collects asteroids to build an asteroid field.
+     */
+    public static final class Builder
+    {
+        /** The number of int values per asteroid */
+        static final int COLUMNS = 5;
+
+        /** The game */
+        final Game game;
+
+        /** The asteroid IDs */
+        final List<String> ids = new ArrayList<String>();
+
+        /** The ware ordinal, yield and position of each asteroid */
+        int[] values = new int[COLUMNS * 16];
+
+        /**
+         * Constructor.
+         *
+         * @param game
+         *            The game
+         */
+        public Builder(final Game game)
+        {
+            this.game = game;
+        }
+
+        /**
+         * Adds an asteroid.
+         *
+         * @param id
+         *            The asteroid ID
+         * @param ware
+         *            The mining ware
+         * @param yield
+         *            The yield
+         * @param x
+         *            The X position
+         * @param y
+         *            The Y position
+         * @param z
+         *            The Z position
+         * @return This builder
+         */
+        public Builder add(final String id, final Ware ware, final int yield,
+            final int x, final int y, final int z)
+        {
+            if (ware == null)
+                throw new IllegalArgumentException("ware must be set");
+            final int offset = this.ids.size() * COLUMNS;
+            if (offset + COLUMNS > this.values.length)
+                this.values = Arrays.copyOf(this.values,
+                    this.values.length * 2);
+            this.values[offset] = ware.getOrdinal();
+            this.values[offset + 1] = yield;
+            this.values[offset + 2] = x;
+            this.values[offset + 3] = y;
+            this.values[offset + 4] = z;
+            this.ids.add(id);
+            return this;
+        }
+
+        /**
+         * Builds the asteroid field.
+         *
+         * @return The asteroid field
+         */
+        public AsteroidField build()
+        {
+            return new AsteroidField(this);
+        }
+    }
+}
@@ -0,0 +1,520 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.data;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.data.factories.FactoryFactory;
+import de.ailis.xadrian.data.factories.WareFactory;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Calculates the factories which must be added to a complex to keep its
+ * factories running stable.
+ *
+ * The first missing ware (In ware order) is fixed by replacing the factories
+ * producing it and then the first missing ware is searched again. This order
+ * defines which factories are chosen and in which order they are added, so
+ * it must not be changed. A one-pass walk over the ware dependencies in
+ * topological order can't be used because it sizes every factory for the
+ * final need of its ware while this order sizes some factories for the need
+ * which is known at the time they are added. Instead the missing wares are
+ * tracked in a bit set which is only updated for the wares touched by a
+ * fix, so no search has to check all wares or recalculate the ware balance.
+ * The factories which can produce a ware are looked up only once.
+ *
+ * The solver never modifies the complex. It only reads the manually added
+ * factories so the different crystal fab races can be evaluated in
+ * parallel.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+final class BaseComplexSolver
+{
+    /** The logger */
+    private static final Log log = LogFactory.getLog(BaseComplexSolver.class);
+
+    /** The number of threads used for the evaluation of the crystal races */
+    private static final int THREADS = Runtime.getRuntime()
+        .availableProcessors();
+
+    /** The shared executor. Created on first use */
+    private static ExecutorService executor;
+
+    /** The game */
+    private final Game game;
+
+    /** The sun power used for the production calculations */
+    private final Sun suns;
+
+    /** The crystals ware (The only ware with a selectable factory race) */
+    private final Ware crystals;
+
+    /** The wares which can be fixed (No minerals) in ware order */
+    private final List<Ware> wares = new ArrayList<Ware>();
+
+    /** The index of each ware in the ware order. -1 for minerals */
+    private final int[] ranks;
+
+    /** Cached supplies of wares (Without a specific race) */
+    private final Map<Ware, Supply> supplies = new HashMap<Ware, Supply>();
+
+    /** Cached supplies of crystals per crystal fab race */
+    private final Map<Race, Supply> crystalSupplies =
+        new HashMap<Race, Supply>();
+
+    /**
+     * Constructor
+     *
+     * @param game
+     *            The game
+     * @param suns
+     *            The sun power used for the production calculations
+     */
+    BaseComplexSolver(final Game game, final Sun suns)
+    {
+        this.game = game;
+        this.suns = suns;
+        this.crystals = game.getWareFactory().getWare("crystals");
+        final WareFactory wareFactory = game.getWareFactory();
+        for (final Ware ware: wareFactory.getWares())
+            if (!ware.isMineral()) this.wares.add(ware);
+        this.ranks = new int[wareFactory.getWareCount()];
+        Arrays.fill(this.ranks, -1);
+        for (int i = 0, max = this.wares.size(); i < max; i++)
+            this.ranks[this.wares.get(i).getOrdinal()] = i;
+    }
+
+    /**
+     * Calculates the factories needed to keep the specified factories running
+     * stable. A base complex with the cheapest crystal fabs is compared with
+     * base complexes using the crystal fabs of a specific race and the
+     * cheapest one is returned. The candidate races are evaluated in
+     * parallel. If several candidates have the same price then the first one
+     * (Cheapest crystal fabs, then in race order) wins.
+     *
+     * @param factories
+     *            The manually added factories of the complex. They are only
+     *            read and must not be modified during the calculation.
+     * @return The factories to add automatically. Never null
+     */
+    List<ComplexFactory> solve(final Collection<ComplexFactory> factories)
+    {
+        final FactoryFactory factoryFactory = this.game.getFactoryFactory();
+        final Config config = Config.getInstance();
+        final List<ComplexFactory> snapshot = Collections
+            .unmodifiableList(new ArrayList<ComplexFactory>(factories));
+
+        // Sum up the ware balance of the manually added factories in the
+        // same order as the complex does
+        final WareVector produced = new WareVector(this.game);
+        final WareVector needed = new WareVector(this.game);
+        for (final ComplexFactory factory: snapshot)
+        {
+            factory.addProductPerHour(produced, this.suns);
+            factory.addResourcesPerHour(needed, this.suns);
+        }
+
+        // Collect the candidate crystal races. Null stands for the cheapest
+        // crystal fabs. Races which are ignored or don't have crystal fabs
+        // are not used
+        final List<Race> races = new ArrayList<Race>();
+        races.add(null);
+        for (final Race race: this.game.getRaceFactory().getRaces())
+            if (!config.isRaceIgnored(race)
+                && factoryFactory.hasFactories(race, this.crystals))
+                races.add(race);
+
+        final List<Callable<List<ComplexFactory>>> tasks =
+            new ArrayList<Callable<List<ComplexFactory>>>(races.size());
+        for (final Race race: races)
+        {
+            tasks.add(new Callable<List<ComplexFactory>>()
+            {
+                @Override
+                public List<ComplexFactory> call()
+                {
+                    return solve(produced, needed, race);
+                }
+            });
+        }
+
+        // Pick the cheapest candidate. Only a strictly cheaper complex
+        // replaces an earlier candidate so the result doesn't depend on
+        // the order in which the tasks have been finished
+        List<ComplexFactory> best = null;
+        long bestPrice = 0;
+        for (final List<ComplexFactory> candidate: invokeAll(tasks))
+        {
+            final long price = Complex.getTotalPrice(snapshot, candidate);
+            if (best == null || price < bestPrice)
+            {
+                best = candidate;
+                bestPrice = price;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Executes the specified tasks and returns their results in task order.
+     * The tasks are executed in parallel if more than one processor is
+     * available.
+     *
+     * @param tasks
+     *            The tasks to execute
+     * @return The results of the tasks
+     */
+    private static <T> List<T> invokeAll(final List<Callable<T>> tasks)
+    {
+        final List<T> results = new ArrayList<T>(tasks.size());
+        try
+        {
+            if (tasks.size() < 2 || THREADS < 2)
+            {
+                for (final Callable<T> task: tasks)
+                    results.add(task.call());
+            }
+            else
+            {
+                for (final Future<T> future: getExecutor().invokeAll(tasks))
+                    results.add(future.get());
+            }
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException(
+                "Interrupted while calculating base complex", e);
+        }
+        catch (final ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException)
+                throw (RuntimeException) cause;
+            if (cause instanceof Error) throw (Error) cause;
+            throw new IllegalStateException(cause.toString(), cause);
+        }
+        catch (final RuntimeException e)
+        {
+            throw e;
+        }
+        catch (final Exception e)
+        {
+            throw new IllegalStateException(e.toString(), e);
+        }
+        return results;
+    }
+
+    /**
+     * Returns the executor used for the parallel evaluation of the crystal
+     * races. It is created on first access and uses daemon threads so it
+     * doesn't prevent the application from exiting.
+     *
+     * @return The executor
+     */
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newFixedThreadPool(THREADS,
+                new ThreadFactory()
+                {
+                    private int counter = 0;
+
+                    @Override
+                    public synchronized Thread newThread(final Runnable r)
+                    {
+                        final Thread thread = new Thread(r,
+                            "BaseComplexSolver-" + ++this.counter);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+        return executor;
+    }
+
+
+    /**
+     * Calculates the factories needed to keep the specified factories running
+     * stable. The first missing ware (In ware order) is fixed by replacing
+     * the automatically added factories producing it with new ones which are
+     * appended to the end. Then the first missing ware is fixed again until
+     * no ware can be fixed anymore. If a ware can't be fixed then the next
+     * missing ware is tried.
+     *
+     * The ware balance is calculated only once. Replaced factories only
+     * apply the difference of their production and consumption to it and
+     * only the wares touched by them are checked again.
+     *
+     * @param production
+     *            The production per hour of the manually added factories.
+     *            Only read.
+     * @param consumption
+     *            The consumption per hour of the manually added factories.
+     *            Only read.
+     * @param crystalRace
+     *            Optional race from which crystal fabs should be bought. If
+     *            null then the cheapest fab is used.
+     * @return The factories to add automatically. Never null
+     */
+    private List<ComplexFactory> solve(final WareVector production,
+        final WareVector consumption, final Race crystalRace)
+    {
+        final WareVector produced = new WareVector(production);
+        final WareVector needed = new WareVector(consumption);
+        final List<ComplexFactory> autoFactories =
+            new ArrayList<ComplexFactory>();
+
+        // Collect the missing wares by their index in the ware order
+        final BitSet missing = new BitSet(this.wares.size());
+        for (int i = 0, max = this.wares.size(); i < max; i++)
+            if (getMissing(produced, needed, this.wares.get(i)) > 0)
+                missing.set(i);
+
+        // Fix the first missing ware. If a ware can't be fixed then the
+        // next missing ware is tried
+        int rank = missing.nextSetBit(0);
+        while (rank >= 0)
+        {
+            final Ware ware = this.wares.get(rank);
+            final Supply supply = getSupply(ware, crystalRace);
+            final boolean fixed = fixWare(autoFactories, produced, needed,
+                ware, getMissing(produced, needed, ware), supply);
+
+            // Update the missing state of the touched wares
+            updateMissing(missing, produced, needed, ware);
+            if (supply != null)
+                for (final Ware resource: supply.resources)
+                    updateMissing(missing, produced, needed, resource);
+            rank = missing.nextSetBit(fixed ? 0 : rank + 1);
+        }
+        return autoFactories;
+    }
+
+    /**
+     * Returns the missing units per hour of the specified ware.
+     *
+     * @param produced
+     *            The running production per hour
+     * @param needed
+     *            The running consumption per hour
+     * @param ware
+     *            The ware
+     * @return The missing units per hour
+     */
+    private static double getMissing(final WareVector produced,
+        final WareVector needed, final Ware ware)
+    {
+        return Math.max(0, needed.get(ware) - produced.get(ware));
+    }
+
+    /**
+     * Updates the missing state of the specified ware. Minerals are ignored.
+     *
+     * @param missing
+     *            The missing wares by their index in the ware order
+     * @param produced
+     *            The running production per hour
+     * @param needed
+     *            The running consumption per hour
+     * @param ware
+     *            The ware
+     */
+    private void updateMissing(final BitSet missing,
+        final WareVector produced, final WareVector needed, final Ware ware)
+    {
+        final int rank = this.ranks[ware.getOrdinal()];
+        if (rank >= 0)
+            missing.set(rank, getMissing(produced, needed, ware) > 0);
+    }
+
+    /**
+     * Replaces the automatically added factories producing the specified
+     * ware with the factories needed to fulfill the need of the ware.
+     *
+     * @param autoFactories
+     *            The automatically added factories. New factories are
+     *            appended.
+     * @param produced
+     *            The running production per hour. Updated with the
+     *            difference of the replaced factories.
+     * @param needed
+     *            The running consumption per hour. Updated with the
+     *            difference of the replaced factories.
+     * @param ware
+     *            The missing ware
+     * @param missing
+     *            The missing units per hour
+     * @param supply
+     *            The factories which can produce the ware. May be null
+     * @return True if the production of the ware has been changed, false if
+     *         not
+     */
+    private boolean fixWare(final List<ComplexFactory> autoFactories,
+        final WareVector produced, final WareVector needed, final Ware ware,
+        final double missing, final Supply supply)
+    {
+        // Remove all automatically added factories which produces the
+        // ware and calculate the real need which must be fulfilled
+        double need = missing;
+        final Iterator<ComplexFactory> iterator = autoFactories.iterator();
+        while (iterator.hasNext())
+        {
+            final ComplexFactory factory = iterator.next();
+            if (factory.getFactory().getProduct().getWare().equals(ware))
+            {
+                need += factory.getProductPerHour(this.suns).getQuantity();
+                factory.subtractProductPerHour(produced, this.suns);
+                factory.subtractResourcesPerHour(needed, this.suns);
+                iterator.remove();
+            }
+        }
+
+        if (supply == null) return false;
+
+        // Iterate the available sizes (from largest to smallest) and add
+        // the factories producing an adequate number of products
+        final double[] products = supply.products;
+        for (int i = products.length - 1; i >= 0; i--)
+        {
+            final double product = products[i];
+            final int quantity = (int) Math.floor((need + products[0] - 0.1)
+                / product);
+            if (quantity > 0)
+            {
+                if (log.isDebugEnabled())
+                    log.debug("Need " + need + " units of " + ware
+                        + ". Adding " + quantity + "x "
+                        + supply.factories[i]);
+                final ComplexFactory factory = new ComplexFactory(this.game,
+                    supply.factories[i], quantity, 0);
+                factory.addProductPerHour(produced, this.suns);
+                factory.addResourcesPerHour(needed, this.suns);
+                autoFactories.add(factory);
+                need -= quantity * product;
+            }
+        }
+        return Math.abs(need - missing) >= .0000001;
+    }
+
+    /**
+     * Returns the factories which can be used to produce the specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @param crystalRace
+     *            Optional race from which crystal fabs should be bought
+     * @return The supply or null if the ware can't be produced by the base
+     *         complex
+     */
+    private Supply getSupply(final Ware ware, final Race crystalRace)
+    {
+        if (ware.equals(this.crystals) && crystalRace != null)
+        {
+            synchronized (this.crystalSupplies)
+            {
+                if (!this.crystalSupplies.containsKey(crystalRace))
+                    this.crystalSupplies.put(crystalRace, createSupply(ware,
+                        crystalRace));
+                return this.crystalSupplies.get(crystalRace);
+            }
+        }
+        synchronized (this.supplies)
+        {
+            if (!this.supplies.containsKey(ware))
+                this.supplies.put(ware, createSupply(ware, null));
+            return this.supplies.get(ware);
+        }
+    }
+
+    /**
+     * Creates the supply of the specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @param race
+     *            Optional race from which the factories should be bought. If
+     *            null then the cheapest factories are used.
+     * @return The supply or null if there are no factories for the ware
+     */
+    private Supply createSupply(final Ware ware, final Race race)
+    {
+        // Determine the available factory sizes
+        final FactoryFactory factoryFactory = this.game.getFactoryFactory();
+        final SortedSet<FactorySize> sizes =
+            factoryFactory.getFactorySizes(ware, race);
+        if (sizes.isEmpty()) return null;
+
+        // Get the cheapest factories for the sizes
+        final Factory[] factories = new Factory[sizes.size()];
+        int i = 0;
+        for (final FactorySize size: sizes)
+            factories[i++] = race == null ? factoryFactory.getCheapestFactory(
+                ware, size) : factoryFactory.getFactory(ware, size, race);
+        return new Supply(factories, this.suns);
+    }
+
+    /**
+     * The factories which can produce a ware.
+     */
+    private static final class Supply
+    {
+        /** The factories sorted by size (smallest first) */
+        final Factory[] factories;
+
+        /** The products per hour of a single factory */
+        final double[] products;
+
+        /** The resources needed by any of the factories */
+        final Ware[] resources;
+
+        /**
+         * Constructor
+         *
+         * @param factories
+         *            The factories sorted by size (smallest first)
+         * @param suns
+         *            The sun power
+         */
+        Supply(final Factory[] factories, final Sun suns)
+        {
+            this.factories = factories;
+            this.products = new double[factories.length];
+            final Set<Ware> resources = new LinkedHashSet<Ware>();
+            for (int i = 0; i < factories.length; i++)
+            {
+                this.products[i] = factories[i].getProductPerHour(suns, 0)
+                    .getQuantity();
+                for (final Product resource: factories[i]
+                    .getResourcesPerHour(suns, 0))
+                    resources.add(resource.getWare());
+            }
+            this.resources = resources.toArray(new Ware[resources.size()]);
+        }
+    }
+}
@@ -5,30 +5,27 @@
 
 package de.ailis.xadrian.data;
 
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.InputStream;
-import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.io.StringWriter;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.text.DecimalFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
-import java.util.SortedSet;
 
 import javax.xml.bind.DatatypeConverter;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
-import org.apache.commons.logging.Log;
-import org.apache.commons.logging.LogFactory;
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.DocumentHelper;
@@ -36,20 +33,13 @@ import org.dom4j.Element;
 
 import de.ailis.xadrian.data.factories.FactoryFactory;
 import de.ailis.xadrian.data.factories.GameFactory;
-import de.ailis.xadrian.data.factories.RaceFactory;
 import de.ailis.xadrian.data.factories.SectorFactory;
 import de.ailis.xadrian.data.factories.SunFactory;
 import de.ailis.xadrian.data.factories.WareFactory;
-import de.ailis.xadrian.dialogs.SetYieldsDialog;
-import de.ailis.xadrian.exceptions.DataException;
-import de.ailis.xadrian.exceptions.GameNotFoundException;
 import de.ailis.xadrian.exceptions.TemplateCodeException;
 import de.ailis.xadrian.interfaces.GameProvider;
-import de.ailis.xadrian.support.Config;
-import de.ailis.xadrian.support.DynaByteInputStream;
-import de.ailis.xadrian.support.DynaByteOutputStream;
+import de.ailis.xadrian.support.DynaBytes;
 import de.ailis.xadrian.support.I18N;
-import de.ailis.xadrian.support.ModalDialog.Result;
 import de.ailis.xadrian.support.MultiCollection;
 
 /**
@@ -62,15 +52,21 @@ public class Complex implements Serializable, GameProvider
     /** Serial version UID */
     private static final long serialVersionUID = 2128684141345704703L;
 
-    /** The logger */
-    private static final Log log = LogFactory.getLog(Complex.class);
-
     /** The single price of a complex construction kit */
     public static final int KIT_PRICE = 259696;
 
     /** The volume of a complex construction kit */
     public static final int KIT_VOLUME = 4250;
 
+    /** The magic header of the binary complex format */
+    private static final byte[] BINARY_MAGIC = { 'X', '3', 'C', 'B' };
+
+    /** The version of the binary complex format */
+    private static final int BINARY_VERSION = 1;
+
+    /** The charset used for IDs in the binary complex format */
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
     /** The complex counter for the complex name generator */
     private static int complexCounter = 0;
 
@@ -119,6 +115,38 @@ public class Complex implements Serializable, GameProvider
     /** The cached shopping list */
     private ShoppingList shoppingList;
 
+    /** The modification counter. Incremented on every change of the complex */
+    private transient int modCount;
+
+    /** The cached derived values. Only valid for the current modCount */
+    private transient DerivedValues derivedValues;
+
+    /**
+     * The running production per hour of the manually added factories.
+     * Updated incrementally on every change of a factory. Null if not
+     * calculated yet.
+     */
+    private transient WareVector manualProduction;
+
+    /**
+     * The running consumption per hour of the manually added factories.
+     * Updated incrementally on every change of a factory. Null if not
+     * calculated yet.
+     */
+    private transient WareVector manualConsumption;
+
+    /**
+     * The production per hour of the automatically added factories. Null if
+     * not calculated yet.
+     */
+    private transient WareVector autoProduction;
+
+    /**
+     * The consumption per hour of the automatically added factories. Null if
+     * not calculated yet.
+     */
+    private transient WareVector autoConsumption;
+
     /**
      * Constructor
      *
@@ -154,7 +182,7 @@ public class Complex implements Serializable, GameProvider
      *
      * @return A new complex name
      */
-    private static String createComplexName()
+    private static synchronized String createComplexName()
     {
         complexCounter++;
         return I18N.getString("complex.nameTemplate", complexCounter);
@@ -187,6 +215,19 @@ public class Complex implements Serializable, GameProvider
      * @return The total number of factories in the complex
      */
     public int getTotalQuantity()
+    {
+        final DerivedValues values = getDerivedValues();
+        if (values.totalQuantity == null)
+            values.totalQuantity = calculateTotalQuantity();
+        return values.totalQuantity;
+    }
+
+    /**
+     * Calculates the total number of factories in the complex
+     *
+     * @return The total number of factories in the complex
+     */
+    private int calculateTotalQuantity()
     {
         int quantity = 0;
         for (final ComplexFactory factory: this.factories)
@@ -202,15 +243,42 @@ public class Complex implements Serializable, GameProvider
      * @return The total complex price
      */
     public long getTotalPrice()
+    {
+        final DerivedValues values = getDerivedValues();
+        if (values.totalPrice == null)
+            values.totalPrice = getTotalPrice(this.factories,
+                this.autoFactories);
+        return values.totalPrice;
+    }
+
+    /**
+     * Returns the total price of a complex consisting of the specified
+     * factories.
+     *
+     * @param factories
+     *            The manually added factories
+     * @param autoFactories
+     *            The automatically added factories
+     * @return The total complex price
+     */
+    static long getTotalPrice(final Collection<ComplexFactory> factories,
+        final Collection<ComplexFactory> autoFactories)
     {
         long price = 0;
-        for (final ComplexFactory complexFactory: this.factories)
+        int quantity = 0;
+        for (final ComplexFactory complexFactory: factories)
+        {
             price += ((long) complexFactory.getQuantity())
                 * complexFactory.getFactory().getPrice();
-        for (final ComplexFactory complexFactory: this.autoFactories)
+            quantity += complexFactory.getQuantity();
+        }
+        for (final ComplexFactory complexFactory: autoFactories)
+        {
             price += ((long) complexFactory.getQuantity())
                 * complexFactory.getFactory().getPrice();
-        return price + getTotalKitPrice();
+            quantity += complexFactory.getQuantity();
+        }
+        return price + ((long) Math.max(0, quantity - 1)) * KIT_PRICE;
     }
 
     /**
@@ -266,7 +334,8 @@ public class Complex implements Serializable, GameProvider
      */
     public void removeFactory(final int index)
     {
-        this.factories.remove(index);
+        removeFromBalance(this.factories.remove(index));
+        modified();
         calculateBaseComplex();
         updateShoppingList();
     }
@@ -279,7 +348,11 @@ public class Complex implements Serializable, GameProvider
      */
     public void disableFactory(final int index)
     {
-        this.factories.get(index).disable();
+        final ComplexFactory factory = this.factories.get(index);
+        removeFromBalance(factory);
+        factory.disable();
+        addToBalance(factory);
+        modified();
         calculateBaseComplex();
     }
 
@@ -291,7 +364,11 @@ public class Complex implements Serializable, GameProvider
      */
     public void enableFactory(final int index)
     {
-        this.factories.get(index).enable();
+        final ComplexFactory factory = this.factories.get(index);
+        removeFromBalance(factory);
+        factory.enable();
+        addToBalance(factory);
+        modified();
         calculateBaseComplex();
     }
 
@@ -328,8 +405,13 @@ public class Complex implements Serializable, GameProvider
      */
     public boolean increaseQuantity(final int index)
     {
-        if (this.factories.get(index).increaseQuantity())
+        final ComplexFactory factory = this.factories.get(index);
+        removeFromBalance(factory);
+        final boolean changed = factory.increaseQuantity();
+        addToBalance(factory);
+        if (changed)
         {
+            modified();
             calculateBaseComplex();
             updateShoppingList();
             return true;
@@ -346,8 +428,13 @@ public class Complex implements Serializable, GameProvider
      */
     public boolean decreaseQuantity(final int index)
     {
-        if (this.factories.get(index).decreaseQuantity())
+        final ComplexFactory factory = this.factories.get(index);
+        removeFromBalance(factory);
+        final boolean changed = factory.decreaseQuantity();
+        addToBalance(factory);
+        if (changed)
         {
+            modified();
             calculateBaseComplex();
             updateShoppingList();
             return true;
@@ -369,7 +456,10 @@ public class Complex implements Serializable, GameProvider
         final ComplexFactory factory = this.factories.get(index);
         if (factory.getQuantity() != quantity)
         {
+            removeFromBalance(factory);
             factory.setQuantity(quantity);
+            addToBalance(factory);
+            modified();
             calculateBaseComplex();
             updateShoppingList();
         }
@@ -398,7 +488,10 @@ public class Complex implements Serializable, GameProvider
     public void setYields(final int index, final List<Integer> yields)
     {
         final ComplexFactory factory = this.factories.get(index);
+        removeFromBalance(factory);
         factory.setYields(yields);
+        addToBalance(factory);
+        modified();
         calculateBaseComplex();
         updateShoppingList();
     }
@@ -424,6 +517,8 @@ public class Complex implements Serializable, GameProvider
     public void setSuns(final Sun suns)
     {
         this.suns = suns;
+        resetBalance();
+        modified();
         calculateBaseComplex();
     }
 
@@ -439,7 +534,9 @@ public class Complex implements Serializable, GameProvider
     }
 
     /**
-     * Adds a factory to the complex.
+     * Adds a factory to the complex. Mines can't be added with this method
+     * because they need yields. Use {@link #addFactory(Factory, List)} for
+     * them.
      *
      * @param factory
      *            The factory to add
@@ -447,25 +544,30 @@ public class Complex implements Serializable, GameProvider
     public void addFactory(final Factory factory)
     {
         if (factory.isMine())
-        {
-            final SetYieldsDialog dialog = new SetYieldsDialog(factory);
-            dialog.setYields(null);
-            dialog.setSector(getSector());
-            if (dialog.open() == Result.OK)
-            {
-                setSector(dialog.getSector());
-                addFactory(new ComplexFactory(this.game, factory,
-                    dialog.getYields()));
-                calculateBaseComplex();
-                updateShoppingList();
-            }
-        }
-        else
-        {
-            addFactory(new ComplexFactory(this.game, factory, 1, 0));
-            calculateBaseComplex();
-            updateShoppingList();
-        }
+            throw new IllegalArgumentException("Mine " + factory.getId()
+                + " can't be added without yields");
+        addFactory(new ComplexFactory(this.game, factory, 1, 0));
+        calculateBaseComplex();
+        updateShoppingList();
+    }
+
+    /**
+     * Adds mines with the specified yields to the complex. One mine is added
+     * per yield.
+     *
+     * @param factory
+     *            The mine type to add
+     * @param yields
+     *            The yields of the mines
+     */
+    public void addFactory(final Factory factory, final List<Integer> yields)
+    {
+        if (!factory.isMine())
+            throw new IllegalArgumentException(factory.getId()
+                + " is not a mine");
+        addFactory(new ComplexFactory(this.game, factory, yields));
+        calculateBaseComplex();
+        updateShoppingList();
     }
 
     /**
@@ -483,13 +585,18 @@ public class Complex implements Serializable, GameProvider
                 if (current.getFactory().equals(complexFactory.getFactory())
                     && current.getYield() == complexFactory.getYield())
                 {
+                    removeFromBalance(current);
                     current.addQuantity(complexFactory.getQuantity());
+                    addToBalance(current);
+                    modified();
                     return;
                 }
             }
         }
         this.factories.add(complexFactory);
         Collections.sort(this.factories);
+        addToBalance(complexFactory);
+        modified();
         updateShoppingList();
     }
 
@@ -600,8 +707,20 @@ public class Complex implements Serializable, GameProvider
         // Determine the game for this complex.
         String gameId = "x3tc";
         if (version == 4) gameId = root.attributeValue("game");
-        final Game game = GameFactory.getInstance().getGame(gameId);
+        return fromXML(root, GameFactory.getInstance().getGame(gameId));
+    }
 
+    /**
+     * Reads a complex of the specified game from the specified XML element.
+     *
+     * @param root
+     *            The root element of the complex XML document
+     * @param game
+     *            The game of the complex
+     * @return The complex
+     */
+    private static Complex fromXML(final Element root, final Game game)
+    {
         final Complex complex = new Complex(game);
         final FactoryFactory factoryFactory = game.getFactoryFactory();
         final SectorFactory sectorFactory = game.getSectorFactory();
@@ -698,6 +817,346 @@ public class Complex implements Serializable, GameProvider
         return complex;
     }
 
+    /**
+     * Checks if the specified data starts with the magic header of the
+     * binary complex format.
+     *
+     * @param data
+     *            The file data
+     * @return True if data is in the binary complex format, false if not
+     */
+    public static boolean isBinary(final byte[] data)
+    {
+        if (data.length < BINARY_MAGIC.length) return false;
+        for (int i = 0; i < BINARY_MAGIC.length; i++)
+            if (data[i] != BINARY_MAGIC[i]) return false;
+        return true;
+    }
+
+    /**
+     * Converts the complex into the compact binary complex format. This
+     * format contains the same information as the XML format. Factories are
+     * stored by their numeric IDs and all numbers are stored as dynamically
+     * sized integers (See {@link DynaBytes}).
+     *
+     * @return The complex in the binary format
+     */
+    public byte[] toBinary()
+    {
+        final byte[] sectorId = this.sector == null ? null
+            : toUTF8(this.sector.getId());
+        final List<byte[]> wareIds = new ArrayList<byte[]>();
+        final List<Integer> prices = new ArrayList<Integer>();
+        for (final Map.Entry<Ware, Integer> entry: this.customPrices
+            .entrySet())
+        {
+            final int price = entry.getValue();
+            wareIds.add(toUTF8(entry.getKey().getId()));
+            prices.add((Math.abs(price) << 1) | (price > 0 ? 1 : 0));
+        }
+        final FactoryFactory factoryFactory = this.game.getFactoryFactory();
+        final List<Integer> builtNids = new ArrayList<Integer>();
+        final List<Integer> builtQuantities = new ArrayList<Integer>();
+        for (final Entry<String, Integer> entry: this.builtFactories
+            .entrySet())
+        {
+            final Factory factory = factoryFactory.getFactory(entry.getKey());
+            if (factory == null) continue;
+            builtNids.add(factory.getNid());
+            builtQuantities.add(entry.getValue());
+        }
+
+        // Calculate the maximum size of the data
+        int size = 9 + 2 * builtNids.size();
+        if (sectorId != null) size += 1 + sectorId.length;
+        for (final ComplexFactory factory: this.factories)
+            size += 3 + (factory.getFactory().isMine()
+                ? factory.getYields().size() : 0);
+        for (final byte[] wareId: wareIds)
+            size += 2 + wareId.length;
+        final ByteBuffer buffer = ByteBuffer.allocate(BINARY_MAGIC.length
+            + size * DynaBytes.MAX_LENGTH);
+
+        // Write header and complex settings
+        buffer.put(BINARY_MAGIC);
+        DynaBytes.write(buffer, BINARY_VERSION);
+        DynaBytes.write(buffer, this.game.getNid());
+        int flags = 0;
+        if (this.addBaseComplex) flags |= 1;
+        if (this.showingProductionStats) flags |= 2;
+        if (this.showingShoppingList) flags |= 4;
+        if (this.showingStorageCapacities) flags |= 8;
+        if (this.showingComplexSetup) flags |= 16;
+        if (sectorId != null) flags |= 32;
+        DynaBytes.write(buffer, flags);
+        DynaBytes.write(buffer, getSuns().getPercent());
+        if (sectorId != null)
+        {
+            DynaBytes.write(buffer, sectorId.length);
+            buffer.put(sectorId);
+        }
+
+        // Write the complex factories
+        DynaBytes.write(buffer, this.factories.size());
+        for (final ComplexFactory factory: this.factories)
+        {
+            DynaBytes.write(buffer, factory.getFactory().getNid());
+            DynaBytes.write(buffer, factory.isDisabled() ? 1 : 0);
+            if (factory.getFactory().isMine())
+            {
+                final List<Integer> yields = factory.getYields();
+                DynaBytes.write(buffer, yields.size());
+                for (final int yield: yields)
+                    DynaBytes.write(buffer, yield);
+            }
+            else
+            {
+                DynaBytes.write(buffer, factory.getQuantity());
+            }
+        }
+
+        // Write the custom prices
+        DynaBytes.write(buffer, wareIds.size());
+        for (int i = 0; i < wareIds.size(); i++)
+        {
+            final byte[] wareId = wareIds.get(i);
+            DynaBytes.write(buffer, wareId.length);
+            buffer.put(wareId);
+            DynaBytes.write(buffer, prices.get(i));
+        }
+
+        // Write the built factories and kits
+        DynaBytes.write(buffer, this.builtKits);
+        DynaBytes.write(buffer, builtNids.size());
+        for (int i = 0; i < builtNids.size(); i++)
+        {
+            DynaBytes.write(buffer, builtNids.get(i));
+            DynaBytes.write(buffer, builtQuantities.get(i));
+        }
+
+        return Arrays.copyOf(buffer.array(), buffer.position());
+    }
+
+    /**
+     * Loads a complex from the specified data in the binary complex format
+     * and returns it.
+     *
+     * @param data
+     *            The data in the binary complex format
+     * @return The complex
+     * @throws IOException
+     *             If data is not a valid binary complex
+     */
+    public static Complex fromBinary(final byte[] data) throws IOException
+    {
+        if (!isBinary(data))
+            throw new IOException("Not a binary complex file");
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        buffer.position(BINARY_MAGIC.length);
+        try
+        {
+            // Check the version
+            final int version = DynaBytes.read(buffer);
+            if (version > BINARY_VERSION)
+                throw new IOException(
+                    I18N.getString("error.fileFormatTooNew"));
+
+            // Read the complex settings
+            final int gameNid = DynaBytes.read(buffer);
+            final GameFactory gameFactory = GameFactory.getInstance();
+            if (!gameFactory.hasGame(gameNid))
+                throw new IOException("Unknown game nid " + gameNid);
+            final Game game = gameFactory.getGame(gameNid);
+            final FactoryFactory factoryFactory = game.getFactoryFactory();
+            final Complex complex = new Complex(game);
+            final int flags = DynaBytes.read(buffer);
+            final int percent = DynaBytes.read(buffer);
+            if (!game.getSunFactory().hasSun(percent))
+                throw new IOException("There are no " + percent + "% suns");
+            complex.setSuns(game.getSunFactory().getSun(percent));
+            if ((flags & 32) != 0)
+            {
+                final String sectorId = readUTF8(buffer);
+                final Sector sector =
+                    game.getSectorFactory().getSector(sectorId);
+                if (sector == null)
+                    throw new IOException("Unknown sector " + sectorId);
+                complex.setSector(sector);
+            }
+            complex.setAddBaseComplex((flags & 1) != 0);
+            complex.showingProductionStats = (flags & 2) != 0;
+            complex.showingShoppingList = (flags & 4) != 0;
+            complex.showingStorageCapacities = (flags & 8) != 0;
+            complex.showingComplexSetup = (flags & 16) != 0;
+
+            // Read the complex factories
+            for (int i = DynaBytes.read(buffer); i > 0; i--)
+            {
+                final Factory factory = readFactory(buffer, factoryFactory);
+                final boolean disabled = (DynaBytes.read(buffer) & 1) != 0;
+                final ComplexFactory complexFactory;
+                if (factory.isMine())
+                {
+                    final int count = DynaBytes.read(buffer);
+                    if (count > buffer.remaining())
+                        throw new BufferUnderflowException();
+                    final List<Integer> yields = new ArrayList<Integer>(count);
+                    for (int j = 0; j < count; j++)
+                        yields.add(DynaBytes.read(buffer));
+                    complexFactory = new ComplexFactory(game, factory, yields);
+                }
+                else
+                {
+                    complexFactory = new ComplexFactory(game, factory,
+                        DynaBytes.read(buffer), 0);
+                }
+                if (disabled) complexFactory.disable();
+                complex.addFactory(complexFactory);
+            }
+
+            // Read the custom prices
+            final WareFactory wareFactory = game.getWareFactory();
+            complex.customPrices.clear();
+            for (int i = DynaBytes.read(buffer); i > 0; i--)
+            {
+                final String wareId = readUTF8(buffer);
+                final Ware ware = wareFactory.getWare(wareId);
+                if (ware == null)
+                    throw new IOException("Unknown ware " + wareId);
+                final int value = DynaBytes.read(buffer);
+                final int price = value >>> 1;
+                complex.customPrices.put(ware, (value & 1) != 0 ? price
+                    : -price);
+            }
+
+            // Read the built factories and kits
+            complex.builtKits = DynaBytes.read(buffer);
+            for (int i = DynaBytes.read(buffer); i > 0; i--)
+            {
+                final Factory factory = readFactory(buffer, factoryFactory);
+                complex.builtFactories.put(factory.getId(),
+                    DynaBytes.read(buffer));
+            }
+
+            complex.calculateBaseComplex();
+            return complex;
+        }
+        catch (final BufferUnderflowException e)
+        {
+            throw new IOException("Binary complex file is truncated");
+        }
+        catch (final IllegalArgumentException e)
+        {
+            throw new IOException("Binary complex file is corrupt: "
+                + e.getMessage());
+        }
+    }
+
+    /**
+     * Reads a factory nid from the specified buffer and returns the
+     * factory.
+     *
+     * @param buffer
+     *            The buffer to read from
+     * @param factoryFactory
+     *            The factory factory
+     * @return The factory. Never null
+     * @throws IOException
+     *             If factory is unknown
+     */
+    private static Factory readFactory(final ByteBuffer buffer,
+        final FactoryFactory factoryFactory) throws IOException
+    {
+        final int nid = DynaBytes.read(buffer);
+        final Factory factory = factoryFactory.getFactory(nid);
+        if (factory == null)
+            throw new IOException("Unknown factory nid " + nid);
+        return factory;
+    }
+
+    /**
+     * Encodes the specified string as UTF-8.
+     *
+     * @param string
+     *            The string to encode
+     * @return The UTF-8 bytes
+     */
+    private static byte[] toUTF8(final String string)
+    {
+        return string.getBytes(UTF8);
+    }
+
+    /**
+     * Reads a UTF-8 string with a preceding length from the specified
+     * buffer.
+     *
+     * @param buffer
+     *            The buffer to read from
+     * @return The string
+     */
+    private static String readUTF8(final ByteBuffer buffer)
+    {
+        final int length = DynaBytes.read(buffer);
+        if (length < 0 || length > buffer.remaining())
+            throw new BufferUnderflowException();
+        final String string = new String(buffer.array(),
+            buffer.arrayOffset() + buffer.position(), length, UTF8);
+        buffer.position(buffer.position() + length);
+        return string;
+    }
+
+    /**
+     * Returns a copy of this complex which is bound to the specified game.
+     * This is used when the data of a game has been reloaded. The factories,
+     * the sector and the custom prices are looked up in the new game by
+     * their IDs. Factories and wares which no longer exist in the new game
+     * are dropped.
+     *
+     * @param game
+     *            The game to bind the complex to. Must have the same ID as
+     *            the current game of this complex
+     * @return The rebound complex
+     */
+    public Complex rebind(final Game game)
+    {
+        if (!game.equals(this.game))
+            throw new IllegalArgumentException("Complex of game "
+                + this.game.getId() + " can't be bound to game "
+                + game.getId());
+        final Element root = toXML().getRootElement();
+        final Element factoriesE = root.element("complexFactories");
+        if (factoriesE != null)
+        {
+            final List<Element> unknown = new ArrayList<Element>();
+            for (final Object item: factoriesE.elements("complexFactory"))
+            {
+                final Element element = (Element) item;
+                if (game.getFactoryFactory().getFactory(
+                    element.attributeValue("factory")) == null)
+                    unknown.add(element);
+            }
+            for (final Element element: unknown)
+                factoriesE.remove(element);
+        }
+        final Element waresE = root.element("complexWares");
+        if (waresE != null)
+        {
+            final List<Element> unknown = new ArrayList<Element>();
+            for (final Object item: waresE.elements("complexWare"))
+            {
+                final Element element = (Element) item;
+                if (game.getWareFactory().getWare(
+                    element.attributeValue("ware")) == null)
+                    unknown.add(element);
+            }
+            for (final Element element: unknown)
+                waresE.remove(element);
+        }
+        final Complex complex = fromXML(root, game);
+        complex.name = this.name;
+        return complex;
+    }
+
     /**
      * Returns all factories (Manually and automatically added ones):
      *
@@ -717,20 +1176,11 @@ public class Complex implements Serializable, GameProvider
      */
     public Collection<Product> getProductsPerHour()
     {
-        final Map<String, Product> products = new HashMap<String, Product>();
-        for (final ComplexFactory factory: getAllFactories())
-        {
-            final Product product = factory.getProductPerHour(getSuns());
-            final Ware ware = product.getWare();
-            final Product mapProduct = products.get(ware.getId());
-            if (mapProduct == null)
-                products.put(ware.getId(), product);
-            else
-                products.put(ware.getId(), new Product(ware, mapProduct
-                    .getQuantity()
-                    + product.getQuantity()));
-        }
-        return products.values();
+        final DerivedValues values = getDerivedValues();
+        if (values.productsPerHour == null)
+            values.productsPerHour = Collections
+                .unmodifiableList(toProducts(getProduction()));
+        return values.productsPerHour;
     }
 
     /**
@@ -740,61 +1190,224 @@ public class Complex implements Serializable, GameProvider
      */
     public Collection<Product> getResourcesPerHour()
     {
-        final Map<String, Product> resources = new HashMap<String, Product>();
-        for (final ComplexFactory factory: getAllFactories())
+        final DerivedValues values = getDerivedValues();
+        if (values.resourcesPerHour == null)
+            values.resourcesPerHour = Collections
+                .unmodifiableList(toProducts(getConsumption()));
+        return values.resourcesPerHour;
+    }
+
+    /**
+     * Converts the used wares of the specified ware vector into a list of
+     * products.
+     *
+     * @param vector
+     *            The ware vector
+     * @return The products
+     */
+    private static List<Product> toProducts(final WareVector vector)
+    {
+        final List<Product> products = new ArrayList<Product>();
+        for (int i = 0, max = vector.size(); i < max; i++)
+            if (vector.isUsed(i))
+                products.add(new Product(vector.getWare(i), vector.get(i)));
+        return products;
+    }
+
+    /**
+     * Returns the products of all factories per hour as a ware vector. The
+     * returned vector is cached and must not be modified.
+     *
+     * @return The production per hour
+     */
+    private WareVector getProduction()
+    {
+        final DerivedValues values = getDerivedValues();
+        if (values.production == null)
         {
-            for (final Product resource: factory
-                .getResourcesPerHour(getSuns()))
-            {
-                final Ware ware = resource.getWare();
-                final Product mapResource = resources.get(ware.getId());
-                if (mapResource == null)
-                    resources.put(ware.getId(), resource);
-                else
-                    resources.put(ware.getId(), new Product(ware, mapResource
-                        .getQuantity()
-                        + resource.getQuantity()));
-            }
+            final WareVector production =
+                new WareVector(getManualProduction());
+            production.add(getAutoProduction());
+            values.production = production;
         }
-        return resources.values();
+        return values.production;
     }
 
     /**
-     * Returns the list of complex wares (Produced and needed).
+     * Returns the resources of all factories per hour as a ware vector. The
+     * returned vector is cached and must not be modified.
      *
-     * @return The list of complex wares
+     * @return The consumption per hour
      */
-    public Collection<ComplexWare> getWares()
+    private WareVector getConsumption()
+    {
+        final DerivedValues values = getDerivedValues();
+        if (values.consumption == null)
+        {
+            final WareVector consumption =
+                new WareVector(getManualConsumption());
+            consumption.add(getAutoConsumption());
+            values.consumption = consumption;
+        }
+        return values.consumption;
+    }
+
+    /**
+     * Returns the running production per hour of the manually added
+     * factories. It is fully calculated on first access and then updated
+     * incrementally. The returned vector must not be modified.
+     *
+     * @return The production per hour of the manually added factories
+     */
+    private WareVector getManualProduction()
     {
-        final Map<String, ComplexWare> wares =
-            new HashMap<String, ComplexWare>();
+        if (this.manualProduction == null) calculateBalance();
+        return this.manualProduction;
+    }
 
-        // Add the products
-        for (final Product product: getProductsPerHour())
+    /**
+     * Returns the running consumption per hour of the manually added
+     * factories. It is fully calculated on first access and then updated
+     * incrementally. The returned vector must not be modified.
+     *
+     * @return The consumption per hour of the manually added factories
+     */
+    private WareVector getManualConsumption()
+    {
+        if (this.manualConsumption == null) calculateBalance();
+        return this.manualConsumption;
+    }
+
+    /**
+     * Returns the production per hour of the automatically added factories.
+     * The returned vector must not be modified.
+     *
+     * @return The production per hour of the automatically added factories
+     */
+    private WareVector getAutoProduction()
+    {
+        if (this.autoProduction == null)
         {
-            final Ware ware = product.getWare();
-            final String wareId = ware.getId();
-            wares.put(wareId, new ComplexWare(ware, product.getQuantity(), 0,
-                getWarePrice(ware)));
+            final WareVector production = new WareVector(this.game);
+            final Sun suns = getSuns();
+            for (final ComplexFactory factory: this.autoFactories)
+                factory.addProductPerHour(production, suns);
+            this.autoProduction = production;
         }
+        return this.autoProduction;
+    }
 
-        // Add the resources
-        for (final Product resource: getResourcesPerHour())
+    /**
+     * Returns the consumption per hour of the automatically added factories.
+     * The returned vector must not be modified.
+     *
+     * @return The consumption per hour of the automatically added factories
+     */
+    private WareVector getAutoConsumption()
+    {
+        if (this.autoConsumption == null)
         {
-            final Ware ware = resource.getWare();
-            final String wareId = ware.getId();
-            ComplexWare complexWare = wares.get(wareId);
-            if (complexWare == null)
-                complexWare = new ComplexWare(ware, 0, resource.getQuantity(),
-                    getWarePrice(ware));
-            else
-                complexWare = new ComplexWare(ware, complexWare.getProduced(),
-                    resource.getQuantity(), getWarePrice(ware));
-            wares.put(wareId, complexWare);
+            final WareVector consumption = new WareVector(this.game);
+            final Sun suns = getSuns();
+            for (final ComplexFactory factory: this.autoFactories)
+                factory.addResourcesPerHour(consumption, suns);
+            this.autoConsumption = consumption;
+        }
+        return this.autoConsumption;
+    }
+
+    /**
+     * Fully calculates the running production and consumption of the
+     * manually added factories.
+     */
+    private void calculateBalance()
+    {
+        final WareVector production = new WareVector(this.game);
+        final WareVector consumption = new WareVector(this.game);
+        final Sun suns = getSuns();
+        for (final ComplexFactory factory: this.factories)
+        {
+            factory.addProductPerHour(production, suns);
+            factory.addResourcesPerHour(consumption, suns);
         }
+        this.manualProduction = production;
+        this.manualConsumption = consumption;
+    }
+
+    /**
+     * Discards the running ware balance so it is fully recalculated on next
+     * access. Must be called when the suns of the complex are changed.
+     */
+    private void resetBalance()
+    {
+        this.manualProduction = null;
+        this.manualConsumption = null;
+        this.autoProduction = null;
+        this.autoConsumption = null;
+    }
+
+    /**
+     * Adds the production and consumption of the specified manually added
+     * factory to the running ware balance. Must be called after the factory
+     * was added or changed.
+     *
+     * @param factory
+     *            The factory
+     */
+    private void addToBalance(final ComplexFactory factory)
+    {
+        if (this.manualProduction == null) return;
+        final Sun suns = getSuns();
+        factory.addProductPerHour(this.manualProduction, suns);
+        factory.addResourcesPerHour(this.manualConsumption, suns);
+    }
+
+    /**
+     * Removes the production and consumption of the specified manually added
+     * factory from the running ware balance. Must be called before the
+     * factory is changed or after it was removed.
+     *
+     * @param factory
+     *            The factory
+     */
+    private void removeFromBalance(final ComplexFactory factory)
+    {
+        if (this.manualProduction == null) return;
+        final Sun suns = getSuns();
+        factory.subtractProductPerHour(this.manualProduction, suns);
+        factory.subtractResourcesPerHour(this.manualConsumption, suns);
+    }
 
-        final List<ComplexWare> result = new ArrayList<ComplexWare>(wares
-            .values());
+    /**
+     * Returns the list of complex wares (Produced and needed).
+     *
+     * @return The list of complex wares
+     */
+    public Collection<ComplexWare> getWares()
+    {
+        final DerivedValues values = getDerivedValues();
+        if (values.wares == null)
+            values.wares = Collections.unmodifiableList(calculateWares());
+        return values.wares;
+    }
+
+    /**
+     * Calculates the list of complex wares (Produced and needed).
+     *
+     * @return The list of complex wares
+     */
+    private List<ComplexWare> calculateWares()
+    {
+        final WareVector production = getProduction();
+        final WareVector consumption = getConsumption();
+        final List<ComplexWare> result = new ArrayList<ComplexWare>();
+        for (int i = 0, max = production.size(); i < max; i++)
+        {
+            if (!production.isUsed(i) && !consumption.isUsed(i)) continue;
+            final Ware ware = production.getWare(i);
+            result.add(new ComplexWare(ware, production.get(i), consumption
+                .get(i), getWarePrice(ware)));
+        }
         Collections.sort(result);
         return result;
     }
@@ -805,6 +1418,18 @@ public class Complex implements Serializable, GameProvider
      * @return The profit
      */
     public double getProfit()
+    {
+        final DerivedValues values = getDerivedValues();
+        if (values.profit == null) values.profit = calculateProfit();
+        return values.profit;
+    }
+
+    /**
+     * Calculates the profit of this complex.
+     *
+     * @return The profit
+     */
+    private double calculateProfit()
     {
         double profit;
 
@@ -846,65 +1471,51 @@ public class Complex implements Serializable, GameProvider
         return getKitQuantity() * getKitPrice();
     }
 
+    /**
+     * Marks the complex as modified. This invalidates all cached derived
+     * values. Must be called by every method changing the factories, the
+     * suns or the prices of the complex.
+     */
+    private void modified()
+    {
+        this.modCount++;
+    }
+
+    /**
+     * Returns the cache for the derived values of this complex. A new empty
+     * cache is created if the complex was modified since the last access.
+     *
+     * @return The cache for the derived values
+     */
+    private DerivedValues getDerivedValues()
+    {
+        DerivedValues values = this.derivedValues;
+        if (values == null || values.modCount != this.modCount)
+        {
+            values = new DerivedValues(this.modCount);
+            this.derivedValues = values;
+        }
+        return values;
+    }
+
     /**
      * Calculates and adds the factories needed to keep the factories of this
      * complex running stable.
      */
     private void calculateBaseComplex()
     {
-        final FactoryFactory factoryFactory = this.game.getFactoryFactory();
-        final RaceFactory raceFactory = this.game.getRaceFactory();
-        final Ware crystals = this.game.getWareFactory().getWare("crystals");
-        final Config config = Config.getInstance();
-        long currentPrice;
-        long price;
-        final List<ComplexFactory> backup = new ArrayList<ComplexFactory>();
-
         // First of all remove all automatically added factories
         this.autoFactories.clear();
+        this.autoProduction = null;
+        this.autoConsumption = null;
+        modified();
         updateShoppingList();
 
         if (!this.addBaseComplex) return;
 
-        // First of all we build a base complex without specific crystal fab
-        // race and remember the price
-        while (true)
-            if (!addBaseComplex(null)) break;
-        currentPrice = getTotalPrice();
-
-        // Now cycle over all races and check if the complex gets cheaper if
-        // the crystal fabs are bought from them
-        for (final Race race: raceFactory.getRaces())
-        {
-            // If race is ignored then don't use it
-            if (config.isRaceIgnored(race)) continue;
-
-            // If race has no crystal fabs then don't use it
-            if (!factoryFactory.hasFactories(race, crystals)) continue;
-
-            // Backup current automatically added factories, clear the
-            // calculated factories and then calculate the complex again with
-            // a specific "crystal race"
-            backup.addAll(this.autoFactories);
-            this.autoFactories.clear();
-            while (true)
-                if (!addBaseComplex(race)) break;
-
-            // Check if new price is cheaper then the old one. If cheaper
-            // then the new complex is used (and checked against the next
-            // available race). If not cheaper then the old complex is restored
-            price = getTotalPrice();
-            if (price < currentPrice)
-            {
-                currentPrice = price;
-            }
-            else
-            {
-                this.autoFactories.clear();
-                this.autoFactories.addAll(backup);
-            }
-            backup.clear();
-        }
+        this.autoFactories.addAll(new BaseComplexSolver(this.game, getSuns())
+            .solve(this.factories));
+        modified();
         updateShoppingList();
     }
 
@@ -935,133 +1546,6 @@ public class Complex implements Serializable, GameProvider
         this.shoppingList = null;
     }
 
-    /**
-     * Searches for the first unfulfilled resource need (which is not a mineral)
-     * and adds the necessary factories for this. If a need was found (and
-     * fixed) then this method returns true. If all needs are already fulfilled
-     * then it returns false.
-     *
-     * @param crystalRace
-     *            Optional race from which crystal fabs should be bought. If
-     *            null then the cheapest fab is searched.
-     * @return True if a need was found and fixed, false if everything is
-     *         finished
-     */
-    private boolean addBaseComplex(final Race crystalRace)
-    {
-        for (final ComplexWare ware: getWares())
-        {
-            // We are not going to add mines
-            if (ware.getWare().isMineral()) continue;
-
-            // If the current ware has missing units then add the necessary
-            // factories for this ware and then restart the adding of factories
-            if (ware.getMissing() > 0)
-            {
-                final Race race = ware.getWare().getId().equals("crystals")
-                    ? crystalRace : null;
-                if (!addBaseComplexForWare(ware, race)) continue;
-                return true;
-            }
-
-        }
-        return false;
-    }
-
-    /**
-     * Adds the factories needed to fulfill the need of the specified complex
-     * ware.
-     *
-     * @param complexWare
-     *            The complex ware for which factories must be added
-     * @param race
-     *            The race from which factories should be bought. If null then
-     *            the cheapest factory is used.
-     * @return True if a new factories were added, false if this was not
-     *         possible
-     */
-    private boolean addBaseComplexForWare(final ComplexWare complexWare,
-        final Race race)
-    {
-        final Ware ware = complexWare.getWare();
-        final FactoryFactory factoryFactory = this.game.getFactoryFactory();
-
-        // Remove all automatically added factories which produces the
-        // specified ware and calculate the real need which must be
-        // fulfilled.
-        double need = complexWare.getMissing();
-        final double oldNeed = need;
-        for (final ComplexFactory complexFactory: new ArrayList<ComplexFactory>(
-            this.autoFactories))
-        {
-            if (complexFactory.getFactory().getProduct().getWare().equals(ware))
-            {
-                need += complexFactory.getProductPerHour(getSuns())
-                    .getQuantity();
-                this.autoFactories.remove(complexFactory);
-            }
-        }
-
-        // Determine the available factory sizes
-        final SortedSet<FactorySize> sizesSet =
-            factoryFactory.getFactorySizes(ware, race);
-        final FactorySize[] sizes =
-            sizesSet.toArray(new FactorySize[sizesSet.size()]);
-
-        // Abort if no factories were found
-        if (sizes.length == 0) return false;
-
-        // Get the cheapest factories for the sizes
-        final Map<FactorySize, Factory> factories =
-            new HashMap<FactorySize, Factory>();
-        for (final FactorySize size: sizes)
-        {
-            if (race == null)
-                factories.put(size, factoryFactory.getCheapestFactory(ware,
-                    size));
-            else
-                factories
-                    .put(size, factoryFactory.getFactory(ware, size, race));
-        }
-
-        // Get the smallest possible production quantity
-        final double minProduction = factories.get(sizes[0]).getProductPerHour(
-            getSuns(), 0).getQuantity();
-
-        // Iterate the available sizes (from largest to smallest) and add
-        // the factories producing an adequate number of products
-        for (int i = sizes.length - 1; i >= 0; i--)
-        {
-            final FactorySize size = sizes[i];
-            final Factory factory = factories.get(size);
-            final double product = factory.getProductPerHour(getSuns(), 0)
-                .getQuantity();
-
-            // Calculate the number of factories of the current size needed
-            log.debug("Need " + need + " units of " + ware + ". Considering "
-                + factory + " which produces " + product + " units");
-            final int quantity = (int) Math.floor((need + minProduction - 0.1)
-                / product);
-
-            // Add the number of factories and decrease the need
-            if (quantity > 0)
-            {
-                log.debug("Adding " + quantity + "x " + factory);
-                this.autoFactories
-                    .add(new ComplexFactory(this.game, factory, quantity, 0));
-                need -= quantity * product;
-            }
-            else
-                log.debug("Not adding any " + factory);
-        }
-        if (Math.abs(need - oldNeed) < .0000001)
-        {
-            log.debug("Unable to calculate best matching factory. Aborting");
-            return false;
-        }
-        return true;
-    }
-
     /**
      * Toggles the addition of automatically calculated base complex.
      */
@@ -1099,24 +1583,30 @@ public class Complex implements Serializable, GameProvider
      */
     public Collection<Capacity> getCapacities()
     {
-        final Map<String, Capacity> capacities =
-            new HashMap<String, Capacity>();
-        for (final ComplexFactory factory: getAllFactories())
-        {
-            for (final Capacity capacity: factory.getCapacities())
-            {
-                final Ware ware = capacity.getWare();
-                final Capacity mapCapacity = capacities.get(ware.getId());
-                if (mapCapacity == null)
-                    capacities.put(ware.getId(), capacity);
-                else
-                    capacities.put(ware.getId(), new Capacity(ware, mapCapacity
-                        .getQuantity()
-                        + capacity.getQuantity()));
-            }
-        }
-        final List<Capacity> result = new ArrayList<Capacity>(capacities
-            .values());
+        final DerivedValues values = getDerivedValues();
+        if (values.capacities == null)
+            values.capacities =
+                Collections.unmodifiableList(calculateCapacities());
+        return values.capacities;
+    }
+
+    /**
+     * Calculates the storage capacities.
+     *
+     * @return The storage capacities.
+     */
+    private List<Capacity> calculateCapacities()
+    {
+        final WareVector capacities = new WareVector(this.game);
+        for (final ComplexFactory factory: this.factories)
+            factory.addCapacities(capacities);
+        for (final ComplexFactory factory: this.autoFactories)
+            factory.addCapacities(capacities);
+        final List<Capacity> result = new ArrayList<Capacity>();
+        for (int i = 0, max = capacities.size(); i < max; i++)
+            if (capacities.isUsed(i))
+                result.add(new Capacity(capacities.getWare(i),
+                    (long) capacities.get(i)));
         Collections.sort(result);
         return result;
     }
@@ -1128,10 +1618,15 @@ public class Complex implements Serializable, GameProvider
      */
     public long getTotalCapacity()
     {
-        long total = 0;
-        for (final Capacity capacity: getCapacities())
-            total += capacity.getQuantity();
-        return total;
+        final DerivedValues values = getDerivedValues();
+        if (values.totalCapacity == null)
+        {
+            long total = 0;
+            for (final Capacity capacity: getCapacities())
+                total += capacity.getQuantity();
+            values.totalCapacity = total;
+        }
+        return values.totalCapacity;
     }
 
     /**
@@ -1141,10 +1636,15 @@ public class Complex implements Serializable, GameProvider
      */
     public long getTotalStorageVolume()
     {
-        long total = 0;
-        for (final Capacity capacity: getCapacities())
-            total += capacity.getVolume();
-        return total;
+        final DerivedValues values = getDerivedValues();
+        if (values.totalStorageVolume == null)
+        {
+            long total = 0;
+            for (final Capacity capacity: getCapacities())
+                total += capacity.getVolume();
+            values.totalStorageVolume = total;
+        }
+        return values.totalStorageVolume;
     }
 
     /**
@@ -1159,6 +1659,8 @@ public class Complex implements Serializable, GameProvider
             || (sector == null && this.sector != null))
         {
             this.sector = sector;
+            resetBalance();
+            modified();
             calculateBaseComplex();
             updateShoppingList();
         }
@@ -1242,6 +1744,7 @@ public class Complex implements Serializable, GameProvider
     {
         this.customPrices.clear();
         this.customPrices.putAll(customPrices);
+        modified();
     }
 
     /**
@@ -1444,80 +1947,7 @@ public class Complex implements Serializable, GameProvider
      */
     public static boolean isValidTemplateCode(final String templateCode)
     {
-        try
-        {
-            // Decode base 64
-            final byte[] data =
-                DatatypeConverter.parseBase64Binary(templateCode.trim());
-
-            final InputStream stream = new DynaByteInputStream(
-                new ByteArrayInputStream(data));
-            try
-            {
-                // Read complex settings
-                final int settings = stream.read();
-                final boolean hasSector = (settings & 1) == 1;
-                final int gameNid = (settings >> 1) & 7;
-    
-                final Game game;
-                try
-                {
-                    game = GameFactory.getInstance().getGame(gameNid);
-                }
-                catch (final GameNotFoundException e)
-                {
-                    return false;
-                }
-    
-                // Read sector coordinates or sun power
-                if (hasSector)
-                {
-                    final int x = stream.read();
-                    final int y = stream.read();
-                    if (game.getSectorFactory().getSector(x, y) == null) return false;
-                }
-                else
-                {
-                    final int percent = stream.read();
-                    try
-                    {
-                        game.getSunFactory().getSun(percent);
-                    }
-                    catch (final DataException e)
-                    {
-                        return false;
-                    }
-                }
-    
-                int factoryId;
-                while ((factoryId = stream.read()) != 0)
-                {
-                    final Factory factory =
-                        game.getFactoryFactory().getFactory(factoryId);
-                    if (factory == null) return false;
-                    if (factory.isMine())
-                    {
-                        int yield;
-                        while ((yield = stream.read()) != 0)
-                            if (yield > 256) return false;
-                    }
-                    else
-                    {
-                        stream.read();
-                    }
-                }
-    
-                return true;
-            }
-            finally
-            {
-                stream.close();
-            }
-        }
-        catch (final Exception e)
-        {
-            return false;
-        }
+        return TemplateCode.decode(templateCode).isValid();
     }
 
     /**
@@ -1526,73 +1956,44 @@ public class Complex implements Serializable, GameProvider
      * @param templateCode
      *            The template code
      * @return The complex.
+     * @throws TemplateCodeException
+     *             When template code is invalid.
      */
     public static Complex fromTemplateCode(final String templateCode)
     {
-        try
-        {
-            // Decode base 64
-            final byte[] data =
-                DatatypeConverter.parseBase64Binary(templateCode.trim());
+        return fromTemplateCode(TemplateCode.decode(templateCode));
+    }
 
-            final InputStream stream = new DynaByteInputStream(
-                new ByteArrayInputStream(data));
-            try
-            {
-                // Read complex settings
-                final int settings = stream.read();
-                final boolean hasSector = (settings & 1) == 1;
-                final int gameNid = (settings >> 1) & 7;
-    
-                final Game game = GameFactory.getInstance().getGame(gameNid);
-                final Complex complex = new Complex(game);
-    
-                // Read sector coordinates or sun power
-                if (hasSector)
-                {
-                    final int x = stream.read();
-                    final int y = stream.read();
-                    complex.setSector(game.getSectorFactory().getSector(x, y));
-                }
-                else
-                {
-                    final int percent = stream.read();
-                    complex.setSuns(game.getSunFactory().getSun(percent));
-                }
-    
-                int factoryId;
-                while ((factoryId = stream.read()) != 0)
-                {
-                    final Factory factory =
-                        game.getFactoryFactory().getFactory(factoryId);
-                    if (factory.isMine())
-                    {
-                        final List<Integer> yields = new ArrayList<Integer>();
-                        int yield;
-                        while ((yield = stream.read()) != 0)
-                            yields.add(yield - 1);
-                        complex
-                            .addFactory(new ComplexFactory(game, factory, yields));
-                    }
-                    else
-                    {
-                        final int quantity = stream.read();
-                        complex.addFactory(new ComplexFactory(game, factory,
-                            quantity, 0));
-                    }
-                }
-    
-                return complex;
-            }
-            finally
-            {
-                stream.close();
-            }
-        }
-        catch (final IOException e)
+    /**
+     * Creates a complex from the specified decoded template code.
+     *
+     * @param templateCode
+     *            The decoded template code
+     * @return The complex.
+     * @throws TemplateCodeException
+     *             When template code is invalid.
+     */
+    public static Complex fromTemplateCode(final TemplateCode templateCode)
+    {
+        if (!templateCode.isValid())
+            throw new TemplateCodeException(templateCode.getErrorMessage());
+        final Game game = templateCode.getGame();
+        final Complex complex = new Complex(game);
+        if (templateCode.getSector() != null)
+            complex.setSector(templateCode.getSector());
+        else
+            complex.setSuns(templateCode.getSuns());
+        for (int i = 0, max = templateCode.getFactoryCount(); i < max; i++)
         {
-            throw new TemplateCodeException(e.toString(), e);
+            final Factory factory = templateCode.getFactory(i);
+            if (factory.isMine())
+                complex.addFactory(new ComplexFactory(game, factory,
+                    templateCode.getYields(i)));
+            else
+                complex.addFactory(new ComplexFactory(game, factory,
+                    templateCode.getQuantity(i), 0));
         }
+        return complex;
     }
 
     /**
@@ -1602,60 +2003,54 @@ public class Complex implements Serializable, GameProvider
      */
     public String getTemplateCode()
     {
-        try
-        {
-            final ByteArrayOutputStream arrayStream =
-                new ByteArrayOutputStream();
-            final OutputStream stream = new DynaByteOutputStream(arrayStream);
+        // Calculate the maximum size of the encoded values
+        int size = 4;
+        for (final ComplexFactory complexFactory: getAllFactories())
+            size += complexFactory.getFactory().isMine()
+                ? complexFactory.getYields().size() + 2 : 2;
+        final byte[] data = new byte[size * DynaBytes.MAX_LENGTH];
 
-            // Write the template settings bit mask.
-            int settings = this.sector == null ? 0 : 1;
-            settings |= this.game.getNid() << 1;
-            stream.write(settings);
+        // Write the template settings bit mask.
+        int settings = this.sector == null ? 0 : 1;
+        settings |= this.game.getNid() << 1;
+        int length = DynaBytes.write(data, 0, settings);
 
-            // Write the sector coordinates
-            if (this.sector != null)
-            {
-                stream.write(this.sector.getX());
-                stream.write(this.sector.getY());
-            }
+        // Write the sector coordinates
+        if (this.sector != null)
+        {
+            length = DynaBytes.write(data, length, this.sector.getX());
+            length = DynaBytes.write(data, length, this.sector.getY());
+        }
 
-            // Or else write the sun power
-            else
-            {
-                stream.write(this.suns.getPercent());
-            }
+        // Or else write the sun power
+        else
+        {
+            length = DynaBytes.write(data, length, this.suns.getPercent());
+        }
 
-            // Write the factories
-            for (final ComplexFactory complexFactory: getAllFactories())
+        // Write the factories
+        for (final ComplexFactory complexFactory: getAllFactories())
+        {
+            if (complexFactory.isDisabled()) continue;
+            final Factory factory = complexFactory.getFactory();
+            length = DynaBytes.write(data, length, factory.getNid());
+            if (factory.isMine())
             {
-                if (complexFactory.isDisabled()) continue;
-                final Factory factory = complexFactory.getFactory();
-                stream.write(factory.getNid());
-                if (factory.isMine())
-                {
-                    for (final int yield: complexFactory.getYields())
-                        stream.write(yield + 1);
-                    stream.write(0);
-                }
-                else
-                    stream.write(complexFactory.getQuantity());
+                for (final int yield: complexFactory.getYields())
+                    length = DynaBytes.write(data, length, yield + 1);
+                length = DynaBytes.write(data, length, 0);
             }
+            else
+                length = DynaBytes.write(data, length,
+                    complexFactory.getQuantity());
+        }
 
-            // Write end marker
-            stream.write(0);
-            stream.close();
-
-            // Get byte array from stream
-            final byte[] data = arrayStream.toByteArray();
+        // Write end marker
+        length = DynaBytes.write(data, length, 0);
 
-            // Return base 64 encoded bytes
-            return DatatypeConverter.printBase64Binary(data);
-        }
-        catch (final IOException e)
-        {
-            throw new TemplateCodeException(e.toString(), e);
-        }
+        // Return base 64 encoded bytes
+        return DatatypeConverter.printBase64Binary(Arrays.copyOf(data,
+            length));
     }
 
     /**
@@ -1751,4 +2146,59 @@ public class Complex implements Serializable, GameProvider
         out.println(" Cr");
         return writer.toString();
     }
+
+    /**
+     * Cache for the values derived from the factories of a complex. The
+     * values are calculated on first access and are only valid as long as
+     * the modification counter of the complex doesn't change.
+     */
+    private static final class DerivedValues
+    {
+        /** The modification counter the values belong to */
+        final int modCount;
+
+        /** The total number of factories */
+        Integer totalQuantity;
+
+        /** The total price */
+        Long totalPrice;
+
+        /** The production per hour */
+        WareVector production;
+
+        /** The consumption per hour */
+        WareVector consumption;
+
+        /** The products per hour */
+        Collection<Product> productsPerHour;
+
+        /** The resources per hour */
+        Collection<Product> resourcesPerHour;
+
+        /** The complex wares */
+        Collection<ComplexWare> wares;
+
+        /** The profit */
+        Double profit;
+
+        /** The storage capacities */
+        Collection<Capacity> capacities;
+
+        /** The total storage capacity */
+        Long totalCapacity;
+
+        /** The total storage volume */
+        Long totalStorageVolume;
+
+        /**
+         * Constructor
+         *
+         * @param modCount
+         *            The modification counter the values belong to
+         */
+        DerivedValues(final int modCount)
+        {
+            this.modCount = modCount;
+        }
+    }
 }
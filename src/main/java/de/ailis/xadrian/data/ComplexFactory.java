@@ -264,24 +264,66 @@ public class ComplexFactory implements Serializable, Comparable<ComplexFactory>
      * @return The product per hour.
      */
     public Product getProductPerHour(final Sun suns)
+    {
+        return new Product(this.factory.getProduct().getWare(),
+            getProductQuantityPerHour(suns));
+    }
+
+    /**
+     * Adds the product this complex factory/factories produces in one hour to
+     * the specified ware vector.
+     *
+     * @param vector
+     *            The ware vector to add the product to
+     * @param suns
+     *            The sun power to use in the calculation (for solar power
+     *            plants)
+     */
+    public void addProductPerHour(final WareVector vector, final Sun suns)
+    {
+        vector.add(this.factory.getProduct().getWare(),
+            getProductQuantityPerHour(suns));
+    }
+
+    /**
+     * Subtracts the product this complex factory/factories produces in one
+     * hour from the specified ware vector. This reverts a previous call of
+     * {@link #addProductPerHour(WareVector, Sun)} as long as the factory has
+     * not been changed in between.
+     *
+     * @param vector
+     *            The ware vector to subtract the product from
+     * @param suns
+     *            The sun power to use in the calculation (for solar power
+     *            plants)
+     */
+    public void subtractProductPerHour(final WareVector vector, final Sun suns)
+    {
+        vector.subtract(this.factory.getProduct().getWare(),
+            getProductQuantityPerHour(suns));
+    }
+
+    /**
+     * Returns the quantity of the product this complex factory/factories
+     * produces in one hour.
+     *
+     * @param suns
+     *            The sun power to use in the calculation (for solar power
+     *            plants)
+     * @return The quantity of the product per hour
+     */
+    private double getProductQuantityPerHour(final Sun suns)
     {
         if (this.factory.isMine())
         {
             double quantity = 0;
             for (final Integer yield : this.yields)
-            {
-                final Product product = this.factory
-                        .getProductPerHour(suns, yield);
-                quantity += product.getQuantity();
-            }
-            return new Product(this.factory.getProduct().getWare(), quantity
-                * (this.disabled ? 0 : 1));
+                quantity += this.factory.getProductQuantityPerHour(suns, yield);
+            return quantity * (this.disabled ? 0 : 1);
         }
 
-        final Product product = this.factory
-                .getProductPerHour(suns, 0);
-        return new Product(product.getWare(), product.getQuantity()
-            * (this.disabled ? 0 : this.quantity));
+        return this.factory.getProductQuantityPerHour(suns, 0)
+            * (this.disabled ? 0 : this.quantity);
     }
 
     /**
@@ -333,6 +375,57 @@ public class ComplexFactory implements Serializable, Comparable<ComplexFactory>
         return resources;
     }
 
+    /**
+     * Adds the resources this complex factory/factories needs in one hour to
+     * the specified ware vector.
+     *
+     * @param vector
+     *            The ware vector to add the resources to
+     * @param suns
+     *            The sun power to use in the calculation (for solar power
+     *            plants)
+     */
+    public void addResourcesPerHour(final WareVector vector, final Sun suns)
+    {
+        if (this.factory.isMine())
+        {
+            for (final Integer yield : this.yields)
+                this.factory.addResourcesPerHour(vector, suns, yield,
+                    this.disabled ? 0 : 1);
+            return;
+        }
+
+        this.factory.addResourcesPerHour(vector, suns, 0, this.disabled ? 0
+            : this.quantity);
+    }
+
+    /**
+     * Subtracts the resources this complex factory/factories needs in one
+     * hour from the specified ware vector. This reverts a previous call of
+     * {@link #addResourcesPerHour(WareVector, Sun)} as long as the factory
+     * has not been changed in between.
+     *
+     * @param vector
+     *            The ware vector to subtract the resources from
+     * @param suns
+     *            The sun power to use in the calculation (for solar power
+     *            plants)
+     */
+    public void subtractResourcesPerHour(final WareVector vector,
+        final Sun suns)
+    {
+        if (this.factory.isMine())
+        {
+            for (final Integer yield : this.yields)
+                this.factory.subtractResourcesPerHour(vector, suns, yield,
+                    this.disabled ? 0 : 1);
+            return;
+        }
+
+        this.factory.subtractResourcesPerHour(vector, suns, 0,
+            this.disabled ? 0 : this.quantity);
+    }
+
     /**
      * Returns the resources this complex factory/factories needs in our hour
      * using a default sun power of 100%.
@@ -361,6 +454,18 @@ public class ComplexFactory implements Serializable, Comparable<ComplexFactory>
         return capacities;
     }
 
+    /**
+     * Adds the storage capacities of this complex factory/factories to the
+     * specified ware vector.
+     *
+     * @param vector
+     *            The ware vector to add the capacities to
+     */
+    public void addCapacities(final WareVector vector)
+    {
+        this.factory.addCapacities(vector, this.disabled ? 0 : getQuantity());
+    }
+
     /**
      * Sets the disabled state of this factory.
      *
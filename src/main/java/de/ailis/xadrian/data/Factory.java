@@ -26,6 +26,9 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
     /** Serial version UID */
     private static final long serialVersionUID = 4851121299100273466L;
 
+    /** The highest asteroid yield for which the mine tables are precomputed */
+    public static final int MAX_YIELD = 999;
+
     /** The game to which this factory belongs. */
     private final Game game;
 
@@ -65,6 +68,18 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
     /** The factory size */
     private final FactorySize size;
 
+    /**
+     * The product quantity per hour indexed by asteroid yield. Only
+     * precomputed for mines, null for all other factories.
+     */
+    private final double[] yieldProducts;
+
+    /**
+     * The resource quantity per hour indexed by asteroid yield. Only
+     * precomputed for mines, null for all other factories.
+     */
+    private final double[] yieldResources;
+
     /**
      * Constructor
      * 
@@ -114,6 +129,28 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
         this.capacities = storage.clone();
         this.manufacturers = manufacturers.clone();
         this.messageId = "factory." + id.substring(0, id.lastIndexOf("-"));
+
+        // Precompute the yield dependent production of mines. Mines only
+        // use their first resource
+        if (isMine())
+        {
+            this.yieldProducts = new double[MAX_YIELD + 1];
+            this.yieldResources = new double[MAX_YIELD + 1];
+            for (int yield = 0; yield <= MAX_YIELD; yield++)
+            {
+                final int realCycle = getRealCycle(null, yield);
+                this.yieldProducts[yield] = getRealQuantity(
+                    product.getQuantity(), yield) * 60d * 60d / realCycle;
+                this.yieldResources[yield] = getRealQuantity(
+                    this.resources[0].getQuantity(), yield) * 60 * 60
+                    / realCycle;
+            }
+        }
+        else
+        {
+            this.yieldProducts = null;
+            this.yieldResources = null;
+        }
     }
 
     /**
@@ -315,6 +352,22 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
         return this.capacities.clone();
     }
 
+    /**
+     * Adds the storage capacities of this factory to the specified ware
+     * vector.
+     *
+     * @param vector
+     *            The ware vector to add the capacities to
+     * @param factor
+     *            The factor to multiply the capacities with (The number of
+     *            factories)
+     */
+    public void addCapacities(final WareVector vector, final double factor)
+    {
+        for (final Capacity capacity : this.capacities)
+            vector.add(capacity.getWare(), capacity.getQuantity() * factor);
+    }
+
     /**
      * Returns the manufacturer stations.
      * 
@@ -468,14 +521,31 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
      */
     private Product getRealProduct(final Sun suns, final int yield)
     {
-        final Ware ware = this.product.getWare();
+        // Normal factory, return normal product
+        if (!isMine()) return this.product;
+
+        return new Product(this.product.getWare(), getRealQuantity(
+            this.product.getQuantity(), yield));
+    }
 
+    /**
+     * Returns the real quantity of a product or resource of this factory by
+     * including the specified asteroid yield into the calculation.
+     *
+     * @param quantity
+     *            The quantity of the product or resource
+     * @param yield
+     *            The asteroid yield
+     * @return The real quantity
+     */
+    private double getRealQuantity(final double quantity, final int yield)
+    {
         // Handle silicon mines
         if (isSiliconMine())
         {
             final int baseTime = 2400 / (yield + 1) + 1;
             final int multiple = (int) Math.floor(59.9 / baseTime) + 1;
-            return new Product(ware, multiple * this.product.getQuantity() / 2);
+            return multiple * quantity / 2;
         }
 
         // Handle ore and ice mines
@@ -483,12 +553,11 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
         {
             final int baseTime = 600 / (yield + 1) + 1;
             final int multiple = (int) Math.floor(59.9 / baseTime) + 1;
-            return new Product(ware, multiple
-                * (this.product.getQuantity() / 4));
+            return multiple * (quantity / 4);
         }
 
-        // Normal factory, return normal product
-        return this.product;
+        // Normal factory, return normal quantity
+        return quantity;
     }
 
     /**
@@ -503,32 +572,27 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
      */
     private Product[] getRealResources(final Sun suns, final int yield)
     {
-        // Handle silicon mines
-        if (isSiliconMine())
-        {
-            final Product resources[] = new Product[1];
-            final Product resource = this.resources[0];
-            final int baseTime = 2400 / (yield + 1) + 1;
-            final int multiple = (int) Math.floor(59.9 / baseTime) + 1;
-            resources[0] = new Product(resource.getWare(), multiple
-                * resource.getQuantity() / 2);
-            return resources;
-        }
+        // Normal factory, return normal resources
+        if (!isMine()) return this.resources;
 
-        // Handle ore and ice mines
-        if (isOreMine() || isIceMine())
-        {
-            final Product resources[] = new Product[1];
-            final Product resource = this.resources[0];
-            final int baseTime = 600 / (yield + 1) + 1;
-            final int multiple = (int) Math.floor(59.9 / baseTime) + 1;
-            resources[0] = new Product(resource.getWare(), multiple
-                * (resource.getQuantity() / 4));
-            return resources;
-        }
+        // Mines only need their first resource
+        final Product resource = this.resources[0];
+        return new Product[] { new Product(resource.getWare(),
+            getRealQuantity(resource.getQuantity(), yield)) };
+    }
 
-        // Normal factory, return normal product
-        return this.resources;
+    /**
+     * Checks if the production of this factory for the specified asteroid
+     * yield can be read from the precomputed yield tables.
+     *
+     * @param yield
+     *            The asteroid yield
+     * @return True if this factory is a mine and the yield is in the range of
+     *         the yield tables, false if not
+     */
+    private boolean hasYieldTables(final int yield)
+    {
+        return this.yieldProducts != null && yield >= 0 && yield <= MAX_YIELD;
     }
 
     /**
@@ -543,9 +607,28 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
      */
     public final Product getProductPerHour(final Sun suns, final int yield)
     {
-        final Product product = getRealProduct(suns, yield);
-        return new Product(product.getWare(), product.getQuantity() * 60d * 60d
-            / getRealCycle(suns, yield));
+        return new Product(this.product.getWare(), getProductQuantityPerHour(
+            suns, yield));
+    }
+
+    /**
+     * Returns the quantity of the product this factory produces in one hour.
+     * Same as {@link #getProductPerHour(Sun, int)} but without creating a
+     * product object.
+     *
+     * @param suns
+     *            The sun power to use in the calculation (for solar power
+     *            plants)
+     * @param yield
+     *            The yield to use in the calculation
+     * @return The quantity of the product per hour.
+     */
+    public final double getProductQuantityPerHour(final Sun suns,
+        final int yield)
+    {
+        if (hasYieldTables(yield)) return this.yieldProducts[yield];
+        return getRealQuantity(this.product.getQuantity(), yield) * 60d * 60d
+            / getRealCycle(suns, yield);
     }
 
     /**
@@ -572,6 +655,14 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
     public Collection<Product> getResourcesPerHour(final Sun suns,
         final int yield)
     {
+        if (hasYieldTables(yield))
+        {
+            final Collection<Product> resourcesPH = new ArrayList<Product>(1);
+            resourcesPH.add(new Product(this.resources[0].getWare(),
+                this.yieldResources[yield]));
+            return resourcesPH;
+        }
+
         final Product[] resources = getRealResources(suns, yield);
         final Collection<Product> resourcesPH = new ArrayList<Product>();
         for (final Product resource : resources)
@@ -583,6 +674,97 @@ public class Factory implements Serializable, Comparable<Factory>, GameProvider
         return resourcesPH;
     }
 
+    /**
+     * Adds the resources this factory needs in one hour to the specified
+     * ware vector. Same as {@link #getResourcesPerHour(Sun, int)} but without
+     * creating any objects.
+     *
+     * @param vector
+     *            The ware vector to add the resources to
+     * @param suns
+     *            The sun power to use in the calculation (for solar power
+     *            plants)
+     * @param yield
+     *            The yield to use in the calculation (for mines)
+     * @param factor
+     *            The factor to multiply the resources with (The number of
+     *            factories)
+     */
+    public void addResourcesPerHour(final WareVector vector, final Sun suns,
+        final int yield, final double factor)
+    {
+        updateResourcesPerHour(vector, suns, yield, factor, false);
+    }
+
+    /**
+     * Subtracts the resources this factory needs in one hour from the
+     * specified ware vector. This reverts a previous call of
+     * {@link #addResourcesPerHour(WareVector, Sun, int, double)} with the
+     * same parameters.
+     *
+     * @param vector
+     *            The ware vector to subtract the resources from
+     * @param suns
+     *            The sun power to use in the calculation (for solar power
+     *            plants)
+     * @param yield
+     *            The yield to use in the calculation (for mines)
+     * @param factor
+     *            The factor to multiply the resources with (The number of
+     *            factories)
+     */
+    public void subtractResourcesPerHour(final WareVector vector,
+        final Sun suns, final int yield, final double factor)
+    {
+        updateResourcesPerHour(vector, suns, yield, factor, true);
+    }
+
+    /**
+     * Adds the resources this factory needs in one hour to the specified
+     * ware vector or subtracts them from it.
+     *
+     * @param vector
+     *            The ware vector to update
+     * @param suns
+     *            The sun power to use in the calculation (for solar power
+     *            plants)
+     * @param yield
+     *            The yield to use in the calculation (for mines)
+     * @param factor
+     *            The factor to multiply the resources with (The number of
+     *            factories)
+     * @param subtract
+     *            True to subtract the resources, false to add them
+     */
+    private void updateResourcesPerHour(final WareVector vector,
+        final Sun suns, final int yield, final double factor,
+        final boolean subtract)
+    {
+        if (hasYieldTables(yield))
+        {
+            final Ware ware = this.resources[0].getWare();
+            final double quantity = this.yieldResources[yield] * factor;
+            if (subtract)
+                vector.subtract(ware, quantity);
+            else
+                vector.add(ware, quantity);
+            return;
+        }
+
+        final int cycle = getRealCycle(suns, yield);
+        final int count = isMine() ? 1 : this.resources.length;
+        for (int i = 0; i < count; i++)
+        {
+            final Product resource = this.resources[i];
+            final double quantity = getRealQuantity(resource.getQuantity(),
+                yield) * 60 * 60 / cycle * factor;
+            if (subtract)
+                vector.subtract(resource.getWare(), quantity);
+            else
+                vector.add(resource.getWare(), quantity);
+        }
+    }
+
     /**
      * Returns the resources this factory needs in one hour for a default yield
      * (100% for power plants, 25 for mines).
@@ -9,21 +9,26 @@ import java.io.Serializable;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
 
 import de.ailis.xadrian.data.factories.FactoryFactory;
+import de.ailis.xadrian.data.factories.GameSource;
 import de.ailis.xadrian.data.factories.RaceFactory;
 import de.ailis.xadrian.data.factories.SectorFactory;
 import de.ailis.xadrian.data.factories.SunFactory;
 import de.ailis.xadrian.data.factories.WareFactory;
-import de.ailis.xadrian.dialogs.AddFactoryDialog;
-import de.ailis.xadrian.dialogs.ChangePricesDialog;
-import de.ailis.xadrian.dialogs.ChangeSunsDialog;
-import de.ailis.xadrian.dialogs.SelectSectorDialog;
 import de.ailis.xadrian.support.I18N;
 
 /**
  * A game.
  * 
+ * The game data (suns, races, wares, sectors and factories) is loaded on
+ * first access of one of the sub factories so a session only pays for the
+ * games it really uses. The data can be loaded in the background with
+ * {@link #loadInBackground()} when it is already known that the game will be
+ * needed soon.
+ * 
  * @author Klaus Reimer (k@ailis.de)
  */
 public class Game implements Serializable, Comparable<Game>
@@ -31,6 +36,9 @@ public class Game implements Serializable, Comparable<Game>
     /** Serial version UID */
     private static final long serialVersionUID = 1477337332848671379L;
 
+    /** The logger */
+    private static final Log log = LogFactory.getLog(Game.class);
+
     /** The textual game id */
     private final String id;
 
@@ -40,32 +48,29 @@ public class Game implements Serializable, Comparable<Game>
     /** The message id */
     private final String messageId;
 
-    /** The sector factory. */
-    private final SectorFactory sectorFactory;
-
-    /** The factory factory. */
-    private final FactoryFactory factoryFactory;
+    /** The sector factory. Null if not loaded yet. */
+    private volatile SectorFactory sectorFactory;
 
-    /** The race factory. */
-    private final RaceFactory raceFactory;
+    /** The factory factory. Null if not loaded yet. */
+    private volatile FactoryFactory factoryFactory;
 
-    /** The sun factory. */
-    private final SunFactory sunFactory;
+    /** The race factory. Null if not loaded yet. */
+    private volatile RaceFactory raceFactory;
 
-    /** The ware factory. */
-    private final WareFactory wareFactory;
+    /** The sun factory. Null if not loaded yet. */
+    private volatile SunFactory sunFactory;
 
-    /** The add factory dialog. */
-    private AddFactoryDialog addFactoryDialog;
+    /** The ware factory. Null if not loaded yet. */
+    private volatile WareFactory wareFactory;
 
-    /** The select sector dialog. */
-    private SelectSectorDialog selectSectorDialog;
+    /** If game data has been completely loaded. */
+    private volatile boolean loaded;
 
-    /** The change suns dialog. */
-    private ChangeSunsDialog changeSunsDialog;
-
-    /** The change prices dialog. */
-    private ChangePricesDialog changePricesDialog;
+    /**
+     * If game data is currently loaded by the thread holding the lock of
+     * this game.
+     */
+    private transient boolean loading;
 
     /**
      * Constructor.
@@ -80,11 +85,86 @@ public class Game implements Serializable, Comparable<Game>
         this.id = id;
         this.nid = nid;
         this.messageId = "game." + id;
-        this.sunFactory = new SunFactory(this);
-        this.raceFactory = new RaceFactory(this);
-        this.wareFactory = new WareFactory(this);
-        this.sectorFactory = new SectorFactory(this);
-        this.factoryFactory = new FactoryFactory(this);
+    }
+
+    /**
+     * Loads the game data if not already done. The XML files of the game
+     * are parsed concurrently by the {@link GameSource} while the sub
+     * factories are created in the order of their dependencies to link the
+     * parsed data. They can already access
+     * the previously created sub factories while the data is loaded. Other
+     * threads wait until the data is completely loaded.
+     */
+    private void load()
+    {
+        if (this.loaded) return;
+        synchronized (this)
+        {
+            if (this.loaded || this.loading) return;
+            this.loading = true;
+            try
+            {
+                final GameSource source = GameSource.open(this.id);
+                this.sunFactory = new SunFactory(this, source);
+                this.raceFactory = new RaceFactory(this, source);
+                this.wareFactory = new WareFactory(this, source);
+                this.sectorFactory = new SectorFactory(this, source);
+                this.factoryFactory = new FactoryFactory(this, source);
+                this.loaded = true;
+            }
+            finally
+            {
+                this.loading = false;
+                if (!this.loaded)
+                {
+                    this.sunFactory = null;
+                    this.raceFactory = null;
+                    this.wareFactory = null;
+                    this.sectorFactory = null;
+                    this.factoryFactory = null;
+                }
+            }
+        }
+    }
+
+    /**
+     * Checks if the game data has already been loaded.
+     * 
+     * @return True if game data is loaded, false if not
+     */
+    public boolean isLoaded()
+    {
+        return this.loaded;
+    }
+
+    /**
+     * Starts loading the game data in a background thread if not already
+     * loaded. Accessing the game data while it is loaded in the background
+     * blocks until the loading is finished.
+     */
+    public void loadInBackground()
+    {
+        if (this.loaded) return;
+        final Thread thread = new Thread(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                try
+                {
+                    load();
+                }
+                catch (final RuntimeException e)
+                {
+                    // Ignored here. The error occurs again when the data
+                    // is accessed in the foreground
+                    log.warn("Unable to load game " + Game.this.id + ": "
+                        + e, e);
+                }
+            }
+        }, "GameLoader-" + this.id);
+        thread.setDaemon(true);
+        thread.start();
     }
 
     /**
@@ -164,6 +244,7 @@ public class Game implements Serializable, Comparable<Game>
      */
     public SectorFactory getSectorFactory()
     {
+        load();
         return this.sectorFactory;
     }
 
@@ -174,6 +255,7 @@ public class Game implements Serializable, Comparable<Game>
      */
     public FactoryFactory getFactoryFactory()
     {
+        load();
         return this.factoryFactory;
     }
 
@@ -184,6 +266,7 @@ public class Game implements Serializable, Comparable<Game>
      */
     public RaceFactory getRaceFactory()
     {
+        load();
         return this.raceFactory;
     }
 
@@ -194,6 +277,7 @@ public class Game implements Serializable, Comparable<Game>
      */
     public SunFactory getSunFactory()
     {
+        load();
         return this.sunFactory;
     }
 
@@ -204,57 +288,10 @@ public class Game implements Serializable, Comparable<Game>
      */
     public WareFactory getWareFactory()
     {
+        load();
         return this.wareFactory;
     }
 
-    /**
-     * Returns the add factory dialog.
-     * 
-     * @return The add factory dialog.
-     */
-    public synchronized AddFactoryDialog getAddFactoryDialog()
-    {
-        if (this.addFactoryDialog == null)
-            this.addFactoryDialog = new AddFactoryDialog(this);
-        return this.addFactoryDialog;
-    }
-
-    /**
-     * Returns the select sector dialog.
-     * 
-     * @return The select sector dialog.
-     */
-    public synchronized SelectSectorDialog getSelectSectorDialog()
-    {
-        if (this.selectSectorDialog == null)
-            this.selectSectorDialog = new SelectSectorDialog(this);
-        return this.selectSectorDialog;
-    }
-
-    /**
-     * Returns the change suns dialog.
-     * 
-     * @return The change suns dialog.
-     */
-    public synchronized ChangeSunsDialog getChangeSunsDialog()
-    {
-        if (this.changeSunsDialog == null)
-            this.changeSunsDialog = new ChangeSunsDialog(this);
-        return this.changeSunsDialog;
-    }
-
-    /**
-     * Returns the change prices dialog.
-     * 
-     * @return The change prices dialog.
-     */
-    public synchronized ChangePricesDialog getChangePricesDialog()
-    {
-        if (this.changePricesDialog == null)
-            this.changePricesDialog = new ChangePricesDialog(this);
-        return this.changePricesDialog;
-    }
-
     /**
      * Checks if the game is X3: Terrn Conflict.
      * 
@@ -20,8 +20,8 @@ public class PlayerSector extends Sector
     /** Serial version UID */
     private static final long serialVersionUID = 1;
 
-    /** The asteorids */
-    private final Asteroid[][] asteroids;
+    /** The asteroid fields of the different asteroid configurations */
+    private final AsteroidField[] asteroids;
 
     /**
      * Constructor
@@ -51,12 +51,13 @@ public class PlayerSector extends Sector
      * @param westId
      *            The id of the sector behind the west gate
      * @param asteroids
-     *            Array or array with asteroids in this sector
+     *            The asteroid fields of the asteroid configurations
      */
     public PlayerSector(final Game game, final String id, final int x,
         final int y, final Race race, final int planets, final Sun suns,
         final boolean core, final String northId, final String eastId,
-        final String southId, final String westId, final Asteroid[][] asteroids)
+        final String southId, final String westId,
+        final AsteroidField[] asteroids)
     {
         super(game, id, x, y, race, planets, suns, core, false, northId, eastId,
             southId, westId, null);
@@ -76,16 +77,39 @@ public class PlayerSector extends Sector
     }
 
     /**
-     * Returns the array with asteroids.
+     * Returns the asteroid field of the configured asteroid configuration.
      *
-     * @return The array with asteroids
+     * @return The asteroid field
      */
     @Override
-    public Asteroid[] getAsteroids()
+    public AsteroidField getAsteroidField()
     {
         final int playerSector = Config.getInstance().getX3TCPlayerSector();
         return this.asteroids[playerSector];
     }
+
+    /**
+     * Returns the number of asteroid configurations of this sector. The
+     * player can switch between them in the configuration.
+     *
+     * @return The number of asteroid configurations
+     */
+    public int countAsteroidSwitches()
+    {
+        return this.asteroids.length;
+    }
+
+    /**
+     * Returns the asteroid field of the specified asteroid configuration.
+     *
+     * @param playerSector
+     *            The index of the asteroid configuration
+     * @return The asteroid field
+     */
+    public AsteroidField getAsteroidField(final int playerSector)
+    {
+        return this.asteroids[playerSector];
+    }
     
     /**
      * @see java.lang.Object#hashCode()
@@ -4,7 +4,6 @@
  */
 package de.ailis.xadrian.data;
 
-import java.awt.Color;
 import java.io.Serializable;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -25,8 +24,8 @@ public class Race implements Serializable, Comparable<Race>
     /** The race id */
     private final String id;
 
-    /** The race color */
-    private final Color color;
+    /** The race color as RGB value */
+    private final int color;
 
     /** The message id */
     private final String messageId;
@@ -42,9 +41,9 @@ public class Race implements Serializable, Comparable<Race>
      * @param id
      *            The race id
      * @param color
-     *            The race color
+     *            The race color as RGB value (0xRRGGBB)
      */
-    public Race(final Game game, final String id, final Color color)
+    public Race(final Game game, final String id, final int color)
     {
         this.game = game;
         this.id = id;
@@ -65,26 +64,13 @@ public class Race implements Serializable, Comparable<Race>
     /**
      * Return the color.
      *
-     * @return The color
+     * @return The color as RGB value (0xRRGGBB)
      */
-    public Color getColor()
+    public int getColor()
     {
         return this.color;
     }
 
-    /**
-     * Return the color with the specified alpha value.
-     *
-     * @param alpha
-     *            The alpha value
-     * @return The color
-     */
-    public Color getColor(final int alpha)
-    {
-        return new Color(this.color.getRed(), this.color.getGreen(), this.color
-            .getBlue(), alpha);
-    }
-
     /**
      * Returns the name.
      *
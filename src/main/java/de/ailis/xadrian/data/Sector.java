@@ -5,24 +5,15 @@
 
 package de.ailis.xadrian.data;
 
-import java.awt.Color;
 import java.io.Serializable;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.HashSet;
 import java.util.List;
-import java.util.Set;
 import java.util.SortedMap;
-import java.util.SortedSet;
-import java.util.TreeMap;
-import java.util.TreeSet;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
 import org.apache.commons.lang.builder.HashCodeBuilder;
 
 import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.I18N;
-import de.ailis.xadrian.support.ReverseIntegerComparator;
 
 /**
  * A sector.
@@ -76,8 +67,11 @@ public class Sector implements Serializable, Comparable<Sector>
     /** If this sector has a shipyard or not */
     private final boolean shipyard;
 
-    /** Array with asteroids in this sector */
-    private final Asteroid[] asteroids;
+    /** The asteroids in this sector */
+    private final AsteroidField asteroids;
+
+    /** The index of this sector in the lookup tables of the sector factory */
+    private int index = -1;
 
     /**
      * Constructor
@@ -109,14 +103,15 @@ public class Sector implements Serializable, Comparable<Sector>
      * @param westId
      *            The id of the sector behind the west gate
      * @param asteroids
-     *            Array with asteroids in this sector. May be null for
-     *            special sectors which have a dynamic asteroids list (Like
-     *            the player sector in X3TC).
+     *            The asteroids in this sector. May be null for special
+     *            sectors which have a dynamic asteroids list (Like the player
+     *            sector in X3TC).
      */
     public Sector(final Game game, final String id, final int x, final int y,
         final Race race, final int planets, final Sun suns, final boolean core,
         final boolean shipyard, final String northId, final String eastId,
-        final String southId, final String westId, final Asteroid[] asteroids)
+        final String southId, final String westId,
+        final AsteroidField asteroids)
     {
         if (game == null)
             throw new IllegalArgumentException("game must be set");
@@ -134,7 +129,7 @@ public class Sector implements Serializable, Comparable<Sector>
         this.southId = southId;
         this.westId = westId;
         this.eastId = eastId;
-        this.asteroids = asteroids == null ? null : asteroids.clone();
+        this.asteroids = asteroids;
     }
 
     /**
@@ -312,6 +307,31 @@ public class Sector implements Serializable, Comparable<Sector>
         return this.game.getSectorFactory().getSector(this.eastId);
     }
 
+    /**
+     * Returns the index of this sector in the lookup tables of the sector
+     * factory. Returns -1 if the sector was not registered in a sector
+     * factory.
+     * 
+     * @return The sector index or -1 if not registered
+     */
+    public int getIndex()
+    {
+        return this.index;
+    }
+
+    /**
+     * Sets the index of this sector in the lookup tables of the sector
+     * factory. This is called by the sector factory after loading the
+     * sectors and must not be called from anywhere else.
+     * 
+     * @param index
+     *            The sector index to set
+     */
+    public void setIndex(final int index)
+    {
+        this.index = index;
+    }
+
     /**
      * Returns the size of the sector. This size is chosen so all objects in it
      * fit into this sector size. So this size can be used as the width and
@@ -321,19 +341,7 @@ public class Sector implements Serializable, Comparable<Sector>
      */
     public int getSize()
     {
-        int maxX = 0;
-        int maxY = 0;
-        int maxZ = 0;
-
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            maxX = Math.max(maxX, Math.abs(asteroid.getX()));
-            maxY = Math.max(maxY, Math.abs(asteroid.getY()));
-            maxZ = Math.max(maxZ, Math.abs(asteroid.getZ()));
-        }
-
-        return Math.max(50000,
-            Math.max(Math.max(maxX, maxY), maxZ) * 2 + 10000);
+        return getAsteroidField().getSize();
     }
 
     /**
@@ -347,48 +355,7 @@ public class Sector implements Serializable, Comparable<Sector>
      */
     public int getDistance(final Sector dest)
     {
-        final Set<Sector> seen = new HashSet<Sector>();
-        Set<Sector> todo = new HashSet<Sector>();
-
-        // We begin with the current sector and a distance of 0
-        todo.add(this);
-        int distance = 0;
-
-        // This loop is repeated until no more TODOs are present. If the
-        // target sector is reached then the loop is exited with a return
-        while (todo.size() > 0)
-        {
-            final Set<Sector> newTodo = new HashSet<Sector>();
-            for (final Sector sector : todo)
-            {
-                // When we have reached our destination sector then return
-                // the distance traveled so far
-                if (dest.equals(sector)) return distance;
-
-                // Mark this sector as already seen
-                seen.add(sector);
-
-                // Add the sectors which can be reached from the current sector
-                // to the new TODOs list if they are not already seen
-                Sector tmp = sector.getNorth();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-                tmp = sector.getEast();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-                tmp = sector.getWest();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-                tmp = sector.getSouth();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-            }
-
-            // In the next run process our new TODOs list
-            todo = newTodo;
-
-            // Increment the distance
-            distance++;
-        }
-
-        // No more TODOs and target sector was not reached
-        return -1;
+        return this.game.getSectorFactory().getDistance(this, dest);
     }
 
     /**
@@ -401,131 +368,91 @@ public class Sector implements Serializable, Comparable<Sector>
      */
     public Sector getNearestKitSellingSector()
     {
-        final Config config = Config.getInstance();
-        final Set<Sector> seen = new HashSet<Sector>();
-        Set<Sector> todo = new HashSet<Sector>();
+        return this.game.getSectorFactory().getNearestKitSellingSector(this);
+    }
 
-        // We begin with the current sector
-        todo.add(this);
+    /**
+     * Returns the asteroid field of this sector.
+     * 
+     * @return The asteroid field
+     */
+    public AsteroidField getAsteroidField()
+    {
+        return this.asteroids;
+    }
 
-        // This loop is repeated until no more TODOs are present. If the
-        // target sector is reached then the loop is exited with a return
-        while (todo.size() > 0)
-        {
-            final Set<Sector> newTodo = new HashSet<Sector>();
-            for (final Sector sector : todo)
-            {
-                // When we have reached a sector with a shipyard and the player
-                // can buy complex construction kits from it then return it.
-                if (sector.hasShipyard() 
-                    && !config.isRaceIgnored(sector.getRace())
-                    && !sector.getRace().getId().equals("xenon")                   
-                    && (!sector.getRace().getId().equals("terran") 
-                        || !this.game.isX3TC())) return sector;
-
-                // Mark this sector as already seen
-                seen.add(sector);
-
-                // Add the sectors which can be reached from the current sector
-                // to the new TODOs list if they are not already seen
-                Sector tmp = sector.getNorth();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-                tmp = sector.getEast();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-                tmp = sector.getWest();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-                tmp = sector.getSouth();
-                if (tmp != null && !seen.contains(tmp)) newTodo.add(tmp);
-            }
-
-            // In the next run process our new TODOs list
-            todo = newTodo;
-        }
+    /**
+     * Returns the asteroids.
+     * 
+     * @return The asteroids. Unmodifiable.
+     */
+    public List<Asteroid> getAsteroids()
+    {
+        return getAsteroidField().getAsteroids();
+    }
 
-        // No more TODOs and no shipyard was found
-        return null;
+    /**
+     * Returns the asteroids of the specified ware sorted by descending yield.
+     * 
+     * @param wareId
+     *            The id of the asteroid ware
+     * @return The asteroids. Unmodifiable.
+     */
+    private List<Asteroid> getAsteroids(final String wareId)
+    {
+        return getAsteroidField().getAsteroids(getWare(wareId));
     }
 
     /**
-     * Returns the array with asteroids.
+     * Returns the ware with the specified id.
      * 
-     * @return The array with asteroids.
+     * @param wareId
+     *            The ware id
+     * @return The ware or null if the game has no such ware
      */
-    public Asteroid[] getAsteroids()
+    private Ware getWare(final String wareId)
     {
-        return this.asteroids.clone();
+        return this.game.getWareFactory().getWare(wareId);
     }
 
     /**
      * Returns the silicon asteroids of this sector.
      * 
-     * @return The silicon asteroids
+     * @return The silicon asteroids. Unmodifiable.
      */
-    public Asteroid[] getSiliconAsteroids()
+    public List<Asteroid> getSiliconAsteroids()
     {
-        final SortedSet<Asteroid> asteroids = new TreeSet<Asteroid>();
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            if (asteroid.getWare().isSiliconWafers())
-            {
-                asteroids.add(asteroid);
-            }
-        }
-        return asteroids.toArray(new Asteroid[asteroids.size()]);
+        return getAsteroids("siliconWafers");
     }
 
     /**
      * Returns the ore asteroids of this sector.
      * 
-     * @return The ore asteroids
+     * @return The ore asteroids. Unmodifiable.
      */
-    public Asteroid[] getOreAsteroids()
+    public List<Asteroid> getOreAsteroids()
     {
-        final SortedSet<Asteroid> asteroids = new TreeSet<Asteroid>();
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            if (asteroid.getWare().isOre())
-            {
-                asteroids.add(asteroid);
-            }
-        }
-        return asteroids.toArray(new Asteroid[asteroids.size()]);
+        return getAsteroids("ore");
     }
 
     /**
      * Returns the ice asteroids of this sector.
      * 
-     * @return The ice asteroids
+     * @return The ice asteroids. Unmodifiable.
      */
-    public Asteroid[] getIceAsteroids()
+    public List<Asteroid> getIceAsteroids()
     {
-        final SortedSet<Asteroid> asteroids = new TreeSet<Asteroid>();
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            if (asteroid.getWare().isIce())
-            {
-                asteroids.add(asteroid);
-            }
-        }
-        return asteroids.toArray(new Asteroid[asteroids.size()]);
+        return getAsteroids("ice");
     }
 
     /**
      * Returns the nividium asteroids of this sector.
      * 
-     * @return The nividium asteroids
+     * @return The nividium asteroids. Unmodifiable.
      */
-    public Asteroid[] getNividiumAsteroids()
+    public List<Asteroid> getNividiumAsteroids()
     {
-        final SortedSet<Asteroid> asteroids = new TreeSet<Asteroid>();
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            if (asteroid.getWare().isNividium())
-            {
-                asteroids.add(asteroid);
-            }
-        }
-        return asteroids.toArray(new Asteroid[asteroids.size()]);
+        return getAsteroids("nividium");
     }
 
     /**
@@ -535,15 +462,7 @@ public class Sector implements Serializable, Comparable<Sector>
      */
     public int getTotalSiliconYield()
     {
-        int yield = 0;
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            if (asteroid.getWare().isSiliconWafers())
-            {
-                yield += asteroid.getYield();
-            }
-        }
-        return yield;
+        return getAsteroidField().getTotalYield(getWare("siliconWafers"));
     }
 
     /**
@@ -553,15 +472,7 @@ public class Sector implements Serializable, Comparable<Sector>
      */
     public int getTotalOreYield()
     {
-        int yield = 0;
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            if (asteroid.getWare().isOre())
-            {
-                yield += asteroid.getYield();
-            }
-        }
-        return yield;
+        return getAsteroidField().getTotalYield(getWare("ore"));
     }
 
     /**
@@ -571,15 +482,7 @@ public class Sector implements Serializable, Comparable<Sector>
      */
     public int getTotalNividiumYield()
     {
-        int yield = 0;
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            if (asteroid.getWare().isNividium())
-            {
-                yield += asteroid.getYield();
-            }
-        }
-        return yield;
+        return getAsteroidField().getTotalYield(getWare("nividium"));
     }
 
     /**
@@ -589,75 +492,67 @@ public class Sector implements Serializable, Comparable<Sector>
      */
     public int getTotalIceYield()
     {
-        int yield = 0;
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            if (asteroid.getWare().isIce())
-            {
-                yield += asteroid.getYield();
-            }
-        }
-        return yield;
+        return getAsteroidField().getTotalYield(getWare("ice"));
     }
 
     /**
      * Returns the silicon color of this sector. The brighter the more silicon
      * is available.
      * 
-     * @return The silicon color
+     * @return The silicon color as RGB value (0xRRGGBB)
      */
-    public Color getSiliconColor()
+    public int getSiliconColor()
     {
         final int max = this.game.getSectorFactory().getMaxSiliconYield();
         final int cur = getTotalSiliconYield();
-        if (cur == 0) return Color.BLACK;
+        if (cur == 0) return 0;
         final int intensity = Math.min(200, 200 * cur / max) + 55;
-        return new Color(0, intensity, intensity);
+        return intensity << 8 | intensity;
     }
 
     /**
      * Returns the ore color of this sector. The brighter the more ore is
      * available.
      * 
-     * @return The ore color
+     * @return The ore color as RGB value (0xRRGGBB)
      */
-    public Color getOreColor()
+    public int getOreColor()
     {
         final int max = this.game.getSectorFactory().getMaxOreYield();
         final int cur = getTotalOreYield();
-        if (cur == 0) return Color.BLACK;
+        if (cur == 0) return 0;
         final int intensity = Math.min(200, 200 * cur / max) + 55;
-        return new Color(0, intensity, intensity);
+        return intensity << 8 | intensity;
     }
 
     /**
      * Returns the nividium color of this sector. The brighter the more ore is
      * available.
      * 
-     * @return The nividium color
+     * @return The nividium color as RGB value (0xRRGGBB)
      */
-    public Color getNividiumColor()
+    public int getNividiumColor()
     {
         final int max = this.game.getSectorFactory().getMaxNividiumYield();
         final int cur = getTotalNividiumYield();
-        if (cur == 0) return Color.BLACK;
+        if (cur == 0) return 0;
         final int intensity = Math.min(200, 200 * cur / max) + 55;
-        return new Color(0, intensity, intensity);
+        return intensity << 8 | intensity;
     }
 
     /**
      * Returns the ice color of this sector. The brighter the more ore is
      * available.
      * 
-     * @return The ice color
+     * @return The ice color as RGB value (0xRRGGBB)
      */
-    public Color getIceColor()
+    public int getIceColor()
     {
         final int max = this.game.getSectorFactory().getMaxIceYield();
         final int cur = getTotalIceYield();
-        if (cur == 0) return Color.BLACK;
+        if (cur == 0) return 0;
         final int intensity = Math.min(200, 200 * cur / max) + 55;
-        return new Color(0, intensity, intensity);
+        return intensity << 8 | intensity;
     }
 
     /**
@@ -666,28 +561,11 @@ public class Sector implements Serializable, Comparable<Sector>
      * 
      * @param wareId
      *            The id of the asteroid ware to search for
-     * @return The yield map
+     * @return The yield map. Unmodifiable.
      */
     public SortedMap<Integer, Integer> getYieldsMap(final String wareId)
     {
-        final SortedMap<Integer, Integer> yields =
-            new TreeMap<Integer, Integer>(new ReverseIntegerComparator());
-
-        // Iterate over all asteroids
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            // If this asteroid is not of the searched type then ignore it
-            if (!wareId.equals(asteroid.getWare().getId())) continue;
-
-            // Update the yield in the yields map
-            final int yield = asteroid.getYield();
-            Integer oldQuantity = yields.get(yield);
-            if (oldQuantity == null) oldQuantity = 0;
-            yields.put(yield, oldQuantity + 1);
-        }
-
-        // Return the yields map
-        return yields;
+        return getAsteroidField().getYieldsMap(getWare(wareId));
     }
 
     /**
@@ -696,21 +574,11 @@ public class Sector implements Serializable, Comparable<Sector>
      * @param wareId
      *            The id of the asteroid ware
      * @return The list with the yields. Can be empty. Never null.
+     *         Unmodifiable.
      */
     public List<Integer> getYields(final String wareId)
     {
-        final List<Integer> yields = new ArrayList<Integer>();
-
-        // Iterate over all asteroids
-        for (final Asteroid asteroid : getAsteroids())
-        {
-            // If this asteroid is not of the searched type then ignore it
-            if (!wareId.equals(asteroid.getWare().getId())) continue;
-
-            yields.add(asteroid.getYield());
-        }
-        Collections.sort(yields, new ReverseIntegerComparator());
-        return yields;
+        return getAsteroidField().getYields(getWare(wareId));
     }
 
     /**
@@ -722,9 +590,7 @@ public class Sector implements Serializable, Comparable<Sector>
      */
     public boolean hasAsteroid(final Asteroid asteroid)
     {
-        for (final Asteroid sectorAsteroid : getAsteroids())
-            if (sectorAsteroid.equals(asteroid)) return true;
-        return false;
+        return getAsteroidField().contains(asteroid);
     }
 
     /**
@@ -0,0 +1,150 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import java.io.Serializable;
+
+/**
+ * A station in a sector. Stations are stored compactly in the station index
+ * of the sector factory. Station objects are only created when requested.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class Station implements Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 4739926401384521377L;
+
+    /** The station id */
+    private final String id;
+
+    /** The sector in which the station is located */
+    private final Sector sector;
+
+    /** The station class (factory, tradingDock, bigShipyard, ...) */
+    private final String stationClass;
+
+    /** The station type. For factories this is the factory ID */
+    private final String type;
+
+    /** The X position */
+    private final int x;
+
+    /** The Y position */
+    private final int y;
+
+    /** The Z position */
+    private final int z;
+
+    /**
+     * Constructor
+     *
+     * @param id
+     *            The station ID
+     * @param sector
+     *            The sector in which the station is located
+     * @param stationClass
+     *            The station class
+     * @param type
+     *            The station type
+     * @param x
+     *            The X position
+     * @param y
+     *            The Y position
+     * @param z
+     *            The Z position
+     */
+    public Station(final String id, final Sector sector,
+        final String stationClass, final String type, final int x,
+        final int y, final int z)
+    {
+        this.id = id;
+        this.sector = sector;
+        this.stationClass = stationClass;
+        this.type = type;
+        this.x = x;
+        this.y = y;
+        this.z = z;
+    }
+
+    /**
+     * Returns the station id.
+     *
+     * @return The station id
+     */
+    public String getId()
+    {
+        return this.id;
+    }
+
+    /**
+     * Returns the sector in which the station is located.
+     *
+     * @return The sector
+     */
+    public Sector getSector()
+    {
+        return this.sector;
+    }
+
+    /**
+     * Returns the station class.
+     *
+     * @return The station class
+     */
+    public String getStationClass()
+    {
+        return this.stationClass;
+    }
+
+    /**
+     * Returns the station type. For factories this is the factory ID.
+     *
+     * @return The station type
+     */
+    public String getType()
+    {
+        return this.type;
+    }
+
+    /**
+     * Returns the X position.
+     *
+     * @return The X position
+     */
+    public int getX()
+    {
+        return this.x;
+    }
+
+    /**
+     * Returns the Y position.
+     *
+     * @return The Y position
+     */
+    public int getY()
+    {
+        return this.y;
+    }
+
+    /**
+     * Returns the Z position.
+     *
+     * @return The Z position
+     */
+    public int getZ()
+    {
+        return this.z;
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        return this.id + " (" + this.type + ")";
+    }
+}
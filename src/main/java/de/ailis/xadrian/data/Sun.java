@@ -4,7 +4,6 @@
  */
 package de.ailis.xadrian.data;
 
-import java.awt.Color;
 import java.io.Serializable;
 
 import org.apache.commons.lang.builder.EqualsBuilder;
@@ -120,12 +119,12 @@ public class Sun implements Serializable, Comparable<Sun>
     /**
      * Returns the color of the sun.
      *
-     * @return The color of the sun
+     * @return The color of the sun as RGB value (0xRRGGBB)
      */
-    public Color getColor()
+    public int getColor()
     {
         final int intensity = Math.min(255, 255 * this.percent
             / this.game.getSunFactory().getMaxPercent());
-        return new Color(intensity, intensity, 0);
+        return intensity << 16 | intensity << 8;
     }
 }
@@ -0,0 +1,439 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.data;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.support.DynaBytes;
+
+/**
+ * A decoded template code. The template code is validated and decoded in a
+ * single pass directly on the decoded byte array. When the template code is
+ * invalid then the decoded template code describes the error instead of the
+ * complex. The format of template codes is described in the README file.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class TemplateCode
+{
+    /**
+     * The types of errors which can be found in a template code.
+     */
+    public static enum ErrorType
+    {
+        /** The template code is not valid base64 */
+        BAD_BASE64,
+
+        /** The template code ends before all values have been read */
+        TRUNCATED,
+
+        /** A value does not fit into an integer */
+        BAD_VALUE,
+
+        /** The game is unknown */
+        UNKNOWN_GAME,
+
+        /** There is no sector at the specified coordinates */
+        UNKNOWN_SECTOR,
+
+        /** There are no suns with the specified power */
+        UNKNOWN_SUNS,
+
+        /** The factory nid is unknown */
+        UNKNOWN_FACTORY,
+
+        /** An asteroid yield is out of range */
+        BAD_YIELD,
+
+        /** A factory quantity is zero */
+        BAD_QUANTITY
+    }
+
+    /** The base64 value of each ASCII character. -1 for invalid ones */
+    private static final byte[] BASE64_VALUES = new byte[128];
+
+    static
+    {
+        Arrays.fill(BASE64_VALUES, (byte) -1);
+        final String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZ"
+            + "abcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++)
+            BASE64_VALUES[alphabet.charAt(i)] = (byte) i;
+    }
+
+    /** The maximum asteroid yield value (The yield plus one) */
+    private static final int MAX_YIELD_VALUE = Factory.MAX_YIELD + 1;
+
+    /** The error type. Null if template code is valid */
+    private ErrorType errorType;
+
+    /** The error message. Null if template code is valid */
+    private String errorMessage;
+
+    /** The game. Null if template code is invalid */
+    private Game game;
+
+    /** The sector. Null if no sector is set */
+    private Sector sector;
+
+    /** The suns. Null if a sector is set */
+    private Sun suns;
+
+    /** The number of factory entries */
+    private int count;
+
+    /** The factories */
+    private Factory[] factories = new Factory[8];
+
+    /** The quantities of the factories */
+    private int[] quantities = new int[8];
+
+    /** The asteroid yields of the factories. Null for non-mines */
+    private int[][] yields = new int[8][];
+
+    /** The decoded bytes. Only used while decoding */
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor. Use {@link #decode(String)} to create a template code.
+     */
+    private TemplateCode()
+    {
+        // Empty
+    }
+
+    /**
+     * Decodes the specified template code. Never throws an exception for
+     * invalid template codes. Use {@link #isValid()} to check if decoding
+     * was successful.
+     *
+     * @param templateCode
+     *            The template code to decode
+     * @return The decoded template code. Never null
+     */
+    public static TemplateCode decode(final String templateCode)
+    {
+        final TemplateCode decoded = new TemplateCode();
+        final byte[] data = decodeBase64(templateCode.trim());
+        if (data == null)
+        {
+            decoded.fail(ErrorType.BAD_BASE64, "Invalid base64 data");
+        }
+        else
+        {
+            decoded.buffer = ByteBuffer.wrap(data);
+            decoded.read();
+            decoded.buffer = null;
+        }
+        return decoded;
+    }
+
+    /**
+     * Decodes a base64 string into a byte array. Padding characters are
+     * optional.
+     *
+     * @param string
+     *            The base64 string
+     * @return The decoded bytes or null if string is not valid base64
+     */
+    private static byte[] decodeBase64(final String string)
+    {
+        int length = string.length();
+        if (length % 4 == 0 && length > 0 && string.charAt(length - 1) == '=')
+        {
+            length--;
+            if (string.charAt(length - 1) == '=') length--;
+        }
+        if (length % 4 == 1) return null;
+        final byte[] bytes = new byte[length * 3 / 4];
+        int bits = 0, buffer = 0, index = 0;
+        for (int i = 0; i < length; i++)
+        {
+            final char c = string.charAt(i);
+            final int value = c < 128 ? BASE64_VALUES[c] : -1;
+            if (value < 0) return null;
+            buffer = (buffer << 6) | value;
+            bits += 6;
+            if (bits >= 8)
+            {
+                bits -= 8;
+                bytes[index++] = (byte) (buffer >> bits);
+            }
+        }
+        return bytes;
+    }
+
+    /**
+     * Reads the template from the decoded bytes.
+     */
+    private void read()
+    {
+        // Read complex settings
+        final int settings = readValue();
+        if (settings < 0) return;
+        final boolean hasSector = (settings & 1) == 1;
+        final int gameNid = (settings >> 1) & 7;
+        final GameFactory gameFactory = GameFactory.getInstance();
+        if (!gameFactory.hasGame(gameNid))
+        {
+            fail(ErrorType.UNKNOWN_GAME, "Unknown game nid " + gameNid);
+            return;
+        }
+        final Game game = gameFactory.getGame(gameNid);
+
+        // Read sector coordinates or sun power
+        if (hasSector)
+        {
+            final int x = readValue();
+            if (x < 0) return;
+            final int y = readValue();
+            if (y < 0) return;
+            this.sector = game.getSectorFactory().getSector(x, y);
+            if (this.sector == null)
+            {
+                fail(ErrorType.UNKNOWN_SECTOR, "No sector at " + x + "/" + y);
+                return;
+            }
+        }
+        else
+        {
+            final int percent = readValue();
+            if (percent < 0) return;
+            if (!game.getSunFactory().hasSun(percent))
+            {
+                fail(ErrorType.UNKNOWN_SUNS, "There are no " + percent
+                    + "% suns");
+                return;
+            }
+            this.suns = game.getSunFactory().getSun(percent);
+        }
+
+        // Read factories
+        int factoryNid;
+        while ((factoryNid = readValue()) != 0)
+        {
+            if (factoryNid < 0) return;
+            final Factory factory =
+                game.getFactoryFactory().getFactory(factoryNid);
+            if (factory == null)
+            {
+                fail(ErrorType.UNKNOWN_FACTORY, "Unknown factory nid "
+                    + factoryNid);
+                return;
+            }
+            if (this.count == this.factories.length)
+            {
+                final int capacity = this.count * 2;
+                this.factories = Arrays.copyOf(this.factories, capacity);
+                this.quantities = Arrays.copyOf(this.quantities, capacity);
+                this.yields = Arrays.copyOf(this.yields, capacity);
+            }
+            if (factory.isMine())
+            {
+                int[] mineYields = new int[4];
+                int quantity = 0;
+                int value;
+                while ((value = readValue()) != 0)
+                {
+                    if (value < 0) return;
+                    if (value > MAX_YIELD_VALUE)
+                    {
+                        fail(ErrorType.BAD_YIELD, "Invalid asteroid yield "
+                            + (value - 1));
+                        return;
+                    }
+                    if (quantity == mineYields.length)
+                        mineYields = Arrays.copyOf(mineYields, quantity * 2);
+                    mineYields[quantity++] = value - 1;
+                }
+                this.yields[this.count] = Arrays.copyOf(mineYields, quantity);
+                this.quantities[this.count] = quantity;
+            }
+            else
+            {
+                final int quantity = readValue();
+                if (quantity < 0) return;
+                if (quantity == 0)
+                {
+                    fail(ErrorType.BAD_QUANTITY, "Invalid quantity 0 of "
+                        + "factory nid " + factoryNid);
+                    return;
+                }
+                this.quantities[this.count] = quantity;
+            }
+            this.factories[this.count++] = factory;
+        }
+        this.game = game;
+    }
+
+    /**
+     * Reads the next dynamically sized value from the decoded bytes.
+     *
+     * @return The value or -1 if the data is truncated or the value does not
+     *         fit into an integer. The error is already recorded then.
+     */
+    private int readValue()
+    {
+        try
+        {
+            final int value = DynaBytes.read(this.buffer);
+            if (value >= 0) return value;
+        }
+        catch (final BufferUnderflowException e)
+        {
+            fail(ErrorType.TRUNCATED, "Template code is truncated");
+            return -1;
+        }
+        catch (final IllegalArgumentException e)
+        {
+            // Reported below
+        }
+        fail(ErrorType.BAD_VALUE, "Template code contains a too large value");
+        return -1;
+    }
+
+    /**
+     * Records an error.
+     *
+     * @param errorType
+     *            The error type
+     * @param errorMessage
+     *            The error message
+     */
+    private void fail(final ErrorType errorType, final String errorMessage)
+    {
+        this.errorType = errorType;
+        this.errorMessage = errorMessage;
+        this.sector = null;
+        this.suns = null;
+        this.count = 0;
+    }
+
+    /**
+     * Checks if the template code is valid.
+     *
+     * @return True if template code is valid, false if not
+     */
+    public boolean isValid()
+    {
+        return this.errorType == null;
+    }
+
+    /**
+     * Returns the error type.
+     *
+     * @return The error type. Null if template code is valid
+     */
+    public ErrorType getErrorType()
+    {
+        return this.errorType;
+    }
+
+    /**
+     * Returns the error message.
+     *
+     * @return The error message. Null if template code is valid
+     */
+    public String getErrorMessage()
+    {
+        return this.errorMessage;
+    }
+
+    /**
+     * Returns the game.
+     *
+     * @return The game. Null if template code is invalid
+     */
+    public Game getGame()
+    {
+        return this.game;
+    }
+
+    /**
+     * Returns the sector.
+     *
+     * @return The sector. Null if no sector is set or template code is
+     *         invalid
+     */
+    public Sector getSector()
+    {
+        return this.sector;
+    }
+
+    /**
+     * Returns the suns.
+     *
+     * @return The suns. Null if a sector is set or template code is invalid
+     */
+    public Sun getSuns()
+    {
+        return this.suns;
+    }
+
+    /**
+     * Returns the number of factory entries.
+     *
+     * @return The number of factory entries
+     */
+    public int getFactoryCount()
+    {
+        return this.count;
+    }
+
+    /**
+     * Returns the factory of the specified entry.
+     *
+     * @param index
+     *            The entry index
+     * @return The factory
+     */
+    public Factory getFactory(final int index)
+    {
+        if (index < 0 || index >= this.count)
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        return this.factories[index];
+    }
+
+    /**
+     * Returns the quantity of the specified entry. For mines this is the
+     * number of asteroid yields.
+     *
+     * @param index
+     *            The entry index
+     * @return The quantity
+     */
+    public int getQuantity(final int index)
+    {
+        if (index < 0 || index >= this.count)
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        return this.quantities[index];
+    }
+
+    /**
+     * Returns the asteroid yields of the specified entry.
+     *
+     * @param index
+     *            The entry index
+     * @return The asteroid yields. Null if factory is not a mine
+     */
+    public List<Integer> getYields(final int index)
+    {
+        if (index < 0 || index >= this.count)
+            throw new IndexOutOfBoundsException("Invalid index: " + index);
+        final int[] values = this.yields[index];
+        if (values == null) return null;
+        final List<Integer> list = new ArrayList<Integer>(values.length);
+        for (final int value: values)
+            list.add(value);
+        return Collections.unmodifiableList(list);
+    }
+}
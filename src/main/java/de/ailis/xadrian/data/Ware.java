@@ -24,6 +24,9 @@ public class Ware implements Serializable, Comparable<Ware>
     /** The product id */
     private final String id;
 
+    /** The dense ordinal of the ware within its game */
+    private final int ordinal;
+
     /** The minimum price */
     private final int minPrice;
 
@@ -52,6 +55,8 @@ public class Ware implements Serializable, Comparable<Ware>
      *            The game.
      * @param id
      *            The race id
+     * @param ordinal
+     *            The dense ordinal of the ware within its game
      * @param minPrice
      *            The minimum price
      * @param avgPrice
@@ -63,12 +68,13 @@ public class Ware implements Serializable, Comparable<Ware>
      * @param container
      *            The container class
      */
-    public Ware(final Game game, final String id, final int minPrice,
-        final int avgPrice, final int maxPrice, final int volume,
-        final Container container)
+    public Ware(final Game game, final String id, final int ordinal,
+        final int minPrice, final int avgPrice, final int maxPrice,
+        final int volume, final Container container)
     {
         this.game = game;
         this.id = id;
+        this.ordinal = ordinal;
         this.minPrice = minPrice;
         this.avgPrice = avgPrice;
         this.maxPrice = maxPrice;
@@ -86,6 +92,18 @@ public class Ware implements Serializable, Comparable<Ware>
     {
         return this.id;
     }
+
+    /**
+     * Returns the ordinal of the ware. The wares of a game are numbered from
+     * 0 to the number of wares minus one so the ordinal can be used as an
+     * array index.
+     *
+     * @return The ordinal
+     */
+    public int getOrdinal()
+    {
+        return this.ordinal;
+    }
     
     /**
      * Checks if this ware is ice.
@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.data;
+
+import java.io.Serializable;
+import java.util.Arrays;
+
+import de.ailis.xadrian.data.factories.WareFactory;
+
+/**
+ * A quantity per ware of a game stored in a primitive array indexed by the
+ * ware ordinals. Used to accumulate productions, resources and capacities
+ * without creating objects for every single factory.
+ *
+ * The vector counts how many quantities (even zero ones) have been added to
+ * each ware. This allows to distinguish between wares which are not involved
+ * at all and wares which are involved but have a quantity of zero (for
+ * example because of a disabled factory). Quantities can be subtracted again
+ * to update a vector incrementally. When the last quantity of a ware has
+ * been subtracted then the ware is unused again and its quantity is reset to
+ * exactly zero so rounding errors can't accumulate.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class WareVector implements Serializable
+{
+    /** Serial version UID */
+    private static final long serialVersionUID = 6391562437718209470L;
+
+    /** The ware factory used to resolve ordinals */
+    private final WareFactory wareFactory;
+
+    /** The quantities indexed by ware ordinal */
+    private final double[] quantities;
+
+    /** The number of added quantities indexed by ware ordinal */
+    private final int[] counts;
+
+    /**
+     * Constructor
+     *
+     * @param game
+     *            The game
+     */
+    public WareVector(final Game game)
+    {
+        this.wareFactory = game.getWareFactory();
+        final int size = this.wareFactory.getWareCount();
+        this.quantities = new double[size];
+        this.counts = new int[size];
+    }
+
+    /**
+     * Copy constructor
+     *
+     * @param vector
+     *            The vector to copy
+     */
+    public WareVector(final WareVector vector)
+    {
+        this.wareFactory = vector.wareFactory;
+        this.quantities = vector.quantities.clone();
+        this.counts = vector.counts.clone();
+    }
+
+    /**
+     * Returns the size of the vector. This is the number of wares of the
+     * game.
+     *
+     * @return The size of the vector
+     */
+    public int size()
+    {
+        return this.quantities.length;
+    }
+
+    /**
+     * Returns the ware with the specified ordinal.
+     *
+     * @param ordinal
+     *            The ware ordinal
+     * @return The ware
+     */
+    public Ware getWare(final int ordinal)
+    {
+        return this.wareFactory.getWare(ordinal);
+    }
+
+    /**
+     * Returns the quantity of the specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @return The quantity
+     */
+    public double get(final Ware ware)
+    {
+        return this.quantities[ware.getOrdinal()];
+    }
+
+    /**
+     * Returns the quantity of the ware with the specified ordinal.
+     *
+     * @param ordinal
+     *            The ware ordinal
+     * @return The quantity
+     */
+    public double get(final int ordinal)
+    {
+        return this.quantities[ordinal];
+    }
+
+    /**
+     * Checks if a quantity was added for the ware with the specified
+     * ordinal.
+     *
+     * @param ordinal
+     *            The ware ordinal
+     * @return True if ware is used, false if not
+     */
+    public boolean isUsed(final int ordinal)
+    {
+        return this.counts[ordinal] > 0;
+    }
+
+    /**
+     * Adds the specified quantity to the specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @param quantity
+     *            The quantity to add
+     */
+    public void add(final Ware ware, final double quantity)
+    {
+        final int ordinal = ware.getOrdinal();
+        this.quantities[ordinal] += quantity;
+        this.counts[ordinal]++;
+    }
+
+    /**
+     * Subtracts the specified quantity from the specified ware. This reverts
+     * a previous {@link #add(Ware, double)} call with the same quantity.
+     *
+     * @param ware
+     *            The ware
+     * @param quantity
+     *            The quantity to subtract
+     */
+    public void subtract(final Ware ware, final double quantity)
+    {
+        final int ordinal = ware.getOrdinal();
+        if (--this.counts[ordinal] <= 0)
+        {
+            this.counts[ordinal] = 0;
+            this.quantities[ordinal] = 0;
+        }
+        else
+            this.quantities[ordinal] -= quantity;
+    }
+
+    /**
+     * Adds all quantities of the specified vector to this vector.
+     *
+     * @param vector
+     *            The vector to add
+     */
+    public void add(final WareVector vector)
+    {
+        final double[] otherQuantities = vector.quantities;
+        final int[] otherCounts = vector.counts;
+        for (int i = 0; i < otherQuantities.length; i++)
+        {
+            if (otherCounts[i] == 0) continue;
+            this.quantities[i] += otherQuantities[i];
+            this.counts[i] += otherCounts[i];
+        }
+    }
+
+    /**
+     * Resets all quantities to zero and marks all wares as unused.
+     */
+    public void clear()
+    {
+        Arrays.fill(this.quantities, 0);
+        Arrays.fill(this.counts, 0);
+    }
+
+    /**
+     * @see java.lang.Object#toString()
+     */
+    @Override
+    public String toString()
+    {
+        final StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < this.quantities.length; i++)
+        {
+            if (this.counts[i] == 0) continue;
+            if (builder.length() > 1) builder.append(", ");
+            builder.append(getWare(i).getId()).append('=')
+                .append(this.quantities[i]);
+        }
+        return builder.append(']').toString();
+    }
+}
@@ -5,8 +5,8 @@
 
 package de.ailis.xadrian.data.factories;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -16,12 +16,6 @@ import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
-
-import de.ailis.xadrian.Main;
 import de.ailis.xadrian.data.Capacity;
 import de.ailis.xadrian.data.Factory;
 import de.ailis.xadrian.data.FactorySize;
@@ -31,7 +25,6 @@ import de.ailis.xadrian.data.Race;
 import de.ailis.xadrian.data.Sector;
 import de.ailis.xadrian.data.Ware;
 import de.ailis.xadrian.exceptions.DataException;
-import de.ailis.xadrian.frames.SplashFrame;
 import de.ailis.xadrian.support.Config;
 
 /**
@@ -58,6 +51,20 @@ public class FactoryFactory implements Serializable
     /** The factories (sorted) */
     private final SortedSet<Factory> factories = new TreeSet<Factory>();
 
+    /** The factories index (for quick ware ID navigation) */
+    private final Map<String, WareFactories> wareFactoriesMap =
+        new HashMap<String, WareFactories>();
+
+    /** The factories of each race (for quick race ID navigation) */
+    private final Map<String, List<Factory>> raceFactoriesMap =
+        new HashMap<String, List<Factory>>();
+
+    /**
+     * The version of the ignored races for which the ignore-dependent parts
+     * of the factories index have been built. -1 if not built yet.
+     */
+    private volatile int indexVersion = -1;
+
     /** The configuration */
     private final static Config config = Config.getInstance();
 
@@ -66,103 +73,283 @@ public class FactoryFactory implements Serializable
      * 
      * @param game
      *            The game for which this factory is responsible.
+     * @param source
+     *            The source to read the data from.
      */
-    public FactoryFactory(final Game game)
+    public FactoryFactory(final Game game, final GameSource source)
     {
         this.game = game;
-        readData();
-        SplashFrame.advanceProgress();
+        if (source.hasSnapshot())
+            readSnapshot(source.getSection(GameSnapshot.Section.FACTORIES));
+        else
+            readData(source.getParser("factories.xml"));
+        for (final XmlStreamParser delta
+            : source.getDeltaParsers("factories.xml"))
+            readData(delta);
+        buildIndex();
+        GameFactory.getInstance().fireLoadProgress();
     }
 
     /**
-     * Reads the data from the XML file.
+     * Reads the data from the XML file. The factories are built directly
+     * while the file is parsed. This is also used for the delta files in
+     * which case the read factories replace the existing factories with the
+     * same ID.
+     *
+     * @param parser
+     *            The streaming XML parser positioned on the root element
      */
-    private void readData()
+    private void readData(final XmlStreamParser parser)
     {
-        String gameId = this.game.getId();
-        URL url = Main.class.getResource("/" + gameId + "/factories.xml");
-        if (url == null)
-            url = Main.class.getResource("data/" + gameId + "/factories.xml");
-        final SAXReader reader = new SAXReader();
-        try
+        final WareFactory wareFactory = this.game.getWareFactory();
+        final RaceFactory raceFactory = this.game.getRaceFactory();
+        final SectorFactory sectorFactory = this.game.getSectorFactory();
+        final List<Product> resources = new ArrayList<Product>();
+        final List<Capacity> storage = new ArrayList<Capacity>();
+        final List<Sector> manufacturers = new ArrayList<Sector>();
+        while (parser.nextChild())
         {
-            final Document document = reader.read(url);
-            final WareFactory wareFactory = this.game.getWareFactory();
-            final RaceFactory raceFactory = this.game.getRaceFactory();
-            for (final Object item : document.getRootElement().elements(
-                "factory"))
+            if (!parser.getName().equals("factory"))
             {
-                final Element element = (Element) item;
-                final String id = element.attributeValue("id");
-                final int nid = Integer.parseInt(element.attributeValue("nid"));
-                FactorySize size;
-                final String sizeStr = element.attributeValue("size");
-                if (sizeStr == null)
-                    size = FactorySize.S;
-                else
-                    size = FactorySize.valueOf(sizeStr);
-                final Race race = raceFactory.getRace(element
-                    .attributeValue("race"));
-                final int cycle = Integer.parseInt(element
-                    .attributeValue("cycle"));
-                final int price = Integer.parseInt(element
-                    .attributeValue("price"));
-                final int volume = Integer.parseInt(element
-                    .attributeValue("volume"));
-
-                final Element productElement = element.element("product");
-                final Ware productWare = wareFactory.getWare(productElement
-                    .attributeValue("ware"));
-                final int productQuantity = Integer.parseInt(productElement
-                    .attributeValue("quantity"));
-                final Product product = new Product(productWare,
-                    productQuantity);
-
-                final List<?> resItems = element.elements("resource");
-                final Product[] resources = new Product[resItems.size()];
-                final Capacity[] storage = new Capacity[resItems.size() + 1];
-                storage[0] = new Capacity(product.getWare(), Integer
-                    .parseInt(productElement.attributeValue("storage")));
-                int i = 0;
-                for (final Object resItem : resItems)
+                parser.skip();
+                continue;
+            }
+            final String id = parser.getAttribute("id");
+            final int nid = parser.getIntAttribute("nid");
+            FactorySize size;
+            final String sizeStr = parser.getAttribute("size");
+            if (sizeStr == null)
+                size = FactorySize.S;
+            else
+                size = FactorySize.valueOf(sizeStr);
+            final Race race = raceFactory.getRace(parser.getAttribute("race"));
+            final int cycle = parser.getIntAttribute("cycle");
+            final int price = parser.getIntAttribute("price");
+            final int volume = parser.getIntAttribute("volume");
+
+            Product product = null;
+            Capacity productStorage = null;
+            resources.clear();
+            storage.clear();
+            manufacturers.clear();
+            while (parser.nextChild())
+            {
+                final String name = parser.getName();
+                if (name.equals("product"))
                 {
-                    final Element resElement = (Element) resItem;
-                    final Ware resWare = wareFactory.getWare(resElement
-                        .attributeValue("ware"));
-                    final int resQuantity = Integer.parseInt(resElement
-                        .attributeValue("quantity"));
-                    final int resStorage = Integer.parseInt(resElement
-                        .attributeValue("storage"));
-                    resources[i] = new Product(resWare, resQuantity);
-                    storage[i + 1] = new Capacity(resWare, resStorage);
-                    i++;
+                    final Ware ware = wareFactory.getWare(parser
+                        .getAttribute("ware"));
+                    product = new Product(ware,
+                        parser.getIntAttribute("quantity"));
+                    productStorage = new Capacity(ware,
+                        parser.getIntAttribute("storage"));
                 }
-
-                final List<?> manuItems = element.elements("manufacturer");
-                final Sector[] manufacturers = new Sector[manuItems.size()];
-                i = 0;
-                for (final Object manuItem : manuItems)
+                else if (name.equals("resource"))
                 {
-                    final Element manuElement = (Element) manuItem;
-                    manufacturers[i] = this.game.getSectorFactory().getSector(
-                            manuElement.attributeValue("sector"));
-                    i++;
+                    final Ware ware = wareFactory.getWare(parser
+                        .getAttribute("ware"));
+                    resources.add(new Product(ware,
+                        parser.getIntAttribute("quantity")));
+                    storage.add(new Capacity(ware,
+                        parser.getIntAttribute("storage")));
                 }
-                Arrays.sort(resources);
-                Arrays.sort(storage);
-                final Factory factory =
-                    new Factory(this.game, nid, id, size, race, cycle,
-                        product, price, volume, resources, storage,
-                        manufacturers);
-                this.factories.add(factory);
-                this.factoryNidMap.put(nid, factory);
-                this.factoryMap.put(id, factory);
+                else if (name.equals("manufacturer"))
+                {
+                    manufacturers.add(sectorFactory.getSector(parser
+                        .getAttribute("sector")));
+                }
+                parser.skip();
+            }
+            if (product == null)
+                throw new DataException("Factory " + id + " has no product");
+            storage.add(0, productStorage);
+
+            final Product[] resourceArray =
+                resources.toArray(new Product[resources.size()]);
+            final Capacity[] storageArray =
+                storage.toArray(new Capacity[storage.size()]);
+            Arrays.sort(resourceArray);
+            Arrays.sort(storageArray);
+            addFactory(new Factory(this.game, nid, id, size, race, cycle,
+                product, price, volume, resourceArray, storageArray,
+                manufacturers.toArray(new Sector[manufacturers.size()])));
+        }
+        parser.close();
+    }
+
+    /**
+     * Reads the data from the snapshot.
+     *
+     * @param in
+     *            The snapshot section input
+     */
+    private void readSnapshot(final GameSnapshot.Input in)
+    {
+        try
+        {
+            final WareFactory wareFactory = this.game.getWareFactory();
+            final RaceFactory raceFactory = this.game.getRaceFactory();
+            final SectorFactory sectorFactory = this.game.getSectorFactory();
+            for (int i = in.readInt(); i > 0; i--)
+            {
+                final int nid = in.readInt();
+                final String id = in.readString();
+                final FactorySize size = FactorySize.valueOf(in.readString());
+                final Race race = raceFactory.getRace(in.readString());
+                final int cycle = in.readInt();
+                final int price = in.readInt();
+                final int volume = in.readInt();
+                final Product product = new Product(wareFactory.getWare(in
+                    .readString()), in.readInt());
+
+                final Product[] resources = new Product[in.readInt()];
+                for (int j = 0; j < resources.length; j++)
+                    resources[j] = new Product(wareFactory.getWare(in
+                        .readString()), in.readInt());
+
+                final Capacity[] storage = new Capacity[in.readInt()];
+                for (int j = 0; j < storage.length; j++)
+                    storage[j] = new Capacity(wareFactory.getWare(in
+                        .readString()), in.readInt());
+
+                final Sector[] manufacturers = new Sector[in.readInt()];
+                for (int j = 0; j < manufacturers.length; j++)
+                    manufacturers[j] = sectorFactory.getSector(in.readString());
+
+                addFactory(new Factory(this.game, nid, id, size, race, cycle,
+                    product, price, volume, resources, storage,
+                    manufacturers));
+            }
+        }
+        catch (final IOException e)
+        {
+            throw new DataException("Unable to read game snapshot: " + e, e);
+        }
+    }
+
+    /**
+     * Writes the data to a snapshot. Resources and storage capacities are
+     * written in their already sorted order.
+     *
+     * @param out
+     *            The snapshot section output
+     * @throws IOException
+     *             When write fails
+     */
+    void writeSnapshot(final GameSnapshot.Output out) throws IOException
+    {
+        out.writeInt(this.factories.size());
+        for (final Factory factory : this.factories)
+        {
+            out.writeInt(factory.getNid());
+            out.writeString(factory.getId());
+            out.writeString(factory.getSize().name());
+            out.writeString(factory.getRace().getId());
+            out.writeInt(factory.getCycle());
+            out.writeInt(factory.getPrice());
+            out.writeInt(factory.getVolume());
+            final Product product = factory.getProduct();
+            out.writeString(product.getWare().getId());
+            out.writeInt((int) product.getQuantity());
+
+            final Product[] resources = factory.getResources();
+            out.writeInt(resources.length);
+            for (final Product resource : resources)
+            {
+                out.writeString(resource.getWare().getId());
+                out.writeInt((int) resource.getQuantity());
+            }
+
+            final Capacity[] storage = factory.getCapacities();
+            out.writeInt(storage.length);
+            for (final Capacity capacity : storage)
+            {
+                out.writeString(capacity.getWare().getId());
+                out.writeInt((int) capacity.getQuantity());
+            }
+
+            final Sector[] manufacturers = factory.getManufacturers();
+            out.writeInt(manufacturers.length);
+            for (final Sector manufacturer : manufacturers)
+                out.writeString(manufacturer == null ? null : manufacturer
+                    .getId());
+        }
+    }
+
+    /**
+     * Adds a factory. An existing factory with the same ID is replaced.
+     *
+     * @param factory
+     *            The factory to add
+     */
+    private void addFactory(final Factory factory)
+    {
+        final Factory replaced = this.factoryMap.get(factory.getId());
+        if (replaced != null)
+        {
+            this.factories.remove(replaced);
+            this.factoryNidMap.remove(replaced.getNid());
+        }
+        this.factories.add(factory);
+        this.factoryNidMap.put(factory.getNid(), factory);
+        this.factoryMap.put(factory.getId(), factory);
+    }
+
+    /**
+     * Builds the ware/size/race index of the factories. The factories are
+     * added in their sorted order so the index returns the same factories as
+     * a scan over all factories would.
+     */
+    private void buildIndex()
+    {
+        for (final Factory factory : this.factories)
+        {
+            final String wareId = factory.getProduct().getWare().getId();
+            WareFactories wareFactories = this.wareFactoriesMap.get(wareId);
+            if (wareFactories == null)
+            {
+                wareFactories = new WareFactories();
+                this.wareFactoriesMap.put(wareId, wareFactories);
+            }
+            wareFactories.add(factory);
+
+            final String raceId = factory.getRace().getId();
+            List<Factory> raceFactories = this.raceFactoriesMap.get(raceId);
+            if (raceFactories == null)
+            {
+                raceFactories = new ArrayList<Factory>();
+                this.raceFactoriesMap.put(raceId, raceFactories);
             }
+            raceFactories.add(factory);
         }
-        catch (final DocumentException e)
+    }
+
+    /**
+     * Returns the index entry for the specified ware. If the ignored races
+     * have been changed since the last call then the ignore-dependent parts
+     * of the index are rebuilt first.
+     *
+     * @param ware
+     *            The ware
+     * @return The index entry or null if no factory produces the ware
+     */
+    private WareFactories getWareFactories(final Ware ware)
+    {
+        final int version = config.getIgnoredRacesVersion();
+        if (this.indexVersion != version)
         {
-            throw new DataException("Unable to read XML file: " + e, e);
+            synchronized (this)
+            {
+                if (this.indexVersion != version)
+                {
+                    for (final WareFactories wareFactories
+                        : this.wareFactoriesMap.values())
+                        wareFactories.update();
+                    this.indexVersion = version;
+                }
+            }
         }
+        return this.wareFactoriesMap.get(ware.getId());
     }
 
     /**
@@ -208,12 +395,9 @@ public class FactoryFactory implements Serializable
      */
     public List<Factory> getFactories(final Race race)
     {
-        final List<Factory> factories = new ArrayList<Factory>();
-        for (final Factory factory : this.factories)
-        {
-            if (factory.getRace().equals(race)) factories.add(factory);
-        }
-        return factories;
+        final List<Factory> factories = this.raceFactoriesMap.get(race.getId());
+        if (factories == null) return new ArrayList<Factory>();
+        return new ArrayList<Factory>(factories);
     }
 
     /**
@@ -241,17 +425,10 @@ public class FactoryFactory implements Serializable
      */
     public List<Factory> getFactories(final Ware ware, boolean useIgnores)
     {
-        final List<Factory> factories = new ArrayList<Factory>();
-        for (final Factory factory : this.factories)
-        {
-            // Ignore factories of ignored races.
-            if (useIgnores && config.isRaceIgnored(factory.getRace()))
-                continue;
-
-            if (factory.getProduct().getWare().equals(ware))
-                factories.add(factory);
-        }
-        return factories;
+        final WareFactories wareFactories = getWareFactories(ware);
+        if (wareFactories == null) return new ArrayList<Factory>();
+        return new ArrayList<Factory>(useIgnores ? wareFactories.allowed
+            .factories : wareFactories.factories);
     }
 
     /**
@@ -292,11 +469,12 @@ public class FactoryFactory implements Serializable
     public Factory getFactory(final Ware ware, final FactorySize size,
         final Race race, final boolean useIgnores)
     {
-        for (final Factory factory : getFactories(ware, size, useIgnores))
-        {
-            if (factory.getRace().equals(race)) return factory;
-        }
-        return null;
+        if (race == null) return null;
+        if (useIgnores && config.isRaceIgnored(race)) return null;
+        final WareFactories wareFactories = getWareFactories(ware);
+        if (wareFactories == null) return null;
+        return wareFactories.raceFactories.get(size.getIndex()).get(
+            race.getId());
     }
 
     /**
@@ -331,17 +509,10 @@ public class FactoryFactory implements Serializable
     public List<Factory> getFactories(final Ware ware, final FactorySize size,
         final boolean useIgnores)
     {
-        final List<Factory> factories = new ArrayList<Factory>();
-        for (final Factory factory : this.factories)
-        {
-            // Ignore factories of ignored races.
-            if (useIgnores && config.isRaceIgnored(factory.getRace()))
-                continue;
-
-            if (factory.getProduct().getWare().equals(ware)
-                && factory.getSize().equals(size)) factories.add(factory);
-        }
-        return factories;
+        final WareFactories wareFactories = getWareFactories(ware);
+        if (wareFactories == null) return new ArrayList<Factory>();
+        return new ArrayList<Factory>((useIgnores ? wareFactories.allowed
+            .sizeFactories : wareFactories.sizeFactories).get(size.getIndex()));
     }
 
     /**
@@ -407,18 +578,18 @@ public class FactoryFactory implements Serializable
         final Race race, final boolean useIgnores)
     {
         final SortedSet<FactorySize> sizes = new TreeSet<FactorySize>();
-
-        for (final Factory factory : this.factories)
+        final WareFactories wareFactories = getWareFactories(ware);
+        if (wareFactories == null) return sizes;
+        if (race == null)
         {
-            // Ignore race if it does not match the specified one
-            if (race != null && !factory.getRace().equals(race)) continue;
-
-            // Ignore factories of ignored races.
-            if (useIgnores && config.isRaceIgnored(factory.getRace()))
-                continue;
-
-            if (factory.getProduct().getWare().equals(ware))
-                sizes.add(factory.getSize());
+            sizes.addAll(useIgnores ? wareFactories.allowed.sizes
+                : wareFactories.sizes);
+        }
+        else if (!useIgnores || !config.isRaceIgnored(race))
+        {
+            for (final FactorySize size : FactorySize.values())
+                if (wareFactories.raceFactories.get(size.getIndex())
+                    .containsKey(race.getId())) sizes.add(size);
         }
         return sizes;
     }
@@ -455,28 +626,10 @@ public class FactoryFactory implements Serializable
     public Factory getCheapestFactory(final Ware ware, final FactorySize size,
         final boolean useIgnores)
     {
-        Factory cheapestFactory = null;
-        int cheapestPrice = Integer.MAX_VALUE;
-        for (final Factory factory : this.factories)
-        {
-            final boolean isIgnored = config.isRaceIgnored(factory.getRace());
-
-            // Ignore factories of ignored races.
-            if (useIgnores && isIgnored) continue;
-
-            // Get the factory price. Make factories of ignored races more
-            // expensive.
-            int price = factory.getPrice();
-            if (isIgnored) price *= 100;
-
-            if (factory.getProduct().getWare().equals(ware)
-                && factory.getSize().equals(size) && price < cheapestPrice)
-            {
-                cheapestFactory = factory;
-                cheapestPrice = price;
-            }
-        }
-        return cheapestFactory;
+        final WareFactories wareFactories = getWareFactories(ware);
+        if (wareFactories == null) return null;
+        return (useIgnores ? wareFactories.allowed.cheapestFactories
+            : wareFactories.allowed.cheapestAnyFactories)[size.getIndex()];
     }
 
     /**
@@ -495,14 +648,156 @@ public class FactoryFactory implements Serializable
         // If race is ignored then it can't have matching factories
         if (config.isRaceIgnored(race)) return false;
 
-        for (final Factory factory : this.factories)
+        final WareFactories wareFactories = getWareFactories(ware);
+        if (wareFactories == null) return false;
+        if (race == null) return true;
+        for (final Map<String, Factory> raceFactories : wareFactories
+            .raceFactories)
+            if (raceFactories.containsKey(race.getId())) return true;
+        return false;
+    }
+
+    /**
+     * Index entry with all factories producing a specific ware.
+     */
+    private static final class WareFactories implements Serializable
+    {
+        /** Serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        /** All factories producing the ware. */
+        final List<Factory> factories = new ArrayList<Factory>();
+
+        /** The factories producing the ware, indexed by factory size. */
+        final List<List<Factory>> sizeFactories =
+            new ArrayList<List<Factory>>();
+
+        /**
+         * The first factory of each race producing the ware, indexed by
+         * factory size and race ID.
+         */
+        final List<Map<String, Factory>> raceFactories =
+            new ArrayList<Map<String, Factory>>();
+
+        /** The available factory sizes. */
+        final SortedSet<FactorySize> sizes = new TreeSet<FactorySize>();
+
+        /** The data depending on the ignored races. */
+        volatile AllowedFactories allowed;
+
+        /**
+         * Constructor.
+         */
+        WareFactories()
         {
-            // Ignore race if it does not match the specified one
-            if (race != null && !factory.getRace().equals(race)) continue;
+            for (int i = FactorySize.values().length; i > 0; i--)
+            {
+                this.sizeFactories.add(new ArrayList<Factory>());
+                this.raceFactories.add(new HashMap<String, Factory>());
+            }
+        }
 
-            // Return true if matching factory produces the right ware.
-            if (factory.getProduct().getWare().equals(ware)) return true;
+        /**
+         * Adds a factory to the index entry.
+         *
+         * @param factory
+         *            The factory to add
+         */
+        void add(final Factory factory)
+        {
+            final FactorySize size = factory.getSize();
+            this.factories.add(factory);
+            this.sizeFactories.get(size.getIndex()).add(factory);
+            final Map<String, Factory> races =
+                this.raceFactories.get(size.getIndex());
+            final String raceId = factory.getRace().getId();
+            if (!races.containsKey(raceId)) races.put(raceId, factory);
+            this.sizes.add(size);
+        }
+
+        /**
+         * Rebuilds the data depending on the ignored races.
+         */
+        void update()
+        {
+            this.allowed = new AllowedFactories(this);
+        }
+    }
+
+    /**
+     * The part of a ware index entry which depends on the ignored races.
+     * Instances are immutable and are replaced as a whole when the ignored
+     * races are changed.
+     */
+    private static final class AllowedFactories implements Serializable
+    {
+        /** Serial version UID. */
+        private static final long serialVersionUID = 1L;
+
+        /** The factories of races which are not ignored. */
+        final List<Factory> factories = new ArrayList<Factory>();
+
+        /** The factories of races which are not ignored, indexed by size. */
+        final List<List<Factory>> sizeFactories =
+            new ArrayList<List<Factory>>();
+
+        /** The available factory sizes of races which are not ignored. */
+        final SortedSet<FactorySize> sizes = new TreeSet<FactorySize>();
+
+        /** The cheapest factories of not ignored races, indexed by size. */
+        final Factory[] cheapestFactories =
+            new Factory[FactorySize.values().length];
+
+        /**
+         * The cheapest factories of all races, indexed by size. Factories of
+         * ignored races are considered to be 100 times more expensive.
+         */
+        final Factory[] cheapestAnyFactories =
+            new Factory[FactorySize.values().length];
+
+        /**
+         * Constructor.
+         *
+         * @param wareFactories
+         *            The index entry to filter
+         */
+        AllowedFactories(final WareFactories wareFactories)
+        {
+            for (int i = FactorySize.values().length; i > 0; i--)
+                this.sizeFactories.add(new ArrayList<Factory>());
+            final long[] cheapestPrices =
+                new long[this.cheapestFactories.length];
+            final long[] cheapestAnyPrices =
+                new long[this.cheapestAnyFactories.length];
+            Arrays.fill(cheapestPrices, Integer.MAX_VALUE);
+            Arrays.fill(cheapestAnyPrices, Integer.MAX_VALUE);
+            for (final Factory factory : wareFactories.factories)
+            {
+                final int sizeIndex = factory.getSize().getIndex();
+                final boolean isIgnored = config.isRaceIgnored(factory
+                    .getRace());
+
+                // Get the factory price. Make factories of ignored races more
+                // expensive.
+                int price = factory.getPrice();
+                if (isIgnored) price *= 100;
+                if (price < cheapestAnyPrices[sizeIndex])
+                {
+                    this.cheapestAnyFactories[sizeIndex] = factory;
+                    cheapestAnyPrices[sizeIndex] = price;
+                }
+
+                // Ignore factories of ignored races.
+                if (isIgnored) continue;
+                this.factories.add(factory);
+                this.sizeFactories.get(sizeIndex).add(factory);
+                this.sizes.add(factory.getSize());
+                if (price < cheapestPrices[sizeIndex])
+                {
+                    this.cheapestFactories[sizeIndex] = factory;
+                    cheapestPrices[sizeIndex] = price;
+                }
+            }
         }
-        return false;
     }
 }
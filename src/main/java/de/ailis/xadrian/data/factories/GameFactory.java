@@ -12,39 +12,54 @@ import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
+import java.util.concurrent.CopyOnWriteArrayList;
 
 import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.Element;
 import org.dom4j.io.SAXReader;
 
-import de.ailis.xadrian.Main;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.exceptions.DataException;
 import de.ailis.xadrian.exceptions.GameNotFoundException;
-import de.ailis.xadrian.frames.SplashFrame;
+import de.ailis.xadrian.listeners.GameReloadListener;
+import de.ailis.xadrian.listeners.LoadProgressListener;
 
 /**
  * Factory for Game objects.
  * 
+ * The games can be replaced with reloaded games at runtime (See
+ * {@link GameWatcher}). The game maps are never modified. They are copied
+ * and replaced as a whole instead so readers always see a consistent state
+ * without locking.
+ * 
  * @author Klaus Reimer (k@ailis.de)
  */
 public class GameFactory
 {
     /** The game map (for quick textual ID navigation) */
-    private final Map<String, Game> gameMap = new HashMap<String, Game>();
+    private volatile Map<String, Game> gameMap = new HashMap<String, Game>();
 
     /** The game map (for quick numeric ID navigation) */
-    private final Map<Integer, Game> gameNidMap = new HashMap<Integer, Game>();
+    private volatile Map<Integer, Game> gameNidMap =
+        new HashMap<Integer, Game>();
 
     /** The games (sorted) */
-    private final SortedSet<Game> games = new TreeSet<Game>();
+    private volatile SortedSet<Game> games = new TreeSet<Game>();
+
+    /** The listeners which are informed about reloaded games */
+    private final List<GameReloadListener> reloadListeners =
+        new CopyOnWriteArrayList<GameReloadListener>();
+
+    /** The listeners which are informed about the game loading progress */
+    private final List<LoadProgressListener> loadProgressListeners =
+        new CopyOnWriteArrayList<LoadProgressListener>();
 
     /** The singleton instance */
     private final static GameFactory instance = new GameFactory();
 
     /** The default game. */
-    private Game defaultGame;
+    private volatile Game defaultGame;
 
     /**
      * Private constructor to prevent instantiation from outside.
@@ -69,14 +84,13 @@ public class GameFactory
      */
     private void readData()
     {
-        URL url = Main.class.getResource("/games.xml");
-        if (url == null) url = Main.class.getResource("data/games.xml");
+        URL url = Game.class.getResource("/games.xml");
+        if (url == null) url = Game.class.getResource("games.xml");
         final SAXReader reader = new SAXReader();
         try
         {
             final Document document = reader.read(url);
             List<Object> games = document.getRootElement().elements("game");
-            SplashFrame.setNumberOfGames(games.size());
             for (final Object item : games)
             {
                 final Element element = (Element) item;
@@ -108,6 +122,19 @@ public class GameFactory
         return Collections.unmodifiableSortedSet(this.games);
     }
 
+    /**
+     * Loads the data of all games concurrently and waits until all games are
+     * loaded. Each game is loaded in its own thread while the XML files of
+     * all games are parsed in parallel.
+     */
+    public void loadGames()
+    {
+        for (final Game game: this.games)
+            game.loadInBackground();
+        for (final Game game: this.games)
+            game.getSunFactory();
+    }
+
     /**
      * Returns the game with the specified textual id.
      * 
@@ -140,6 +167,18 @@ public class GameFactory
         return game;
     }
 
+    /**
+     * Checks if a game with the specified numeric id exists.
+     * 
+     * @param nid
+     *            The numeric game id
+     * @return True if game exists, false if not.
+     */
+    public boolean hasGame(final int nid)
+    {
+        return this.gameNidMap.containsKey(nid);
+    }
+
     /**
      * Returns the number of games.
      * 
@@ -160,6 +199,99 @@ public class GameFactory
         return this.defaultGame;
     }
 
+    /**
+     * Replaces a game with a reloaded version of it. The new game must
+     * have the same ID as the old one. The game maps are copied, modified
+     * and then swapped in so threads reading the games are never blocked.
+     * Afterwards the registered reload listeners are informed.
+     * 
+     * @param oldGame
+     *            The game to replace
+     * @param newGame
+     *            The reloaded game
+     */
+    void replaceGame(final Game oldGame, final Game newGame)
+    {
+        if (!oldGame.equals(newGame))
+            throw new IllegalArgumentException("Game " + newGame.getId()
+                + " can't replace game " + oldGame.getId());
+        synchronized (this)
+        {
+            if (this.gameMap.get(oldGame.getId()) != oldGame) return;
+            final SortedSet<Game> newGames = new TreeSet<Game>(this.games);
+            newGames.remove(oldGame);
+            newGames.add(newGame);
+            final Map<String, Game> newGameMap =
+                new HashMap<String, Game>(this.gameMap);
+            newGameMap.put(newGame.getId(), newGame);
+            final Map<Integer, Game> newGameNidMap =
+                new HashMap<Integer, Game>(this.gameNidMap);
+            newGameNidMap.put(newGame.getNid(), newGame);
+            this.games = newGames;
+            this.gameMap = newGameMap;
+            this.gameNidMap = newGameNidMap;
+            if (this.defaultGame == oldGame) this.defaultGame = newGame;
+        }
+        for (final GameReloadListener listener: this.reloadListeners)
+            listener.gameReloaded(oldGame, newGame);
+    }
+
+    /**
+     * Adds a listener which is informed when a game has been reloaded.
+     * 
+     * @param listener
+     *            The listener to add
+     */
+    public void addReloadListener(final GameReloadListener listener)
+    {
+        this.reloadListeners.add(listener);
+    }
+
+    /**
+     * Removes a game reload listener.
+     * 
+     * @param listener
+     *            The listener to remove
+     */
+    public void removeReloadListener(final GameReloadListener listener)
+    {
+        this.reloadListeners.remove(listener);
+    }
+
+    /**
+     * Adds a listener which is informed about the progress of loading game
+     * data.
+     * 
+     * @param listener
+     *            The listener to add
+     */
+    public void addLoadProgressListener(final LoadProgressListener listener)
+    {
+        this.loadProgressListeners.add(listener);
+    }
+
+    /**
+     * Removes a load progress listener.
+     * 
+     * @param listener
+     *            The listener to remove
+     */
+    public void removeLoadProgressListener(
+        final LoadProgressListener listener)
+    {
+        this.loadProgressListeners.remove(listener);
+    }
+
+    /**
+     * Informs the load progress listeners that a step of loading game data
+     * has been completed.
+     */
+    void fireLoadProgress()
+    {
+        for (final LoadProgressListener listener: this.loadProgressListeners)
+            listener.loadProgressed();
+    }
+
     /**
      * Checks if a game with the specified id exists.
      * 
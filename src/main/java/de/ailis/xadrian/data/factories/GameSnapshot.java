@@ -0,0 +1,633 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.txt file for licensing information.
+ */
+
+package de.ailis.xadrian.data.factories;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.data.Game;
+
+/**
+ * A compact binary snapshot of the game data of a single game. It is compiled
+ * from the XML files of the game during the build so the game data can be
+ * loaded at startup with a single read instead of parsing the XML files.
+ *
+ * The snapshot starts with a magic number and a format version followed by
+ * the size, the modification time and the CRC32 checksum of each XML file it
+ * was compiled from. Then comes a
+ * string table with all IDs and the sections of the suns, races, wares,
+ * sectors and factories. The sections only consist of fixed-width integer
+ * records. Strings are referenced by their index in the string table.
+ *
+ * A snapshot is ignored when it has a different format version or when one
+ * of its XML files has been changed since the snapshot was compiled. The
+ * game data is then read from the XML files. XML files located in the same
+ * archive as the snapshot are never checked. XML files in the file system
+ * are checked by size and modification time. Only if the modification time
+ * differs or the file is located somewhere else the file is read to compare
+ * its checksum.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class GameSnapshot
+{
+    /** The logger */
+    private static final Log log = LogFactory.getLog(GameSnapshot.class);
+
+    /** The file name of the snapshot in the game data directory */
+    public static final String FILENAME = "game.snapshot";
+
+    /** The magic number at the beginning of a snapshot ("XGSD") */
+    private static final int MAGIC = 0x58475344;
+
+    /** The format version. Must be increased on every format change */
+    private static final int VERSION = 3;
+
+    /** The XML files from which the snapshot is compiled */
+    static final String[] SOURCES = { "suns.xml", "races.xml",
+        "wares.xml", "sectors.xml", "factories.xml" };
+
+    /**
+     * The sections of a snapshot in the order in which they are stored.
+     */
+    static enum Section
+    {
+        /** The suns */
+        SUNS,
+
+        /** The races */
+        RACES,
+
+        /** The wares */
+        WARES,
+
+        /** The sectors */
+        SECTORS,
+
+        /** The factories */
+        FACTORIES
+    }
+
+    /** The string table */
+    private final String[] strings;
+
+    /** The snapshot data */
+    private final byte[] data;
+
+    /** The offsets of the sections in the data (plus the end offset) */
+    private final int[] offsets;
+
+    /**
+     * Constructor
+     *
+     * @param strings
+     *            The string table
+     * @param data
+     *            The snapshot data
+     * @param offsets
+     *            The offsets of the sections in the data plus the end offset
+     */
+    private GameSnapshot(final String[] strings, final byte[] data,
+        final int[] offsets)
+    {
+        this.strings = strings;
+        this.data = data;
+        this.offsets = offsets;
+    }
+
+    /**
+     * Returns the URL of the specified data file of a game.
+     *
+     * @param gameId
+     *            The game ID
+     * @param filename
+     *            The file name
+     * @return The URL or null if not found
+     */
+    static URL getResource(final String gameId, final String filename)
+    {
+        URL url = Game.class.getResource("/" + gameId + "/" + filename);
+        if (url == null)
+            url = Game.class.getResource(gameId + "/" + filename);
+        return url;
+    }
+
+    /**
+     * Reads the specified stream completely.
+     *
+     * @param stream
+     *            The stream to read. It is closed afterwards
+     * @return The read bytes
+     * @throws IOException
+     *             When stream could not be read
+     */
+    static byte[] readFully(final InputStream stream)
+        throws IOException
+    {
+        try
+        {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final byte[] buffer = new byte[65536];
+            int read;
+            while ((read = stream.read(buffer)) != -1)
+                bytes.write(buffer, 0, read);
+            return bytes.toByteArray();
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Returns the file of the specified URL.
+     *
+     * @param url
+     *            The URL
+     * @return The file or null if URL doesn't point to the file system
+     */
+    private static File getFile(final URL url)
+    {
+        if (!"file".equals(url.getProtocol())) return null;
+        try
+        {
+            return new File(url.toURI());
+        }
+        catch (final URISyntaxException e)
+        {
+            // Can't happen for file URLs returned by the class loader
+            return null;
+        }
+    }
+
+    /**
+     * Checks if the specified resources are located in the same archive.
+     *
+     * @param a
+     *            The first resource
+     * @param b
+     *            The second resource
+     * @return True if both resources are in the same archive, false if not
+     */
+    private static boolean isSameArchive(final URL a, final URL b)
+    {
+        if (!"jar".equals(a.getProtocol()) || !"jar".equals(b.getProtocol()))
+            return false;
+        final String pathA = a.getPath();
+        final String pathB = b.getPath();
+        final int index = pathA.indexOf("!/");
+        return index >= 0 && pathA.regionMatches(0, pathB, 0, index + 2);
+    }
+
+    /**
+     * Calculates the checksum of the specified resource.
+     *
+     * @param url
+     *            The URL of the resource
+     * @return The checksum
+     * @throws IOException
+     *             When resource could not be read
+     */
+    private static long getChecksum(final URL url) throws IOException
+    {
+        final CRC32 crc = new CRC32();
+        crc.update(readFully(url.openStream()));
+        return crc.getValue();
+    }
+
+    /**
+     * Writes the size, the modification time and the checksum of the XML
+     * files of the specified game. Missing files get a size of -1. Files
+     * which are not located in the file system get a modification time of 0.
+     *
+     * @param gameId
+     *            The game ID
+     * @param out
+     *            The stream to write to
+     * @throws IOException
+     *             When a file could not be read
+     */
+    private static void writeSources(final String gameId,
+        final DataOutputStream out) throws IOException
+    {
+        out.writeInt(SOURCES.length);
+        for (final String filename: SOURCES)
+        {
+            final URL url = getResource(gameId, filename);
+            if (url == null)
+            {
+                out.writeLong(-1);
+                out.writeLong(0);
+                out.writeLong(-1);
+                continue;
+            }
+            final byte[] data = readFully(url.openStream());
+            final CRC32 crc = new CRC32();
+            crc.update(data);
+            final File file = getFile(url);
+            out.writeLong(data.length);
+            out.writeLong(file == null ? 0 : file.lastModified());
+            out.writeLong(crc.getValue());
+        }
+    }
+
+    /**
+     * Checks if the XML files of the specified game have been changed since
+     * the snapshot was compiled.
+     *
+     * @param gameId
+     *            The game ID
+     * @param snapshot
+     *            The URL of the snapshot
+     * @param in
+     *            The stream to read the recorded file states from
+     * @return True if the snapshot is outdated, false if not
+     * @throws IOException
+     *             When the snapshot or a file could not be read
+     */
+    private static boolean isOutdated(final String gameId, final URL snapshot,
+        final DataInputStream in) throws IOException
+    {
+        if (in.readInt() != SOURCES.length) return true;
+        for (final String filename: SOURCES)
+        {
+            final long size = in.readLong();
+            final long modified = in.readLong();
+            final long checksum = in.readLong();
+            final URL url = getResource(gameId, filename);
+            if (url == null || size < 0)
+            {
+                if (url != null || size >= 0) return true;
+                continue;
+            }
+
+            // Files in the same archive as the snapshot can't be changed
+            if (isSameArchive(url, snapshot)) continue;
+
+            // Files in the file system are unchanged when size and
+            // modification time are the same
+            final File file = getFile(url);
+            if (file != null)
+            {
+                if (file.length() != size) return true;
+                if (file.lastModified() == modified) continue;
+            }
+
+            // Fall back to the checksum if the modification time has changed
+            // or the file is located somewhere else
+            if (log.isDebugEnabled())
+                log.debug("Comparing checksum of " + url);
+            if (getChecksum(url) != checksum) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Loads the snapshot of the specified game.
+     *
+     * @param gameId
+     *            The game ID
+     * @return The snapshot or null if there is no snapshot or if it is
+     *         outdated. The game data must be read from the XML files then.
+     */
+    public static GameSnapshot load(final String gameId)
+    {
+        final URL url = getResource(gameId, FILENAME);
+        if (url == null) return null;
+        try
+        {
+            final byte[] data = readFully(url.openStream());
+            final ByteArrayInputStream bytes = new ByteArrayInputStream(data);
+            final DataInputStream stream = new DataInputStream(bytes);
+
+            if (stream.readInt() != MAGIC || stream.readInt() != VERSION)
+            {
+                log.info("Ignoring incompatible game snapshot " + url);
+                return null;
+            }
+            if (isOutdated(gameId, url, stream))
+            {
+                log.info("Ignoring outdated game snapshot " + url);
+                return null;
+            }
+
+            final String[] strings = new String[stream.readInt()];
+            for (int i = 0; i < strings.length; i++)
+                strings[i] = stream.readUTF();
+
+            final int sections = Section.values().length;
+            final int[] offsets = new int[sections + 1];
+            final int[] lengths = new int[sections];
+            for (int i = 0; i < sections; i++)
+                lengths[i] = stream.readInt();
+            offsets[0] = data.length - bytes.available();
+            for (int i = 0; i < sections; i++)
+                offsets[i + 1] = offsets[i] + lengths[i];
+            if (offsets[sections] != data.length)
+            {
+                log.warn("Ignoring corrupt game snapshot " + url);
+                return null;
+            }
+            return new GameSnapshot(strings, data, offsets);
+        }
+        catch (final IOException e)
+        {
+            log.warn("Unable to read game snapshot " + url + ": " + e, e);
+            return null;
+        }
+    }
+
+    /**
+     * Returns the input for the specified section.
+     *
+     * @param section
+     *            The section
+     * @return The section input
+     */
+    Input getSection(final Section section)
+    {
+        final int index = section.ordinal();
+        return new Input(new DataInputStream(new ByteArrayInputStream(
+            this.data, this.offsets[index], this.offsets[index + 1]
+                - this.offsets[index])), this.strings);
+    }
+
+    /**
+     * Writes the snapshot of the specified game. The snapshot must only
+     * contain the base data because delta files are applied on top of it
+     * when it is loaded. So no snapshot can be written while delta files
+     * are present.
+     *
+     * @param game
+     *            The game
+     * @param stream
+     *            The stream to write the snapshot to. It is not closed
+     * @throws IOException
+     *             When snapshot could not be written
+     */
+    public static void write(final Game game, final OutputStream stream)
+        throws IOException
+    {
+        for (final String filename: SOURCES)
+            if (!GameSource.getDeltaResources(game.getId(), filename)
+                .isEmpty())
+                throw new IOException("Can't write snapshot of game "
+                    + game.getId() + " because of delta file for "
+                    + filename);
+        final Map<String, Integer> strings = new HashMap<String, Integer>();
+        final List<String> stringList = new ArrayList<String>();
+        final Section[] sections = Section.values();
+        final ByteArrayOutputStream[] sectionData =
+            new ByteArrayOutputStream[sections.length];
+        for (final Section section: sections)
+        {
+            final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            final Output output = new Output(new DataOutputStream(bytes),
+                strings, stringList);
+            switch (section)
+            {
+                case SUNS:
+                    game.getSunFactory().writeSnapshot(output);
+                    break;
+
+                case RACES:
+                    game.getRaceFactory().writeSnapshot(output);
+                    break;
+
+                case WARES:
+                    game.getWareFactory().writeSnapshot(output);
+                    break;
+
+                case SECTORS:
+                    game.getSectorFactory().writeSnapshot(output);
+                    break;
+
+                case FACTORIES:
+                    game.getFactoryFactory().writeSnapshot(output);
+                    break;
+            }
+            output.stream.flush();
+            sectionData[section.ordinal()] = bytes;
+        }
+
+        final DataOutputStream out = new DataOutputStream(stream);
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        writeSources(game.getId(), out);
+        out.writeInt(stringList.size());
+        for (final String string: stringList)
+            out.writeUTF(string);
+        for (final ByteArrayOutputStream bytes: sectionData)
+            out.writeInt(bytes.size());
+        for (final ByteArrayOutputStream bytes: sectionData)
+            bytes.writeTo(out);
+        out.flush();
+    }
+
+    /**
+     * Compiles the snapshots of all games. Used during the build.
+     *
+     * @param args
+     *            The command line arguments. The first argument is the data
+     *            directory in which the game directories are located.
+     * @throws IOException
+     *             When a snapshot could not be written
+     */
+    public static void main(final String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.err.println("Usage: GameSnapshot <data directory>");
+            System.exit(1);
+        }
+        final File directory = new File(args[0]);
+        final GameFactory gameFactory = GameFactory.getInstance();
+        gameFactory.loadGames();
+        for (final Game game: gameFactory.getGames())
+        {
+            final File file =
+                new File(new File(directory, game.getId()), FILENAME);
+            final OutputStream stream = new FileOutputStream(file);
+            try
+            {
+                write(game, stream);
+            }
+            finally
+            {
+                stream.close();
+            }
+            log.info("Wrote game snapshot " + file);
+        }
+    }
+
+    /**
+     * Input of a snapshot section.
+     */
+    static final class Input
+    {
+        /** The data stream */
+        private final DataInputStream stream;
+
+        /** The string table */
+        private final String[] strings;
+
+        /**
+         * Constructor
+         *
+         * @param stream
+         *            The data stream
+         * @param strings
+         *            The string table
+         */
+        Input(final DataInputStream stream, final String[] strings)
+        {
+            this.stream = stream;
+            this.strings = strings;
+        }
+
+        /**
+         * Reads an integer.
+         *
+         * @return The integer
+         * @throws IOException
+         *             When section data is corrupt
+         */
+        int readInt() throws IOException
+        {
+            return this.stream.readInt();
+        }
+
+        /**
+         * Reads a boolean.
+         *
+         * @return The boolean
+         * @throws IOException
+         *             When section data is corrupt
+         */
+        boolean readBoolean() throws IOException
+        {
+            return this.stream.readInt() != 0;
+        }
+
+        /**
+         * Reads a string from the string table.
+         *
+         * @return The string. May be null
+         * @throws IOException
+         *             When section data is corrupt
+         */
+        String readString() throws IOException
+        {
+            final int index = this.stream.readInt();
+            if (index < 0) return null;
+            if (index >= this.strings.length)
+                throw new IOException("Invalid string index: " + index);
+            return this.strings[index];
+        }
+    }
+
+    /**
+     * Output of a snapshot section.
+     */
+    static final class Output
+    {
+        /** The data stream */
+        final DataOutputStream stream;
+
+        /** The string indices */
+        private final Map<String, Integer> strings;
+
+        /** The string table */
+        private final List<String> stringList;
+
+        /**
+         * Constructor
+         *
+         * @param stream
+         *            The data stream
+         * @param strings
+         *            The string indices
+         * @param stringList
+         *            The string table
+         */
+        Output(final DataOutputStream stream,
+            final Map<String, Integer> strings, final List<String> stringList)
+        {
+            this.stream = stream;
+            this.strings = strings;
+            this.stringList = stringList;
+        }
+
+        /**
+         * Writes an integer.
+         *
+         * @param value
+         *            The integer to write
+         * @throws IOException
+         *             When write fails
+         */
+        void writeInt(final int value) throws IOException
+        {
+            this.stream.writeInt(value);
+        }
+
+        /**
+         * Writes a boolean.
+         *
+         * @param value
+         *            The boolean to write
+         * @throws IOException
+         *             When write fails
+         */
+        void writeBoolean(final boolean value) throws IOException
+        {
+            this.stream.writeInt(value ? 1 : 0);
+        }
+
+        /**
+         * Writes a string. Only the index of the string in the string table
+         * is written.
+         *
+         * @param value
+         *            The string to write. May be null
+         * @throws IOException
+         *             When write fails
+         */
+        void writeString(final String value) throws IOException
+        {
+            if (value == null)
+            {
+                this.stream.writeInt(-1);
+                return;
+            }
+            Integer index = this.strings.get(value);
+            if (index == null)
+            {
+                index = this.stringList.size();
+                this.stringList.add(value);
+                this.strings.put(value, index);
+            }
+            this.stream.writeInt(index);
+        }
+    }
+}
@@ -0,0 +1,365 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.txt file for licensing information.
+ */
+
+package de.ailis.xadrian.data.factories;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.dom4j.Document;
+import org.dom4j.DocumentException;
+import org.dom4j.io.SAXReader;
+
+import de.ailis.xadrian.exceptions.DataException;
+
+/**
+ * The source of the data of a game. This is the compiled snapshot of the game
+ * if available and up-to-date. Otherwise the XML files of the game are read
+ * concurrently as soon as the source is opened. The small XML files are
+ * parsed into documents in the background. The large XML files are only
+ * loaded in the background and are then parsed with a streaming parser by
+ * the data factories so they don't have to be held in memory as document
+ * trees. The data factories link the data together which must be done in
+ * the order of their dependencies.
+ *
+ * On top of this base data the source provides the delta files of the game.
+ * A delta file has the same format as the data file it modifies but only
+ * contains the added or changed entries. Each entry replaces the base entry
+ * with the same ID completely. Delta files are looked up as
+ * "&lt;gameId&gt;/delta/&lt;filename&gt;" in all class path entries so
+ * every mod can provide its own delta files in its own directory or JAR
+ * file. They are applied in class path order. Delta files are supported
+ * for wares.xml, sectors.xml and factories.xml.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class GameSource
+{
+    /** The number of threads used for parsing the XML files */
+    private static final int THREADS = Runtime.getRuntime()
+        .availableProcessors();
+
+    /** The large XML files which are parsed with a streaming parser */
+    private static final List<String> STREAMED = Arrays.asList(
+        "sectors.xml", "factories.xml");
+
+    /** The directory of the delta files inside of the game directory */
+    private static final String DELTA_DIRECTORY = "delta";
+
+    /** The shared executor. Created on first use */
+    private static ExecutorService executor;
+
+    /** The game ID */
+    private final String gameId;
+
+    /** The game snapshot. Null if XML files are used */
+    private final GameSnapshot snapshot;
+
+    /** The XML documents which are parsed in the background */
+    private final Map<String, Future<Document>> documents;
+
+    /** The contents of the streamed XML files loaded in the background */
+    private final Map<String, Future<byte[]>> contents;
+
+    /**
+     * Constructor
+     *
+     * @param gameId
+     *            The game ID
+     * @param snapshot
+     *            The game snapshot. Null if XML files are used
+     * @param documents
+     *            The XML documents which are parsed in the background. Null
+     *            if snapshot is used
+     * @param contents
+     *            The contents of the streamed XML files which are loaded in
+     *            the background. Null if snapshot is used
+     */
+    private GameSource(final String gameId, final GameSnapshot snapshot,
+        final Map<String, Future<Document>> documents,
+        final Map<String, Future<byte[]>> contents)
+    {
+        this.gameId = gameId;
+        this.snapshot = snapshot;
+        this.documents = documents;
+        this.contents = contents;
+    }
+
+    /**
+     * Opens the data source of the specified game. If there is no usable
+     * snapshot then reading the XML files is started in the background.
+     *
+     * @param gameId
+     *            The game ID
+     * @return The game data source. Never null
+     */
+    public static GameSource open(final String gameId)
+    {
+        final GameSnapshot snapshot = GameSnapshot.load(gameId);
+        if (snapshot != null)
+        {
+            for (int i = 0; i < GameSnapshot.SOURCES.length; i++)
+                GameFactory.getInstance().fireLoadProgress();
+            return new GameSource(gameId, snapshot, null, null);
+        }
+
+        final Map<String, Future<Document>> documents =
+            new HashMap<String, Future<Document>>();
+        final Map<String, Future<byte[]>> contents =
+            new HashMap<String, Future<byte[]>>();
+        for (final String filename: GameSnapshot.SOURCES)
+        {
+            final URL url = GameSnapshot.getResource(gameId, filename);
+            if (url == null)
+                throw new DataException("XML file not found: " + gameId
+                    + "/" + filename);
+            if (STREAMED.contains(filename))
+            {
+                contents.put(filename, getExecutor().submit(
+                    new Callable<byte[]>()
+                    {
+                        @Override
+                        public byte[] call() throws Exception
+                        {
+                            final byte[] data =
+                                GameSnapshot.readFully(url.openStream());
+                            GameFactory.getInstance().fireLoadProgress();
+                            return data;
+                        }
+                    }));
+            }
+            else
+            {
+                documents.put(filename, getExecutor().submit(
+                    new Callable<Document>()
+                    {
+                        @Override
+                        public Document call() throws Exception
+                        {
+                            final Document document =
+                                new SAXReader().read(url);
+                            GameFactory.getInstance().fireLoadProgress();
+                            return document;
+                        }
+                    }));
+            }
+        }
+        return new GameSource(gameId, null, documents, contents);
+    }
+
+    /**
+     * Returns the executor used for parsing the XML files. It is created on
+     * first access and uses daemon threads so it doesn't prevent the
+     * application from exiting.
+     *
+     * @return The executor
+     */
+    private static synchronized ExecutorService getExecutor()
+    {
+        if (executor == null)
+        {
+            executor = Executors.newFixedThreadPool(THREADS,
+                new ThreadFactory()
+                {
+                    private int counter = 0;
+
+                    @Override
+                    public synchronized Thread newThread(final Runnable r)
+                    {
+                        final Thread thread = new Thread(r,
+                            "GameSource-" + ++this.counter);
+                        thread.setDaemon(true);
+                        return thread;
+                    }
+                });
+        }
+        return executor;
+    }
+
+    /**
+     * Checks if the data is read from a snapshot.
+     *
+     * @return True if snapshot is used, false if XML files are used
+     */
+    boolean hasSnapshot()
+    {
+        return this.snapshot != null;
+    }
+
+    /**
+     * Returns the input for the specified snapshot section.
+     *
+     * @param section
+     *            The snapshot section
+     * @return The section input
+     */
+    GameSnapshot.Input getSection(final GameSnapshot.Section section)
+    {
+        return this.snapshot.getSection(section);
+    }
+
+    /**
+     * Waits for the result of the specified background task.
+     *
+     * @param future
+     *            The background task
+     * @param filename
+     *            The file name of the XML file read by the task
+     * @return The result of the task
+     * @throws DataException
+     *             When XML file could not be read
+     */
+    private static <T> T get(final Future<T> future, final String filename)
+    {
+        try
+        {
+            return future.get();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new DataException("Interrupted while reading XML file "
+                + filename, e);
+        }
+        catch (final ExecutionException e)
+        {
+            final Throwable cause = e.getCause();
+            if (cause instanceof DataException) throw (DataException) cause;
+            throw new DataException("Unable to read XML file " + filename
+                + ": " + cause, cause);
+        }
+    }
+
+    /**
+     * Returns the specified XML document. Waits until the document has been
+     * parsed.
+     *
+     * @param filename
+     *            The file name of the XML document
+     * @return The XML document
+     * @throws DataException
+     *             When XML document could not be read
+     */
+    Document getDocument(final String filename)
+    {
+        return get(this.documents.get(filename), filename);
+    }
+
+    /**
+     * Returns a streaming parser for the specified XML file. Waits until the
+     * file has been loaded.
+     *
+     * @param filename
+     *            The file name of the XML file
+     * @return The streaming parser positioned on the root element
+     * @throws DataException
+     *             When XML file could not be read
+     */
+    XmlStreamParser getParser(final String filename)
+    {
+        return new XmlStreamParser(new ByteArrayInputStream(get(
+            this.contents.get(filename), filename)), filename);
+    }
+
+    /**
+     * Returns the delta files of the specified data file of a game.
+     *
+     * @param gameId
+     *            The game ID
+     * @param filename
+     *            The file name of the data file
+     * @return The URLs of the delta files in class path order. Empty if
+     *         there are none
+     * @throws DataException
+     *             When class path could not be searched
+     */
+    static List<URL> getDeltaResources(final String gameId,
+        final String filename)
+    {
+        try
+        {
+            return Collections.list(GameSource.class.getClassLoader()
+                .getResources(gameId + "/" + DELTA_DIRECTORY + "/" + filename));
+        }
+        catch (final IOException e)
+        {
+            throw new DataException("Unable to search delta files for "
+                + gameId + "/" + filename + ": " + e, e);
+        }
+    }
+
+    /**
+     * Returns the parsed delta files of the specified data file.
+     *
+     * @param filename
+     *            The file name of the data file
+     * @return The XML documents of the delta files in the order in which
+     *         they must be applied. Empty if there are none
+     * @throws DataException
+     *             When a delta file could not be read
+     */
+    List<Document> getDeltaDocuments(final String filename)
+    {
+        final List<Document> deltas = new ArrayList<Document>();
+        for (final URL url: getDeltaResources(this.gameId, filename))
+        {
+            try
+            {
+                deltas.add(new SAXReader().read(url));
+            }
+            catch (final DocumentException e)
+            {
+                throw new DataException("Unable to read delta file " + url
+                    + ": " + e, e);
+            }
+        }
+        return deltas;
+    }
+
+    /**
+     * Returns streaming parsers for the delta files of the specified data
+     * file.
+     *
+     * @param filename
+     *            The file name of the data file
+     * @return The streaming parsers positioned on the root elements of the
+     *         delta files in the order in which they must be applied. Empty
+     *         if there are none
+     * @throws DataException
+     *             When a delta file could not be read
+     */
+    List<XmlStreamParser> getDeltaParsers(final String filename)
+    {
+        final List<XmlStreamParser> deltas = new ArrayList<XmlStreamParser>();
+        for (final URL url: getDeltaResources(this.gameId, filename))
+        {
+            try
+            {
+                deltas.add(new XmlStreamParser(new ByteArrayInputStream(
+                    GameSnapshot.readFully(url.openStream())),
+                    url.toString()));
+            }
+            catch (final IOException e)
+            {
+                throw new DataException("Unable to read delta file " + url
+                    + ": " + e, e);
+            }
+        }
+        return deltas;
+    }
+}
@@ -0,0 +1,199 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.txt file for licensing information.
+ */
+
+package de.ailis.xadrian.data.factories;
+
+import java.io.File;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.commons.logging.Log;
+import org.apache.commons.logging.LogFactory;
+
+import de.ailis.xadrian.data.Game;
+
+/**
+ * Watches the XML files and the delta files of the games for changes. This
+ * is meant for testing modified game data (For example for mods) without
+ * restarting the application.
+ *
+ * The modification times of the XML files are polled in a background
+ * thread. When the files of a loaded game have been changed then the game
+ * is loaded again into a new game object in the background. Only when
+ * this was successful the new game replaces the old one in the
+ * {@link GameFactory} which informs its reload listeners so open complexes
+ * can be rebound to the new game. Games which are not loaded yet are not
+ * reloaded because they read the changed files anyway when they are used.
+ *
+ * Only XML files which are located in the file system are watched. Files
+ * inside of JAR files are never changed.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class GameWatcher implements Runnable
+{
+    /** The logger */
+    private static final Log log = LogFactory.getLog(GameWatcher.class);
+
+    /** The polling interval in milliseconds */
+    private final long interval;
+
+    /** The last seen modification times of the XML files per game ID */
+    private final Map<String, long[]> modificationTimes =
+        new HashMap<String, long[]>();
+
+    /** The watcher thread. Null if not running */
+    private volatile Thread thread;
+
+    /**
+     * Constructor.
+     *
+     * @param interval
+     *            The polling interval in milliseconds
+     */
+    public GameWatcher(final long interval)
+    {
+        if (interval <= 0)
+            throw new IllegalArgumentException("interval must be positive");
+        this.interval = interval;
+    }
+
+    /**
+     * Starts watching the XML files in a background thread. Does nothing
+     * if already started.
+     */
+    public synchronized void start()
+    {
+        if (this.thread != null) return;
+        for (final Game game: GameFactory.getInstance().getGames())
+            this.modificationTimes.put(game.getId(),
+                getModificationTimes(game.getId()));
+        final Thread thread = new Thread(this, "GameWatcher");
+        thread.setDaemon(true);
+        this.thread = thread;
+        thread.start();
+    }
+
+    /**
+     * Stops watching the XML files.
+     */
+    public synchronized void stop()
+    {
+        final Thread thread = this.thread;
+        if (thread == null) return;
+        this.thread = null;
+        thread.interrupt();
+    }
+
+    /**
+     * @see java.lang.Runnable#run()
+     */
+    @Override
+    public void run()
+    {
+        while (this.thread == Thread.currentThread())
+        {
+            try
+            {
+                Thread.sleep(this.interval);
+            }
+            catch (final InterruptedException e)
+            {
+                return;
+            }
+            check();
+        }
+    }
+
+    /**
+     * Checks the XML files of all games for changes and reloads the games
+     * which have been changed.
+     */
+    void check()
+    {
+        for (final Game game: GameFactory.getInstance().getGames())
+        {
+            final String id = game.getId();
+            final long[] times = getModificationTimes(id);
+            final long[] lastTimes = this.modificationTimes.put(id, times);
+            if (lastTimes == null || Arrays.equals(times, lastTimes))
+                continue;
+            if (game.isLoaded()) reload(game);
+        }
+    }
+
+    /**
+     * Loads the specified game again and replaces it in the game factory.
+     * The old game stays in place when loading fails.
+     *
+     * @param game
+     *            The game to reload
+     */
+    private void reload(final Game game)
+    {
+        log.info("Reloading changed game data of " + game.getId());
+        final Game newGame = new Game(game.getNid(), game.getId());
+        try
+        {
+            newGame.getSunFactory();
+        }
+        catch (final RuntimeException e)
+        {
+            log.warn("Unable to reload game " + game.getId() + ": " + e, e);
+            return;
+        }
+        GameFactory.getInstance().replaceGame(game, newGame);
+    }
+
+    /**
+     * Returns the modification times of the XML files and delta files of
+     * the specified game.
+     *
+     * @param gameId
+     *            The game ID
+     * @return The modification times in the order of the XML files followed
+     *         by the modification times of the delta files. 0 for files
+     *         which are missing or not located in the file system
+     */
+    private static long[] getModificationTimes(final String gameId)
+    {
+        final List<URL> urls = new ArrayList<URL>();
+        for (final String filename: GameSnapshot.SOURCES)
+            urls.add(GameSnapshot.getResource(gameId, filename));
+        for (final String filename: GameSnapshot.SOURCES)
+            urls.addAll(GameSource.getDeltaResources(gameId, filename));
+        final long[] times = new long[urls.size()];
+        for (int i = 0; i < times.length; i++)
+            times[i] = getModificationTime(urls.get(i));
+        return times;
+    }
+
+    /**
+     * Returns the modification time of the specified file.
+     *
+     * @param url
+     *            The URL of the file. May be null
+     * @return The modification time. 0 if file is missing or not located in
+     *         the file system
+     */
+    private static long getModificationTime(final URL url)
+    {
+        if (url == null || !"file".equals(url.getProtocol())) return 0;
+        try
+        {
+            return new File(url.toURI()).lastModified();
+        }
+        catch (final URISyntaxException e)
+        {
+            // Can't happen for file URLs returned by the class loader
+            return 0;
+        }
+    }
+}
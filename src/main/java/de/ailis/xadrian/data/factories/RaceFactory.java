@@ -4,9 +4,8 @@
  */
 package de.ailis.xadrian.data.factories;
 
-import java.awt.Color;
+import java.io.IOException;
 import java.io.Serializable;
-import java.net.URL;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
@@ -16,15 +15,11 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.dom4j.Document;
-import org.dom4j.DocumentException;
 import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 
-import de.ailis.xadrian.Main;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Race;
 import de.ailis.xadrian.exceptions.DataException;
-import de.ailis.xadrian.frames.SplashFrame;
 
 /**
  * Factory for Race objects.
@@ -50,45 +45,90 @@ public class RaceFactory implements Serializable
      *
      * @param game
      *            The game for which this factory is responsible.
+     * @param source
+     *            The source to read the data from.
      */
-    public RaceFactory(final Game game)
+    public RaceFactory(final Game game, final GameSource source)
     {
         this.game = game;
-        readData();
-        SplashFrame.advanceProgress();
+        if (source.hasSnapshot())
+            readSnapshot(source.getSection(GameSnapshot.Section.RACES));
+        else
+            readData(source.getDocument("races.xml"));
+        GameFactory.getInstance().fireLoadProgress();
     }
 
     /**
      * Reads the data from the XML file.
+     *
+     * @param document
+     *            The parsed XML document
+     */
+    private void readData(final Document document)
+    {
+        for (final Object item : document.getRootElement().elements("race"))
+        {
+            final Element element = (Element) item;
+            final String id = element.attributeValue("id");
+            final String colorStr = element.attributeValue("color");
+            final int color = Integer.parseInt(colorStr.substring(1), 16);
+            addRace(new Race(this.game, id, color));
+        }
+    }
+
+    /**
+     * Reads the data from the snapshot.
+     *
+     * @param in
+     *            The snapshot section input
      */
-    private void readData()
+    private void readSnapshot(final GameSnapshot.Input in)
     {
-        String gameId = this.game.getId();
-        URL url = Main.class.getResource("/" + gameId + "/races.xml");
-        if (url == null)
-            url = Main.class.getResource("data/" + gameId + "/races.xml");
-        final SAXReader reader = new SAXReader();
         try
         {
-            final Document document = reader.read(url);
-            for (final Object item : document.getRootElement().elements("race"))
+            for (int i = in.readInt(); i > 0; i--)
             {
-                final Element element = (Element) item;
-                final String id = element.attributeValue("id");
-                final String colorStr = element.attributeValue("color");
-                final Color color = new Color(Integer.parseInt(colorStr
-                    .substring(1), 16));
-                final Race race = new Race(this.game, id, color);
-                this.races.add(race);
-                this.raceMap.put(id, race);
+                final String id = in.readString();
+                final int color = in.readInt();
+                addRace(new Race(this.game, id, color));
             }
         }
-        catch (final DocumentException e)
+        catch (final IOException e)
+        {
+            throw new DataException("Unable to read game snapshot: " + e, e);
+        }
+    }
+
+    /**
+     * Writes the data to a snapshot.
+     *
+     * @param out
+     *            The snapshot section output
+     * @throws IOException
+     *             When write fails
+     */
+    void writeSnapshot(final GameSnapshot.Output out) throws IOException
+    {
+        out.writeInt(this.races.size());
+        for (final Race race : this.races)
         {
-            throw new DataException("Unable to read XML file: " + e, e);
+            out.writeString(race.getId());
+            out.writeInt(race.getColor() & 0xffffff);
         }
     }
 
+    /**
+     * Adds a race.
+     *
+     * @param race
+     *            The race to add
+     */
+    private void addRace(final Race race)
+    {
+        this.races.add(race);
+        this.raceMap.put(race.getId(), race);
+    }
+
     /**
      * Returns all races.
      *
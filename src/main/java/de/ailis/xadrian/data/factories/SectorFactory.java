@@ -4,8 +4,11 @@
  */
 package de.ailis.xadrian.data.factories;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.net.URL;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
@@ -13,13 +16,7 @@ import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
-import org.dom4j.Document;
-import org.dom4j.DocumentException;
-import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
-
-import de.ailis.xadrian.Main;
-import de.ailis.xadrian.data.Asteroid;
+import de.ailis.xadrian.data.AsteroidField;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.PlayerSector;
 import de.ailis.xadrian.data.Race;
@@ -27,7 +24,7 @@ import de.ailis.xadrian.data.Sector;
 import de.ailis.xadrian.data.Sun;
 import de.ailis.xadrian.data.Ware;
 import de.ailis.xadrian.exceptions.DataException;
-import de.ailis.xadrian.frames.SplashFrame;
+import de.ailis.xadrian.support.Config;
 
 /**
  * Factory for Sector objects.
@@ -54,6 +51,12 @@ public class SectorFactory implements Serializable
     /** The maximum Y position */
     private int maxY = 0;
 
+    /**
+     * The sectors by coordinates (Index is y * (maxX + 1) + x). Only
+     * contains sectors with the ID "sec-X-Y" matching their coordinates.
+     */
+    private Sector[] sectorGrid;
+
     /** The maximum silicon yield in a single sector */
     private int maxSiliconYield = 0;
 
@@ -66,176 +69,587 @@ public class SectorFactory implements Serializable
     /** The maximum ice yield in a single sector */
     private int maxIceYield = 0;
 
+    /** The sectors in the order of their index */
+    private Sector[] indexedSectors;
+
+    /**
+     * The gate distances between all sectors. First dimension is the index
+     * of the source sector, second dimension is the index of the destination
+     * sector. Unreachable sectors have a distance of -1.
+     */
+    private short[][] distances;
+
+    /**
+     * The next hops on the shortest gate routes between all sectors. First
+     * dimension is the index of the source sector, second dimension is the
+     * index of the destination sector. The value is the index of the sector
+     * behind the gate to take next or -1 if there is no route.
+     */
+    private short[][] nextHops;
+
+    /**
+     * The sector indices ordered by their gate distance to each sector. First
+     * dimension is the index of the source sector. The second dimension
+     * starts with the source sector itself and only contains the reachable
+     * sectors.
+     */
+    private short[][] distanceOrders;
+
+    /**
+     * The indices of the sectors which have a gate leading to each sector.
+     * First dimension is the index of the destination sector.
+     */
+    private int[][] incomingGates;
+
+    /** The index of all stations */
+    private StationIndex stationIndex;
+
+    /**
+     * The nearest sector with a shipyard selling complex construction kits
+     * for each sector (indexed by sector index). Null entries mean that no
+     * such shipyard is reachable. The whole array is null if not calculated
+     * yet.
+     */
+    private transient Sector[] kitSellingSectors;
+
+    /**
+     * The version of the ignored races for which the kit selling sectors
+     * have been calculated.
+     */
+    private transient int kitSellingSectorsVersion;
+
     /**
      * Constructor.
      *
      * @param game
      *            The game for which this factory is responsible.
+     * @param source
+     *            The source to read the data from.
      */
-    public SectorFactory(final Game game)
+    public SectorFactory(final Game game, final GameSource source)
     {
         if (game == null)
             throw new IllegalArgumentException("game must be set");
         this.game = game;
-        readData();
-        SplashFrame.advanceProgress();
+        final List<Sector> sectorList = new ArrayList<Sector>();
+        final List<String[]> gateIds = new ArrayList<String[]>();
+        final StationIndex.Builder stations = new StationIndex.Builder();
+        if (source.hasSnapshot())
+            readSnapshot(source.getSection(GameSnapshot.Section.SECTORS),
+                sectorList, gateIds, stations);
+        else
+            readData(source.getParser("sectors.xml"), sectorList, gateIds,
+                stations);
+        for (final XmlStreamParser delta
+            : source.getDeltaParsers("sectors.xml"))
+            readData(delta, sectorList, gateIds, stations);
+        calculateLimits();
+        buildRoutes(sectorList, gateIds);
+        this.stationIndex = stations.build(this.game, this);
+        GameFactory.getInstance().fireLoadProgress();
+    }
+
+    /**
+     * Reads the data from the XML file. The sectors are built directly while
+     * the file is parsed. The stations are collected in the station index
+     * builder. This is also used for the delta files in which case the read
+     * sectors (including their stations and asteroids) replace the existing
+     * sectors with the same ID.
+     *
+     * @param parser
+     *            The streaming XML parser positioned on the root element
+     * @param sectorList
+     *            The list of sectors in the order in which they were read
+     * @param gateIds
+     *            The ids of the sectors behind the gates of each sector
+     * @param stations
+     *            The station index builder
+     */
+    private void readData(final XmlStreamParser parser,
+        final List<Sector> sectorList, final List<String[]> gateIds,
+        final StationIndex.Builder stations)
+    {
+        final RaceFactory raceFactory = this.game.getRaceFactory();
+        final SunFactory sunsFactory = this.game.getSunFactory();
+        while (parser.nextChild())
+        {
+            if (!parser.getName().equals("sector"))
+            {
+                parser.skip();
+                continue;
+            }
+            final String id = parser.getAttribute("id");
+            final Sector replaced = this.sectorMap.get(id);
+            final int index;
+            if (replaced == null)
+            {
+                index = sectorList.size();
+            }
+            else
+            {
+                index = sectorList.indexOf(replaced);
+                stations.replaceSector(index);
+            }
+            final int x = parser.getIntAttribute("x");
+            final int y = parser.getIntAttribute("y");
+            final int planets = parser.getIntAttribute("planets");
+            final Sun suns = sunsFactory.getSun(parser.getIntAttribute("suns"));
+            final Race race = raceFactory.getRace(parser.getAttribute("race"));
+            final boolean core = Boolean.parseBoolean(parser
+                .getAttribute("core"));
+            final String northId = parser.getAttribute("north");
+            final String eastId = parser.getAttribute("east");
+            final String southId = parser.getAttribute("south");
+            final String westId = parser.getAttribute("west");
+
+            boolean shipyard = false;
+            AsteroidField asteroids = null;
+            final List<AsteroidField> switches =
+                new ArrayList<AsteroidField>();
+            while (parser.nextChild())
+            {
+                final String name = parser.getName();
+                if (name.equals("stations"))
+                    shipyard |= readStations(parser, index, stations);
+                else if (name.equals("asteroids"))
+                    asteroids = getAsteroids(parser);
+                else if (name.equals("switch"))
+                    switches.add(getSwitchAsteroids(parser));
+                else
+                    parser.skip();
+            }
+
+            final Sector sector;
+            if (switches.isEmpty())
+            {
+                if (asteroids == null)
+                    asteroids = new AsteroidField.Builder(this.game).build();
+                sector =
+                    new Sector(this.game, id, x, y, race, planets, suns,
+                        core, shipyard, northId, eastId, southId, westId,
+                        asteroids);
+            }
+            else
+            {
+                sector =
+                    new PlayerSector(this.game, id, x, y, race, planets,
+                        suns, core, northId, eastId, southId, westId,
+                        switches.toArray(new AsteroidField[switches.size()]));
+            }
+
+            addSector(sector, new String[] { northId, eastId, southId,
+                westId }, sectorList, gateIds);
+        }
+        parser.close();
     }
 
     /**
-     * Reads the data from the XML file.
+     * Reads the data from the snapshot.
+     *
+     * @param in
+     *            The snapshot section input
+     * @param sectorList
+     *            The list to add the read sectors to
+     * @param gateIds
+     *            The list to add the ids of the sectors behind the gates of
+     *            each read sector to
+     * @param stations
+     *            The station index builder
      */
-    private void readData()
+    private void readSnapshot(final GameSnapshot.Input in,
+        final List<Sector> sectorList, final List<String[]> gateIds,
+        final StationIndex.Builder stations)
     {
-        String gameId = this.game.getId();
-        URL url = Main.class.getResource("/" + gameId + "/sectors.xml");
-        if (url == null)
-            url = Main.class.getResource("data/" + gameId + "/sectors.xml");
-        final SAXReader reader = new SAXReader();
         try
         {
             final RaceFactory raceFactory = this.game.getRaceFactory();
             final SunFactory sunsFactory = this.game.getSunFactory();
-            final Document document = reader.read(url);
-            for (final Object item : document.getRootElement().elements(
-                "sector"))
+            final int count = in.readInt();
+            for (int i = 0; i < count; i++)
             {
-                final Element element = (Element) item;
-                final String id = element.attributeValue("id");
-                final int x = Integer.parseInt(element.attributeValue("x"));
-                this.maxX = Math.max(this.maxX, x);
-                final int y = Integer.parseInt(element.attributeValue("y"));
-                this.maxY = Math.max(this.maxY, y);
-                final int planets = Integer.parseInt(element
-                    .attributeValue("planets"));
-                final Sun suns = sunsFactory.getSun(Integer.parseInt(element
-                    .attributeValue("suns")));
-                final Race race = raceFactory.getRace(element
-                    .attributeValue("race"));
-                final boolean core = Boolean.parseBoolean(element
-                    .attributeValue("core"));
-                final String northId = element.attributeValue("north");
-                final String eastId = element.attributeValue("east");
-                final String southId = element.attributeValue("south");
-                final String westId = element.attributeValue("west");
+                final String id = in.readString();
+                final int x = in.readInt();
+                final int y = in.readInt();
+                final int planets = in.readInt();
+                final Sun suns = sunsFactory.getSun(in.readInt());
+                final Race race = raceFactory.getRace(in.readString());
+                final boolean core = in.readBoolean();
+                final boolean shipyard = in.readBoolean();
+                final String northId = in.readString();
+                final String eastId = in.readString();
+                final String southId = in.readString();
+                final String westId = in.readString();
 
+                // A negative number of asteroid arrays marks a normal
+                // sector. Otherwise it is a player sector with one asteroid
+                // array per switch.
+                final int switches = in.readInt();
                 final Sector sector;
-                final List<?> switches = element.elements("switch");
-                if (switches.size() == 0)
+                if (switches < 0)
                 {
-                    final boolean shipyard = hasShipyard(element);
-                    final Asteroid[] asteroids = getAsteroids(element);
                     sector =
                         new Sector(this.game, id, x, y, race, planets, suns,
                             core, shipyard, northId, eastId, southId, westId,
-                            asteroids);
+                            readAsteroids(in));
                 }
                 else
                 {
-                    final Asteroid[][] asteroidsList =
-                        new Asteroid[switches.size()][];
-                    int i = 0;
-                    for (final Object switchItem : switches)
-                    {
-                        final Element switchElement = (Element) switchItem;
-                        asteroidsList[i] = getAsteroids(switchElement);
-                        i++;
-                    }
+                    final AsteroidField[] asteroidsList =
+                        new AsteroidField[switches];
+                    for (int j = 0; j < switches; j++)
+                        asteroidsList[j] = readAsteroids(in);
                     sector =
                         new PlayerSector(this.game, id, x, y, race, planets,
                             suns, core, northId, eastId, southId, westId,
                             asteroidsList);
                 }
+                addSector(sector, new String[] { northId, eastId, southId,
+                    westId }, sectorList, gateIds);
+            }
+            StationIndex.readSnapshot(in, stations);
+        }
+        catch (final IOException e)
+        {
+            throw new DataException("Unable to read game snapshot: " + e, e);
+        }
+    }
+
+    /**
+     * Reads asteroids from the snapshot.
+     *
+     * @param in
+     *            The snapshot section input
+     * @return The asteroids
+     * @throws IOException
+     *             When snapshot is corrupt
+     */
+    private AsteroidField readAsteroids(final GameSnapshot.Input in)
+        throws IOException
+    {
+        final WareFactory wareFactory = this.game.getWareFactory();
+        final AsteroidField.Builder asteroids =
+            new AsteroidField.Builder(this.game);
+        for (int i = in.readInt(); i > 0; i--)
+        {
+            final String id = in.readString();
+            final Ware ware = wareFactory.getWare(in.readString());
+            final int yield = in.readInt();
+            final int x = in.readInt();
+            final int y = in.readInt();
+            final int z = in.readInt();
+            asteroids.add(id, ware, yield, x, y, z);
+        }
+        return asteroids.build();
+    }
 
-                this.sectors.add(sector);
-                this.sectorMap.put(id, sector);
-
-                this.maxSiliconYield = Math.max(this.maxSiliconYield, sector
-                    .getTotalSiliconYield());
-                this.maxOreYield = Math.max(this.maxOreYield, sector
-                    .getTotalOreYield());
-                this.maxNividiumYield = Math.max(this.maxNividiumYield, sector
-                    .getTotalNividiumYield());
-                this.maxIceYield = Math.max(this.maxIceYield, sector
-                    .getTotalIceYield());
+    /**
+     * Writes the data to a snapshot. The sectors are written in the order of
+     * their indices followed by the stations.
+     *
+     * @param out
+     *            The snapshot section output
+     * @throws IOException
+     *             When write fails
+     */
+    void writeSnapshot(final GameSnapshot.Output out) throws IOException
+    {
+        out.writeInt(this.indexedSectors.length);
+        for (final Sector sector : this.indexedSectors)
+        {
+            out.writeString(sector.getId());
+            out.writeInt(sector.getX());
+            out.writeInt(sector.getY());
+            out.writeInt(sector.getPlanets());
+            out.writeInt(sector.getSuns().getPercent());
+            out.writeString(sector.getRace().getId());
+            out.writeBoolean(sector.isCore());
+            out.writeBoolean(sector.hasShipyard());
+            out.writeString(getId(sector.getNorth()));
+            out.writeString(getId(sector.getEast()));
+            out.writeString(getId(sector.getSouth()));
+            out.writeString(getId(sector.getWest()));
+            if (sector instanceof PlayerSector)
+            {
+                final PlayerSector playerSector = (PlayerSector) sector;
+                final int switches = playerSector.countAsteroidSwitches();
+                out.writeInt(switches);
+                for (int i = 0; i < switches; i++)
+                    writeAsteroids(out, playerSector.getAsteroidField(i));
             }
+            else
+            {
+                out.writeInt(-1);
+                writeAsteroids(out, sector.getAsteroidField());
+            }
+        }
+        this.stationIndex.writeSnapshot(out);
+    }
+
+    /**
+     * Writes asteroids to a snapshot.
+     *
+     * @param out
+     *            The snapshot section output
+     * @param asteroids
+     *            The asteroids to write
+     * @throws IOException
+     *             When write fails
+     */
+    private static void writeAsteroids(final GameSnapshot.Output out,
+        final AsteroidField asteroids) throws IOException
+    {
+        out.writeInt(asteroids.count());
+        for (int i = 0; i < asteroids.count(); i++)
+        {
+            out.writeString(asteroids.getId(i));
+            out.writeString(asteroids.getWare(i).getId());
+            out.writeInt(asteroids.getYield(i));
+            out.writeInt(asteroids.getX(i));
+            out.writeInt(asteroids.getY(i));
+            out.writeInt(asteroids.getZ(i));
+        }
+    }
+
+    /**
+     * Returns the ID of the specified sector.
+     *
+     * @param sector
+     *            The sector. May be null
+     * @return The sector ID or null if sector is null
+     */
+    private static String getId(final Sector sector)
+    {
+        return sector == null ? null : sector.getId();
+    }
+
+    /**
+     * Adds a sector. An existing sector with the same ID is replaced and the
+     * new sector takes its place in the sector list.
+     *
+     * @param sector
+     *            The sector to add
+     * @param gates
+     *            The ids of the sectors behind the north, east, south and
+     *            west gates of the sector. May contain nulls.
+     * @param sectorList
+     *            The list of sectors in the order in which they were read
+     * @param gateIds
+     *            The gate ids of the sectors in the sector list
+     */
+    private void addSector(final Sector sector, final String[] gates,
+        final List<Sector> sectorList, final List<String[]> gateIds)
+    {
+        final Sector replaced = this.sectorMap.put(sector.getId(), sector);
+        if (replaced == null)
+        {
+            sectorList.add(sector);
+            gateIds.add(gates);
+        }
+        else
+        {
+            this.sectors.remove(replaced);
+            final int index = sectorList.indexOf(replaced);
+            sectorList.set(index, sector);
+            gateIds.set(index, gates);
+        }
+        this.sectors.add(sector);
+    }
+
+    /**
+     * Calculates the universe limits and the maximum yields from all
+     * sectors.
+     */
+    private void calculateLimits()
+    {
+        for (final Sector sector : this.sectors)
+        {
+            this.maxX = Math.max(this.maxX, sector.getX());
+            this.maxY = Math.max(this.maxY, sector.getY());
+            this.maxSiliconYield = Math.max(this.maxSiliconYield, sector
+                .getTotalSiliconYield());
+            this.maxOreYield = Math.max(this.maxOreYield, sector
+                .getTotalOreYield());
+            this.maxNividiumYield = Math.max(this.maxNividiumYield, sector
+                .getTotalNividiumYield());
+            this.maxIceYield = Math.max(this.maxIceYield, sector
+                .getTotalIceYield());
         }
-        catch (final DocumentException e)
+        this.sectorGrid = new Sector[(this.maxX + 1) * (this.maxY + 1)];
+        for (final Sector sector : this.sectors)
         {
-            throw new DataException("Unable to read XML file: " + e, e);
+            final int x = sector.getX(), y = sector.getY();
+            if (sector.getId().equals("sec-" + x + "-" + y))
+                this.sectorGrid[y * (this.maxX + 1) + x] = sector;
         }
     }
 
     /**
-     * Checks if sector has a shipyard.
+     * Assigns the sector indices and calculates the gate distances, the next
+     * hops and the distance orders between all sectors by running a
+     * breadth-first search from every sector.
      *
-     * @param element
-     *            The sector XML element
-     * @return True if sector has a shipyard, false if not
+     * @param sectorList
+     *            The sectors in the order in which they were read
+     * @param gateIds
+     *            The ids of the sectors behind the north, east, south and
+     *            west gates of each sector. May contain nulls.
      */
-    private boolean hasShipyard(final Element element)
+    private void buildRoutes(final List<Sector> sectorList,
+        final List<String[]> gateIds)
     {
-        final Element stationsElement = element.element("stations");
-        if (stationsElement != null)
+        final int count = sectorList.size();
+        this.indexedSectors = sectorList.toArray(new Sector[count]);
+        for (int i = 0; i < count; i++)
+            this.indexedSectors[i].setIndex(i);
+
+        // Resolve the gate connections into sector indices
+        final int[][] neighbors = new int[count][];
+        for (int i = 0; i < count; i++)
         {
-            for (final Object stationItem : stationsElement
-                .elements("station"))
+            final String[] ids = gateIds.get(i);
+            final int[] tmp = new int[ids.length];
+            int gates = 0;
+            for (final String gateId : ids)
             {
-                final Element stationElement = (Element) stationItem;
-                if (stationElement.attributeValue("class").equals(
-                    "bigShipyard"))
+                if (gateId == null) continue;
+                final Sector neighbor = this.sectorMap.get(gateId);
+                if (neighbor != null) tmp[gates++] = neighbor.getIndex();
+            }
+            neighbors[i] = new int[gates];
+            System.arraycopy(tmp, 0, neighbors[i], 0, gates);
+        }
+
+        // Build the reversed gate connections
+        final int[] incomingCounts = new int[count];
+        for (final int[] gates : neighbors)
+            for (final int neighbor : gates)
+                incomingCounts[neighbor]++;
+        this.incomingGates = new int[count][];
+        for (int i = 0; i < count; i++)
+            this.incomingGates[i] = new int[incomingCounts[i]];
+        Arrays.fill(incomingCounts, 0);
+        for (int i = 0; i < count; i++)
+            for (final int neighbor : neighbors[i])
+                this.incomingGates[neighbor][incomingCounts[neighbor]++] = i;
+
+        // Run a breadth-first search from every sector. The queue of the
+        // search is also the list of reachable sectors ordered by distance.
+        this.distances = new short[count][count];
+        this.nextHops = new short[count][count];
+        this.distanceOrders = new short[count][];
+        final short[] queue = new short[count];
+        for (int source = 0; source < count; source++)
+        {
+            final short[] row = this.distances[source];
+            final short[] hops = this.nextHops[source];
+            Arrays.fill(row, (short) -1);
+            Arrays.fill(hops, (short) -1);
+            row[source] = 0;
+            int head = 0, tail = 0;
+            queue[tail++] = (short) source;
+            while (head < tail)
+            {
+                final int current = queue[head++];
+                final short distance = (short) (row[current] + 1);
+                for (final int neighbor : neighbors[current])
                 {
-                    return true;
+                    if (row[neighbor] != -1) continue;
+                    row[neighbor] = distance;
+                    hops[neighbor] = current == source ? (short) neighbor
+                        : hops[current];
+                    queue[tail++] = (short) neighbor;
                 }
             }
+            this.distanceOrders[source] = Arrays.copyOf(queue, tail);
         }
-        return false;
     }
 
     /**
-     * Returns the asteroids of the sector.
+     * Reads the stations of the stations element the parser is positioned on
+     * into the station index builder.
      *
-     * @param element
-     *            The sector XML element
-     * @return The asteroids
+     * @param parser
+     *            The XML parser positioned on the stations element
+     * @param sector
+     *            The index of the sector containing the stations
+     * @param stations
+     *            The station index builder
+     * @return True if there is a shipyard, false if not
      */
-    private Asteroid[] getAsteroids(final Element element)
+    private static boolean readStations(final XmlStreamParser parser,
+        final int sector, final StationIndex.Builder stations)
     {
-        final Element asteroidsElement = element.element("asteroids");
-        final Asteroid[] asteroids;
-        if (asteroidsElement != null)
+        boolean shipyard = false;
+        while (parser.nextChild())
         {
-            final List<?> asteroidElements = asteroidsElement
-                .elements("asteroid");
-            asteroids = new Asteroid[asteroidElements.size()];
-            int i = 0;
-            for (final Object asteroidItem : asteroidElements)
+            if (parser.getName().equals("station"))
             {
-                final Element asteroidElement = (Element) asteroidItem;
-                final String asteroidId = asteroidElement
-                    .attributeValue("id");
-                final int yield = Integer.parseInt(asteroidElement
-                    .attributeValue("yield"));
-                final int astX = Integer.parseInt(asteroidElement
-                    .attributeValue("x"));
-                final int astY = Integer.parseInt(asteroidElement
-                    .attributeValue("y"));
-                final int astZ = Integer.parseInt(asteroidElement
-                    .attributeValue("z"));
-                final Ware ware = this.game.getWareFactory().getWare(
-                    asteroidElement
-                        .attributeValue("ware"));
-                final Asteroid asteroid = new Asteroid(asteroidId,
-                    ware, yield, astX, astY, astZ);
-                asteroids[i] = asteroid;
-                i++;
+                final String stationClass = parser.getAttribute("class");
+                if ("bigShipyard".equals(stationClass)) shipyard = true;
+                stations.add(sector, parser.getAttribute("id"),
+                    stationClass, parser.getAttribute("type"),
+                    parser.getIntAttribute("x"), parser.getIntAttribute("y"),
+                    parser.getIntAttribute("z"));
             }
+            parser.skip();
         }
-        else
-            asteroids = new Asteroid[0];
+        return shipyard;
+    }
 
+    /**
+     * Returns the asteroids of the switch element the parser is positioned
+     * on.
+     *
+     * @param parser
+     *            The XML parser positioned on the switch element
+     * @return The asteroids
+     */
+    private AsteroidField getSwitchAsteroids(final XmlStreamParser parser)
+    {
+        AsteroidField asteroids = null;
+        while (parser.nextChild())
+        {
+            if (parser.getName().equals("asteroids"))
+                asteroids = getAsteroids(parser);
+            else
+                parser.skip();
+        }
+        if (asteroids == null)
+            asteroids = new AsteroidField.Builder(this.game).build();
         return asteroids;
     }
 
+    /**
+     * Returns the asteroids of the asteroids element the parser is
+     * positioned on.
+     *
+     * @param parser
+     *            The XML parser positioned on the asteroids element
+     * @return The asteroids
+     */
+    private AsteroidField getAsteroids(final XmlStreamParser parser)
+    {
+        final WareFactory wareFactory = this.game.getWareFactory();
+        final AsteroidField.Builder asteroids =
+            new AsteroidField.Builder(this.game);
+        while (parser.nextChild())
+        {
+            if (parser.getName().equals("asteroid"))
+            {
+                final String asteroidId = parser.getAttribute("id");
+                final int yield = parser.getIntAttribute("yield");
+                final int astX = parser.getIntAttribute("x");
+                final int astY = parser.getIntAttribute("y");
+                final int astZ = parser.getIntAttribute("z");
+                final Ware ware = wareFactory.getWare(parser
+                    .getAttribute("ware"));
+                asteroids.add(asteroidId, ware, yield, astX, astY, astZ);
+            }
+            parser.skip();
+        }
+        return asteroids.build();
+    }
+
     /**
      * Returns all sectors.
      *
@@ -258,6 +672,360 @@ public class SectorFactory implements Serializable
         return this.sectorMap.get(id);
     }
 
+    /**
+     * Returns the gate distance between the two specified sectors. If the
+     * destination sector is unreachable (because it can't be reached via
+     * gates) then -1 is returned.
+     *
+     * @param source
+     *            The source sector
+     * @param dest
+     *            The destination sector
+     * @return The distance. -1 if destination sector is unreachable
+     */
+    public int getDistance(final Sector source, final Sector dest)
+    {
+        return this.distances[getIndex(source)][getIndex(dest)];
+    }
+
+    /**
+     * Returns the sector behind the gate which must be taken next to travel
+     * from the source sector to the destination sector on the shortest route.
+     *
+     * @param source
+     *            The source sector
+     * @param dest
+     *            The destination sector
+     * @return The next sector on the route. Null if the destination is
+     *         unreachable or if source and destination are the same.
+     */
+    public Sector getNextHop(final Sector source, final Sector dest)
+    {
+        final int hop = this.nextHops[getIndex(source)][getIndex(dest)];
+        return hop < 0 ? null : this.indexedSectors[hop];
+    }
+
+    /**
+     * Writes the shortest gate route from the source sector to the
+     * destination sector into the specified array. The route starts with the
+     * source sector and ends with the destination sector. This method does
+     * not allocate anything so it can be used for mass route queries.
+     *
+     * @param source
+     *            The source sector
+     * @param dest
+     *            The destination sector
+     * @param route
+     *            The array to write the route to. Must be large enough to
+     *            hold the distance plus one sectors.
+     * @return The number of sectors written to the array. -1 if the
+     *         destination is unreachable.
+     */
+    public int getRoute(final Sector source, final Sector dest,
+        final Sector[] route)
+    {
+        final int sourceIndex = getIndex(source);
+        final int destIndex = getIndex(dest);
+        final int length = this.distances[sourceIndex][destIndex] + 1;
+        if (length == 0) return -1;
+        if (route.length < length)
+            throw new IllegalArgumentException("Route array too small. Needs "
+                + length + " elements");
+        int current = sourceIndex;
+        for (int i = 0; i < length; i++)
+        {
+            route[i] = this.indexedSectors[current];
+            current = this.nextHops[current][destIndex];
+        }
+        return length;
+    }
+
+    /**
+     * Returns the shortest gate route from the source sector to the
+     * destination sector. The route starts with the source sector and ends
+     * with the destination sector.
+     *
+     * @param source
+     *            The source sector
+     * @param dest
+     *            The destination sector
+     * @return The route or null if the destination is unreachable
+     */
+    public List<Sector> getRoute(final Sector source, final Sector dest)
+    {
+        final int distance = getDistance(source, dest);
+        if (distance < 0) return null;
+        final Sector[] route = new Sector[distance + 1];
+        getRoute(source, dest, route);
+        return Collections.unmodifiableList(Arrays.asList(route));
+    }
+
+    /**
+     * Returns the sectors which are nearest to the specified sector, ordered
+     * by their gate distance. The source sector itself is not included.
+     * Unreachable sectors are never returned so the list can be shorter than
+     * the requested number of sectors.
+     *
+     * @param source
+     *            The source sector
+     * @param count
+     *            The maximum number of sectors to return
+     * @return The nearest sectors. Never null.
+     */
+    public List<Sector> getNearestSectors(final Sector source, final int count)
+    {
+        final short[] order = this.distanceOrders[getIndex(source)];
+        return new SectorList(order, 1,
+            Math.max(1, Math.min(order.length, count + 1)));
+    }
+
+    /**
+     * Returns the sectors which can be reached from the specified sector
+     * within the specified number of jumps, ordered by their gate distance.
+     * The list starts with the source sector itself.
+     *
+     * @param source
+     *            The source sector
+     * @param jumps
+     *            The maximum number of jumps
+     * @return The sectors within the given number of jumps. Never null.
+     */
+    public List<Sector> getSectorsWithinJumps(final Sector source,
+        final int jumps)
+    {
+        final int sourceIndex = getIndex(source);
+        final short[] order = this.distanceOrders[sourceIndex];
+        final short[] row = this.distances[sourceIndex];
+        int end = 0;
+        while (end < order.length && row[order[end]] <= jumps)
+            end++;
+        return new SectorList(order, 0, end);
+    }
+
+    /**
+     * Searches for mining sites. Returns the sectors which contain at least
+     * the specified number of asteroids of the specified ware with at least
+     * the specified yield. The sectors are sorted by the total yield of these
+     * asteroids in descending order. Sectors with the same total yield are
+     * ordered by their gate distance to the source sector.
+     *
+     * Asteroid counts and totals are looked up with a binary search in the
+     * yields of each sector which are sorted when the sectors are loaded, so
+     * no asteroids have to be visited. Player sectors are searched with the
+     * asteroid set which is currently configured.
+     *
+     * @param ware
+     *            The mining ware
+     * @param minYield
+     *            The minimum yield of the asteroids
+     * @param minCount
+     *            The minimum number of matching asteroids in a sector
+     * @param source
+     *            The sector to search from. Null to search the whole
+     *            universe
+     * @param jumps
+     *            The maximum number of jumps from the source sector. Ignored
+     *            when no source sector is specified
+     * @return The matching sectors. Never null
+     */
+    public List<Sector> findMiningSectors(final Ware ware,
+        final int minYield, final int minCount, final Sector source,
+        final int jumps)
+    {
+        final short[] candidates;
+        final int end;
+        if (source == null)
+        {
+            candidates = new short[this.indexedSectors.length];
+            for (int i = 0; i < candidates.length; i++)
+                candidates[i] = (short) i;
+            end = candidates.length;
+        }
+        else
+        {
+            final int sourceIndex = getIndex(source);
+            candidates = this.distanceOrders[sourceIndex];
+            final short[] row = this.distances[sourceIndex];
+            int last = 0;
+            while (last < candidates.length && row[candidates[last]] <= jumps)
+                last++;
+            end = last;
+        }
+
+        // Each match is packed into a long so a primitive sort orders the
+        // matches by descending total yield and then by their position in
+        // the candidates (The gate distance). The lowest 16 bits hold the
+        // sector index
+        final long[] matches = new long[end];
+        int count = 0;
+        for (int i = 0; i < end; i++)
+        {
+            final int index = candidates[i];
+            final AsteroidField field =
+                this.indexedSectors[index].getAsteroidField();
+            if (field.countAsteroids(ware, minYield) < minCount) continue;
+            final long total = field.getTotalYield(ware, minYield);
+            matches[count++] = ((Integer.MAX_VALUE - total) << 32)
+                | ((long) i << 16) | index;
+        }
+        Arrays.sort(matches, 0, count);
+        final short[] result = new short[count];
+        for (int i = 0; i < count; i++)
+            result[i] = (short) (matches[i] & 0xffff);
+        return new SectorList(result, 0, count);
+    }
+
+    /**
+     * Returns the nearest sector with a shipyard which sells complex
+     * construction kits. This method honors the ignored races the player
+     * has configured. If no shipyard was found then null is returned.
+     *
+     * The nearest shipyards of all sectors are calculated at once and cached
+     * until the ignored races are changed.
+     *
+     * @param sector
+     *            The sector from which to search the nearest shipyard
+     * @return The nearest sector with a shipyard selling complex construction
+     *         kits or null if none.
+     */
+    public synchronized Sector getNearestKitSellingSector(final Sector sector)
+    {
+        final int index = getIndex(sector);
+        final int version = Config.getInstance().getIgnoredRacesVersion();
+        if (this.kitSellingSectors == null
+            || this.kitSellingSectorsVersion != version)
+        {
+            this.kitSellingSectors = calculateKitSellingSectors();
+            this.kitSellingSectorsVersion = version;
+        }
+        return this.kitSellingSectors[index];
+    }
+
+    /**
+     * Calculates the nearest kit selling sector for all sectors with a
+     * breadth-first search which is seeded with all sectors containing a
+     * shipyard selling complex construction kits and follows the gates
+     * backwards.
+     *
+     * @return The nearest kit selling sector for each sector index
+     */
+    private Sector[] calculateKitSellingSectors()
+    {
+        final Config config = Config.getInstance();
+        final int count = this.indexedSectors.length;
+        final Sector[] result = new Sector[count];
+        final int[] queue = new int[count];
+        int head = 0, tail = 0;
+
+        // Seed the search with all sectors selling complex construction kits
+        for (int i = 0; i < count; i++)
+        {
+            final Sector sector = this.indexedSectors[i];
+            final String raceId = sector.getRace().getId();
+            if (sector.hasShipyard()
+                && !config.isRaceIgnored(sector.getRace())
+                && !raceId.equals("xenon")
+                && (!raceId.equals("terran") || !this.game.isX3TC()))
+            {
+                result[i] = sector;
+                queue[tail++] = i;
+            }
+        }
+
+        // Propagate the shipyards to all sectors from which they can be
+        // reached
+        while (head < tail)
+        {
+            final int current = queue[head++];
+            for (final int source : this.incomingGates[current])
+            {
+                if (result[source] != null) continue;
+                result[source] = result[current];
+                queue[tail++] = source;
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Returns the number of sectors.
+     *
+     * @return The number of sectors
+     */
+    int countSectors()
+    {
+        return this.indexedSectors.length;
+    }
+
+    /**
+     * Returns the sector with the specified index.
+     *
+     * @param index
+     *            The sector index
+     * @return The sector
+     */
+    Sector getIndexedSector(final int index)
+    {
+        return this.indexedSectors[index];
+    }
+
+    /**
+     * Returns the gate distances from the sector with the specified index to
+     * all other sectors. The returned array must not be modified.
+     *
+     * @param index
+     *            The sector index
+     * @return The distances indexed by destination sector index
+     */
+    short[] getDistances(final int index)
+    {
+        return this.distances[index];
+    }
+
+    /**
+     * Returns the indices of the sectors reachable from the sector with the
+     * specified index ordered by their gate distance. The returned array
+     * must not be modified.
+     *
+     * @param index
+     *            The sector index
+     * @return The sector indices starting with the sector itself
+     */
+    short[] getDistanceOrder(final int index)
+    {
+        return this.distanceOrders[index];
+    }
+
+    /**
+     * Returns the index of all stations in the universe.
+     *
+     * @return The station index
+     */
+    public StationIndex getStationIndex()
+    {
+        return this.stationIndex;
+    }
+
+    /**
+     * Returns the index of the specified sector in the lookup tables of this
+     * factory.
+     *
+     * @param sector
+     *            The sector
+     * @return The sector index
+     * @throws IllegalArgumentException
+     *             When sector does not belong to this factory
+     */
+    int getIndex(final Sector sector)
+    {
+        final int index = sector.getIndex();
+        if (index < 0 || index >= this.indexedSectors.length
+            || !this.indexedSectors[index].equals(sector))
+            throw new IllegalArgumentException("Unknown sector: "
+                + sector.getId());
+        return index;
+    }
+
     /**
      * Returns the maximum X position in the universe.
      *
@@ -290,7 +1058,12 @@ public class SectorFactory implements Serializable
      */
     public Sector getSector(final int x, final int y)
     {
-        return getSector(String.format("sec-%d-%d", x, y));
+        if (x >= 0 && x <= this.maxX && y >= 0 && y <= this.maxY)
+        {
+            final Sector sector = this.sectorGrid[y * (this.maxX + 1) + x];
+            if (sector != null) return sector;
+        }
+        return getSector("sec-" + x + "-" + y);
     }
 
     /**
@@ -332,4 +1105,57 @@ public class SectorFactory implements Serializable
     {
         return this.maxIceYield;
     }
+
+    /**
+     * Immutable list view on a range of a sector index array.
+     */
+    private final class SectorList extends AbstractList<Sector>
+    {
+        /** The sector indices. */
+        private final short[] indices;
+
+        /** The first index (inclusive) of the range. */
+        private final int start;
+
+        /** The last index (exclusive) of the range. */
+        private final int end;
+
+        /**
+         * Constructor.
+         *
+         * @param indices
+         *            The sector indices
+         * @param start
+         *            The first index (inclusive) of the range
+         * @param end
+         *            The last index (exclusive) of the range
+         */
+        SectorList(final short[] indices, final int start, final int end)
+        {
+            this.indices = indices;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * @see java.util.AbstractList#get(int)
+         */
+        @Override
+        public Sector get(final int index)
+        {
+            if (index < 0 || index >= size())
+                throw new IndexOutOfBoundsException("Index: " + index);
+            return SectorFactory.this.indexedSectors[this.indices[this.start
+                + index]];
+        }
+
+        /**
+         * @see java.util.AbstractCollection#size()
+         */
+        @Override
+        public int size()
+        {
+            return this.end - this.start;
+        }
+    }
 }
@@ -0,0 +1,599 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.txt file for licensing information.
+ */
+
+package de.ailis.xadrian.data.factories;
+
+import java.io.IOException;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import de.ailis.xadrian.data.Factory;
+import de.ailis.xadrian.data.Game;
+import de.ailis.xadrian.data.Sector;
+import de.ailis.xadrian.data.Station;
+import de.ailis.xadrian.data.Ware;
+import de.ailis.xadrian.exceptions.DataException;
+
+/**
+ * Index of all stations of a game. The stations are stored in primitive
+ * arrays ordered by sector index so the stations of a sector are a
+ * contiguous range. Station types and classes are stored as indices into
+ * string tables. The sectors containing stations of each type are indexed
+ * as well.
+ *
+ * For factory stations the station type is the factory ID. So the index can
+ * also tell which sectors contain NPC factories producing a specific ware.
+ * Together with the gate distance tables of the sector factory this answers
+ * queries like "nearest sector producing a ware" without any allocation.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class StationIndex implements Serializable
+{
+    /** Serial version UID. */
+    private static final long serialVersionUID = 1L;
+
+    /** The game */
+    private final Game game;
+
+    /** The sector factory providing the sectors and the gate distances */
+    private final SectorFactory sectorFactory;
+
+    /** The station types */
+    private final String[] types;
+
+    /** The station classes */
+    private final String[] classes;
+
+    /** The station IDs */
+    private final String[] ids;
+
+    /** The sector index of each station */
+    private final short[] stationSectors;
+
+    /** The type index of each station */
+    private final short[] stationTypes;
+
+    /** The class index of each station */
+    private final byte[] stationClasses;
+
+    /** The X, Y and Z positions of all stations (three values per station) */
+    private final int[] positions;
+
+    /**
+     * The index of the first station of each sector. Has one additional
+     * element at the end containing the number of stations.
+     */
+    private final int[] sectorOffsets;
+
+    /** The type indices mapped by station type */
+    private final Map<String, Integer> typeMap;
+
+    /**
+     * The offsets of the sector lists of each type in {@link #typeSectors}.
+     * Has one additional element at the end.
+     */
+    private final int[] typeOffsets;
+
+    /** The indices of the sectors containing stations of each type */
+    private final short[] typeSectors;
+
+    /**
+     * The number of factory stations producing each ware in each sector.
+     * Indexed by ware ordinal multiplied with the number of sectors plus the
+     * sector index. Null if not calculated yet.
+     */
+    private transient int[] producers;
+
+    /**
+     * Constructor.
+     *
+     * @param game
+     *            The game
+     * @param sectorFactory
+     *            The sector factory with the already indexed sectors
+     * @param builder
+     *            The builder with the collected stations
+     */
+    private StationIndex(final Game game, final SectorFactory sectorFactory,
+        final Builder builder)
+    {
+        this.game = game;
+        this.sectorFactory = sectorFactory;
+        this.types = builder.types.toArray(new String[builder.types.size()]);
+        this.classes =
+            builder.classes.toArray(new String[builder.classes.size()]);
+        this.typeMap = builder.typeMap;
+
+        // Sort the stations by sector with a counting sort which keeps the
+        // order of the stations within a sector. Stations of replaced
+        // sectors are dropped.
+        final int sectorCount = sectorFactory.countSectors();
+        final int added = builder.ids.size();
+        this.sectorOffsets = new int[sectorCount + 1];
+        for (int i = 0; i < added; i++)
+            if (!builder.isReplaced(i))
+                this.sectorOffsets[builder.sectors.get(i) + 1]++;
+        for (int i = 0; i < sectorCount; i++)
+            this.sectorOffsets[i + 1] += this.sectorOffsets[i];
+        final int[] next = this.sectorOffsets.clone();
+        final int count = this.sectorOffsets[sectorCount];
+        this.ids = new String[count];
+        this.stationSectors = new short[count];
+        this.stationTypes = new short[count];
+        this.stationClasses = new byte[count];
+        this.positions = new int[count * 3];
+        for (int i = 0; i < added; i++)
+        {
+            if (builder.isReplaced(i)) continue;
+            final int sector = builder.sectors.get(i);
+            final int index = next[sector]++;
+            this.ids[index] = builder.ids.get(i);
+            this.stationSectors[index] = (short) sector;
+            this.stationTypes[index] = builder.stationTypes.get(i);
+            this.stationClasses[index] = builder.stationClasses.get(i);
+            System.arraycopy(builder.positions, i * 3, this.positions,
+                index * 3, 3);
+        }
+
+        // Index the sectors containing stations of each type. The stations
+        // are ordered by sector so the sector lists are sorted and a sector
+        // is a duplicate if it is the last one added for the type.
+        final int[] typeCounts = new int[this.types.length];
+        final int[] lastSectors = new int[this.types.length];
+        Arrays.fill(lastSectors, -1);
+        for (int i = 0; i < count; i++)
+        {
+            final int type = this.stationTypes[i];
+            if (lastSectors[type] == this.stationSectors[i]) continue;
+            lastSectors[type] = this.stationSectors[i];
+            typeCounts[type]++;
+        }
+        this.typeOffsets = new int[this.types.length + 1];
+        for (int i = 0; i < this.types.length; i++)
+            this.typeOffsets[i + 1] = this.typeOffsets[i] + typeCounts[i];
+        this.typeSectors = new short[this.typeOffsets[this.types.length]];
+        Arrays.fill(lastSectors, -1);
+        Arrays.fill(typeCounts, 0);
+        for (int i = 0; i < count; i++)
+        {
+            final int type = this.stationTypes[i];
+            if (lastSectors[type] == this.stationSectors[i]) continue;
+            lastSectors[type] = this.stationSectors[i];
+            this.typeSectors[this.typeOffsets[type] + typeCounts[type]++] =
+                this.stationSectors[i];
+        }
+    }
+
+    /**
+     * Returns the total number of stations.
+     *
+     * @return The number of stations
+     */
+    public int countStations()
+    {
+        return this.ids.length;
+    }
+
+    /**
+     * Returns the number of stations in the specified sector.
+     *
+     * @param sector
+     *            The sector
+     * @return The number of stations
+     */
+    public int countStations(final Sector sector)
+    {
+        final int index = this.sectorFactory.getIndex(sector);
+        return this.sectorOffsets[index + 1] - this.sectorOffsets[index];
+    }
+
+    /**
+     * Returns the stations of the specified sector. The station objects are
+     * created on access.
+     *
+     * @param sector
+     *            The sector
+     * @return The stations of the sector. Never null
+     */
+    public List<Station> getStations(final Sector sector)
+    {
+        final int index = this.sectorFactory.getIndex(sector);
+        final int start = this.sectorOffsets[index];
+        final int end = this.sectorOffsets[index + 1];
+        return new AbstractList<Station>()
+        {
+            @Override
+            public Station get(final int i)
+            {
+                if (i < 0 || i >= end - start)
+                    throw new IndexOutOfBoundsException("Index: " + i);
+                return getStation(start + i);
+            }
+
+            @Override
+            public int size()
+            {
+                return end - start;
+            }
+        };
+    }
+
+    /**
+     * Creates the station object for the station with the specified index.
+     *
+     * @param index
+     *            The station index
+     * @return The station
+     */
+    private Station getStation(final int index)
+    {
+        return new Station(this.ids[index],
+            this.sectorFactory.getIndexedSector(this.stationSectors[index]),
+            this.classes[this.stationClasses[index]],
+            this.types[this.stationTypes[index]], this.positions[index * 3],
+            this.positions[index * 3 + 1], this.positions[index * 3 + 2]);
+    }
+
+    /**
+     * Returns the sectors which contain at least one station of the
+     * specified type. For factories the type is the factory ID.
+     *
+     * @param type
+     *            The station type
+     * @return The sectors ordered by sector index. Never null
+     */
+    public List<Sector> getSectorsWithStation(final String type)
+    {
+        final Integer index = this.typeMap.get(type);
+        if (index == null) return Collections.emptyList();
+        final List<Sector> sectors = new ArrayList<Sector>(
+            this.typeOffsets[index + 1] - this.typeOffsets[index]);
+        for (int i = this.typeOffsets[index]; i < this.typeOffsets[index + 1];
+            i++)
+            sectors.add(this.sectorFactory.getIndexedSector(
+                this.typeSectors[i]));
+        return Collections.unmodifiableList(sectors);
+    }
+
+    /**
+     * Returns the sectors which contain at least one NPC station of the
+     * specified factory.
+     *
+     * @param factory
+     *            The factory
+     * @return The sectors ordered by sector index. Never null
+     */
+    public List<Sector> getSectorsWithFactory(final Factory factory)
+    {
+        return getSectorsWithStation(factory.getId());
+    }
+
+    /**
+     * Returns the producer counts. They are calculated on first access
+     * because the factories are loaded after the sectors.
+     *
+     * @return The number of factory stations producing each ware in each
+     *         sector
+     */
+    private synchronized int[] getProducers()
+    {
+        if (this.producers == null)
+        {
+            final FactoryFactory factoryFactory = this.game.getFactoryFactory();
+            final int wares = this.game.getWareFactory().getWareCount();
+            final int sectors = this.sectorOffsets.length - 1;
+            final int[] typeWares = new int[this.types.length];
+            for (int i = 0; i < this.types.length; i++)
+            {
+                final Factory factory = factoryFactory.getFactory(this.types[i]);
+                typeWares[i] = factory == null ? -1
+                    : factory.getProduct().getWare().getOrdinal();
+            }
+            final int[] counts = new int[wares * sectors];
+            for (int i = 0; i < this.ids.length; i++)
+            {
+                final int ware = typeWares[this.stationTypes[i]];
+                if (ware >= 0)
+                    counts[ware * sectors + this.stationSectors[i]]++;
+            }
+            this.producers = counts;
+        }
+        return this.producers;
+    }
+
+    /**
+     * Returns the number of NPC factories producing the specified ware in
+     * the specified sector.
+     *
+     * @param sector
+     *            The sector
+     * @param ware
+     *            The ware
+     * @return The number of producing factories
+     */
+    public int countProducers(final Sector sector, final Ware ware)
+    {
+        final int sectors = this.sectorOffsets.length - 1;
+        return getProducers()[ware.getOrdinal() * sectors
+            + this.sectorFactory.getIndex(sector)];
+    }
+
+    /**
+     * Returns the number of NPC factories producing the specified ware
+     * within the specified number of jumps from the specified sector.
+     *
+     * @param source
+     *            The source sector
+     * @param ware
+     *            The ware
+     * @param jumps
+     *            The maximum number of jumps
+     * @return The number of producing factories
+     */
+    public int countProducers(final Sector source, final Ware ware,
+        final int jumps)
+    {
+        final int sourceIndex = this.sectorFactory.getIndex(source);
+        final int sectors = this.sectorOffsets.length - 1;
+        final int offset = ware.getOrdinal() * sectors;
+        final int[] counts = getProducers();
+        final short[] order = this.sectorFactory.getDistanceOrder(sourceIndex);
+        final short[] distances = this.sectorFactory.getDistances(sourceIndex);
+        int count = 0;
+        for (int i = 0; i < order.length && distances[order[i]] <= jumps; i++)
+            count += counts[offset + order[i]];
+        return count;
+    }
+
+    /**
+     * Returns the sectors which contain at least one NPC factory producing
+     * the specified ware.
+     *
+     * @param ware
+     *            The ware
+     * @return The sectors ordered by sector index. Never null
+     */
+    public List<Sector> getProducingSectors(final Ware ware)
+    {
+        final int sectors = this.sectorOffsets.length - 1;
+        final int offset = ware.getOrdinal() * sectors;
+        final int[] counts = getProducers();
+        final List<Sector> result = new ArrayList<Sector>();
+        for (int i = 0; i < sectors; i++)
+            if (counts[offset + i] > 0)
+                result.add(this.sectorFactory.getIndexedSector(i));
+        return Collections.unmodifiableList(result);
+    }
+
+    /**
+     * Returns the nearest sector (by gate distance) which contains at least
+     * one NPC factory producing the specified ware. This may be the source
+     * sector itself.
+     *
+     * @param source
+     *            The source sector
+     * @param ware
+     *            The ware
+     * @return The nearest producing sector or null if none is reachable
+     */
+    public Sector getNearestProducingSector(final Sector source,
+        final Ware ware)
+    {
+        final int sectors = this.sectorOffsets.length - 1;
+        final int offset = ware.getOrdinal() * sectors;
+        final int[] counts = getProducers();
+        for (final short index : this.sectorFactory.getDistanceOrder(
+            this.sectorFactory.getIndex(source)))
+            if (counts[offset + index] > 0)
+                return this.sectorFactory.getIndexedSector(index);
+        return null;
+    }
+
+    /**
+     * Writes the stations to a snapshot.
+     *
+     * @param out
+     *            The snapshot section output
+     * @throws IOException
+     *             When write fails
+     */
+    void writeSnapshot(final GameSnapshot.Output out) throws IOException
+    {
+        out.writeInt(this.ids.length);
+        for (int i = 0; i < this.ids.length; i++)
+        {
+            out.writeInt(this.stationSectors[i]);
+            out.writeString(this.ids[i]);
+            out.writeString(this.classes[this.stationClasses[i]]);
+            out.writeString(this.types[this.stationTypes[i]]);
+            out.writeInt(this.positions[i * 3]);
+            out.writeInt(this.positions[i * 3 + 1]);
+            out.writeInt(this.positions[i * 3 + 2]);
+        }
+    }
+
+    /**
+     * Reads the stations from a snapshot.
+     *
+     * @param in
+     *            The snapshot section input
+     * @param builder
+     *            The builder to add the stations to
+     * @throws IOException
+     *             When snapshot is corrupt
+     */
+    static void readSnapshot(final GameSnapshot.Input in,
+        final Builder builder) throws IOException
+    {
+        for (int i = in.readInt(); i > 0; i--)
+        {
+            final int sector = in.readInt();
+            final String id = in.readString();
+            final String stationClass = in.readString();
+            final String type = in.readString();
+            final int x = in.readInt();
+            final int y = in.readInt();
+            final int z = in.readInt();
+            builder.add(sector, id, stationClass, type, x, y, z);
+        }
+    }
+
+    /**
+     * Collects the stations while the sectors are read.
+     */
+    static final class Builder
+    {
+        /** The station types */
+        final List<String> types = new ArrayList<String>();
+
+        /** The type indices mapped by station type */
+        final Map<String, Integer> typeMap = new HashMap<String, Integer>();
+
+        /** The station classes */
+        final List<String> classes = new ArrayList<String>();
+
+        /** The class indices mapped by station class */
+        private final Map<String, Integer> classMap =
+            new HashMap<String, Integer>();
+
+        /** The station IDs */
+        final List<String> ids = new ArrayList<String>();
+
+        /** The sector indices of the stations */
+        final List<Integer> sectors = new ArrayList<Integer>();
+
+        /** The type indices of the stations */
+        final List<Short> stationTypes = new ArrayList<Short>();
+
+        /** The class indices of the stations */
+        final List<Byte> stationClasses = new ArrayList<Byte>();
+
+        /** The positions of the stations (three values per station) */
+        int[] positions = new int[3 * 256];
+
+        /**
+         * The number of stations which had been added when a sector was
+         * replaced, mapped by sector index. Stations of this sector which
+         * were added before are ignored.
+         */
+        private final Map<Integer, Integer> replacedSectors =
+            new HashMap<Integer, Integer>();
+
+        /**
+         * Adds a station.
+         *
+         * @param sector
+         *            The index of the sector containing the station
+         * @param id
+         *            The station ID
+         * @param stationClass
+         *            The station class
+         * @param type
+         *            The station type
+         * @param x
+         *            The X position
+         * @param y
+         *            The Y position
+         * @param z
+         *            The Z position
+         */
+        void add(final int sector, final String id, final String stationClass,
+            final String type, final int x, final int y, final int z)
+        {
+            final int index = this.ids.size();
+            if (index * 3 + 3 > this.positions.length)
+                this.positions = Arrays.copyOf(this.positions,
+                    this.positions.length * 2);
+            this.positions[index * 3] = x;
+            this.positions[index * 3 + 1] = y;
+            this.positions[index * 3 + 2] = z;
+            this.ids.add(id);
+            this.sectors.add(sector);
+            this.stationTypes.add((short) getIndex(type, this.types,
+                this.typeMap, Short.MAX_VALUE));
+            this.stationClasses.add((byte) getIndex(stationClass,
+                this.classes, this.classMap, Byte.MAX_VALUE));
+        }
+
+        /**
+         * Drops all stations which have been added for the specified sector
+         * so far. Used when a sector is replaced by a delta file.
+         *
+         * @param sector
+         *            The index of the replaced sector
+         */
+        void replaceSector(final int sector)
+        {
+            this.replacedSectors.put(sector, this.ids.size());
+        }
+
+        /**
+         * Checks if the specified station has been dropped because its
+         * sector was replaced.
+         *
+         * @param station
+         *            The index of the added station
+         * @return True if station was dropped, false if not
+         */
+        boolean isReplaced(final int station)
+        {
+            final Integer first =
+                this.replacedSectors.get(this.sectors.get(station));
+            return first != null && station < first;
+        }
+
+        /**
+         * Returns the index of the specified string in a string table. The
+         * string is added to the table if not already present.
+         *
+         * @param value
+         *            The string
+         * @param table
+         *            The string table
+         * @param map
+         *            The indices mapped by string
+         * @param max
+         *            The maximum allowed index
+         * @return The index
+         */
+        private static int getIndex(final String value,
+            final List<String> table, final Map<String, Integer> map,
+            final int max)
+        {
+            Integer index = map.get(value);
+            if (index == null)
+            {
+                index = table.size();
+                if (index > max)
+                    throw new DataException("Too many different station "
+                        + "types or classes");
+                table.add(value);
+                map.put(value, index);
+            }
+            return index;
+        }
+
+        /**
+         * Builds the station index.
+         *
+         * @param game
+         *            The game
+         * @param sectorFactory
+         *            The sector factory with the already indexed sectors
+         * @return The station index
+         */
+        StationIndex build(final Game game, final SectorFactory sectorFactory)
+        {
+            return new StationIndex(game, sectorFactory, this);
+        }
+    }
+}
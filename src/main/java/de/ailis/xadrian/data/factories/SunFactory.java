@@ -4,8 +4,8 @@
  */
 package de.ailis.xadrian.data.factories;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.net.URL;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
@@ -13,15 +13,11 @@ import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.dom4j.Document;
-import org.dom4j.DocumentException;
 import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 
-import de.ailis.xadrian.Main;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Sun;
 import de.ailis.xadrian.exceptions.DataException;
-import de.ailis.xadrian.frames.SplashFrame;
 
 /**
  * Factory for sun objects.
@@ -50,49 +46,97 @@ public class SunFactory implements Serializable
      *
      * @param game
      *            The game for which this factory is responsible.
+     * @param source
+     *            The source to read the data from.
      */
-    public SunFactory(final Game game)
+    public SunFactory(final Game game, final GameSource source)
     {
         this.game = game;
-        readData();
-        SplashFrame.advanceProgress();
+        if (source.hasSnapshot())
+            readSnapshot(source.getSection(GameSnapshot.Section.SUNS));
+        else
+            readData(source.getDocument("suns.xml"));
+        GameFactory.getInstance().fireLoadProgress();
     }
 
     /**
      * Reads the data from the XML file.
+     *
+     * @param document
+     *            The parsed XML document
+     */
+    private void readData(final Document document)
+    {
+        for (final Object item : document.getRootElement().elements("sun"))
+        {
+            final Element element = (Element) item;
+            final int percent = Integer.parseInt(element
+                .attributeValue("percent"));
+            final int cycle = Integer.parseInt(element
+                .attributeValue("cycle"));
+            addSun(new Sun(this.game, percent, cycle), Boolean
+                .parseBoolean(element.attributeValue("default", "false")));
+        }
+    }
+
+    /**
+     * Reads the data from the snapshot.
+     *
+     * @param in
+     *            The snapshot section input
      */
-    private void readData()
+    private void readSnapshot(final GameSnapshot.Input in)
     {
-        String gameId = this.game.getId();
-        URL url = Main.class.getResource("/" + gameId + "/suns.xml");
-        if (url == null)
-            url = Main.class.getResource("data/" + gameId + "/suns.xml");
-        final SAXReader reader = new SAXReader();
         try
         {
-            final Document document = reader.read(url);
-            for (final Object item : document.getRootElement().elements("sun"))
+            for (int i = in.readInt(); i > 0; i--)
             {
-                final Element element = (Element) item;
-                final int percent = Integer.parseInt(element
-                    .attributeValue("percent"));
-                final int cycle = Integer.parseInt(element
-                    .attributeValue("cycle"));
-                final Sun suns = new Sun(this.game, percent, cycle);
-                if (this.defaultSuns == null
-                    || Boolean.parseBoolean(element
-                        .attributeValue("default", "false")))
-                    this.defaultSuns = suns;
-                this.suns.add(suns);
-                this.sunMap.put(percent, suns);
+                final int percent = in.readInt();
+                final int cycle = in.readInt();
+                addSun(new Sun(this.game, percent, cycle), in.readBoolean());
             }
         }
-        catch (final DocumentException e)
+        catch (final IOException e)
         {
-            throw new DataException("Unable to read XML file: " + e, e);
+            throw new DataException("Unable to read game snapshot: " + e, e);
         }
     }
 
+    /**
+     * Writes the data to a snapshot.
+     *
+     * @param out
+     *            The snapshot section output
+     * @throws IOException
+     *             When write fails
+     */
+    void writeSnapshot(final GameSnapshot.Output out) throws IOException
+    {
+        out.writeInt(this.suns.size());
+        for (final Sun suns : this.suns)
+        {
+            out.writeInt(suns.getPercent());
+            out.writeInt(suns.getCycle());
+            out.writeBoolean(suns == this.defaultSuns);
+        }
+    }
+
+    /**
+     * Adds a sun.
+     *
+     * @param suns
+     *            The sun to add
+     * @param isDefault
+     *            If this is the default sun. If no sun is marked as default
+     *            then the first one is used as default.
+     */
+    private void addSun(final Sun suns, final boolean isDefault)
+    {
+        if (this.defaultSuns == null || isDefault) this.defaultSuns = suns;
+        this.suns.add(suns);
+        this.sunMap.put(suns.getPercent(), suns);
+    }
+
     /**
      * Returns all suns.
      *
@@ -119,6 +163,18 @@ public class SunFactory implements Serializable
         return this.sunMap.get(percent);
     }
 
+    /**
+     * Checks if there is a sun with the specified percent.
+     *
+     * @param percent
+     *            The percent
+     * @return True if there is such a sun, false if not.
+     */
+    public boolean hasSun(final int percent)
+    {
+        return this.sunMap.containsKey(percent);
+    }
+
     /**
      * Returns the default sun.
      *
@@ -4,25 +4,23 @@
  */
 package de.ailis.xadrian.data.factories;
 
+import java.io.IOException;
 import java.io.Serializable;
-import java.net.URL;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.SortedSet;
 import java.util.TreeSet;
 
 import org.dom4j.Document;
-import org.dom4j.DocumentException;
 import org.dom4j.Element;
-import org.dom4j.io.SAXReader;
 
-import de.ailis.xadrian.Main;
 import de.ailis.xadrian.data.Container;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Ware;
 import de.ailis.xadrian.exceptions.DataException;
-import de.ailis.xadrian.frames.SplashFrame;
 
 /**
  * Factory for Ware objects.
@@ -43,57 +41,146 @@ public class WareFactory implements Serializable
     /** The wares (sorted) */
     private final SortedSet<Ware> wares = new TreeSet<Ware>();
 
+    /** The wares indexed by their ordinal */
+    private final List<Ware> wareList = new ArrayList<Ware>();
+
     /**
      * Constructor.
      *
      * @param game
      *            The game for which this factory is responsible.
+     * @param source
+     *            The source to read the data from.
      */
-    public WareFactory(final Game game)
+    public WareFactory(final Game game, final GameSource source)
     {
         this.game = game;
-        readData();
-        SplashFrame.advanceProgress();
+        if (source.hasSnapshot())
+            readSnapshot(source.getSection(GameSnapshot.Section.WARES));
+        else
+            readData(source.getDocument("wares.xml"));
+        for (final Document delta: source.getDeltaDocuments("wares.xml"))
+            readData(delta);
+        GameFactory.getInstance().fireLoadProgress();
     }
 
     /**
-     * Reads the data from the XML file.
+     * Reads the data from the XML file. This is also used for the delta
+     * files in which case the read wares replace the existing wares with
+     * the same ID.
+     *
+     * @param document
+     *            The parsed XML document
      */
-    private void readData()
+    private void readData(final Document document)
+    {
+        for (final Object item : document.getRootElement().elements("ware"))
+        {
+            final Element element = (Element) item;
+            final String id = element.attributeValue("id");
+            final int minPrice =
+                Integer.parseInt(element.attributeValue("minPrice"));
+            final int avgPrice =
+                Integer.parseInt(element.attributeValue("avgPrice"));
+            final int maxPrice =
+                Integer.parseInt(element.attributeValue("maxPrice"));
+            final int volume =
+                Integer.parseInt(element.attributeValue("volume"));
+            final Container container =
+                Container.valueOf(element.attributeValue("container"));
+            addWare(id, minPrice, avgPrice, maxPrice, volume, container);
+        }
+    }
+
+    /**
+     * Reads the data from the snapshot.
+     *
+     * @param in
+     *            The snapshot section input
+     */
+    private void readSnapshot(final GameSnapshot.Input in)
     {
-        String gameId = this.game.getId();
-        URL url = Main.class.getResource("/" + gameId + "/wares.xml");
-        if (url == null)
-            url = Main.class.getResource("data/" + gameId + "/wares.xml");
-        final SAXReader reader = new SAXReader();
         try
         {
-            final Document document = reader.read(url);
-            for (final Object item : document.getRootElement().elements("ware"))
+            for (int i = in.readInt(); i > 0; i--)
             {
-                final Element element = (Element) item;
-                final String id = element.attributeValue("id");
-                final int minPrice =
-                    Integer.parseInt(element.attributeValue("minPrice"));
-                final int avgPrice =
-                    Integer.parseInt(element.attributeValue("avgPrice"));
-                final int maxPrice =
-                    Integer.parseInt(element.attributeValue("maxPrice"));
-                final int volume =
-                    Integer.parseInt(element.attributeValue("volume"));
-                final Container container =
-                    Container.valueOf(element.attributeValue("container"));
-                final Ware ware =
-                    new Ware(this.game, id, minPrice, avgPrice, maxPrice,
-                        volume, container);
-                this.wares.add(ware);
-                this.wareMap.put(id, ware);
+                final String id = in.readString();
+                final int minPrice = in.readInt();
+                final int avgPrice = in.readInt();
+                final int maxPrice = in.readInt();
+                final int volume = in.readInt();
+                final Container container = Container.valueOf(in.readString());
+                addWare(id, minPrice, avgPrice, maxPrice, volume, container);
             }
         }
-        catch (final DocumentException e)
+        catch (final IOException e)
+        {
+            throw new DataException("Unable to read game snapshot: " + e, e);
+        }
+    }
+
+    /**
+     * Writes the data to a snapshot. The wares are written in the order of
+     * their ordinals.
+     *
+     * @param out
+     *            The snapshot section output
+     * @throws IOException
+     *             When write fails
+     */
+    void writeSnapshot(final GameSnapshot.Output out) throws IOException
+    {
+        out.writeInt(this.wareList.size());
+        for (final Ware ware : this.wareList)
+        {
+            out.writeString(ware.getId());
+            out.writeInt(ware.getMinPrice());
+            out.writeInt(ware.getAvgPrice());
+            out.writeInt(ware.getMaxPrice());
+            out.writeInt(ware.getVolume());
+            out.writeString(ware.getContainer().name());
+        }
+    }
+
+    /**
+     * Adds a ware. The ware gets the next free ordinal. If a ware with the
+     * same ID already exists then it is replaced and the new ware gets the
+     * ordinal of the replaced one.
+     *
+     * @param id
+     *            The ware id
+     * @param minPrice
+     *            The minimum price
+     * @param avgPrice
+     *            The average price
+     * @param maxPrice
+     *            The maximum price
+     * @param volume
+     *            The volume
+     * @param container
+     *            The container size
+     */
+    private void addWare(final String id, final int minPrice,
+        final int avgPrice, final int maxPrice, final int volume,
+        final Container container)
+    {
+        final Ware replaced = this.wareMap.get(id);
+        final int ordinal =
+            replaced == null ? this.wareList.size() : replaced.getOrdinal();
+        final Ware ware =
+            new Ware(this.game, id, ordinal, minPrice, avgPrice, maxPrice,
+                volume, container);
+        if (replaced == null)
+        {
+            this.wareList.add(ware);
+        }
+        else
         {
-            throw new DataException("Unable to read XML file: " + e, e);
+            this.wares.remove(replaced);
+            this.wareList.set(ordinal, ware);
         }
+        this.wares.add(ware);
+        this.wareMap.put(id, ware);
     }
 
     /**
@@ -117,4 +204,29 @@ public class WareFactory implements Serializable
     {
         return this.wareMap.get(id);
     }
+
+    /**
+     * Returns the ware with the specified ordinal.
+     *
+     * @param ordinal
+     *            The ware ordinal
+     * @return The ware
+     * @throws IndexOutOfBoundsException
+     *             If there is no ware with this ordinal
+     */
+    public Ware getWare(final int ordinal)
+    {
+        return this.wareList.get(ordinal);
+    }
+
+    /**
+     * Returns the number of wares. This is also the upper bound (exclusive)
+     * of the ware ordinals.
+     *
+     * @return The number of wares
+     */
+    public int getWareCount()
+    {
+        return this.wareList.size();
+    }
 }
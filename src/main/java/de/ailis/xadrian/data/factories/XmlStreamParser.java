@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.txt file for licensing information.
+ */
+
+package de.ailis.xadrian.data.factories;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import de.ailis.xadrian.exceptions.DataException;
+
+/**
+ * A streaming pull parser for the large game data XML files. Elements are
+ * processed as they arrive so no document tree has to be built. Elements
+ * which are not needed are skipped without materializing them.
+ *
+ * The parser is used in a recursive descent style: {@link #nextChild()}
+ * moves to the next child element of the current element. The caller then
+ * either reads the children of this element by calling {@link #nextChild()}
+ * again until it returns false or skips the element with {@link #skip()}.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+final class XmlStreamParser
+{
+    /** The shared XML input factory */
+    private static final XMLInputFactory factory = createFactory();
+
+    /** The name of the parsed file. Used in error messages */
+    private final String filename;
+
+    /** The XML stream reader */
+    private final XMLStreamReader reader;
+
+    /**
+     * Constructor. The parser is positioned on the root element.
+     *
+     * @param stream
+     *            The input stream to parse
+     * @param filename
+     *            The name of the parsed file. Used in error messages
+     * @throws DataException
+     *             When XML could not be read
+     */
+    XmlStreamParser(final InputStream stream, final String filename)
+    {
+        this.filename = filename;
+        try
+        {
+            synchronized (factory)
+            {
+                this.reader = factory.createXMLStreamReader(stream);
+            }
+            while (this.reader.getEventType()
+                != XMLStreamConstants.START_ELEMENT)
+            {
+                if (!this.reader.hasNext())
+                    throw new DataException("XML file " + filename
+                        + " has no root element");
+                this.reader.next();
+            }
+        }
+        catch (final XMLStreamException e)
+        {
+            throw error(e);
+        }
+    }
+
+    /**
+     * Creates the XML input factory.
+     *
+     * @return The XML input factory
+     */
+    private static XMLInputFactory createFactory()
+    {
+        final XMLInputFactory factory = XMLInputFactory.newInstance();
+        factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+        factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE,
+            Boolean.FALSE);
+        return factory;
+    }
+
+    /**
+     * Creates the exception for the specified XML error.
+     *
+     * @param e
+     *            The XML error
+     * @return The exception to throw
+     */
+    private DataException error(final XMLStreamException e)
+    {
+        return new DataException("Unable to read XML file " + this.filename
+            + ": " + e, e);
+    }
+
+    /**
+     * Moves to the next child element of the current element.
+     *
+     * @return True if parser is positioned on the next child element, false
+     *         if the end of the current element has been reached
+     * @throws DataException
+     *             When XML could not be read
+     */
+    boolean nextChild()
+    {
+        try
+        {
+            while (this.reader.hasNext())
+            {
+                switch (this.reader.next())
+                {
+                    case XMLStreamConstants.START_ELEMENT:
+                        return true;
+
+                    case XMLStreamConstants.END_ELEMENT:
+                        return false;
+
+                    default:
+                }
+            }
+            return false;
+        }
+        catch (final XMLStreamException e)
+        {
+            throw error(e);
+        }
+    }
+
+    /**
+     * Skips the current element and all its children.
+     *
+     * @throws DataException
+     *             When XML could not be read
+     */
+    void skip()
+    {
+        while (nextChild())
+            skip();
+    }
+
+    /**
+     * Returns the name of the current element.
+     *
+     * @return The element name
+     */
+    String getName()
+    {
+        return this.reader.getLocalName();
+    }
+
+    /**
+     * Returns the value of the specified attribute of the current element.
+     *
+     * @param name
+     *            The attribute name
+     * @return The attribute value or null if not present
+     */
+    String getAttribute(final String name)
+    {
+        return this.reader.getAttributeValue(null, name);
+    }
+
+    /**
+     * Returns the value of the specified attribute of the current element
+     * as an integer.
+     *
+     * @param name
+     *            The attribute name
+     * @return The attribute value
+     * @throws DataException
+     *             When attribute is missing or not a number
+     */
+    int getIntAttribute(final String name)
+    {
+        final String value = getAttribute(name);
+        try
+        {
+            return Integer.parseInt(value);
+        }
+        catch (final NumberFormatException e)
+        {
+            throw new DataException("Invalid attribute " + name + "=\""
+                + value + "\" in element " + getName() + " of XML file "
+                + this.filename + " at line "
+                + this.reader.getLocation().getLineNumber(), e);
+        }
+    }
+
+    /**
+     * Closes the parser.
+     */
+    void close()
+    {
+        try
+        {
+            this.reader.close();
+        }
+        catch (final XMLStreamException e)
+        {
+            throw error(e);
+        }
+    }
+}
@@ -36,7 +36,6 @@ import de.ailis.xadrian.data.factories.GameFactory;
 import de.ailis.xadrian.frames.SplashFrame;
 import de.ailis.xadrian.freemarker.TemplateFactory;
 import de.ailis.xadrian.models.FactoryTreeModel;
-import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.ModalDialog;
 import de.ailis.xadrian.utils.SwingUtils;
 import freemarker.template.Template;
@@ -191,7 +190,7 @@ public class AddFactoryDialog extends ModalDialog implements
     public Result open()
     {
         this.factoriesTree.setModel(getFactoriesTreeModel());
-        Config.restoreSplitPaneState(this.splitPane);
+        SwingUtils.restoreSplitPaneState(this.splitPane);
         try
         {
             this.factories = null;
@@ -201,7 +200,7 @@ public class AddFactoryDialog extends ModalDialog implements
         }
         finally
         {
-            Config.saveSplitPaneState(this.splitPane);
+            SwingUtils.saveSplitPaneState(this.splitPane);
         }
     }
 
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.dialogs;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import de.ailis.xadrian.data.Game;
+
+/**
+ * The dialogs which depend on the data of a game. The dialogs are created on
+ * first access and are then reused for the game. This is kept out of the
+ * {@link Game} class itself so the game data can be used without a GUI.
+ *
+ * The dialogs are bound to the game object and not to the game ID so a game
+ * which has been reloaded gets new dialogs.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class GameDialogs
+{
+    /** The dialogs per game. */
+    private static final Map<Game, GameDialogs> instances =
+        new IdentityHashMap<Game, GameDialogs>();
+
+    /** The game. */
+    private final Game game;
+
+    /** The add factory dialog. */
+    private AddFactoryDialog addFactoryDialog;
+
+    /** The select sector dialog. */
+    private SelectSectorDialog selectSectorDialog;
+
+    /** The change suns dialog. */
+    private ChangeSunsDialog changeSunsDialog;
+
+    /** The change prices dialog. */
+    private ChangePricesDialog changePricesDialog;
+
+    /**
+     * Constructor.
+     *
+     * @param game
+     *            The game.
+     */
+    private GameDialogs(final Game game)
+    {
+        this.game = game;
+    }
+
+    /**
+     * Returns the dialogs of the specified game.
+     *
+     * @param game
+     *            The game.
+     * @return The dialogs of the game.
+     */
+    public static synchronized GameDialogs getInstance(final Game game)
+    {
+        GameDialogs dialogs = instances.get(game);
+        if (dialogs == null)
+        {
+            dialogs = new GameDialogs(game);
+            instances.put(game, dialogs);
+        }
+        return dialogs;
+    }
+
+    /**
+     * Releases the dialogs of the specified game. Must be called when a game
+     * is no longer used (For example because it was reloaded) so the dialogs
+     * and the old game data can be garbage collected.
+     *
+     * @param game
+     *            The game.
+     */
+    public static synchronized void release(final Game game)
+    {
+        instances.remove(game);
+    }
+
+    /**
+     * Returns the add factory dialog.
+     *
+     * @return The add factory dialog.
+     */
+    public synchronized AddFactoryDialog getAddFactoryDialog()
+    {
+        if (this.addFactoryDialog == null)
+            this.addFactoryDialog = new AddFactoryDialog(this.game);
+        return this.addFactoryDialog;
+    }
+
+    /**
+     * Returns the select sector dialog.
+     *
+     * @return The select sector dialog.
+     */
+    public synchronized SelectSectorDialog getSelectSectorDialog()
+    {
+        if (this.selectSectorDialog == null)
+            this.selectSectorDialog = new SelectSectorDialog(this.game);
+        return this.selectSectorDialog;
+    }
+
+    /**
+     * Returns the change suns dialog.
+     *
+     * @return The change suns dialog.
+     */
+    public synchronized ChangeSunsDialog getChangeSunsDialog()
+    {
+        if (this.changeSunsDialog == null)
+            this.changeSunsDialog = new ChangeSunsDialog(this.game);
+        return this.changeSunsDialog;
+    }
+
+    /**
+     * Returns the change prices dialog.
+     *
+     * @return The change prices dialog.
+     */
+    public synchronized ChangePricesDialog getChangePricesDialog()
+    {
+        if (this.changePricesDialog == null)
+            this.changePricesDialog = new ChangePricesDialog(this.game);
+        return this.changePricesDialog;
+    }
+}
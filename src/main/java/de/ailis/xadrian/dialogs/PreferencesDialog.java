@@ -29,11 +29,11 @@ import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Race;
 import de.ailis.xadrian.data.Theme;
 import de.ailis.xadrian.data.factories.GameFactory;
-import de.ailis.xadrian.data.factories.ThemeFactory;
 import de.ailis.xadrian.frames.SplashFrame;
 import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.I18N;
 import de.ailis.xadrian.support.ModalDialog;
+import de.ailis.xadrian.support.ThemeFactory;
 import de.ailis.xadrian.utils.SwingUtils;
 
 /**
@@ -63,6 +63,11 @@ public class PreferencesDialog extends ModalDialog
      */
     private JCheckBox nightModeCheckBox;
 
+    /**
+     * The checkbox to save complexes in the binary format.
+     */
+    private JCheckBox binaryComplexFilesCheckBox;
+
     /** The X3TC player sector combo box */
     private JComboBox x3tcPlayerSectorComboBox;
 
@@ -169,7 +174,9 @@ public class PreferencesDialog extends ModalDialog
     private SortedSet<Race> getIgnorableRaces()
     {
         final SortedSet<Race> races = new TreeSet<Race>();
-        for (final Game game : GameFactory.getInstance().getGames())
+        final GameFactory gameFactory = GameFactory.getInstance();
+        gameFactory.loadGames();
+        for (final Game game : gameFactory.getGames())
         {
             for (final Race race : game.getRaceFactory().getManufacturerRaces())
             {
@@ -421,6 +428,14 @@ public class PreferencesDialog extends ModalDialog
         c.gridy++;
         controlPanel.add(this.nightModeCheckBox, c);
 
+        // Create the "binary complex files" controls
+        this.binaryComplexFilesCheckBox = new JCheckBox(
+            I18N.getString("dialog.preferences.binaryComplexFiles"));
+        this.binaryComplexFilesCheckBox.setToolTipText(
+            I18N.getToolTip("dialog.preferences.binaryComplexFiles"));
+        c.gridy++;
+        controlPanel.add(this.binaryComplexFilesCheckBox, c);
+
         panel.add(controlPanel);
         return panel;
     }
@@ -455,6 +470,8 @@ public class PreferencesDialog extends ModalDialog
             .isShowFactoryResources());
         this.nightModeCheckBox.setSelected(config
             .isNightMode());
+        this.binaryComplexFilesCheckBox.setSelected(config
+            .isBinaryComplexFiles());
         this.themeComboBox.setSelectedItem(ThemeFactory.getInstance().getTheme(
             UIManager.getLookAndFeel().getClass().getName()));
         this.localeComboBox.setSelectedItem(new ComboBoxEntry(null,
@@ -485,11 +502,15 @@ public class PreferencesDialog extends ModalDialog
             }
             for (final Game game : GameFactory.getInstance().getGames())
             {
-                game.getAddFactoryDialog().resetFactoriesTreeModel();
+                if (game.isLoaded())
+                    GameDialogs.getInstance(game).getAddFactoryDialog()
+                        .resetFactoriesTreeModel();
             }
             config.setShowFactoryResources(this.showFactoryResourcesCheckBox
                 .isSelected());
             config.setNightMode(this.nightModeCheckBox.isSelected());
+            config.setBinaryComplexFiles(this.binaryComplexFilesCheckBox
+                .isSelected());
             config.setX3TCPlayerSector(
                 this.x3tcPlayerSectorComboBox.getSelectedIndex());
             config.setX3APPlayerSector(
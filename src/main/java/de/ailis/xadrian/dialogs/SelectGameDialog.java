@@ -8,6 +8,8 @@ package de.ailis.xadrian.dialogs;
 import java.awt.BorderLayout;
 import java.awt.GridBagConstraints;
 import java.awt.GridBagLayout;
+import java.awt.event.ItemEvent;
+import java.awt.event.ItemListener;
 import java.util.SortedSet;
 
 import javax.swing.BorderFactory;
@@ -77,6 +79,18 @@ public class SelectGameDialog extends ModalDialog
             .getDefaultGame());
         gameLabel.setLabelFor(this.gameComboBox);
 
+        // Start loading the selected game in the background so it is most
+        // likely ready when the dialog is closed
+        this.gameComboBox.addItemListener(new ItemListener()
+        {
+            @Override
+            public void itemStateChanged(final ItemEvent e)
+            {
+                if (e.getStateChange() == ItemEvent.SELECTED)
+                    ((Game) e.getItem()).loadInBackground();
+            }
+        });
+
         this.rememberCheckBox = new JCheckBox(I18N
             .getString("dialog.selectGame.remember"));
         this.rememberCheckBox.setIconTextGap(5);
@@ -112,6 +126,7 @@ public class SelectGameDialog extends ModalDialog
     {
         this.rememberCheckBox.setSelected(false);
         this.gameComboBox.requestFocus();
+        getGame().loadInBackground();
         final Result result = super.open();
         return result;
     }
@@ -27,7 +27,6 @@ import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Sector;
 import de.ailis.xadrian.data.factories.GameFactory;
 import de.ailis.xadrian.interfaces.GameProvider;
-import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.I18N;
 import de.ailis.xadrian.support.ModalDialog;
 import de.ailis.xadrian.utils.SwingUtils;
@@ -158,7 +157,7 @@ public class SetYieldsDialog extends ModalDialog
             try
             {
                 final Integer yield = Integer.parseInt(part);
-                if (yield < 0 || yield > 999)
+                if (yield < 0 || yield > Factory.MAX_YIELD)
                 {
                     setResultEnabled(Result.OK, false);
                     return;
@@ -180,7 +179,7 @@ public class SetYieldsDialog extends ModalDialog
     @Override
     public Result open()
     {
-        Config.restoreSplitPaneState(this.splitPane);
+        SwingUtils.restoreSplitPaneState(this.splitPane);
         try
         {
             // Initialize the input pane with the yields
@@ -199,7 +198,7 @@ public class SetYieldsDialog extends ModalDialog
         }
         finally
         {
-            Config.saveSplitPaneState(this.splitPane);
+            SwingUtils.saveSplitPaneState(this.splitPane);
         }
     }
 
@@ -16,6 +16,7 @@ import java.awt.event.MouseAdapter;
 import java.awt.event.MouseEvent;
 import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
@@ -36,6 +37,7 @@ import javax.swing.JToggleButton;
 import javax.swing.JToolBar;
 import javax.swing.MenuElement;
 import javax.swing.SwingConstants;
+import javax.swing.SwingUtilities;
 import javax.swing.TransferHandler;
 import javax.swing.WindowConstants;
 import javax.swing.border.EmptyBorder;
@@ -45,7 +47,6 @@ import javax.swing.event.EventListenerList;
 
 import org.apache.commons.logging.Log;
 import org.apache.commons.logging.LogFactory;
-import org.dom4j.Document;
 import org.dom4j.DocumentException;
 import org.dom4j.io.SAXReader;
 
@@ -81,8 +82,10 @@ import de.ailis.xadrian.components.SocialPane;
 import de.ailis.xadrian.data.Complex;
 import de.ailis.xadrian.data.Game;
 import de.ailis.xadrian.data.Sector;
+import de.ailis.xadrian.data.TemplateCode;
 import de.ailis.xadrian.data.factories.GameFactory;
 import de.ailis.xadrian.dialogs.AboutDialog;
+import de.ailis.xadrian.dialogs.GameDialogs;
 import de.ailis.xadrian.dialogs.OpenComplexDialog;
 import de.ailis.xadrian.dialogs.PreferencesDialog;
 import de.ailis.xadrian.dialogs.SelectGameDialog;
@@ -92,6 +95,7 @@ import de.ailis.xadrian.interfaces.GameProvider;
 import de.ailis.xadrian.interfaces.SectorProvider;
 import de.ailis.xadrian.listeners.ClipboardStateListener;
 import de.ailis.xadrian.listeners.EditorStateListener;
+import de.ailis.xadrian.listeners.GameReloadListener;
 import de.ailis.xadrian.listeners.MainStateListener;
 import de.ailis.xadrian.listeners.StateListener;
 import de.ailis.xadrian.resources.Images;
@@ -100,6 +104,7 @@ import de.ailis.xadrian.support.Config;
 import de.ailis.xadrian.support.I18N;
 import de.ailis.xadrian.support.ModalDialog.Result;
 import de.ailis.xadrian.utils.FileUtils;
+import de.ailis.xadrian.utils.SwingUtils;
 
 /**
  * The main frame.
@@ -108,7 +113,8 @@ import de.ailis.xadrian.utils.FileUtils;
  */
 public class MainFrame extends JFrame implements EditorStateListener,
     ChangeListener, ClipboardProvider, ClipboardStateListener,
-    ComplexProvider, SectorProvider, StateListener, GameProvider
+    ComplexProvider, SectorProvider, StateListener, GameProvider,
+    GameReloadListener
 {
     /** Serial version UID */
     private static final long serialVersionUID = 7989554637240491666L;
@@ -247,9 +253,11 @@ public class MainFrame extends JFrame implements EditorStateListener,
 
         setTransferHandler(this.transferHandler);
 
+        GameFactory.getInstance().addReloadListener(this);
+
         pack();
 
-        Config.restoreWindowState(this);
+        SwingUtils.restoreWindowState(this);
 
         this.tabs.requestFocus();
     }
@@ -264,7 +272,7 @@ public class MainFrame extends JFrame implements EditorStateListener,
         setJMenuBar(menuBar);
 
         // Create the 'File' menu
-        final JMenu fileMenu = I18N.createMenu(menuBar, "file");
+        final JMenu fileMenu = SwingUtils.createMenu(menuBar, "file");
         fileMenu.add(this.newAction);
         fileMenu.add(this.openAction);
         fileMenu.addSeparator();
@@ -277,23 +285,23 @@ public class MainFrame extends JFrame implements EditorStateListener,
         fileMenu.addSeparator();
         fileMenu.add(this.printAction);
         fileMenu.addSeparator();
-        final JMenu exportMenu = I18N.createMenu(fileMenu, "export");
+        final JMenu exportMenu = SwingUtils.createMenu(fileMenu, "export");
         exportMenu.add(this.exportASCIIAction);
         exportMenu.add(this.exportTemplateCodeAction);
-        final JMenu importMenu = I18N.createMenu(fileMenu, "import");
+        final JMenu importMenu = SwingUtils.createMenu(fileMenu, "import");
         importMenu.add(this.importTemplateCodeAction);
         fileMenu.addSeparator();
         fileMenu.add(this.exitAction);
 
         // Create the 'Edit' menu
-        final JMenu editMenu = I18N.createMenu(menuBar, "edit");
+        final JMenu editMenu = SwingUtils.createMenu(menuBar, "edit");
         editMenu.add(new CopyAction(this));
         editMenu.add(this.selectAllAction);
         editMenu.addSeparator();
         editMenu.add(this.preferencesAction);
 
         // Create the 'Complex' menu
-        final JMenu complexMenu = I18N.createMenu(menuBar, "complex");
+        final JMenu complexMenu = SwingUtils.createMenu(menuBar, "complex");
         complexMenu.add(this.addFactoryAction);
         complexMenu.add(this.changeSectorAction);
         complexMenu.add(this.changeSunsAction);
@@ -301,7 +309,7 @@ public class MainFrame extends JFrame implements EditorStateListener,
         complexMenu.add(new JCheckBoxMenuItem(this.toggleBaseComplexAction));
 
         // Create the 'Help' menu
-        final JMenu helpMenu = I18N.createMenu(menuBar, "help");
+        final JMenu helpMenu = SwingUtils.createMenu(menuBar, "help");
         helpMenu.add(this.donateAction);
         helpMenu.addSeparator();
         helpMenu.add(this.homepageAction);
@@ -692,6 +700,31 @@ public class MainFrame extends JFrame implements EditorStateListener,
         fireChange();
     }
 
+    /**
+     * @see de.ailis.xadrian.listeners.GameReloadListener#gameReloaded(de.ailis.xadrian.data.Game, de.ailis.xadrian.data.Game)
+     */
+    @Override
+    public void gameReloaded(final Game oldGame, final Game newGame)
+    {
+        SwingUtilities.invokeLater(new Runnable()
+        {
+            @Override
+            public void run()
+            {
+                for (int i = 0; i < MainFrame.this.tabs.getTabCount(); i++)
+                {
+                    final Component component =
+                        MainFrame.this.tabs.getComponentAt(i);
+                    if (!(component instanceof ComplexEditor)) continue;
+                    final ComplexEditor editor = (ComplexEditor) component;
+                    if (editor.getGame() == oldGame) editor.rebind(newGame);
+                }
+                GameDialogs.release(oldGame);
+                fireChange();
+            }
+        });
+    }
+
     /**
      * @see javax.swing.event.ChangeListener#stateChanged(javax.swing.event.ChangeEvent)
      */
@@ -708,7 +741,7 @@ public class MainFrame extends JFrame implements EditorStateListener,
     {
         if (closeAllTabs())
         {
-            Config.saveWindowState(this);
+            SwingUtils.saveWindowState(this);
             Config.getInstance().save();
             System.exit(0);
         }
@@ -1101,6 +1134,17 @@ public class MainFrame extends JFrame implements EditorStateListener,
      *            The template code to import.
      */
     public void importFromTemplateCode(final String templateCode)
+    {
+        importFromTemplateCode(TemplateCode.decode(templateCode));
+    }
+
+    /**
+     * Imports a new complex from the specified decoded template code.
+     *
+     * @param templateCode
+     *            The decoded template code to import.
+     */
+    public void importFromTemplateCode(final TemplateCode templateCode)
     {
         final Complex complex = Complex.fromTemplateCode(templateCode);
         final ComplexEditor editor = new ComplexEditor(complex);
@@ -1157,20 +1201,47 @@ public class MainFrame extends JFrame implements EditorStateListener,
 
         try
         {
-            final SAXReader reader = new SAXReader();
-            final Document document = reader.read(file);
-            final Complex complex = Complex.fromXML(document);
+            // Detect the file format by the magic header of binary files
+            final byte[] data = FileUtils.readBytes(file);
+            final Complex complex;
+            if (Complex.isBinary(data))
+            {
+                complex = Complex.fromBinary(data);
+            }
+            else
+            {
+                final SAXReader reader = new SAXReader();
+                complex = Complex.fromXML(reader.read(
+                    new ByteArrayInputStream(data)));
+            }
             complex.setName(FileUtils.getNameWithoutExt(file));
             editor = new ComplexEditor(complex, file);
             createLoadedComplexTab(editor);
         }
         catch (final DocumentException e)
         {
-            JOptionPane.showMessageDialog(null, I18N.getString(
-                "error.cantReadComplex", file, e.getMessage()), I18N
-                .getString("error.title"), JOptionPane.ERROR_MESSAGE);
-            LOG.error("Unable to load complex from file '" + file + "': "
-                + e, e);
+            showReadError(file, e);
         }
+        catch (final IOException e)
+        {
+            showReadError(file, e);
+        }
+    }
+
+    /**
+     * Displays an error message for a complex file which could not be read.
+     *
+     * @param file
+     *            The file which could not be read.
+     * @param e
+     *            The exception.
+     */
+    private static void showReadError(final File file, final Exception e)
+    {
+        JOptionPane.showMessageDialog(null, I18N.getString(
+            "error.cantReadComplex", file, e.getMessage()), I18N
+            .getString("error.title"), JOptionPane.ERROR_MESSAGE);
+        LOG.error("Unable to load complex from file '" + file + "': "
+            + e, e);
     }
 }
@@ -136,16 +136,19 @@ public class SplashFrame extends JFrame
     }
 
     /**
-     * Sets the number of games. This is needed to correctly calculate the
-     * maximum loading progress.
+     * Sets the number of games which are preloaded. This is needed to
+     * correctly calculate the maximum loading progress. Each game has five
+     * data files which are parsed, five data factories which link the parsed
+     * data and four dialogs. In addition five global dialogs are
+     * preloaded.
      *
      * @param numberOfGames
-     *            The number of games.
+     *            The number of preloaded games.
      */
     public static void setNumberOfGames(int numberOfGames)
     {
         if (instance == null) return;
-        instance.progressBar.setMaximum(numberOfGames * 10 + 4);
+        instance.progressBar.setMaximum(numberOfGames * 14 + 5);
     }
     
     /**
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.listeners;
+
+import java.util.EventListener;
+
+import de.ailis.xadrian.data.Game;
+
+/**
+ * Listener interface for receiving events about reloaded games.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public interface GameReloadListener extends EventListener
+{
+    /**
+     * Called when a game has been reloaded because its data files have been
+     * changed. The new game has already replaced the old one in the game
+     * factory. This method is called in the thread which reloaded the game.
+     *
+     * @param oldGame
+     *            The replaced game
+     * @param newGame
+     *            The reloaded game
+     */
+    public void gameReloaded(Game oldGame, Game newGame);
+}
@@ -0,0 +1,23 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.listeners;
+
+import java.util.EventListener;
+
+/**
+ * Listener interface for receiving the progress of loading game data.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public interface LoadProgressListener extends EventListener
+{
+    /**
+     * Called each time a step of loading game data has been completed. Each
+     * game has five data files which are parsed and five data factories
+     * which link the parsed data. This method is called in the thread which
+     * completed the step so it may be called concurrently.
+     */
+    public void loadProgressed();
+}
@@ -42,7 +42,8 @@ public abstract class BaseAction extends AbstractAction
     {
         super(I18N.getTitle("action." + name), icon);
         setMnemonic(I18N.getMnemonic("action." + name));
-        setAccelerator(I18N.getAccelerator("action." + name));
+        setAccelerator(KeyStroke.getKeyStroke(I18N.getAccelerator("action."
+            + name)));
         setToolTip(I18N.getToolTip("action." + name));
     }
 
@@ -0,0 +1,597 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.support;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
+import java.util.ArrayDeque;
+import java.util.Locale;
+import java.util.Queue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.data.ComplexWare;
+import de.ailis.xadrian.data.Sector;
+import de.ailis.xadrian.data.ShoppingList;
+
+/**
+ * Evaluates complex template codes in bulk without a GUI.
+ *
+ * The input contains one template code per line. Empty lines and lines
+ * starting with a hash character are ignored. Each template code is decoded,
+ * the base complex is calculated (unless disabled) and a result record is
+ * written to the output. The records are written in the order of the input
+ * lines either as CSV or as JSON lines. Template codes which can't be
+ * evaluated produce a record with an error message instead of aborting the
+ * whole batch.
+ *
+ * The template codes are evaluated by a fixed number of worker threads. The
+ * number of template codes which are read but not yet written is limited so
+ * memory usage doesn't depend on the size of the input.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class BatchEvaluator
+{
+    /** The supported output formats. */
+    public static enum Format
+    {
+        /** Comma separated values with a header line. */
+        CSV,
+
+        /** One JSON object per line. */
+        JSON
+    }
+
+    /** The exit code when all template codes have been evaluated. */
+    public static final int EXIT_OK = 0;
+
+    /** The exit code when some template codes could not be evaluated. */
+    public static final int EXIT_FAILURES = 1;
+
+    /** The exit code for invalid arguments or I/O errors. */
+    public static final int EXIT_ERROR = 2;
+
+    /** The number of pending template codes per worker thread. */
+    private static final int QUEUE_SIZE_PER_THREAD = 64;
+
+    /** The CSV header line. */
+    private static final String CSV_HEADER = "line,templateCode,game,sector,"
+        + "factories,profit,totalPrice,kits,totalKitPrice,shoppingQuantity,"
+        + "shoppingPrice,shoppingVolume,balance,error";
+
+    /** The output format. */
+    private Format format = Format.CSV;
+
+    /** The number of worker threads. */
+    private int threads = Runtime.getRuntime().availableProcessors();
+
+    /** If the base complex should be calculated. */
+    private boolean addBaseComplex = true;
+
+    /** The number of template codes which could not be evaluated. */
+    private int failures;
+
+    /**
+     * Sets the output format. Default is CSV.
+     *
+     * @param format
+     *            The output format to set
+     */
+    public void setFormat(final Format format)
+    {
+        if (format == null)
+            throw new IllegalArgumentException("format must be set");
+        this.format = format;
+    }
+
+    /**
+     * Sets the number of worker threads. Default is the number of available
+     * processors.
+     *
+     * @param threads
+     *            The number of worker threads to set
+     */
+    public void setThreads(final int threads)
+    {
+        if (threads < 1)
+            throw new IllegalArgumentException("threads must be positive");
+        this.threads = threads;
+    }
+
+    /**
+     * Enables or disables the base complex calculation. Default is enabled.
+     *
+     * @param addBaseComplex
+     *            True to calculate the base complex, false to evaluate the
+     *            complexes as they are
+     */
+    public void setAddBaseComplex(final boolean addBaseComplex)
+    {
+        this.addBaseComplex = addBaseComplex;
+    }
+
+    /**
+     * Evaluates all template codes read from the specified reader and writes
+     * the results to the specified writer. The reader is read line by line
+     * and the writer is flushed but not closed.
+     *
+     * @param reader
+     *            The reader to read the template codes from
+     * @param writer
+     *            The writer to write the results to
+     * @return The number of template codes which could not be evaluated
+     * @throws IOException
+     *             When reading or writing fails
+     */
+    public int evaluate(final Reader reader, final Writer writer)
+        throws IOException
+    {
+        final BufferedReader in = new BufferedReader(reader);
+        final int capacity = this.threads * QUEUE_SIZE_PER_THREAD;
+        final Queue<Future<Result>> pending =
+            new ArrayDeque<Future<Result>>(capacity);
+        final ExecutorService executor = createExecutor();
+        this.failures = 0;
+        try
+        {
+            if (this.format == Format.CSV)
+            {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+            int lineNumber = 0;
+            String line;
+            while ((line = in.readLine()) != null)
+            {
+                lineNumber++;
+                final String templateCode = line.trim();
+                if (templateCode.length() == 0
+                    || templateCode.startsWith("#")) continue;
+                if (pending.size() == capacity)
+                    write(writer, pending.remove());
+                pending.add(executor.submit(new Task(lineNumber,
+                    templateCode)));
+            }
+            while (!pending.isEmpty())
+                write(writer, pending.remove());
+            writer.flush();
+        }
+        finally
+        {
+            executor.shutdownNow();
+        }
+        return this.failures;
+    }
+
+    /**
+     * Creates the executor for the worker threads. It uses daemon threads so
+     * it doesn't prevent the application from exiting.
+     *
+     * @return The executor
+     */
+    private ExecutorService createExecutor()
+    {
+        return Executors.newFixedThreadPool(this.threads, new ThreadFactory()
+        {
+            private int counter = 0;
+
+            @Override
+            public synchronized Thread newThread(final Runnable r)
+            {
+                final Thread thread = new Thread(r, "BatchEvaluator-"
+                    + ++this.counter);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /**
+     * Waits for the specified result and writes it.
+     *
+     * @param writer
+     *            The writer to write the result to
+     * @param future
+     *            The future result
+     * @throws IOException
+     *             When writing fails
+     */
+    private void write(final Writer writer, final Future<Result> future)
+        throws IOException
+    {
+        final Result result;
+        try
+        {
+            result = future.get();
+        }
+        catch (final InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            throw new IOException("Interrupted while evaluating complexes");
+        }
+        catch (final ExecutionException e)
+        {
+            // Can't happen because the tasks catch all exceptions
+            throw new IllegalStateException(e.toString(), e);
+        }
+        if (result.error != null) this.failures++;
+        if (this.format == Format.CSV)
+            writeCSV(writer, result);
+        else
+            writeJSON(writer, result);
+    }
+
+    /**
+     * Writes the specified result as a CSV line.
+     *
+     * @param writer
+     *            The writer to write the result to
+     * @param result
+     *            The result to write
+     * @throws IOException
+     *             When writing fails
+     */
+    private static void writeCSV(final Writer writer, final Result result)
+        throws IOException
+    {
+        final StringBuilder line = new StringBuilder();
+        line.append(result.lineNumber).append(',');
+        line.append(escapeCSV(result.templateCode)).append(',');
+        final Complex complex = result.complex;
+        if (complex != null)
+        {
+            final ShoppingList shoppingList = complex.getShoppingList();
+            final Sector sector = complex.getSector();
+            line.append(complex.getGame().getId()).append(',');
+            if (sector != null) line.append(sector.getId());
+            line.append(',');
+            line.append(complex.getTotalQuantity()).append(',');
+            line.append(format(complex.getProfit())).append(',');
+            line.append(complex.getTotalPrice()).append(',');
+            line.append(complex.getKitQuantity()).append(',');
+            line.append(complex.getTotalKitPrice()).append(',');
+            line.append(shoppingList.getTotalQuantity()).append(',');
+            line.append(shoppingList.getTotalPrice()).append(',');
+            line.append(shoppingList.getTotalVolume()).append(',');
+            final StringBuilder balance = new StringBuilder();
+            for (final ComplexWare ware: complex.getWares())
+            {
+                if (balance.length() > 0) balance.append(' ');
+                balance.append(ware.getWare().getId()).append(':');
+                balance.append(format(ware.getProduced() - ware.getNeeded()));
+            }
+            line.append(escapeCSV(balance.toString())).append(',');
+        }
+        else
+        {
+            line.append(",,,,,,,,,,,");
+            line.append(escapeCSV(result.error));
+        }
+        line.append('\n');
+        writer.write(line.toString());
+    }
+
+    /**
+     * Writes the specified result as a JSON line.
+     *
+     * @param writer
+     *            The writer to write the result to
+     * @param result
+     *            The result to write
+     * @throws IOException
+     *             When writing fails
+     */
+    private static void writeJSON(final Writer writer, final Result result)
+        throws IOException
+    {
+        final StringBuilder line = new StringBuilder();
+        line.append("{\"line\":").append(result.lineNumber);
+        line.append(",\"templateCode\":");
+        line.append(escapeJSON(result.templateCode));
+        final Complex complex = result.complex;
+        if (complex != null)
+        {
+            final ShoppingList shoppingList = complex.getShoppingList();
+            final Sector sector = complex.getSector();
+            line.append(",\"game\":");
+            line.append(escapeJSON(complex.getGame().getId()));
+            line.append(",\"sector\":");
+            line.append(sector == null ? "null" : escapeJSON(sector.getId()));
+            line.append(",\"factories\":").append(complex.getTotalQuantity());
+            line.append(",\"profit\":").append(format(complex.getProfit()));
+            line.append(",\"totalPrice\":").append(complex.getTotalPrice());
+            line.append(",\"kits\":").append(complex.getKitQuantity());
+            line.append(",\"totalKitPrice\":").append(
+                complex.getTotalKitPrice());
+            line.append(",\"shoppingList\":{\"quantity\":");
+            line.append(shoppingList.getTotalQuantity());
+            line.append(",\"price\":").append(shoppingList.getTotalPrice());
+            line.append(",\"volume\":").append(shoppingList.getTotalVolume());
+            line.append("},\"wares\":[");
+            boolean first = true;
+            for (final ComplexWare ware: complex.getWares())
+            {
+                if (!first) line.append(',');
+                first = false;
+                line.append("{\"id\":");
+                line.append(escapeJSON(ware.getWare().getId()));
+                line.append(",\"produced\":");
+                line.append(format(ware.getProduced()));
+                line.append(",\"needed\":").append(format(ware.getNeeded()));
+                line.append('}');
+            }
+            line.append(']');
+        }
+        else
+        {
+            line.append(",\"error\":").append(escapeJSON(result.error));
+        }
+        line.append("}\n");
+        writer.write(line.toString());
+    }
+
+    /**
+     * Formats a floating point number with three fraction digits and without
+     * grouping so it can be parsed again by other programs.
+     *
+     * @param value
+     *            The value to format
+     * @return The formatted value
+     */
+    private static String format(final double value)
+    {
+        return String.format(Locale.ROOT, "%.3f", value);
+    }
+
+    /**
+     * Escapes the specified text for a CSV field. The text is quoted if it
+     * contains a comma, a quote or a line break.
+     *
+     * @param text
+     *            The text to escape
+     * @return The escaped text
+     */
+    private static String escapeCSV(final String text)
+    {
+        if (text.indexOf(',') < 0 && text.indexOf('"') < 0
+            && text.indexOf('\n') < 0 && text.indexOf('\r') < 0) return text;
+        return "\"" + text.replace("\"", "\"\"") + "\"";
+    }
+
+    /**
+     * Escapes the specified text as a JSON string including the quotes.
+     *
+     * @param text
+     *            The text to escape
+     * @return The JSON string
+     */
+    private static String escapeJSON(final String text)
+    {
+        final StringBuilder builder = new StringBuilder(text.length() + 2);
+        builder.append('"');
+        for (int i = 0; i < text.length(); i++)
+        {
+            final char c = text.charAt(i);
+            if (c == '"' || c == '\\')
+                builder.append('\\').append(c);
+            else if (c < 0x20)
+                builder.append(String.format("\\u%04x", (int) c));
+            else
+                builder.append(c);
+        }
+        builder.append('"');
+        return builder.toString();
+    }
+
+    /**
+     * The result of evaluating a single template code.
+     */
+    private static final class Result
+    {
+        /** The number of the input line. */
+        final int lineNumber;
+
+        /** The template code. */
+        final String templateCode;
+
+        /** The evaluated complex. Null if evaluation failed. */
+        final Complex complex;
+
+        /** The error message. Null if evaluation was successful. */
+        final String error;
+
+        /**
+         * Constructor.
+         *
+         * @param lineNumber
+         *            The number of the input line
+         * @param templateCode
+         *            The template code
+         * @param complex
+         *            The evaluated complex. Null if evaluation failed
+         * @param error
+         *            The error message. Null if evaluation was successful
+         */
+        Result(final int lineNumber, final String templateCode,
+            final Complex complex, final String error)
+        {
+            this.lineNumber = lineNumber;
+            this.templateCode = templateCode;
+            this.complex = complex;
+            this.error = error;
+        }
+    }
+
+    /**
+     * The task evaluating a single template code. All derived values of the
+     * complex are calculated in the worker thread so writing the result
+     * doesn't need to calculate anything.
+     */
+    private final class Task implements Callable<Result>
+    {
+        /** The number of the input line. */
+        private final int lineNumber;
+
+        /** The template code. */
+        private final String templateCode;
+
+        /**
+         * Constructor.
+         *
+         * @param lineNumber
+         *            The number of the input line
+         * @param templateCode
+         *            The template code
+         */
+        Task(final int lineNumber, final String templateCode)
+        {
+            this.lineNumber = lineNumber;
+            this.templateCode = templateCode;
+        }
+
+        /**
+         * @see java.util.concurrent.Callable#call()
+         */
+        @Override
+        public Result call()
+        {
+            try
+            {
+                final Complex complex =
+                    Complex.fromTemplateCode(this.templateCode);
+                if (BatchEvaluator.this.addBaseComplex)
+                {
+                    complex.setAddBaseComplex(true);
+                    complex.updateBaseComplex();
+                }
+                complex.getWares();
+                complex.getProfit();
+                complex.getTotalPrice();
+                complex.getShoppingList();
+                return new Result(this.lineNumber, this.templateCode,
+                    complex, null);
+            }
+            catch (final RuntimeException e)
+            {
+                final String message = e.getMessage();
+                return new Result(this.lineNumber, this.templateCode, null,
+                    message == null ? e.toString() : message);
+            }
+        }
+    }
+
+    /**
+     * Prints the command line usage to stderr.
+     */
+    private static void usage()
+    {
+        System.err.println("Usage: xadrian --batch [OPTIONS] [FILE]");
+        System.err.println();
+        System.err.println("Evaluates the complex template codes in FILE "
+            + "(One per line) or read from");
+        System.err.println("stdin if FILE is missing or -.");
+        System.err.println();
+        System.err.println("Options:");
+        System.err.println("  --format csv|json    The output format "
+            + "(Default: csv)");
+        System.err.println("  --threads N          The number of worker "
+            + "threads (Default: number of CPUs)");
+        System.err.println("  --output FILE        The output file "
+            + "(Default: stdout)");
+        System.err.println("  --no-base-complex    Don't calculate the "
+            + "base complex");
+    }
+
+    /**
+     * Runs the batch evaluator with the specified command line arguments.
+     *
+     * @param args
+     *            The command line arguments (Without the --batch argument)
+     * @return The exit code
+     */
+    public static int run(final String[] args)
+    {
+        final BatchEvaluator evaluator = new BatchEvaluator();
+        String inputFile = null;
+        String outputFile = null;
+        try
+        {
+            for (int i = 0; i < args.length; i++)
+            {
+                final String arg = args[i];
+                if ("--format".equals(arg) && i + 1 < args.length)
+                    evaluator.setFormat(Format.valueOf(args[++i]
+                        .toUpperCase(Locale.ROOT)));
+                else if ("--threads".equals(arg) && i + 1 < args.length)
+                    evaluator.setThreads(Integer.parseInt(args[++i]));
+                else if ("--output".equals(arg) && i + 1 < args.length)
+                    outputFile = args[++i];
+                else if ("--no-base-complex".equals(arg))
+                    evaluator.setAddBaseComplex(false);
+                else if (inputFile == null
+                    && (!arg.startsWith("-") || "-".equals(arg)))
+                    inputFile = arg;
+                else
+                    throw new IllegalArgumentException("Invalid argument: "
+                        + arg);
+            }
+        }
+        catch (final IllegalArgumentException e)
+        {
+            System.err.println(e.getMessage());
+            usage();
+            return EXIT_ERROR;
+        }
+
+        try
+        {
+            final InputStream in = inputFile == null || "-".equals(inputFile)
+                ? System.in : new FileInputStream(inputFile);
+            try
+            {
+                final OutputStream out = outputFile == null ? System.out
+                    : new FileOutputStream(outputFile);
+                try
+                {
+                    final Writer writer = new BufferedWriter(
+                        new OutputStreamWriter(out, "UTF-8"));
+                    final int failures = evaluator.evaluate(
+                        new InputStreamReader(in, "UTF-8"), writer);
+                    writer.flush();
+                    return failures == 0 ? EXIT_OK : EXIT_FAILURES;
+                }
+                finally
+                {
+                    if (out != System.out) out.close();
+                }
+            }
+            finally
+            {
+                if (in != System.in) in.close();
+            }
+        }
+        catch (final IOException e)
+        {
+            System.err.println(e.toString());
+            return EXIT_ERROR;
+        }
+    }
+}
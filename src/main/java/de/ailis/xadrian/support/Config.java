@@ -5,24 +5,16 @@
 
 package de.ailis.xadrian.support;
 
-import java.awt.Component;
-import java.awt.Frame;
-import java.awt.Window;
 import java.io.File;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Locale;
 import java.util.prefs.Preferences;
 
 import javax.print.attribute.HashPrintRequestAttributeSet;
 import javax.print.attribute.PrintRequestAttributeSet;
-import javax.swing.JSplitPane;
 
-import de.ailis.xadrian.Main;
 import de.ailis.xadrian.data.Race;
-import de.ailis.xadrian.exceptions.ConfigException;
 import de.ailis.xadrian.utils.ObjectUtils;
-import de.ailis.xadrian.utils.SwingUtils;
 
 /**
  * The configuration
@@ -31,6 +23,9 @@ import de.ailis.xadrian.utils.SwingUtils;
  */
 public final class Config
 {
+    /** The path of the preferences node */
+    private static final String PREFERENCES_NODE = "/de/ailis/xadrian";
+
     /** Config key for ignored races */
     private static final String IGNORED_RACES = "ignoredraces";
 
@@ -66,6 +61,9 @@ public final class Config
      */
     private static final String PROD_STATS_PER_MINUTE = "prodStatPerMinute";
 
+    /** Config key for saving complexes in the binary format */
+    private static final String BINARY_COMPLEX_FILES = "binaryComplexFiles";
+
     /**
      * The singleton instance.
      */
@@ -74,6 +72,14 @@ public final class Config
     /** The ignored manufacturer races */
     private final List<String> ignoredRaces = new ArrayList<String>();
 
+    /**
+     * The version of the ignored races. Incremented whenever the set of
+     * ignored races changes so caches depending on it can be invalidated.
+     * Volatile because it is changed on the event dispatch thread but read
+     * by the threads of the base complex solver and the batch evaluator.
+     */
+    private volatile int ignoredRacesVersion = 0;
+
     /** The last file chooser path */
     private File lastFileChooserPath = null;
 
@@ -104,6 +110,9 @@ public final class Config
      */
     private boolean prodStatsPerMinute = false;
 
+    /** If complexes are saved in the binary format instead of XML. */
+    private boolean binaryComplexFiles = false;
+
     /** The print attributes. */
     private HashPrintRequestAttributeSet printAttributes =
         new HashPrintRequestAttributeSet();
@@ -126,13 +135,23 @@ public final class Config
         return instance;
     }
 
+    /**
+     * Returns the preferences node in which Xadrian stores its configuration
+     * and the GUI state.
+     *
+     * @return The preferences node
+     */
+    public static Preferences getPreferences()
+    {
+        return Preferences.userRoot().node(PREFERENCES_NODE);
+    }
+
     /**
      * Loads the configuration.
      */
     private void load()
     {
-        final Preferences prefs = Preferences
-            .userNodeForPackage(Main.class);
+        final Preferences prefs = getPreferences();
         final String races = prefs.get(IGNORED_RACES, null);
         if (races != null)
             for (final String raceId: races.split(" "))
@@ -148,6 +167,8 @@ public final class Config
         this.defaultGame = prefs.get(DEFAULT_GAME, null);
         this.nightMode = prefs.getBoolean(NIGHT_MODE, false);
         this.prodStatsPerMinute = prefs.getBoolean(PROD_STATS_PER_MINUTE, false);
+        this.binaryComplexFiles =
+            prefs.getBoolean(BINARY_COMPLEX_FILES, false);
 
         final String printAttributes = prefs.get(PRINT_ATTRIBUTES, null);
         if (printAttributes != null && !printAttributes.isEmpty())
@@ -163,6 +184,7 @@ public final class Config
      */
     public void reset()
     {
+        if (!this.ignoredRaces.isEmpty()) this.ignoredRacesVersion++;
         this.ignoredRaces.clear();
         this.showFactoryResources = true;
         this.lastFileChooserPath = null;
@@ -174,8 +196,7 @@ public final class Config
      */
     public void save()
     {
-        final Preferences prefs = Preferences
-            .userNodeForPackage(Main.class);
+        final Preferences prefs = getPreferences();
         if (this.ignoredRaces.isEmpty())
             prefs.remove(IGNORED_RACES);
         else
@@ -210,6 +231,7 @@ public final class Config
             prefs.put(DEFAULT_GAME, this.defaultGame);
         prefs.putBoolean(NIGHT_MODE, this.nightMode);
         prefs.putBoolean(PROD_STATS_PER_MINUTE, this.prodStatsPerMinute);
+        prefs.putBoolean(BINARY_COMPLEX_FILES, this.binaryComplexFiles);
 
         prefs.put(PRINT_ATTRIBUTES, ObjectUtils.toString(this.printAttributes));
     }
@@ -264,6 +286,19 @@ public final class Config
             this.ignoredRaces.add(race.getId());
         else
             this.ignoredRaces.remove(race.getId());
+        this.ignoredRacesVersion++;
+    }
+
+    /**
+     * Returns the version of the ignored races. This number changes every
+     * time a race is ignored or unignored so it can be used to check if
+     * cached data which depends on the ignored races is outdated.
+     *
+     * @return The ignored races version
+     */
+    public int getIgnoredRacesVersion()
+    {
+        return this.ignoredRacesVersion;
     }
 
     /**
@@ -287,102 +322,6 @@ public final class Config
         this.lastFileChooserPath = lastFileChooserPath;
     }
 
-    /**
-     * Saves the window preferences.
-     *
-     * @param window
-     *            The window
-     */
-    public static void saveWindowState(final Window window)
-    {
-        final Preferences prefs = Preferences.userNodeForPackage(Main.class);
-
-        // Window preferences are only saved if state is NORMAL
-        if (!(window instanceof Frame)
-            || ((Frame) window).getExtendedState() == Frame.NORMAL)
-        {
-            if (SwingUtils.isResizable(window))
-            {
-                prefs.putInt(getPrefsName(window, "width"), window.getWidth());
-                prefs
-                    .putInt(getPrefsName(window, "height"), window
-                        .getHeight());
-            }
-            prefs.putInt(getPrefsName(window, "left"), window.getX());
-            prefs.putInt(getPrefsName(window, "top"), window.getY());
-        }
-    }
-
-    /**
-     * Restores the window state.
-     *
-     * @param window
-     *            The window
-     */
-    public static void restoreWindowState(final Window window)
-    {
-        final Preferences prefs = Preferences.userNodeForPackage(Main.class);
-        if (SwingUtils.isResizable(window))
-        {
-            window.setSize(prefs.getInt(getPrefsName(window, "width"), window
-                .getWidth()), prefs.getInt(getPrefsName(window, "height"),
-                window.getHeight()));
-            // window.setPreferredSize(window.getSize());
-            // window.setMaximumSize(window.getSize());
-        }
-        window.setLocation(prefs.getInt(getPrefsName(window, "left"), window
-            .getX()), prefs.getInt(getPrefsName(window, "top"), window
-            .getY()));
-    }
-
-    /**
-     * Saves the split pane preferences.
-     *
-     * @param splitPane
-     *            The split pane
-     */
-    public static void saveSplitPaneState(final JSplitPane splitPane)
-    {
-        final Preferences prefs = Preferences.userNodeForPackage(Main.class);
-        prefs.putInt(getPrefsName(splitPane, "dividerLocation"), splitPane
-            .getDividerLocation());
-    }
-
-    /**
-     * Restores the split pane preferences.
-     *
-     * @param splitPane
-     *            The split pane
-     */
-    public static void restoreSplitPaneState(final JSplitPane splitPane)
-    {
-        final Preferences prefs = Preferences.userNodeForPackage(Main.class);
-        splitPane.setDividerLocation(prefs.getInt(getPrefsName(splitPane,
-            "dividerLocation"), splitPane.getDividerLocation()));
-    }
-
-    /**
-     * Returns the preferences name for the specified component and for the
-     * specified key.
-     *
-     * @param component
-     *            The component
-     * @param key
-     *            The key
-     * @return The preferences name.
-     */
-    private static String getPrefsName(final Component component,
-        final String key)
-    {
-        final String name = component.getName();
-        if (name == null)
-            throw new ConfigException(
-                "Unable to save state of component with no name: "
-                    + component);
-        return name.toLowerCase(Locale.getDefault()) + "." +
-            key.toLowerCase(Locale.getDefault());
-    }
-
     /**
      * Sets the X3TC player sector.
      *
@@ -562,4 +501,28 @@ public final class Config
     {
         return isProdStatsPerMinute() ? ",##0.000" : ",##0";
     }
+
+    /**
+     * Checks if complexes are saved in the compact binary format instead of
+     * XML.
+     *
+     * @return True if complexes are saved in the binary format, false if
+     *         saved as XML.
+     */
+    public boolean isBinaryComplexFiles()
+    {
+        return this.binaryComplexFiles;
+    }
+
+    /**
+     * Enables or disables saving complexes in the compact binary format.
+     *
+     * @param binaryComplexFiles
+     *            True to save complexes in the binary format, false to save
+     *            them as XML.
+     */
+    public void setBinaryComplexFiles(final boolean binaryComplexFiles)
+    {
+        this.binaryComplexFiles = binaryComplexFiles;
+    }
 }
@@ -13,14 +13,15 @@ import java.io.InputStream;
  * contains integer values which are formed by a dynamic number of bytes. 
  * Only the first 7 bits of each byte is part of the integer value. The 
  * highest bit of each byte defines if there are more bytes to add to the 
- * current integer.
+ * current integer. See {@link DynaBytes} for decoding values directly from
+ * byte arrays and byte buffers.
  * 
  * @author Klaus Reimer (k@ailis.de)
  */
 public class DynaByteInputStream extends InputStream
 {
     /** The original input stream. */
-    private InputStream stream;
+    private final InputStream stream;
 
     /**
      * Constructor.
@@ -34,22 +35,36 @@ public class DynaByteInputStream extends InputStream
     }
 
     /**
-     * @see java.io.InputStream#read()
+     * Reads the next value.
+     *
+     * @return The value or -1 when the end of the stream has been reached.
+     * @throws IOException
+     *             When the original stream reported an error, when it ended
+     *             in the middle of a value or when the value doesn't fit
+     *             into 31 bits.
      */
     @Override
     public int read() throws IOException
     {
-        int b, value, bits;
+        int b, value, shift;
         value = 0;
-        bits = 0;
+        shift = 0;
         do
         {
+            if (shift == 35)
+                throw new IOException("Dynamic byte value too long");
             b = this.stream.read();
-            if (b == -1) return -1;
-            value |= (b & 127) << bits;
-            bits += 7;
+            if (b == -1)
+            {
+                if (shift == 0) return -1;
+                throw new IOException("Unexpected end of stream");
+            }
+            value |= (b & 127) << shift;
+            shift += 7;
         }
         while ((b & 128) != 0);
+        if (shift == 35 && b > 7)
+            throw new IOException("Dynamic byte value too large");
         return value;
     }
 }
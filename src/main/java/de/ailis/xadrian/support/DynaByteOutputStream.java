@@ -13,7 +13,8 @@ import java.io.OutputStream;
  * contains integer values which are formed by a dynamic number of bytes.
  * Only the first 7 bits of each byte is part of the integer value. The
  * highest bit of each byte defines if there are more bytes to add to the
- * current integer.
+ * current integer. See {@link DynaBytes} for encoding values directly into
+ * byte arrays and byte buffers.
  *
  * @author Klaus Reimer (k@ailis.de)
  */
@@ -22,6 +23,9 @@ public class DynaByteOutputStream extends OutputStream
     /** The original output stream. */
     private final OutputStream stream;
 
+    /** The buffer for a single encoded value. */
+    private final byte[] buffer = new byte[DynaBytes.MAX_LENGTH];
+
     /**
      * Constructor.
      *
@@ -39,15 +43,15 @@ public class DynaByteOutputStream extends OutputStream
     @Override
     public void write(final int b) throws IOException
     {
-        int nextB = b;
-        do
-        {
-            final int cur = nextB & 127;
-            nextB >>>= 7;
-            int v = cur;
-            if (nextB > 0) v |= 128;
-            this.stream.write(v);
-        }
-        while (nextB > 0);
+        this.stream.write(this.buffer, 0, DynaBytes.write(this.buffer, 0, b));
+    }
+
+    /**
+     * @see java.io.OutputStream#flush()
+     */
+    @Override
+    public void flush() throws IOException
+    {
+        this.stream.flush();
     }
 }
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.txt for licensing information.
+ */
+
+package de.ailis.xadrian.support;
+
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * Encodes and decodes dynamically sized integers directly in byte arrays and
+ * byte buffers. This is the same format as written by
+ * {@link DynaByteOutputStream} and read by {@link DynaByteInputStream}: Only
+ * the first 7 bits of each byte are part of the integer value, starting with
+ * the lowest bits. The highest bit of each byte defines if there are more
+ * bytes to add to the current integer.
+ *
+ * Values are unsigned 32 bit integers so an encoded value needs up to
+ * {@link #MAX_LENGTH} bytes. Values above 2^31 are represented by negative
+ * ints. Encoded values which don't fit into 32 bits are rejected when
+ * reading.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public final class DynaBytes
+{
+    /** The maximum number of bytes of an encoded value. */
+    public static final int MAX_LENGTH = 5;
+
+    /**
+     * Private constructor to prevent instantiation.
+     */
+    private DynaBytes()
+    {
+        // Empty
+    }
+
+    /**
+     * Returns the number of bytes needed to encode the specified value.
+     *
+     * @param value
+     *            The unsigned value.
+     * @return The number of bytes (1 to {@link #MAX_LENGTH}).
+     */
+    public static int getLength(final int value)
+    {
+        if ((value & 0xffffff80) == 0) return 1;
+        if ((value & 0xffffc000) == 0) return 2;
+        if ((value & 0xffe00000) == 0) return 3;
+        if ((value & 0xf0000000) == 0) return 4;
+        return 5;
+    }
+
+    /**
+     * Returns the number of bytes needed to encode the specified values.
+     *
+     * @param values
+     *            The unsigned values.
+     * @return The number of bytes.
+     */
+    public static int getLength(final int... values)
+    {
+        int length = 0;
+        for (final int value: values)
+            length += getLength(value);
+        return length;
+    }
+
+    /**
+     * Writes a value into the specified byte array.
+     *
+     * @param data
+     *            The byte array to write to.
+     * @param offset
+     *            The offset in the byte array.
+     * @param value
+     *            The unsigned value to write.
+     * @return The offset behind the written value.
+     * @throws IndexOutOfBoundsException
+     *             When the byte array is too small. Some bytes of the value
+     *             may have been written then.
+     */
+    public static int write(final byte[] data, final int offset,
+        final int value)
+    {
+        int pos = offset;
+        int rest = value;
+        while ((rest & 0xffffff80) != 0)
+        {
+            data[pos++] = (byte) (rest | 0x80);
+            rest >>>= 7;
+        }
+        data[pos++] = (byte) rest;
+        return pos;
+    }
+
+    /**
+     * Writes a value into the specified byte buffer.
+     *
+     * @param buffer
+     *            The byte buffer to write to.
+     * @param value
+     *            The unsigned value to write.
+     * @throws BufferOverflowException
+     *             When the buffer has not enough remaining space. The
+     *             position of the buffer is not changed then.
+     */
+    public static void write(final ByteBuffer buffer, final int value)
+    {
+        final int position = buffer.position();
+        if (buffer.hasArray() && buffer.remaining() >= MAX_LENGTH)
+        {
+            final int offset = buffer.arrayOffset();
+            buffer.position(write(buffer.array(), offset + position, value)
+                - offset);
+            return;
+        }
+        if (buffer.remaining() < getLength(value))
+            throw new BufferOverflowException();
+        int rest = value;
+        while ((rest & 0xffffff80) != 0)
+        {
+            buffer.put((byte) (rest | 0x80));
+            rest >>>= 7;
+        }
+        buffer.put((byte) rest);
+    }
+
+    /**
+     * Encodes the specified values into a new byte array.
+     *
+     * @param values
+     *            The unsigned values to encode.
+     * @return The encoded values.
+     */
+    public static byte[] encode(final int... values)
+    {
+        final byte[] data = new byte[getLength(values)];
+        int offset = 0;
+        for (final int value: values)
+            offset = write(data, offset, value);
+        return data;
+    }
+
+    /**
+     * Reads a value from the specified byte buffer.
+     *
+     * @param buffer
+     *            The byte buffer to read from.
+     * @return The unsigned value.
+     * @throws BufferUnderflowException
+     *             When the buffer ends in the middle of a value. The
+     *             position of the buffer is not changed then.
+     * @throws IllegalArgumentException
+     *             When the encoded value doesn't fit into 32 bits. The
+     *             position of the buffer is not changed then.
+     */
+    public static int read(final ByteBuffer buffer)
+    {
+        final int position = buffer.position();
+        if (buffer.hasArray() && buffer.remaining() >= MAX_LENGTH)
+        {
+            // Fast path: The value can't exceed the array
+            final byte[] data = buffer.array();
+            final int offset = buffer.arrayOffset() + position;
+            int pos = offset;
+            int value = 0;
+            for (int shift = 0; shift < 35; shift += 7)
+            {
+                final int b = data[pos++];
+                value |= (b & 0x7f) << shift;
+                if (b >= 0)
+                {
+                    if (shift == 28 && b > 15) break;
+                    buffer.position(position + pos - offset);
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException(
+                "Dynamic byte value at position " + position
+                    + " doesn't fit into 32 bits");
+        }
+        int value = 0;
+        for (int shift = 0; shift < 35; shift += 7)
+        {
+            if (!buffer.hasRemaining())
+            {
+                buffer.position(position);
+                throw new BufferUnderflowException();
+            }
+            final int b = buffer.get();
+            value |= (b & 0x7f) << shift;
+            if (b >= 0)
+            {
+                if (shift == 28 && b > 15) break;
+                return value;
+            }
+        }
+        buffer.position(position);
+        throw new IllegalArgumentException("Dynamic byte value at position "
+            + position + " doesn't fit into 32 bits");
+    }
+
+    /**
+     * Decodes all values of the specified byte array.
+     *
+     * @param data
+     *            The encoded values.
+     * @return The decoded unsigned values.
+     * @throws BufferUnderflowException
+     *             When the data ends in the middle of a value.
+     * @throws IllegalArgumentException
+     *             When an encoded value doesn't fit into 32 bits.
+     */
+    public static int[] decode(final byte[] data)
+    {
+        // Each value ends with exactly one byte without the high bit
+        int count = 0;
+        for (final byte b: data)
+            if (b >= 0) count++;
+        final int[] values = new int[count];
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        for (int i = 0; i < count; i++)
+            values[i] = read(buffer);
+        if (buffer.hasRemaining()) throw new BufferUnderflowException();
+        return values;
+    }
+}
@@ -4,16 +4,11 @@
  */
 package de.ailis.xadrian.support;
 
-import java.util.HashMap;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.ResourceBundle;
+import java.util.concurrent.ConcurrentHashMap;
 
-import javax.swing.JComponent;
-import javax.swing.JMenu;
-import javax.swing.KeyStroke;
-
-import de.ailis.xadrian.Main;
 import de.ailis.xadrian.data.Game;
 
 /**
@@ -25,11 +20,11 @@ public final class I18N
 {
     /** The messages. */
     private static final ResourceBundle messages = ResourceBundle
-        .getBundle(Main.class.getPackage().getName() + ".messages");
+        .getBundle("de.ailis.xadrian.messages");
 
-    /** The game messages. */
+    /** The game messages. Accessed concurrently by batch evaluations. */
     private static Map<String, ResourceBundle> gameMessages =
-        new HashMap<String, ResourceBundle>();
+        new ConcurrentHashMap<String, ResourceBundle>();
 
     /** The custom messages. */
     private static ResourceBundle customMessages;
@@ -95,8 +90,8 @@ public final class I18N
             try
             {
                 bundle =
-                    ResourceBundle.getBundle(Main.class.getPackage().getName() +
-                        ".data." + gameId + ".messages");
+                    ResourceBundle.getBundle(Game.class.getPackage().getName()
+                        + "." + gameId + ".messages");
             }
             catch (final MissingResourceException e)
             {
@@ -172,13 +167,14 @@ public final class I18N
      * @param key
      *            The base key of the message resource (without .accelerator
      *            suffix)
-     * @return The accelerator key stroke or null if not set
+     * @return The accelerator key stroke description (For example
+     *         "control S") or null if not set
      */
-    public static KeyStroke getAccelerator(final String key)
+    public static String getAccelerator(final String key)
     {
         final String value = get(key + ".accelerator");
         if (value == null || value.length() == 0) return null;
-        return KeyStroke.getKeyStroke(value);
+        return value;
     }
 
     /**
@@ -211,24 +207,4 @@ public final class I18N
     {
         return get(key + ".tooltip");
     }
-
-    /**
-     * Creates a new menu and configures the title, accelerator, tooltip and
-     * mnemonic automatically.
-     *
-     * @param menuBar
-     *            The menu bar (or menu) to which the new menu should be added
-     * @param name
-     *            The menu name
-     * @return The created menu
-     */
-    public static JMenu createMenu(final JComponent menuBar, final String name)
-    {
-        final String key = "menu." + name;
-        final JMenu menu = new JMenu(getTitle(key));
-        menu.setMnemonic(getMnemonic(key));
-        menu.setToolTipText(getToolTip(key));
-        menuBar.add(menu);
-        return menu;
-    }
 }
@@ -28,6 +28,7 @@ import javax.swing.JPanel;
 import javax.swing.KeyStroke;
 
 import de.ailis.xadrian.resources.Images;
+import de.ailis.xadrian.utils.SwingUtils;
 
 /**
  * Base class for modal dialogs
@@ -267,13 +268,13 @@ public abstract class ModalDialog extends JDialog
     {
         try
         {
-            Config.restoreWindowState(this);
+            SwingUtils.restoreWindowState(this);
             setVisible(true);
             return this.result;
         }
         finally
         {
-            Config.saveWindowState(this);
+            SwingUtils.saveWindowState(this);
         }
     }
 
@@ -2,7 +2,7 @@
  * Copyright (C) 2012 Klaus Reimer <k@ailis.de>
  * See LICENSE.txt file for licensing information.
  */
-package de.ailis.xadrian.data.factories;
+package de.ailis.xadrian.support;
 
 import java.util.Collections;
 import java.util.HashMap;
@@ -5,6 +5,11 @@
 package de.ailis.xadrian.utils;
 
 import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
 /**
  * Static file utility methods.
@@ -52,4 +57,63 @@ public final class FileUtils
         if (pos == -1) return fileName;
         return fileName.substring(0, pos);
     }
+
+    /**
+     * Reads the complete content of the specified file.
+     *
+     * @param file
+     *            The file to read
+     * @return The file content
+     * @throws IOException
+     *             When file could not be read
+     */
+    public static byte[] readBytes(final File file) throws IOException
+    {
+        final InputStream stream = new FileInputStream(file);
+        try
+        {
+            final long length = file.length();
+            if (length > Integer.MAX_VALUE)
+                throw new IOException("File too large: " + file);
+            final byte[] data = new byte[(int) length];
+            int read = 0;
+            while (read < data.length)
+            {
+                final int bytes = stream.read(data, read, data.length - read);
+                if (bytes == -1)
+                    throw new IOException("Unexpected end of file: " + file);
+                read += bytes;
+            }
+            return data;
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
+
+    /**
+     * Writes the specified data into the specified file. An existing file is
+     * overwritten.
+     *
+     * @param data
+     *            The data to write
+     * @param file
+     *            The file to write to
+     * @throws IOException
+     *             When file could not be written
+     */
+    public static void writeBytes(final byte[] data, final File file)
+        throws IOException
+    {
+        final OutputStream stream = new FileOutputStream(file);
+        try
+        {
+            stream.write(data);
+        }
+        finally
+        {
+            stream.close();
+        }
+    }
 }
@@ -5,6 +5,7 @@
 
 package de.ailis.xadrian.utils;
 
+import java.awt.Component;
 import java.awt.Desktop;
 import java.awt.Dialog;
 import java.awt.Dimension;
@@ -21,16 +22,19 @@ import java.lang.reflect.Method;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.util.Locale;
+import java.util.prefs.Preferences;
 
 import javax.swing.Action;
 import javax.swing.ActionMap;
 import javax.swing.InputMap;
 import javax.swing.JComponent;
 import javax.swing.JFrame;
+import javax.swing.JMenu;
 import javax.swing.JPopupMenu;
 import javax.swing.JSeparator;
 import javax.swing.JSpinner;
 import javax.swing.JSpinner.DefaultEditor;
+import javax.swing.JSplitPane;
 import javax.swing.KeyStroke;
 import javax.swing.LookAndFeel;
 import javax.swing.SwingUtilities;
@@ -44,7 +48,9 @@ import com.sun.jna.Native;
 import com.sun.jna.NativeLong;
 import com.sun.jna.WString;
 
+import de.ailis.xadrian.exceptions.ConfigException;
 import de.ailis.xadrian.support.Config;
+import de.ailis.xadrian.support.I18N;
 
 /**
  * Static utility methods for common Swing tasks.
@@ -287,6 +293,122 @@ public final class SwingUtils
         return false;
     }
 
+    /**
+     * Saves the window preferences.
+     * 
+     * @param window
+     *            The window
+     */
+    public static void saveWindowState(final Window window)
+    {
+        final Preferences prefs = Config.getPreferences();
+
+        // Window preferences are only saved if state is NORMAL
+        if (!(window instanceof Frame)
+            || ((Frame) window).getExtendedState() == Frame.NORMAL)
+        {
+            if (isResizable(window))
+            {
+                prefs.putInt(getPrefsName(window, "width"), window.getWidth());
+                prefs
+                    .putInt(getPrefsName(window, "height"), window
+                        .getHeight());
+            }
+            prefs.putInt(getPrefsName(window, "left"), window.getX());
+            prefs.putInt(getPrefsName(window, "top"), window.getY());
+        }
+    }
+
+    /**
+     * Restores the window state.
+     * 
+     * @param window
+     *            The window
+     */
+    public static void restoreWindowState(final Window window)
+    {
+        final Preferences prefs = Config.getPreferences();
+        if (isResizable(window))
+        {
+            window.setSize(prefs.getInt(getPrefsName(window, "width"), window
+                .getWidth()), prefs.getInt(getPrefsName(window, "height"),
+                window.getHeight()));
+            // window.setPreferredSize(window.getSize());
+            // window.setMaximumSize(window.getSize());
+        }
+        window.setLocation(prefs.getInt(getPrefsName(window, "left"), window
+            .getX()), prefs.getInt(getPrefsName(window, "top"), window
+            .getY()));
+    }
+
+    /**
+     * Saves the split pane preferences.
+     * 
+     * @param splitPane
+     *            The split pane
+     */
+    public static void saveSplitPaneState(final JSplitPane splitPane)
+    {
+        final Preferences prefs = Config.getPreferences();
+        prefs.putInt(getPrefsName(splitPane, "dividerLocation"), splitPane
+            .getDividerLocation());
+    }
+
+    /**
+     * Restores the split pane preferences.
+     * 
+     * @param splitPane
+     *            The split pane
+     */
+    public static void restoreSplitPaneState(final JSplitPane splitPane)
+    {
+        final Preferences prefs = Config.getPreferences();
+        splitPane.setDividerLocation(prefs.getInt(getPrefsName(splitPane,
+            "dividerLocation"), splitPane.getDividerLocation()));
+    }
+
+    /**
+     * Returns the preferences name for the specified component and for the
+     * specified key.
+     * 
+     * @param component
+     *            The component
+     * @param key
+     *            The key
+     * @return The preferences name.
+     */
+    private static String getPrefsName(final Component component,
+        final String key)
+    {
+        final String name = component.getName();
+        if (name == null)
+            throw new ConfigException(
+                "Unable to save state of component with no name: "
+                    + component);
+        return name.toLowerCase(Locale.getDefault()) + "." +
+            key.toLowerCase(Locale.getDefault());
+    }
+
+    /**
+     * Creates a new menu and configures the title, tooltip and mnemonic
+     * automatically from the message resources.
+     * 
+     * @param menuBar
+     *            The menu bar (or menu) to which the new menu should be added
+     * @param name
+     *            The menu name
+     * @return The created menu
+     */
+    public static JMenu createMenu(final JComponent menuBar, final String name)
+    {
+        final String key = "menu." + name;
+        final JMenu menu = new JMenu(I18N.getTitle(key));
+        menu.setMnemonic(I18N.getMnemonic(key));
+        menu.setToolTipText(I18N.getToolTip(key));
+        menuBar.add(menu);
+        return menu;
+    }
+
     /**
      * Prepares the locale. The default is the system locale.
      */
@@ -0,0 +1,293 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.SortedSet;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.FactoryFactory;
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Tests the base complex solver against a reference implementation of the
+ * original base complex calculation. The reference recalculates all wares of
+ * the complex and restarts with the first ware after each fixed ware while
+ * the solver only checks the wares touched by a fix. Both must add the same
+ * factories in the same order.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BaseComplexSolverTest
+{
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        Config.getInstance().reset();
+    }
+
+    /**
+     * Returns the automatically added factories as a string.
+     *
+     * @param factories
+     *            The automatically added factories
+     * @return The factories in their original order
+     */
+    private static String toString(final List<ComplexFactory> factories)
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (final ComplexFactory factory: factories)
+            builder.append(' ').append(factory.getQuantity()).append('x')
+                .append(factory.getFactory().getId());
+        return builder.toString();
+    }
+
+    /**
+     * Returns the total price of the specified complex with the specified
+     * automatically added factories.
+     *
+     * @param complex
+     *            The complex
+     * @param autoFactories
+     *            The automatically added factories
+     * @return The total price
+     */
+    private static long getTotalPrice(final Complex complex,
+        final List<ComplexFactory> autoFactories)
+    {
+        final List<ComplexFactory> factories =
+            new ArrayList<ComplexFactory>(complex.getFactories());
+        factories.addAll(autoFactories);
+        long price = 0;
+        int quantity = 0;
+        for (final ComplexFactory factory: factories)
+        {
+            price += ((long) factory.getQuantity())
+                * factory.getFactory().getPrice();
+            quantity += factory.getQuantity();
+        }
+        return price + ((long) Math.max(0, quantity - 1))
+            * complex.getKitPrice();
+    }
+
+    /**
+     * Returns the produced and needed wares of the complex with the
+     * specified automatically added factories sorted by ware.
+     *
+     * @param complex
+     *            The complex
+     * @param autoFactories
+     *            The automatically added factories
+     * @return The complex wares
+     */
+    private static List<ComplexWare> getWares(final Complex complex,
+        final List<ComplexFactory> autoFactories)
+    {
+        final List<ComplexFactory> factories =
+            new ArrayList<ComplexFactory>(complex.getFactories());
+        factories.addAll(autoFactories);
+        final Sun suns = complex.getSuns();
+        final Map<Ware, double[]> balance = new HashMap<Ware, double[]>();
+        for (final ComplexFactory factory: factories)
+        {
+            final Product product = factory.getProductPerHour(suns);
+            double[] values = balance.get(product.getWare());
+            if (values == null)
+                balance.put(product.getWare(), values = new double[2]);
+            values[0] += product.getQuantity();
+            for (final Product resource: factory.getResourcesPerHour(suns))
+            {
+                values = balance.get(resource.getWare());
+                if (values == null)
+                    balance.put(resource.getWare(), values = new double[2]);
+                values[1] += resource.getQuantity();
+            }
+        }
+        final List<ComplexWare> wares = new ArrayList<ComplexWare>();
+        for (final Map.Entry<Ware, double[]> entry: balance.entrySet())
+            wares.add(new ComplexWare(entry.getKey(), entry.getValue()[0],
+                entry.getValue()[1], 0));
+        Collections.sort(wares);
+        return wares;
+    }
+
+    /**
+     * Fixes the first missing ware of the complex.
+     *
+     * @param complex
+     *            The complex
+     * @param autoFactories
+     *            The automatically added factories
+     * @param crystalRace
+     *            Optional race from which crystal fabs should be bought
+     * @return True if a ware was fixed, false if not
+     */
+    private static boolean addBaseComplex(final Complex complex,
+        final List<ComplexFactory> autoFactories, final Race crystalRace)
+    {
+        for (final ComplexWare ware: getWares(complex, autoFactories))
+        {
+            if (ware.getWare().isMineral()) continue;
+            if (ware.getMissing() > 0)
+            {
+                final Race race = ware.getWare().getId().equals("crystals")
+                    ? crystalRace : null;
+                if (addBaseComplexForWare(complex, autoFactories, ware, race))
+                    return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Replaces the factories producing the specified ware with the factories
+     * needed to fulfill its need.
+     *
+     * @param complex
+     *            The complex
+     * @param autoFactories
+     *            The automatically added factories
+     * @param complexWare
+     *            The missing ware
+     * @param race
+     *            Optional race from which the factories should be bought
+     * @return True if the production of the ware was changed, false if not
+     */
+    private static boolean addBaseComplexForWare(final Complex complex,
+        final List<ComplexFactory> autoFactories,
+        final ComplexWare complexWare, final Race race)
+    {
+        final Ware ware = complexWare.getWare();
+        final Sun suns = complex.getSuns();
+        final FactoryFactory factoryFactory =
+            complex.getGame().getFactoryFactory();
+        double need = complexWare.getMissing();
+        final double oldNeed = need;
+        for (final ComplexFactory factory: new ArrayList<ComplexFactory>(
+            autoFactories))
+        {
+            if (factory.getFactory().getProduct().getWare().equals(ware))
+            {
+                need += factory.getProductPerHour(suns).getQuantity();
+                autoFactories.remove(factory);
+            }
+        }
+
+        final SortedSet<FactorySize> sizeSet =
+            factoryFactory.getFactorySizes(ware, race);
+        final FactorySize[] sizes =
+            sizeSet.toArray(new FactorySize[sizeSet.size()]);
+        if (sizes.length == 0) return false;
+        final Factory[] factories = new Factory[sizes.length];
+        for (int i = 0; i < sizes.length; i++)
+            factories[i] = race == null ? factoryFactory.getCheapestFactory(
+                ware, sizes[i]) : factoryFactory.getFactory(ware, sizes[i],
+                race);
+        final double minProduction =
+            factories[0].getProductPerHour(suns, 0).getQuantity();
+        for (int i = sizes.length - 1; i >= 0; i--)
+        {
+            final double product =
+                factories[i].getProductPerHour(suns, 0).getQuantity();
+            final int quantity = (int) Math.floor((need + minProduction - 0.1)
+                / product);
+            if (quantity > 0)
+            {
+                autoFactories.add(new ComplexFactory(complex.getGame(),
+                    factories[i], quantity, 0));
+                need -= quantity * product;
+            }
+        }
+        return Math.abs(need - oldNeed) >= .0000001;
+    }
+
+    /**
+     * Calculates the automatically added factories of the specified complex
+     * like the original base complex calculation did.
+     *
+     * @param complex
+     *            The complex
+     * @return The automatically added factories
+     */
+    private static List<ComplexFactory> calculateReference(
+        final Complex complex)
+    {
+        final Game game = complex.getGame();
+        final Ware crystals = game.getWareFactory().getWare("crystals");
+        List<ComplexFactory> best = new ArrayList<ComplexFactory>();
+        while (addBaseComplex(complex, best, null))
+            continue;
+        long bestPrice = getTotalPrice(complex, best);
+        for (final Race race: game.getRaceFactory().getRaces())
+        {
+            if (Config.getInstance().isRaceIgnored(race)) continue;
+            if (!game.getFactoryFactory().hasFactories(race, crystals))
+                continue;
+            final List<ComplexFactory> autoFactories =
+                new ArrayList<ComplexFactory>();
+            while (addBaseComplex(complex, autoFactories, race))
+                continue;
+            final long price = getTotalPrice(complex, autoFactories);
+            if (price < bestPrice)
+            {
+                best = autoFactories;
+                bestPrice = price;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Tests that the solver calculates exactly the same factories in the same
+     * order as the original calculation for random complexes.
+     */
+    @Test
+    public void testReferenceEquivalence()
+    {
+        final Random random = new Random(1);
+        for (final String gameId: new String[] { "x3tc", "x3ap" })
+        {
+            final Game game = GameFactory.getInstance().getGame(gameId);
+            final List<Factory> factories = new ArrayList<Factory>();
+            for (final Factory factory: game.getFactoryFactory()
+                .getFactories())
+                if (!factory.isMine()) factories.add(factory);
+            for (int i = 0; i < 250; i++)
+            {
+                final Complex complex = new Complex(game);
+                for (int j = random.nextInt(6); j >= 0; j--)
+                {
+                    final Factory factory =
+                        factories.get(random.nextInt(factories.size()));
+                    for (int k = random.nextInt(3); k >= 0; k--)
+                        complex.addFactory(factory);
+                }
+                final List<ComplexFactory> expected =
+                    calculateReference(complex);
+                complex.setAddBaseComplex(true);
+                complex.updateBaseComplex();
+                final String message = gameId + toString(
+                    complex.getFactories());
+                assertEquals(message, toString(expected),
+                    toString(complex.getAutoFactories()));
+                assertEquals(message, getTotalPrice(complex, expected),
+                    complex.getTotalPrice());
+            }
+        }
+    }
+}
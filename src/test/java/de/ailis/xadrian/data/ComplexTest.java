@@ -0,0 +1,268 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Tests the complex calculations.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class ComplexTest
+{
+    /** The game. */
+    private static Game game;
+
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        game = GameFactory.getInstance().getGame("x3tc");
+        Config.getInstance().reset();
+    }
+
+    /**
+     * Creates a complex with the specified factories and with enabled base
+     * complex.
+     *
+     * @param ids
+     *            The IDs of the factories to add
+     * @return The complex
+     */
+    private static Complex createComplex(final String... ids)
+    {
+        final Complex complex = new Complex(game);
+        for (final String id: ids)
+            complex.addFactory(game.getFactoryFactory().getFactory(id));
+        complex.toggleAddBaseComplex();
+        return complex;
+    }
+
+    /**
+     * Returns the sorted automatically added factories of the specified
+     * complex as strings.
+     *
+     * @param complex
+     *            The complex
+     * @return The automatically added factories
+     */
+    private static String getAutoFactories(final Complex complex)
+    {
+        final List<String> factories = new ArrayList<String>();
+        for (final ComplexFactory factory: complex.getAutoFactories())
+            factories.add(factory.getQuantity() + "x"
+                + factory.getFactory().getId());
+        Collections.sort(factories);
+        return factories.toString();
+    }
+
+    /**
+     * Tests the calculation of the base complex.
+     */
+    @Test
+    public void testBaseComplex()
+    {
+        Complex complex = createComplex("crystalFabL-argon");
+        assertEquals("[1xcahoonaBakeryL-argon, 1xcattleRanchL-argon, "
+            + "1xsolarPowerPlantM-boron]", getAutoFactories(complex));
+        assertEquals(14548276, complex.getTotalPrice());
+
+        complex = createComplex("cahoonaBakeryL-argon", "cahoonaBakeryL-argon");
+        assertEquals("[1xcrystalFabL-argon, 2xcattleRanchL-argon, "
+            + "2xsolarPowerPlantM-boron]", getAutoFactories(complex));
+        assertEquals(22604164, complex.getTotalPrice());
+
+        complex = createComplex("solarPowerPlantXl-boron",
+            "crystalFabM-teladi");
+        assertEquals("[1xflowerFarmM-teladi, 1xsunOilRefineryM-teladi, "
+            + "2xcrystalFabL-terran, 2xproteinPasteBlendingFacilityL-terran, "
+            + "2xuscFoodSupplyFactoryL-terran]", getAutoFactories(complex));
+        assertEquals(42573008, complex.getTotalPrice());
+
+        complex = createComplex("spaceJewelleryL-paranid");
+        assertEquals("[1xcrystalFabL-terran, "
+            + "1xproteinPasteBlendingFacilityL-terran, 1xsnailRanchL-paranid, "
+            + "1xuscFoodSupplyFactoryL-terran, 2xsolarPowerPlantM-boron]",
+            getAutoFactories(complex));
+        assertEquals(22915020, complex.getTotalPrice());
+    }
+
+    /**
+     * Tests that the base complex is removed again when disabled.
+     */
+    @Test
+    public void testDisableBaseComplex()
+    {
+        final Complex complex = createComplex("crystalFabL-argon");
+        complex.toggleAddBaseComplex();
+        assertEquals(0, complex.getAutoFactories().size());
+        assertEquals(1, complex.getTotalQuantity());
+    }
+
+    /**
+     * Tests that the cached derived values are updated when the complex is
+     * modified.
+     */
+    @Test
+    public void testDerivedValuesCache()
+    {
+        final Complex complex = createComplex("crystalFabL-argon");
+        final long price = complex.getTotalPrice();
+        final double profit = complex.getProfit();
+        final Object wares = complex.getWares();
+        assertSame(wares, complex.getWares());
+        assertEquals(4, complex.getTotalQuantity());
+
+        complex.increaseQuantity(0);
+        assertNotSame(wares, complex.getWares());
+        assertTrue(complex.getTotalQuantity() > 4);
+        assertTrue(complex.getTotalPrice() > price);
+
+        complex.decreaseQuantity(0);
+        assertEquals(price, complex.getTotalPrice());
+        assertEquals(profit, complex.getProfit(), 0.001);
+
+        final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+        prices.put(game.getWareFactory().getWare("crystals"), 0);
+        complex.setCustomPrices(prices);
+        assertTrue(complex.getProfit() < profit);
+    }
+
+    /**
+     * Returns the products and resources per hour of the specified complex
+     * as a string.
+     *
+     * @param complex
+     *            The complex
+     * @return The ware balance
+     */
+    private static String getBalance(final Complex complex)
+    {
+        final StringBuilder builder = new StringBuilder();
+        for (final ComplexWare ware: complex.getWares())
+            builder.append(String.format("%s %.6f %.6f%n", ware.getWare()
+                .getId(), ware.getProduced(), ware.getNeeded()));
+        return builder.toString();
+    }
+
+    /**
+     * Tests that the incrementally maintained ware balance matches the
+     * balance of a newly created complex.
+     */
+    @Test
+    public void testIncrementalBalance()
+    {
+        final Complex complex = createComplex("crystalFabL-argon",
+            "cahoonaBakeryL-argon", "solarPowerPlantM-boron");
+        final List<ComplexFactory> factories = complex.getFactories();
+        assertEquals("cahoonaBakeryL-argon",
+            factories.get(0).getFactory().getId());
+        assertEquals("solarPowerPlantM-boron",
+            factories.get(2).getFactory().getId());
+        complex.increaseQuantity(0);
+        complex.increaseQuantity(0);
+        complex.disableFactory(1);
+        complex.decreaseQuantity(0);
+        complex.removeFactory(2);
+        complex.enableFactory(1);
+
+        final Complex expected = createComplex("crystalFabL-argon",
+            "cahoonaBakeryL-argon", "cahoonaBakeryL-argon");
+        assertEquals(getBalance(expected), getBalance(complex));
+        assertEquals(getAutoFactories(expected), getAutoFactories(complex));
+    }
+
+    /**
+     * Tests rebinding a complex to a reloaded game.
+     */
+    @Test
+    public void testRebind()
+    {
+        final Complex complex = createComplex("crystalFabL-argon",
+            "cahoonaBakeryL-argon");
+        complex.setName("Rebind");
+        complex.setSector(game.getSectorFactory().getSector(0, 0));
+        final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+        prices.put(game.getWareFactory().getWare("crystals"), 1000);
+        complex.setCustomPrices(prices);
+
+        final Game reloaded = new Game(game.getNid(), game.getId());
+        final Complex rebound = complex.rebind(reloaded);
+        assertNotSame(complex, rebound);
+        assertSame(reloaded, rebound.getGame());
+        assertSame(reloaded, rebound.getSector().getGame());
+        for (final ComplexFactory factory: rebound.getFactories())
+            assertSame(reloaded, factory.getFactory().getGame());
+        for (final ComplexFactory factory: rebound.getAutoFactories())
+            assertSame(reloaded, factory.getFactory().getGame());
+        assertEquals("Rebind", rebound.getName());
+        assertEquals(complex.getTemplateCode(), rebound.getTemplateCode());
+        assertEquals(getAutoFactories(complex), getAutoFactories(rebound));
+        assertEquals(Integer.valueOf(1000), rebound.getCustomPrices().get(
+            reloaded.getWareFactory().getWare("crystals")));
+    }
+
+    /**
+     * Tests writing and reading a complex in the binary format.
+     *
+     * @throws IOException
+     *             When binary data could not be read
+     */
+    @Test
+    public void testBinary() throws IOException
+    {
+        final Complex complex = createComplex("crystalFabL-argon",
+            "cahoonaBakeryL-argon");
+        complex.addFactory(game.getFactoryFactory().getFactory(
+            "siliconMineM-argon"), Arrays.asList(12, 0, 255));
+        complex.disableFactory(1);
+        complex.setSector(game.getSectorFactory().getSector(0, 0));
+        final Map<Ware, Integer> prices = new HashMap<Ware, Integer>();
+        prices.put(game.getWareFactory().getWare("crystals"), 1000);
+        prices.put(game.getWareFactory().getWare("energyCells"), -20);
+        complex.setCustomPrices(prices);
+        complex.toggleShowingShoppingList();
+        complex.buildFactory("crystalFabL-argon");
+        complex.buildKit();
+
+        final byte[] data = complex.toBinary();
+        assertTrue(Complex.isBinary(data));
+        assertFalse(Complex.isBinary(complex.toXML().asXML().getBytes()));
+        assertEquals(complex.toXML().asXML(), Complex.fromBinary(data)
+            .toXML().asXML());
+
+        try
+        {
+            Complex.fromBinary(Arrays.copyOf(data, data.length - 1));
+            fail("IOException expected");
+        }
+        catch (final IOException e)
+        {
+            // Expected
+        }
+    }
+}
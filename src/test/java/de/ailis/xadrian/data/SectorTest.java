@@ -5,12 +5,17 @@
 package de.ailis.xadrian.data;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.List;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
 
 import de.ailis.xadrian.data.factories.GameFactory;
 import de.ailis.xadrian.data.factories.SectorFactory;
+import de.ailis.xadrian.data.factories.StationIndex;
 
 /**
  * Tests Sector class.
@@ -19,6 +24,9 @@ import de.ailis.xadrian.data.factories.SectorFactory;
  */
 public class SectorTest
 {
+    /** The game */
+    private static Game game;
+
     /** The sector factory */
     private static SectorFactory sectorFactory;
 
@@ -29,7 +37,7 @@ public class SectorTest
     @BeforeClass
     public static void init()
     {
-        Game game = GameFactory.getInstance().getGame("x3tc");
+        game = GameFactory.getInstance().getGame("x3tc");
         sectorFactory = game.getSectorFactory();
         System.setProperty("xadrian.config", "false");
     }
@@ -54,4 +62,155 @@ public class SectorTest
         assertEquals(-1, sectorFactory.getSector(9, 14).getDistance(
             sectorFactory.getSector(16, 11)));
     }
+
+    /**
+     * Checks that the precomputed gate distances are consistent.
+     */
+    @Test
+    public void testDistanceTable()
+    {
+        for (final Sector source : sectorFactory.getSectors())
+        {
+            assertEquals(0, source.getDistance(source));
+            for (final Sector dest : sectorFactory.getSectors())
+                assertEquals(source.getDistance(dest),
+                    dest.getDistance(source));
+        }
+    }
+
+    /**
+     * Checks the route methods of the sector factory.
+     */
+    @Test
+    public void testGetRoute()
+    {
+        // Route between Kingdom End and Atreus' Clouds
+        final Sector source = sectorFactory.getSector(0, 0);
+        final Sector dest = sectorFactory.getSector(3, 2);
+        final List<Sector> route = sectorFactory.getRoute(source, dest);
+        assertEquals(6, route.size());
+        assertEquals(source, route.get(0));
+        assertEquals(dest, route.get(5));
+        for (int i = 1; i < route.size(); i++)
+            assertEquals(1, route.get(i - 1).getDistance(route.get(i)));
+        assertEquals(route.get(1), sectorFactory.getNextHop(source, dest));
+
+        // Unreachable Khaak sector 931
+        assertNull(sectorFactory.getRoute(sectorFactory.getSector(9, 14),
+            sectorFactory.getSector(16, 11)));
+
+        // Nearest sectors and sectors within jumps
+        final List<Sector> nearest = sectorFactory.getNearestSectors(source, 5);
+        assertEquals(5, nearest.size());
+        assertEquals(1, source.getDistance(nearest.get(0)));
+        final List<Sector> within = sectorFactory.getSectorsWithinJumps(
+            source, 2);
+        assertEquals(source, within.get(0));
+        for (final Sector sector : within)
+            assertTrue(source.getDistance(sector) <= 2);
+    }
+
+    /**
+     * Checks the getNearestKitSellingSector() method.
+     */
+    @Test
+    public void testGetNearestKitSellingSector()
+    {
+        // Kingdom End has a Boron shipyard
+        final Sector kingdomEnd = sectorFactory.getSector(0, 0);
+        assertEquals(kingdomEnd, kingdomEnd.getNearestKitSellingSector());
+
+        // No other selling shipyard is nearer than the found one
+        for (final Sector sector : sectorFactory.getSectors())
+        {
+            final Sector nearest = sector.getNearestKitSellingSector();
+            if (nearest == null) continue;
+            assertTrue(nearest.hasShipyard());
+            final int distance = sector.getDistance(nearest);
+            for (final Sector other : sectorFactory.getSectorsWithinJumps(
+                sector, distance - 1))
+            {
+                final String raceId = other.getRace().getId();
+                assertTrue(!other.hasShipyard() || raceId.equals("xenon")
+                    || raceId.equals("terran"));
+            }
+        }
+    }
+
+    /**
+     * Checks the station index.
+     */
+    @Test
+    public void testStationIndex()
+    {
+        final StationIndex stations = sectorFactory.getStationIndex();
+        final Sector kingdomEnd = sectorFactory.getSector(0, 0);
+        assertEquals(12, stations.countStations(kingdomEnd));
+        assertEquals("BTEYF-52", stations.getStations(kingdomEnd).get(0)
+            .getId());
+        assertTrue(stations.getSectorsWithStation("crystalFabM-boron")
+            .contains(kingdomEnd));
+
+        // Kingdom End produces crystals itself
+        final Ware crystals = game.getWareFactory().getWare("crystals");
+        assertEquals(kingdomEnd, stations.getNearestProducingSector(
+            kingdomEnd, crystals));
+        assertTrue(stations.countProducers(kingdomEnd, crystals, 0) > 0);
+
+        // No other producing sector is nearer than the found one
+        final List<Sector> producers = stations.getProducingSectors(crystals);
+        for (final Sector sector : sectorFactory.getSectors())
+        {
+            final Sector nearest = stations.getNearestProducingSector(sector,
+                crystals);
+            if (nearest == null) continue;
+            assertTrue(producers.contains(nearest));
+            final int distance = sector.getDistance(nearest);
+            for (final Sector other : producers)
+            {
+                final int otherDistance = sector.getDistance(other);
+                assertTrue(otherDistance < 0 || otherDistance >= distance);
+            }
+        }
+    }
+
+    /**
+     * Checks the mining site search.
+     */
+    @Test
+    public void testFindMiningSectors()
+    {
+        final Ware ore = game.getWareFactory().getWare("ore");
+        final Sector kingdomEnd = sectorFactory.getSector(0, 0);
+        final List<Sector> found =
+            sectorFactory.findMiningSectors(ore, 20, 2, kingdomEnd, 4);
+        assertTrue(!found.isEmpty());
+
+        // Compare with a search over all asteroids
+        int matches = 0;
+        for (final Sector sector : sectorFactory.getSectorsWithinJumps(
+            kingdomEnd, 4))
+        {
+            int count = 0;
+            for (final Asteroid asteroid : sector.getAsteroids())
+                if (asteroid.getWare() == ore && asteroid.getYield() >= 20)
+                    count++;
+            assertEquals(count >= 2, found.contains(sector));
+            if (count >= 2) matches++;
+        }
+        assertEquals(matches, found.size());
+
+        // Sorted by total yield of the matching asteroids
+        int last = Integer.MAX_VALUE;
+        for (final Sector sector : found)
+        {
+            final int total = sector.getAsteroidField().getTotalYield(ore, 20);
+            assertTrue(total <= last);
+            last = total;
+        }
+
+        // Searching the whole universe finds at least the same sectors
+        assertTrue(sectorFactory.findMiningSectors(ore, 20, 2, null, 0)
+            .containsAll(found));
+    }
 }
@@ -0,0 +1,158 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+package de.ailis.xadrian.data;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+
+import javax.xml.bind.DatatypeConverter;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.TemplateCode.ErrorType;
+import de.ailis.xadrian.data.factories.GameFactory;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Tests the TemplateCode class.
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class TemplateCodeTest
+{
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        Config.getInstance().reset();
+    }
+
+    /**
+     * Decodes a template code with the specified unencoded values.
+     *
+     * @param values
+     *            The unencoded byte values
+     * @return The decoded template code
+     */
+    private static TemplateCode decode(final int... values)
+    {
+        final byte[] bytes = new byte[values.length];
+        for (int i = 0; i < values.length; i++)
+            bytes[i] = (byte) values[i];
+        return TemplateCode.decode(DatatypeConverter.printBase64Binary(bytes));
+    }
+
+    /**
+     * Tests decoding the example complex from the README.
+     */
+    @Test
+    public void testDecode()
+    {
+        final TemplateCode code = decode(0x03, 0x0e, 0x04, 0x49, 0x15, 0x14,
+            0x13, 0x00, 0xdf, 0x01, 0x01, 0x11, 0x13, 0x11, 0x00, 0x16, 0x02,
+            0x00);
+        assertTrue(code.isValid());
+        assertNull(code.getErrorType());
+        assertEquals("x3ap", code.getGame().getId());
+        assertEquals("sec-14-4", code.getSector().getId());
+        assertNull(code.getSuns());
+        assertEquals(4, code.getFactoryCount());
+        assertEquals("siliconMineL-terran", code.getFactory(0).getId());
+        assertEquals(Arrays.asList(20, 19, 18), code.getYields(0));
+        assertEquals(3, code.getQuantity(0));
+        assertEquals(223, code.getFactory(1).getNid());
+        assertNull(code.getYields(1));
+        assertEquals(1, code.getQuantity(1));
+        assertEquals(Arrays.asList(18, 16), code.getYields(2));
+        assertEquals("flowerFarmM-teladi", code.getFactory(3).getId());
+        assertEquals(2, code.getQuantity(3));
+    }
+
+    /**
+     * Tests that a complex survives a round trip through a template code.
+     */
+    @Test
+    public void testRoundTrip()
+    {
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final Complex complex = new Complex(game);
+        complex.setSuns(game.getSunFactory().getSun(150));
+        complex.addFactory(game.getFactoryFactory().getFactory(
+            "cattleRanchL-argon"));
+        complex.addFactory(game.getFactoryFactory().getFactory(
+            "cattleRanchL-argon"));
+        complex.addFactory(game.getFactoryFactory().getFactory(
+            "siliconMineM-argon"), Arrays.asList(12, 0, 255));
+        final String templateCode = complex.getTemplateCode();
+        final TemplateCode code = TemplateCode.decode(" " + templateCode);
+        assertTrue(code.isValid());
+        assertEquals(150, code.getSuns().getPercent());
+        assertEquals(templateCode,
+            Complex.fromTemplateCode(code).getTemplateCode());
+        assertTrue(Complex.isValidTemplateCode(templateCode));
+    }
+
+    /**
+     * Tests that asteroid yields above 255 survive a round trip through a
+     * template code.
+     */
+    @Test
+    public void testLargeYield()
+    {
+        final Game game = GameFactory.getInstance().getGame("x3tc");
+        final Complex complex = new Complex(game);
+        complex.addFactory(game.getFactoryFactory().getFactory(
+            "siliconMineM-argon"), Arrays.asList(300));
+        final String templateCode = complex.getTemplateCode();
+        final TemplateCode code = TemplateCode.decode(templateCode);
+        assertTrue(code.isValid());
+        assertEquals(Arrays.asList(300), code.getYields(0));
+        assertTrue(Complex.isValidTemplateCode(templateCode));
+        assertEquals(templateCode,
+            Complex.fromTemplateCode(templateCode).getTemplateCode());
+    }
+
+    /**
+     * Tests the errors of invalid template codes.
+     */
+    @Test
+    public void testErrors()
+    {
+        assertEquals(ErrorType.BAD_BASE64,
+            TemplateCode.decode("no base64").getErrorType());
+        assertEquals(ErrorType.BAD_BASE64,
+            TemplateCode.decode("AQEBQ").getErrorType());
+        assertEquals(ErrorType.TRUNCATED, decode(0x03, 0x0e).getErrorType());
+        assertEquals(ErrorType.TRUNCATED, decode(0x02, 100, 0x49, 0x15)
+            .getErrorType());
+        assertEquals(ErrorType.BAD_VALUE, decode(0xff, 0xff, 0xff, 0xff, 0x7f)
+            .getErrorType());
+        assertEquals(ErrorType.UNKNOWN_GAME, decode(0x0e, 100, 0)
+            .getErrorType());
+        assertEquals(ErrorType.UNKNOWN_SECTOR, decode(0x03, 100, 100, 0)
+            .getErrorType());
+        assertEquals(ErrorType.UNKNOWN_SUNS, decode(0x02, 1, 0)
+            .getErrorType());
+        assertEquals(ErrorType.UNKNOWN_FACTORY, decode(0x02, 100, 0xff, 0x7f,
+            1, 0).getErrorType());
+        assertEquals(ErrorType.BAD_YIELD, decode(0x02, 100, 0x49, 0xea, 0x07,
+            0, 0).getErrorType());
+        assertEquals(ErrorType.BAD_QUANTITY, decode(0x02, 100, 0x16, 0, 0)
+            .getErrorType());
+
+        final TemplateCode code = decode(0x02, 100, 0x16, 0, 0);
+        assertFalse(code.isValid());
+        assertNull(code.getGame());
+        assertEquals(0, code.getFactoryCount());
+        assertFalse(Complex.isValidTemplateCode("no base64"));
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * Copyright (C) 2010-2012 Klaus Reimer <k@ailis.de>
+ * See LICENSE.TXT for licensing information.
+ */
+
+package de.ailis.xadrian.data.support;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.Arrays;
+
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import de.ailis.xadrian.data.Complex;
+import de.ailis.xadrian.support.BatchEvaluator;
+import de.ailis.xadrian.support.Config;
+
+/**
+ * Tests the BatchEvaluator
+ *
+ * @author Klaus Reimer (k@ailis.de)
+ */
+public class BatchEvaluatorTest
+{
+    /** A template code of a small complex. */
+    private static final String SMALL = "AQEBQQEA";
+
+    /** A template code of a medium complex. */
+    private static final String MEDIUM = "AQEBOwFBAQoBPQEA";
+
+    /**
+     * Initializes the test
+     */
+    @BeforeClass
+    public static void init()
+    {
+        Config.getInstance().reset();
+    }
+
+    /**
+     * Evaluates the specified input with the specified number of threads.
+     *
+     * @param input
+     *            The input
+     * @param threads
+     *            The number of worker threads
+     * @return The output lines
+     * @throws IOException
+     *             When evaluation fails
+     */
+    private static String[] evaluate(final String input, final int threads)
+        throws IOException
+    {
+        final BatchEvaluator evaluator = new BatchEvaluator();
+        evaluator.setThreads(threads);
+        final StringWriter writer = new StringWriter();
+        evaluator.evaluate(new StringReader(input), writer);
+        return writer.toString().split("\n");
+    }
+
+    /**
+     * Tests that the results are written in input order independent of the
+     * number of threads and that invalid template codes produce error
+     * records.
+     *
+     * @throws IOException
+     *             When evaluation fails
+     */
+    @Test
+    public void testEvaluate() throws IOException
+    {
+        final StringBuilder input = new StringBuilder("# Comment\n\n");
+        for (int i = 0; i < 500; i++)
+            input.append(i % 2 == 0 ? SMALL : MEDIUM).append('\n');
+        input.append("invalid\n");
+
+        final String[] lines = evaluate(input.toString(), 4);
+        assertEquals(502, lines.length);
+        assertTrue(lines[0].startsWith("line,templateCode,"));
+
+        final Complex complex = Complex.fromTemplateCode(SMALL);
+        complex.setAddBaseComplex(true);
+        complex.updateBaseComplex();
+        for (int i = 0; i < 500; i++)
+        {
+            final String[] fields = lines[i + 1].split(",", -1);
+            assertEquals(String.valueOf(i + 3), fields[0]);
+            assertEquals(i % 2 == 0 ? SMALL : MEDIUM, fields[1]);
+            assertEquals("", fields[13]);
+            if (i % 2 == 0)
+            {
+                assertEquals(String.valueOf(complex.getTotalPrice()),
+                    fields[6]);
+                assertEquals(String.valueOf(complex.getKitQuantity()),
+                    fields[7]);
+            }
+        }
+        final String[] fields = lines[501].split(",", -1);
+        assertEquals("503", fields[0]);
+        assertEquals("", fields[2]);
+        assertTrue(fields[13].length() > 0);
+
+        assertTrue(Arrays.equals(lines, evaluate(input.toString(), 1)));
+    }
+}
@@ -5,15 +5,21 @@
 
 package de.ailis.xadrian.data.support;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
 
 import org.junit.Test;
 
 import de.ailis.xadrian.support.DynaByteOutputStream;
+import de.ailis.xadrian.support.DynaBytes;
 
 /**
  * Tests the DynaByteInputStream
@@ -59,4 +65,79 @@ public class DynaByteInputStreamTest
             stream.close();
         }
     }
+
+    /**
+     * Tests writing values above 2^28.
+     */
+    @Test
+    public void testWriteLargeValues()
+    {
+        assertArrayEquals(new byte[] { -128, -128, -128, -128, 1 },
+            DynaBytes.encode(1 << 28));
+        assertArrayEquals(new byte[] { -1, -1, -1, -1, 7 },
+            DynaBytes.encode(Integer.MAX_VALUE));
+        assertArrayEquals(new byte[] { -1, -1, -1, -1, 15 },
+            DynaBytes.encode(-1));
+        assertEquals(DynaBytes.MAX_LENGTH, DynaBytes.getLength(-1));
+    }
+
+    /**
+     * Tests writing into a too small byte buffer.
+     */
+    @Test
+    public void testWriteOverflow()
+    {
+        final ByteBuffer buffer = ByteBuffer.allocate(3);
+        DynaBytes.write(buffer, 1);
+        try
+        {
+            DynaBytes.write(buffer, 16256);
+            DynaBytes.write(buffer, 1);
+            fail("BufferOverflowException expected");
+        }
+        catch (final BufferOverflowException e)
+        {
+            assertEquals(3, buffer.position());
+        }
+    }
+
+    /**
+     * Writes random values with the stream, into heap byte buffers and into
+     * direct byte buffers, compares the bytes and decodes them again.
+     *
+     * @throws IOException
+     *             When stream reported an error.
+     */
+    @Test
+    public void testFuzzRoundTrip() throws IOException
+    {
+        final Random random = new Random(0);
+        for (int run = 0; run < 100; run++)
+        {
+            final int[] values = new int[random.nextInt(100)];
+            for (int i = 0; i < values.length; i++)
+                values[i] = random.nextInt() >>> random.nextInt(32);
+            final ByteArrayOutputStream arrayStream =
+                new ByteArrayOutputStream();
+            final OutputStream stream = new DynaByteOutputStream(arrayStream);
+            final int length = DynaBytes.getLength(values);
+            final ByteBuffer heap = ByteBuffer.allocate(length);
+            final ByteBuffer direct = ByteBuffer.allocateDirect(length);
+            for (final int value: values)
+            {
+                stream.write(value);
+                DynaBytes.write(heap, value);
+                DynaBytes.write(direct, value);
+            }
+            stream.close();
+            final byte[] data = DynaBytes.encode(values);
+            assertArrayEquals(arrayStream.toByteArray(), data);
+            assertArrayEquals(heap.array(), data);
+            final byte[] directData = new byte[length];
+            direct.flip();
+            direct.get(directData);
+            assertArrayEquals(directData, data);
+            assertArrayEquals(values, DynaBytes.decode(data));
+        }
+    }
 }
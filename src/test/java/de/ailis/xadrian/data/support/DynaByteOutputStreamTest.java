@@ -6,14 +6,20 @@
 package de.ailis.xadrian.data.support;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Random;
 
 import org.junit.Test;
 
 import de.ailis.xadrian.support.DynaByteInputStream;
+import de.ailis.xadrian.support.DynaBytes;
 
 /**
  * Tests the DynaByteInputStream
@@ -52,4 +58,145 @@ public class DynaByteOutputStreamTest
             stream.close();
         }
     }
+
+    /**
+     * Reads a single value with a DynaByteInputStream.
+     *
+     * @param data
+     *            The encoded value
+     * @return The read value
+     * @throws IOException
+     *             When stream reported an error.
+     */
+    private static int readValue(final byte[] data) throws IOException
+    {
+        return new DynaByteInputStream(new ByteArrayInputStream(data)).read();
+    }
+
+    /**
+     * Tests reading values above 2^28 and invalid values.
+     *
+     * @throws IOException
+     *             When stream reported an error.
+     */
+    @Test
+    public void testReadLargeValues() throws IOException
+    {
+        final byte[] max = { -1, -1, -1, -1, 7 };
+        assertEquals(1 << 28, readValue(new byte[] { -128, -128, -128, -128,
+            1 }));
+        assertEquals(Integer.MAX_VALUE, readValue(max));
+        assertEquals(Integer.MAX_VALUE, DynaBytes.read(ByteBuffer.wrap(max)));
+        assertEquals(-1, DynaBytes.read(ByteBuffer.wrap(new byte[] { -1, -1,
+            -1, -1, 15 })));
+
+        final byte[][] invalid = { { -1, -1, -1, -1, 16 },
+            { -128, -128, -128, -128, -128, 0 } };
+        for (final byte[] data: invalid)
+        {
+            try
+            {
+                readValue(data);
+                fail("IOException expected");
+            }
+            catch (final IOException e)
+            {
+                // Expected
+            }
+            try
+            {
+                DynaBytes.read(ByteBuffer.wrap(data));
+                fail("IllegalArgumentException expected");
+            }
+            catch (final IllegalArgumentException e)
+            {
+                // Expected
+            }
+        }
+    }
+
+    /**
+     * Tests reading a truncated value.
+     *
+     * @throws IOException
+     *             When stream reported an error.
+     */
+    @Test
+    public void testReadTruncated() throws IOException
+    {
+        final byte[] data = { 1, -1, -1 };
+        final InputStream stream = new DynaByteInputStream(
+            new ByteArrayInputStream(data));
+        assertEquals(1, stream.read());
+        try
+        {
+            stream.read();
+            fail("IOException expected");
+        }
+        catch (final IOException e)
+        {
+            // Expected
+        }
+        final ByteBuffer buffer = ByteBuffer.wrap(data);
+        assertEquals(1, DynaBytes.read(buffer));
+        try
+        {
+            DynaBytes.read(buffer);
+            fail("BufferUnderflowException expected");
+        }
+        catch (final BufferUnderflowException e)
+        {
+            assertEquals(1, buffer.position());
+        }
+    }
+
+    /**
+     * Reads random values with the stream, from heap byte buffers and from
+     * direct byte buffers and compares them with the original values.
+     *
+     * @throws IOException
+     *             When stream reported an error.
+     */
+    @Test
+    public void testFuzzRead() throws IOException
+    {
+        final Random random = new Random(0);
+        for (int run = 0; run < 100; run++)
+        {
+            final int[] values = new int[random.nextInt(100)];
+            for (int i = 0; i < values.length; i++)
+                values[i] = random.nextInt() >>> random.nextInt(32);
+            final byte[] data = DynaBytes.encode(values);
+            final InputStream stream = new DynaByteInputStream(
+                new ByteArrayInputStream(data));
+            final ByteBuffer heap = ByteBuffer.wrap(data);
+            final ByteBuffer direct = ByteBuffer.allocateDirect(data.length);
+            direct.put(data).flip();
+            for (final int value: values)
+            {
+                if (value >= 0)
+                {
+                    assertEquals(value, stream.read());
+                }
+                else
+                {
+                    // Values above 2^31 can't be read from a stream
+                    try
+                    {
+                        stream.read();
+                        fail("IOException expected");
+                    }
+                    catch (final IOException e)
+                    {
+                        // Expected
+                    }
+                }
+                assertEquals(value, DynaBytes.read(heap));
+                assertEquals(value, DynaBytes.read(direct));
+            }
+            assertFalse(heap.hasRemaining());
+            assertFalse(direct.hasRemaining());
+            assertEquals(values.length, DynaBytes.decode(data).length);
+        }
+    }
 }